@@ -0,0 +1,127 @@
+package com.thinkaurelius.titan.diskstorage;
+
+import com.google.common.collect.ImmutableMap;
+import com.thinkaurelius.titan.diskstorage.berkeleyje.BerkeleyJEStoreManager;
+import com.thinkaurelius.titan.diskstorage.cassandra.embedded.CassandraEmbeddedStoreManager;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.ConsistencyLevel;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeyColumnValueStore;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeyColumnValueStoreManager;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.StoreTransaction;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.inmemory.InMemoryStoreManager;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.keyvalue.KeyValueStoreManagerAdapter;
+import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
+import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for benchmarks which compare storage backends through the {@link KeyColumnValueStoreManager} SPI,
+ * modeled on <code>KeyColumnValueStoreTest</code>. Before each trial the store is cleared and loaded with
+ * {@link #NUM_KEYS} rows of {@link #NUM_COLUMNS} columns each.
+ * <p/>
+ * Every benchmark is measured in throughput and sample time mode, the latter reports latency percentiles. Each
+ * operation runs in its own store transaction, like a Titan transaction with buffering disabled. Use the
+ * <code>-t</code> option to vary the number of threads and <code>-p backend=...</code> to restrict the backends.
+ * Run from the titan-benchmark directory so that the embedded Cassandra configuration under target is found.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class KeyColumnValueStoreBenchmark {
+
+    public static final String STORE_NAME = "benchmarkStore";
+    public static final int NUM_KEYS = 1000;
+    public static final int NUM_COLUMNS = 500;
+    public static final int VALUE_SIZE = 32;
+
+    public static final String BENCHMARK_DIRECTORY = System.getProperty("user.dir") + File.separator + "target"
+            + File.separator + "benchmark";
+    public static final String CASSANDRA_CONFIG = StringUtils.join(
+            new String[]{"file://", System.getProperty("user.dir"), "target",
+                    "cassandra-tmp", "conf", "127.0.0.1", "cassandra.yaml"},
+            File.separator);
+
+    @Param({"inmemory", "berkeleyje", "embeddedcassandra"})
+    public String backend;
+
+    protected KeyColumnValueStoreManager manager;
+    protected KeyColumnValueStore store;
+
+    @Setup(Level.Trial)
+    public void open() throws StorageException {
+        openStorageManager(backend).clearStorage();
+        manager = openStorageManager(backend);
+        store = manager.openDatabase(STORE_NAME);
+        Random random = new Random(NUM_KEYS);
+        for (int i = 0; i < NUM_KEYS; i++) {
+            List<Entry> entries = new ArrayList<Entry>(NUM_COLUMNS);
+            for (int j = 0; j < NUM_COLUMNS; j++) entries.add(new Entry(getColumn(j), getValue(random)));
+            StoreTransaction tx = beginTransaction();
+            store.mutate(getKey(i), entries, null, tx);
+            tx.commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws StorageException {
+        store.close();
+        manager.close();
+    }
+
+    public static KeyColumnValueStoreManager openStorageManager(String backend) throws StorageException {
+        BaseConfiguration config = new BaseConfiguration();
+        if (backend.equals("inmemory")) {
+            return new InMemoryStoreManager(config);
+        } else if (backend.equals("berkeleyje")) {
+            config.addProperty(GraphDatabaseConfiguration.STORAGE_DIRECTORY_KEY, BENCHMARK_DIRECTORY + File.separator + backend);
+            return new KeyValueStoreManagerAdapter(new BerkeleyJEStoreManager(config), ImmutableMap.of(STORE_NAME, ByteBufferUtil.longSize));
+        } else if (backend.equals("embeddedcassandra")) {
+            config.addProperty(CassandraEmbeddedStoreManager.CASSANDRA_CONFIG_DIR_KEY, CASSANDRA_CONFIG);
+            return new CassandraEmbeddedStoreManager(config);
+        } else throw new IllegalArgumentException("Unknown backend: " + backend);
+    }
+
+    public StoreTransaction beginTransaction() throws StorageException {
+        return manager.beginTransaction(ConsistencyLevel.DEFAULT);
+    }
+
+    public static ByteBuffer getKey(long key) {
+        return ByteBufferUtil.getLongByteBuffer(key);
+    }
+
+    public static ByteBuffer getColumn(int column) {
+        return ByteBufferUtil.getIntByteBuffer(column);
+    }
+
+    public static ByteBuffer getValue(Random random) {
+        byte[] value = new byte[VALUE_SIZE];
+        random.nextBytes(value);
+        return ByteBuffer.wrap(value);
+    }
+
+}
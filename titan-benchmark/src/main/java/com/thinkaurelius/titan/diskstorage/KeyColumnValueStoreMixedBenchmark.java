@@ -0,0 +1,50 @@
+package com.thinkaurelius.titan.diskstorage;
+
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySliceQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.StoreTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures reads of ten column slices concurrently with updates of single columns on the same rows. By default
+ * three reader threads run against one writer thread, use <code>-tg readers,writers</code> to vary the ratio and
+ * the total number of threads.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+public class KeyColumnValueStoreMixedBenchmark extends KeyColumnValueStoreBenchmark {
+
+    private static final int SLICE_WIDTH = 10;
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public List<Entry> read() throws StorageException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int start = random.nextInt(NUM_COLUMNS - SLICE_WIDTH + 1);
+        StoreTransaction tx = beginTransaction();
+        List<Entry> result = store.getSlice(new KeySliceQuery(getKey(random.nextInt(NUM_KEYS)),
+                getColumn(start), getColumn(start + SLICE_WIDTH)), tx);
+        tx.commit();
+        return result;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void write() throws StorageException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Entry> additions = new ArrayList<Entry>(1);
+        additions.add(new Entry(getColumn(random.nextInt(NUM_COLUMNS)), getValue(random)));
+        StoreTransaction tx = beginTransaction();
+        store.mutate(getKey(random.nextInt(NUM_KEYS)), additions, null, tx);
+        tx.commit();
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.thinkaurelius.titan.diskstorage;
+
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.StoreTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures point reads, key lookups and full key scans against a loaded store.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+public class KeyColumnValueStoreReadBenchmark extends KeyColumnValueStoreBenchmark {
+
+    @Benchmark
+    public ByteBuffer pointGet() throws StorageException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StoreTransaction tx = beginTransaction();
+        ByteBuffer value = store.get(getKey(random.nextInt(NUM_KEYS)), getColumn(random.nextInt(NUM_COLUMNS)), tx);
+        tx.commit();
+        return value;
+    }
+
+    @Benchmark
+    public boolean containsKey() throws StorageException {
+        StoreTransaction tx = beginTransaction();
+        boolean result = store.containsKey(getKey(ThreadLocalRandom.current().nextInt(NUM_KEYS)), tx);
+        tx.commit();
+        return result;
+    }
+
+    @Benchmark
+    public int keyScan() throws StorageException {
+        StoreTransaction tx = beginTransaction();
+        RecordIterator<ByteBuffer> keys = store.getKeys(tx);
+        int count = 0;
+        while (keys.hasNext()) {
+            keys.next();
+            count++;
+        }
+        keys.close();
+        tx.commit();
+        return count;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.thinkaurelius.titan.diskstorage;
+
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySliceQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.StoreTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures column slices of varying width within a row, and slices over the entire row which are cut off by a
+ * limit of the same width.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+public class KeyColumnValueStoreSliceBenchmark extends KeyColumnValueStoreBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int sliceWidth;
+
+    @Benchmark
+    public List<Entry> slice() throws StorageException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int start = random.nextInt(NUM_COLUMNS - sliceWidth + 1);
+        StoreTransaction tx = beginTransaction();
+        List<Entry> result = store.getSlice(new KeySliceQuery(getKey(random.nextInt(NUM_KEYS)),
+                getColumn(start), getColumn(start + sliceWidth)), tx);
+        tx.commit();
+        return result;
+    }
+
+    @Benchmark
+    public List<Entry> limitedSlice() throws StorageException {
+        StoreTransaction tx = beginTransaction();
+        List<Entry> result = store.getSlice(new KeySliceQuery(getKey(ThreadLocalRandom.current().nextInt(NUM_KEYS)),
+                getColumn(0), getColumn(NUM_COLUMNS), sliceWidth), tx);
+        tx.commit();
+        return result;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.thinkaurelius.titan.diskstorage;
+
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KCVMutation;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.StoreTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures writing batches of new rows with {@link com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeyColumnValueStoreManager#mutateMany}.
+ * Backends which do not support batch mutations write the rows of a batch one at a time, as the
+ * {@link Backend} does when buffering is disabled.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+public class KeyColumnValueStoreWriteBenchmark extends KeyColumnValueStoreBenchmark {
+
+    private static final int COLUMNS_PER_ROW = 10;
+
+    @Param({"1", "10", "100"})
+    public int batchSize;
+
+    private final AtomicLong nextKey = new AtomicLong(NUM_KEYS);
+
+    @Benchmark
+    public int mutateMany() throws StorageException {
+        Random random = ThreadLocalRandom.current();
+        Map<ByteBuffer, KCVMutation> rows = new HashMap<ByteBuffer, KCVMutation>(batchSize * 2);
+        for (int i = 0; i < batchSize; i++) {
+            List<Entry> additions = new ArrayList<Entry>(COLUMNS_PER_ROW);
+            for (int j = 0; j < COLUMNS_PER_ROW; j++) additions.add(new Entry(getColumn(j), getValue(random)));
+            rows.put(getKey(nextKey.getAndIncrement()), new KCVMutation(additions, null));
+        }
+        StoreTransaction tx = beginTransaction();
+        if (manager.getFeatures().supportsBatchMutation()) {
+            Map<String, Map<ByteBuffer, KCVMutation>> mutations = new HashMap<String, Map<ByteBuffer, KCVMutation>>(2);
+            mutations.put(STORE_NAME, rows);
+            manager.mutateMany(mutations, tx);
+        } else {
+            for (Map.Entry<ByteBuffer, KCVMutation> row : rows.entrySet()) {
+                store.mutate(row.getKey(), row.getValue().getAdditions(), row.getValue().getDeletions(), tx);
+            }
+        }
+        tx.commit();
+        return rows.size();
+    }
+
+}
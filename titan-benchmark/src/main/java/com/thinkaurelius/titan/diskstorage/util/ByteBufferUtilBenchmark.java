@@ -0,0 +1,74 @@
+package com.thinkaurelius.titan.diskstorage.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ByteBufferUtil#compare(ByteBuffer, ByteBuffer)} on buffers of varying length which only differ
+ * in their last byte, i.e. the worst case for column comparisons.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteBufferUtilBenchmark {
+
+    @Param({"8", "32", "256"})
+    public int length;
+
+    private ByteBuffer a;
+    private ByteBuffer b;
+    private ByteBuffer direct;
+
+    @Setup
+    public void setup() {
+        a = ByteBuffer.allocate(length);
+        b = ByteBuffer.allocate(length);
+        direct = ByteBuffer.allocateDirect(length);
+        for (int i = 0; i < length; i++) {
+            a.put((byte) i);
+            b.put((byte) (i == length - 1 ? i + 1 : i));
+            direct.put((byte) i);
+        }
+        a.flip();
+        b.flip();
+        direct.flip();
+    }
+
+    @Benchmark
+    public int compare() {
+        return ByteBufferUtil.compare(a, b);
+    }
+
+    @Benchmark
+    public int compareDirect() {
+        return ByteBufferUtil.compare(direct, b);
+    }
+
+    @Benchmark
+    public boolean isSmallerThan() {
+        return ByteBufferUtil.isSmallerThan(a, b);
+    }
+
+    @Benchmark
+    public ByteBuffer nextBiggerBuffer() {
+        return ByteBufferUtil.nextBiggerBuffer(a);
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.thinkaurelius.titan.graphdb.database;
+
+import com.thinkaurelius.titan.core.TitanEdge;
+import com.thinkaurelius.titan.core.TitanFactory;
+import com.thinkaurelius.titan.core.TitanKey;
+import com.thinkaurelius.titan.core.TitanLabel;
+import com.thinkaurelius.titan.core.TitanProperty;
+import com.thinkaurelius.titan.core.TitanTransaction;
+import com.thinkaurelius.titan.core.TitanVertex;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
+import com.thinkaurelius.titan.graphdb.internal.InternalRelation;
+import com.thinkaurelius.titan.graphdb.internal.InternalVertex;
+import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
+import com.tinkerpop.blueprints.Direction;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing and reading the edge store entries of an edge and a property with {@link EdgeSerializer}.
+ * Run with the GC profiler (<code>-prof gc</code>) to report the bytes allocated per operation
+ * (<code>gc.alloc.rate.norm</code>).
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeSerializerBenchmark {
+
+    private StandardTitanGraph graph;
+    private StandardTitanTx tx;
+    private EdgeSerializer serializer;
+
+    private InternalVertex vertex;
+    private InternalRelation edge;
+    private InternalRelation property;
+    private Entry edgeEntry;
+    private Entry propertyEntry;
+
+    @Setup
+    public void setup() {
+        BaseConfiguration config = new BaseConfiguration();
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE).addProperty(GraphDatabaseConfiguration.STORAGE_BACKEND_KEY, "inmemory");
+        graph = (StandardTitanGraph) TitanFactory.open(config);
+
+        TitanTransaction setup = graph.newTransaction();
+        TitanKey time = setup.makeType().name("time").dataType(Long.class).unique(Direction.OUT).makePropertyKey();
+        TitanKey weight = setup.makeType().name("weight").dataType(Double.class).unique(Direction.OUT).makePropertyKey();
+        setup.makeType().name("name").dataType(String.class).unique(Direction.OUT).makePropertyKey();
+        TitanLabel knows = setup.makeType().name("knows").primaryKey(time).signature(weight).makeEdgeLabel();
+        TitanVertex v1 = setup.addVertex();
+        TitanVertex v2 = setup.addVertex();
+        v1.addProperty("name", "Marko Rodriguez");
+        TitanEdge e = v1.addEdge(knows, v2);
+        e.setProperty(time, 1368139811L);
+        e.setProperty(weight, 0.5);
+        e.setProperty("name", "since school");
+        setup.commit();
+
+        tx = (StandardTitanTx) graph.newTransaction();
+        serializer = graph.getEdgeSerializer();
+        vertex = (InternalVertex) tx.getVertex(v1.getID());
+        edge = (InternalRelation) vertex.getEdges(Direction.OUT, "knows").iterator().next();
+        property = (InternalRelation) vertex.getProperties("name").iterator().next();
+        edgeEntry = serializer.writeRelation(edge, 0, tx);
+        propertyEntry = serializer.writeRelation(property, 0, tx);
+    }
+
+    @TearDown
+    public void tearDown() {
+        tx.rollback();
+        graph.shutdown();
+    }
+
+    @Benchmark
+    public Entry writeEdge() {
+        return serializer.writeRelation(edge, 0, tx);
+    }
+
+    @Benchmark
+    public Entry writeProperty() {
+        return serializer.writeRelation(property, 0, tx);
+    }
+
+    @Benchmark
+    public InternalRelation readEdge() {
+        return serializer.readRelation(vertex, edgeEntry);
+    }
+
+    @Benchmark
+    public Object readProperty() {
+        return ((TitanProperty) serializer.readRelation(vertex, propertyEntry)).getValue();
+    }
+
+}
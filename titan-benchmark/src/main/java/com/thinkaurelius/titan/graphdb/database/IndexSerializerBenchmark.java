@@ -0,0 +1,111 @@
+package com.thinkaurelius.titan.graphdb.database;
+
+import com.thinkaurelius.titan.core.TitanFactory;
+import com.thinkaurelius.titan.core.TitanKey;
+import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
+import com.thinkaurelius.titan.graphdb.relations.RelationIdentifier;
+import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the key and column encodings {@link IndexSerializer} uses for the standard vertex index and the
+ * element and key names handed to external indexes.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexSerializerBenchmark {
+
+    private StandardTitanGraph graph;
+    private StandardTitanTx tx;
+    private IndexSerializer serializer;
+
+    private TitanKey key;
+    private RelationIdentifier relationId;
+    private ByteBuffer relationIdBuffer;
+    private String vertexName;
+
+    @Setup
+    public void setup() {
+        BaseConfiguration config = new BaseConfiguration();
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE).addProperty(GraphDatabaseConfiguration.STORAGE_BACKEND_KEY, "inmemory");
+        graph = (StandardTitanGraph) TitanFactory.open(config);
+        graph.makeType().name("name").dataType(String.class).indexed(Vertex.class).unique(Direction.OUT).makePropertyKey();
+        graph.commit();
+
+        tx = (StandardTitanTx) graph.newTransaction();
+        serializer = graph.getIndexSerializer();
+        key = tx.getPropertyKey("name");
+        relationId = RelationIdentifier.get(new long[]{123456789L, 4L, 987654321L});
+        relationIdBuffer = IndexSerializer.relationID2ByteBuffer(relationId);
+        vertexName = IndexSerializer.longID2Name(123456789L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        tx.rollback();
+        graph.shutdown();
+    }
+
+    @Benchmark
+    public ByteBuffer stringIndexKey() {
+        return serializer.getIndexKey("Marko Rodriguez");
+    }
+
+    @Benchmark
+    public ByteBuffer longIndexKey() {
+        return serializer.getIndexKey(1368139811000L);
+    }
+
+    @Benchmark
+    public ByteBuffer uniqueIndexColumn() {
+        return IndexSerializer.getUniqueIndexColumn(key);
+    }
+
+    @Benchmark
+    public ByteBuffer indexColumn() {
+        return IndexSerializer.getIndexColumn(key, 987654321L);
+    }
+
+    @Benchmark
+    public ByteBuffer writeRelationId() {
+        return IndexSerializer.relationID2ByteBuffer(relationId);
+    }
+
+    @Benchmark
+    public RelationIdentifier readRelationId() {
+        return IndexSerializer.bytebuffer2RelationId(relationIdBuffer.duplicate());
+    }
+
+    @Benchmark
+    public String encodeElementName() {
+        return IndexSerializer.longID2Name(123456789L);
+    }
+
+    @Benchmark
+    public long decodeElementName() {
+        return IndexSerializer.name2LongID(vertexName);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.thinkaurelius.titan.graphdb.database.idhandling;
+
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+import com.thinkaurelius.titan.graphdb.database.serialize.Serializer;
+import com.thinkaurelius.titan.graphdb.database.serialize.kryo.KryoSerializer;
+import com.thinkaurelius.titan.graphdb.idmanagement.IDManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding of vertex keys and edge type prefixes with {@link IDHandler}. The number of group bits
+ * is varied since it determines the width of the type prefix.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IDHandlerBenchmark {
+
+    @Param({"6", "14", "30"})
+    public int groupBits;
+
+    private IDManager idManager;
+    private Serializer serializer;
+    private long vertexId;
+    private long typeId;
+    private ByteBuffer key;
+    private ByteBuffer edgeType;
+
+    @Setup
+    public void setup() {
+        idManager = new IDManager(IDManager.defaultPartitionBits, groupBits);
+        serializer = new KryoSerializer(false);
+        vertexId = idManager.getNodeID(1234567, 0);
+        typeId = idManager.getRelationshipTypeID(4321, 5, 0);
+        key = IDHandler.getKey(vertexId);
+        edgeType = IDHandler.getEdgeType(typeId, 2, idManager);
+    }
+
+    @Benchmark
+    public ByteBuffer getKey() {
+        return IDHandler.getKey(vertexId);
+    }
+
+    @Benchmark
+    public long getKeyID() {
+        return IDHandler.getKeyID(key.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer getEdgeType() {
+        return IDHandler.getEdgeType(typeId, 2, idManager);
+    }
+
+    @Benchmark
+    public ByteBuffer writeEdgeType() {
+        DataOutput out = serializer.getDataOutput(16, false);
+        IDHandler.writeEdgeType(out, typeId, 2, idManager);
+        return out.getByteBuffer();
+    }
+
+    @Benchmark
+    public long readEdgeType() {
+        return IDHandler.readEdgeType(edgeType.duplicate(), idManager);
+    }
+
+}
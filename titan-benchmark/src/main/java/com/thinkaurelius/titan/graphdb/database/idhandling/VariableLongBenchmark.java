@@ -0,0 +1,96 @@
+package com.thinkaurelius.titan.graphdb.database.idhandling;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding batches of longs with {@link VariableLong}. The number of bits of the encoded
+ * values is varied since it determines the encoded length.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariableLongBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({"7", "21", "42", "62"})
+    public int bits;
+
+    private long[] values;
+    private ByteBuffer positive;
+    private ByteBuffer signed;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(bits);
+        values = new long[BATCH];
+        for (int i = 0; i < BATCH; i++) values[i] = random.nextLong() >>> (64 - bits);
+        positive = ByteBuffer.allocate(BATCH * 10);
+        signed = ByteBuffer.allocate(BATCH * 10);
+        for (int i = 0; i < BATCH; i++) {
+            VariableLong.writePositive(positive, values[i]);
+            VariableLong.write(signed, i % 2 == 0 ? values[i] : -values[i]);
+        }
+        positive.flip();
+        signed.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer writePositive() {
+        ByteBuffer out = positive.duplicate();
+        out.clear();
+        for (int i = 0; i < BATCH; i++) VariableLong.writePositive(out, values[i]);
+        return out;
+    }
+
+    @Benchmark
+    public long readPositive() {
+        ByteBuffer in = positive.duplicate();
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++) sum += VariableLong.readPositive(in);
+        return sum;
+    }
+
+    @Benchmark
+    public ByteBuffer writeSigned() {
+        ByteBuffer out = signed.duplicate();
+        out.clear();
+        for (int i = 0; i < BATCH; i++) VariableLong.write(out, i % 2 == 0 ? values[i] : -values[i]);
+        return out;
+    }
+
+    @Benchmark
+    public long readSigned() {
+        ByteBuffer in = signed.duplicate();
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++) sum += VariableLong.read(in);
+        return sum;
+    }
+
+    @Benchmark
+    public int positiveLength() {
+        int length = 0;
+        for (int i = 0; i < BATCH; i++) length += VariableLong.positiveLength(values[i]);
+        return length;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.kryo;
+
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing and reading a single attribute value of each of the standard data types with
+ * {@link KryoSerializer}. Run with the GC profiler (<code>-prof gc</code>) to report the bytes allocated per operation.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KryoSerializerBenchmark {
+
+    @Param({"Integer", "Long", "Double", "Float", "Date", "String", "Boolean", "long[]", "double[]"})
+    public String type;
+
+    private KryoSerializer serializer;
+    private Object value;
+    private Class<?> datatype;
+    private ByteBuffer serialized;
+
+    @Setup
+    public void setup() {
+        serializer = new KryoSerializer(false);
+        value = sample(type);
+        datatype = value.getClass();
+        DataOutput out = serializer.getDataOutput(128, true);
+        out.writeObjectNotNull(value);
+        serialized = out.getByteBuffer();
+    }
+
+    private static Object sample(String type) {
+        if (type.equals("Integer")) return Integer.valueOf(1368139811);
+        else if (type.equals("Long")) return Long.valueOf(1368139811000L);
+        else if (type.equals("Double")) return Double.valueOf(0.4375);
+        else if (type.equals("Float")) return Float.valueOf(-12.5f);
+        else if (type.equals("Date")) return new Date(1368139811000L);
+        else if (type.equals("String")) return "Titan: distributed graph database";
+        else if (type.equals("Boolean")) return Boolean.TRUE;
+        else if (type.equals("long[]")) {
+            long[] longs = new long[64];
+            for (int i = 0; i < longs.length; i++) longs[i] = 1368139811000L + i * 1000L;
+            return longs;
+        } else if (type.equals("double[]")) {
+            double[] doubles = new double[64];
+            for (int i = 0; i < doubles.length; i++) doubles[i] = Math.sin(i);
+            return doubles;
+        } else throw new IllegalArgumentException("Unknown type: " + type);
+    }
+
+    @Benchmark
+    public ByteBuffer write() {
+        DataOutput out = serializer.getDataOutput(128, true);
+        out.writeObjectNotNull(value);
+        return out.getByteBuffer();
+    }
+
+    @Benchmark
+    public Object read() {
+        return serializer.readObjectNotNull(serialized.duplicate(), datatype);
+    }
+
+    @Benchmark
+    public ByteBuffer writeClassAndObject() {
+        DataOutput out = serializer.getDataOutput(128, true);
+        out.writeClassAndObject(value);
+        return out.getByteBuffer();
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.thinkaurelius.titan.util.datastructures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building an {@link ImmutableLongObjectMap} through its {@link ImmutableLongObjectMap.Builder}, as done for
+ * the properties of every relation read from disk, and looking up keys in the built map.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImmutableLongObjectMapBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int size;
+
+    private long[] keys;
+    private Object[] values;
+    private ImmutableLongObjectMap map;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(size);
+        keys = new long[size];
+        values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i * 7919L + random.nextInt(7919);
+            values[i] = Integer.valueOf(i);
+        }
+        map = build();
+    }
+
+    @Benchmark
+    public ImmutableLongObjectMap build() {
+        ImmutableLongObjectMap.Builder builder = new ImmutableLongObjectMap.Builder();
+        for (int i = 0; i < size; i++) builder.put(keys[i], values[i]);
+        return builder.build();
+    }
+
+    @Benchmark
+    public int get() {
+        int found = 0;
+        for (int i = 0; i < size; i++) if (map.get(keys[i]) != null) found++;
+        return found;
+    }
+
+}
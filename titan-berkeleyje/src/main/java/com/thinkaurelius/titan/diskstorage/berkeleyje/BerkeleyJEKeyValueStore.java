@@ -180,12 +180,18 @@ public class BerkeleyJEKeyValueStore implements KeyValueStore {
         Cursor cursor;
         final DatabaseEntry foundValue;
         final DatabaseEntry foundKey;
+        final ByteBuffer keyEnd;
 
         ByteBuffer nextKey;
 
         public KeysIterator(StoreTransaction txh, Database db) throws StorageException {
+            this(txh, db, null, null);
+        }
+
+        public KeysIterator(StoreTransaction txh, Database db, ByteBuffer keyStart, ByteBuffer keyEnd) throws StorageException {
             this.txh = txh;
-            foundKey = new DatabaseEntry();
+            this.keyEnd = keyEnd;
+            foundKey = keyStart == null ? new DatabaseEntry() : getDataEntry(keyStart);
             foundValue = new DatabaseEntry();
             foundValue.setPartial(0, 0, true);
             cursor = null;
@@ -196,13 +202,9 @@ public class BerkeleyJEKeyValueStore implements KeyValueStore {
             try {
                 cursor = db.openCursor(getTransaction(txh), null);
                 ((BerkeleyJETx) txh).registerCursor(cursor);
-                OperationStatus status = cursor.getFirst(foundKey, foundValue, LockMode.DEFAULT);
-                if (status == OperationStatus.SUCCESS) {
-                    nextKey = getByteBuffer(foundKey);
-                } else {
-                    nextKey = null;
-                    close();
-                }
+                OperationStatus status = keyStart == null ? cursor.getFirst(foundKey, foundValue, LockMode.DEFAULT)
+                                                          : cursor.getSearchKeyRange(foundKey, foundValue, LockMode.DEFAULT);
+                setNextKey(status);
             } catch (Exception e) {
                 close();
                 throw new PermanentStorageException(e);
@@ -218,15 +220,19 @@ public class BerkeleyJEKeyValueStore implements KeyValueStore {
             }
         }
 
+        private void setNextKey(OperationStatus status) throws StorageException {
+            if (status == OperationStatus.SUCCESS) {
+                nextKey = getByteBuffer(foundKey);
+                if (keyEnd != null && ByteBufferUtil.compare(nextKey, keyEnd) >= 0) nextKey = null;
+            } else {
+                nextKey = null;
+            }
+            if (nextKey == null) close();
+        }
+
         private void getNextKey() throws StorageException {
             try {
-                OperationStatus status = cursor.getNext(foundKey, foundValue, LockMode.DEFAULT);
-                if (status == OperationStatus.SUCCESS) {
-                    nextKey = getByteBuffer(foundKey);
-                } else {
-                    nextKey = null;
-                    close();
-                }
+                setNextKey(cursor.getNext(foundKey, foundValue, LockMode.DEFAULT));
             } catch (Exception e) {
                 close();
                 throw new PermanentStorageException(e);
@@ -255,6 +261,49 @@ public class BerkeleyJEKeyValueStore implements KeyValueStore {
         return iterator;
     }
 
+    @Override
+    public RecordIterator<ByteBuffer> getKeys(ByteBuffer keyStart, ByteBuffer keyEnd, StoreTransaction txh) throws StorageException {
+        log.trace("Get keys range iterator");
+        return new KeysIterator(txh, db, keyStart, keyEnd);
+    }
+
+    /**
+     * Determines the split keys by skipping over equally sized runs of records with a cursor. Skipping uses the
+     * record counts maintained in the internal nodes of the B-tree and does not need to read the records themselves.
+     */
+    @Override
+    public List<ByteBuffer> getSplitKeys(int numSplits, StoreTransaction txh) throws StorageException {
+        Preconditions.checkArgument(numSplits > 0, "Invalid number of splits: %s", numSplits);
+        List<ByteBuffer> splitKeys = new ArrayList<ByteBuffer>(numSplits);
+        if (numSplits == 1) return splitKeys;
+        Cursor cursor = null;
+        try {
+            long count = db.count();
+            long step = count / numSplits;
+            if (step == 0) return splitKeys;
+
+            DatabaseEntry foundKey = new DatabaseEntry();
+            DatabaseEntry foundValue = new DatabaseEntry();
+            foundValue.setPartial(0, 0, true);
+            cursor = db.openCursor(getTransaction(txh), null);
+            OperationStatus status = cursor.getFirst(foundKey, foundValue, LockMode.READ_UNCOMMITTED);
+            for (int i = 1; i < numSplits && status == OperationStatus.SUCCESS; i++) {
+                if (cursor.skipNext(step, foundKey, foundValue, LockMode.READ_UNCOMMITTED) < step) break;
+                splitKeys.add(ByteBuffer.wrap(foundKey.getData(), foundKey.getOffset(), foundKey.getSize()).slice());
+            }
+            log.trace("Determined {} split keys for {} records", splitKeys.size(), count);
+            return splitKeys;
+        } catch (Exception e) {
+            throw new PermanentStorageException(e);
+        } finally {
+            try {
+                if (cursor != null) cursor.close();
+            } catch (Exception e) {
+                throw new PermanentStorageException(e);
+            }
+        }
+    }
+
     @Override
     public void insert(ByteBuffer key, ByteBuffer value, StoreTransaction txh) throws StorageException {
         Transaction tx = getTransaction(txh);
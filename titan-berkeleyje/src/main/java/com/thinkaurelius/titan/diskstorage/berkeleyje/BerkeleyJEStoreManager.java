@@ -59,6 +59,7 @@ public class BerkeleyJEStoreManager implements KeyValueStoreManager {
 
         features = new StoreFeatures();
         features.supportsScan = true;
+        features.supportsMultiQuery = false;
         features.supportsBatchMutation = false;
         features.supportsTransactions = true;
         features.supportsConsistentKeyOperations = false;
@@ -135,6 +135,7 @@ public abstract class AbstractCassandraStoreManager extends DistributedStoreMana
         if (features == null) {
             features = new StoreFeatures();
             features.supportsScan = true;
+            features.supportsMultiQuery = true;
             features.supportsBatchMutation = true;
             features.supportsTransactions = false;
             features.supportsConsistentKeyOperations = true;
@@ -0,0 +1,128 @@
+package com.thinkaurelius.titan.diskstorage.cassandra;
+
+import com.google.common.base.Preconditions;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySplit;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Token;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Splits the token ring of a Cassandra cluster into {@link KeySplit}s.
+ * <p/>
+ * Each split covers the token range (start,end] and its boundaries are the byte encodings of the tokens as produced
+ * by the token factory of the partitioner. A null boundary stands for the minimum token. The splits are aligned with
+ * the token ranges owned by the nodes in the ring, so that each split is served by a single replica set.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class CassandraKeySplits {
+
+    /**
+     * Number of rows retrieved per page when scanning a split
+     */
+    public static final int PAGE_SIZE = 500;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /**
+     * Computes the splits for a ring with the given tokens. Ranges which wrap around the minimum token are unwrapped.
+     * If the ring has fewer ranges than the requested number of splits, the ranges are subdivided at their midpoints.
+     *
+     * @param partitioner Partitioner of the cluster
+     * @param ringTokens  Tokens of the nodes in the ring
+     * @param numSplits   Desired number of splits
+     * @return List of splits covering the entire ring
+     */
+    public static List<KeySplit> getKeySplits(IPartitioner partitioner, Collection<Token> ringTokens, int numSplits) {
+        Preconditions.checkArgument(numSplits > 0, "Invalid number of splits: %s", numSplits);
+        Token min = partitioner.getMinimumToken();
+        TreeSet<Token> tokens = new TreeSet<Token>(ringTokens);
+        tokens.remove(min);
+
+        List<Token[]> ranges = new ArrayList<Token[]>(Math.max(numSplits, tokens.size() + 1));
+        Token previous = min;
+        for (Token token : tokens) {
+            ranges.add(new Token[]{previous, token});
+            previous = token;
+        }
+        ranges.add(new Token[]{previous, min});
+
+        boolean subdivided = true;
+        while (ranges.size() < numSplits && subdivided) {
+            subdivided = false;
+            List<Token[]> halves = new ArrayList<Token[]>(ranges.size() * 2);
+            for (Token[] range : ranges) {
+                Token mid = partitioner.midpoint(range[0], range[1]);
+                if (mid.equals(range[0]) || mid.equals(range[1]) || mid.equals(min)) {
+                    halves.add(range);
+                } else {
+                    halves.add(new Token[]{range[0], mid});
+                    halves.add(new Token[]{mid, range[1]});
+                    subdivided = true;
+                }
+            }
+            ranges = halves;
+        }
+
+        List<KeySplit> splits = new ArrayList<KeySplit>(ranges.size());
+        for (Token[] range : ranges) {
+            splits.add(new KeySplit(encode(partitioner, range[0]), encode(partitioner, range[1])));
+        }
+        return splits;
+    }
+
+    private static ByteBuffer encode(IPartitioner partitioner, Token token) {
+        if (token.equals(partitioner.getMinimumToken())) return null;
+        return partitioner.getTokenFactory().toByteArray(token);
+    }
+
+    /**
+     * @return The token encoded in the start boundary of the given split
+     */
+    public static Token getStartToken(IPartitioner partitioner, KeySplit split) {
+        return split.hasStart() ? partitioner.getTokenFactory().fromByteArray(split.getStart().duplicate())
+                                : partitioner.getMinimumToken();
+    }
+
+    /**
+     * @return The token encoded in the end boundary of the given split
+     */
+    public static Token getEndToken(IPartitioner partitioner, KeySplit split) {
+        return split.hasEnd() ? partitioner.getTokenFactory().fromByteArray(split.getEnd().duplicate())
+                              : partitioner.getMinimumToken();
+    }
+
+    /**
+     * @return The start column of the slice to retrieve per row. If no slice is given, all columns are considered
+     *         since at least one live column needs to be retrieved to recognize range ghosts.
+     */
+    public static ByteBuffer getSliceStart(SliceQuery slice) {
+        return slice == null ? EMPTY : slice.getSliceStart();
+    }
+
+    /**
+     * @see #getSliceStart(com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery)
+     */
+    public static ByteBuffer getSliceEnd(SliceQuery slice) {
+        return slice == null ? EMPTY : slice.getSliceEnd();
+    }
+
+    /**
+     * @return The number of columns to retrieve per row. Since the end of a slice is exclusive, whereas Cassandra
+     *         includes the end column, one additional column is retrieved. If no slice is given, a few columns are
+     *         retrieved to recognize range ghosts.
+     */
+    public static int getSliceCount(SliceQuery slice) {
+        if (slice == null) return 5;
+        else if (slice.hasLimit()) return slice.getLimit() + 1;
+        else return Integer.MAX_VALUE;
+    }
+
+}
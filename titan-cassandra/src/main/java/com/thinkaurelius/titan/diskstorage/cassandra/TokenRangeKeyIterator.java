@@ -0,0 +1,140 @@
+package com.thinkaurelius.titan.diskstorage.cassandra;
+
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeyIterator;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySplit;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Token;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link KeyIterator} over the rows in the token range of a {@link KeySplit} created by {@link CassandraKeySplits}.
+ * <p/>
+ * The rows are retrieved in pages of consecutive token ranges together with the requested slice of columns, so that
+ * no additional read per row is required. Rows without live columns in the slice (including range ghosts) are skipped.
+ *
+ * @param <R> Type of row returned by the Cassandra API
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+@SuppressWarnings("rawtypes")
+public abstract class TokenRangeKeyIterator<R> implements KeyIterator {
+
+    private final IPartitioner partitioner;
+    private final SliceQuery slice;
+    private final Token startToken;
+    private final Token endToken;
+
+    private Iterator<R> page;
+    private boolean exhausted;
+    private ByteBuffer lastKey;
+
+    private ByteBuffer nextKey;
+    private List<Entry> nextEntries;
+    private List<Entry> entries;
+
+    public TokenRangeKeyIterator(IPartitioner partitioner, KeySplit split, SliceQuery slice) {
+        this.partitioner = partitioner;
+        this.slice = slice;
+        this.startToken = CassandraKeySplits.getStartToken(partitioner, split);
+        this.endToken = CassandraKeySplits.getEndToken(partitioner, split);
+        this.page = Collections.<R>emptyList().iterator();
+        this.exhausted = false;
+        this.lastKey = null;
+        this.entries = Collections.emptyList();
+    }
+
+    /**
+     * Retrieves up to the given number of rows in the token range (start,end] together with the slice of columns
+     * determined by {@link CassandraKeySplits}.
+     */
+    protected abstract List<R> getRows(Token start, Token end, int pageSize) throws StorageException;
+
+    protected abstract ByteBuffer getKey(R row);
+
+    /**
+     * @return The live columns of the given row in the order returned by Cassandra
+     */
+    protected abstract List<Entry> getColumns(R row) throws StorageException;
+
+    private void advance() throws StorageException {
+        while (nextKey == null) {
+            if (!page.hasNext()) {
+                if (exhausted) return;
+                nextPage();
+                continue;
+            }
+            R row = page.next();
+            lastKey = getKey(row);
+            List<Entry> columns = getColumns(row);
+            if (slice != null) columns = restrict(columns);
+            if (columns.isEmpty()) continue;
+            nextKey = lastKey.duplicate();
+            nextEntries = slice == null ? Collections.<Entry>emptyList() : columns;
+        }
+    }
+
+    private void nextPage() throws StorageException {
+        Token start = startToken;
+        if (lastKey != null) {
+            start = partitioner.getToken(lastKey);
+            //(end,end] would denote the entire ring
+            if (start.equals(endToken)) {
+                exhausted = true;
+                return;
+            }
+        }
+        List<R> rows = getRows(start, endToken, CassandraKeySplits.PAGE_SIZE);
+        exhausted = rows.size() < CassandraKeySplits.PAGE_SIZE;
+        page = rows.iterator();
+    }
+
+    /**
+     * Removes the end column of the slice, which Cassandra includes, and applies the limit of the slice.
+     */
+    private List<Entry> restrict(List<Entry> columns) {
+        List<Entry> result = new ArrayList<Entry>(Math.min(columns.size(), slice.getLimit()));
+        for (Entry column : columns) {
+            if (result.size() >= slice.getLimit()) break;
+            if (column.getColumn().equals(slice.getSliceEnd())) continue;
+            result.add(column);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean hasNext() throws StorageException {
+        if (nextKey == null) advance();
+        return nextKey != null;
+    }
+
+    @Override
+    public ByteBuffer next() throws StorageException {
+        if (!hasNext()) throw new NoSuchElementException();
+        ByteBuffer key = nextKey;
+        entries = nextEntries;
+        nextKey = null;
+        nextEntries = null;
+        return key;
+    }
+
+    @Override
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public void close() throws StorageException {
+        page = Collections.<R>emptyList().iterator();
+        exhausted = true;
+    }
+
+}
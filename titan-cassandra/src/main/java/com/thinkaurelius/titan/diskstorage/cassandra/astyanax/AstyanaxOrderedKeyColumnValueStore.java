@@ -6,21 +6,28 @@ import com.google.common.collect.Iterators;
 import com.netflix.astyanax.ExceptionCallback;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.connectionpool.TokenRange;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
 import com.netflix.astyanax.model.*;
 import com.netflix.astyanax.query.AllRowsQuery;
 import com.netflix.astyanax.query.RowQuery;
+import com.netflix.astyanax.query.RowSliceQuery;
 import com.netflix.astyanax.retry.RetryPolicy;
 import com.netflix.astyanax.serializers.ByteBufferSerializer;
 import com.thinkaurelius.titan.diskstorage.PermanentStorageException;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.TemporaryStorageException;
+import com.thinkaurelius.titan.diskstorage.cassandra.CassandraKeySplits;
+import com.thinkaurelius.titan.diskstorage.cassandra.TokenRangeKeyIterator;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.*;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Token;
 
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -154,14 +161,53 @@ public class AstyanaxOrderedKeyColumnValueStore implements
             throw new TemporaryStorageException(e);
         }
 
-        List<Entry> result = new ArrayList<Entry>(r.getResult().size());
+        return convert(r.getResult(), query.getSliceEnd(), limit);
+    }
+
+    /**
+     * Retrieves the slices of all keys with a single row slice query.
+     */
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        if (keys.isEmpty()) return new ArrayList<List<Entry>>(0);
+
+        //Same cast dance as in getSlice(KeySliceQuery, StoreTransaction)
+        @SuppressWarnings("rawtypes")
+        RowSliceQuery rq = (RowSliceQuery) keyspace.prepareQuery(columnFamily)
+                .setConsistencyLevel(getTx(txh).getReadConsistencyLevel().getAstyanaxConsistency())
+                .withRetryPolicy(retryPolicy.duplicate())
+                .getKeySlice((Collection<ByteBuffer>) keys);
+        int limit = Integer.MAX_VALUE - 1;
+        if (query.hasLimit()) limit = query.getLimit();
+        rq.withColumnRange(query.getSliceStart(), query.getSliceEnd(), false, limit + 1);
+
+        OperationResult<Rows<ByteBuffer, ByteBuffer>> r;
+        try {
+            @SuppressWarnings("unchecked")
+            OperationResult<Rows<ByteBuffer, ByteBuffer>> tmp = (OperationResult<Rows<ByteBuffer, ByteBuffer>>) rq.execute();
+            r = tmp;
+        } catch (ConnectionException e) {
+            throw new TemporaryStorageException(e);
+        }
+
+        List<List<Entry>> results = new ArrayList<List<Entry>>(keys.size());
+        for (ByteBuffer key : keys) {
+            Row<ByteBuffer, ByteBuffer> row = r.getResult().getRow(key);
+            if (row == null) results.add(new ArrayList<Entry>(0));
+            else results.add(convert(row.getColumns(), query.getSliceEnd(), limit));
+        }
+        return results;
+    }
+
+    private static List<Entry> convert(ColumnList<ByteBuffer> columns, ByteBuffer sliceEnd, int limit) {
+        List<Entry> result = new ArrayList<Entry>(columns.size());
 
         int i = 0;
 
-        for (Column<ByteBuffer> c : r.getResult()) {
+        for (Column<ByteBuffer> c : columns) {
             ByteBuffer colName = c.getName();
 
-            if (colName.equals(query.getSliceEnd())) {
+            if (colName.equals(sliceEnd)) {
                 break;
             }
 
@@ -239,6 +285,65 @@ public class AstyanaxOrderedKeyColumnValueStore implements
         };
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        IPartitioner<?> partitioner = storeManager.getCassandraPartitioner();
+        Token.TokenFactory<?> tokenFactory = partitioner.getTokenFactory();
+        List<Token> tokens = new ArrayList<Token>();
+        try {
+            for (TokenRange range : keyspace.describeRing()) {
+                tokens.add(tokenFactory.fromString(range.getEndToken()));
+            }
+        } catch (ConnectionException e) {
+            throw new TemporaryStorageException(e);
+        }
+        return CassandraKeySplits.getKeySplits(partitioner, tokens, numSplits);
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, final StoreTransaction txh) throws StorageException {
+        final IPartitioner<?> partitioner = storeManager.getCassandraPartitioner();
+        final ByteBuffer sliceStart = CassandraKeySplits.getSliceStart(slice);
+        final ByteBuffer sliceEnd = CassandraKeySplits.getSliceEnd(slice);
+        final int sliceCount = CassandraKeySplits.getSliceCount(slice);
+
+        return new TokenRangeKeyIterator<Row<ByteBuffer, ByteBuffer>>(partitioner, split, slice) {
+            @Override
+            @SuppressWarnings({"rawtypes", "unchecked"})
+            protected List<Row<ByteBuffer, ByteBuffer>> getRows(Token start, Token end, int pageSize) throws StorageException {
+                Token.TokenFactory tokenFactory = partitioner.getTokenFactory();
+                // See getSlice() for the reason of the raw type
+                RowSliceQuery rq = keyspace.prepareQuery(columnFamily)
+                        .setConsistencyLevel(getTx(txh).getReadConsistencyLevel().getAstyanaxConsistency())
+                        .withRetryPolicy(retryPolicy.duplicate())
+                        .getKeyRange(null, null, tokenFactory.toString(start), tokenFactory.toString(end), pageSize);
+                rq.withColumnRange(sliceStart, sliceEnd, false, sliceCount);
+                try {
+                    Rows<ByteBuffer, ByteBuffer> result = (Rows<ByteBuffer, ByteBuffer>) rq.execute().getResult();
+                    List<Row<ByteBuffer, ByteBuffer>> rows = new ArrayList<Row<ByteBuffer, ByteBuffer>>(result.size());
+                    for (Row<ByteBuffer, ByteBuffer> row : result) rows.add(row);
+                    return rows;
+                } catch (ConnectionException e) {
+                    throw new TemporaryStorageException(e);
+                }
+            }
+
+            @Override
+            protected ByteBuffer getKey(Row<ByteBuffer, ByteBuffer> row) {
+                return row.getKey();
+            }
+
+            @Override
+            protected List<Entry> getColumns(Row<ByteBuffer, ByteBuffer> row) {
+                List<Entry> columns = new ArrayList<Entry>(row.getColumns().size());
+                for (Column<ByteBuffer> c : row.getColumns()) {
+                    columns.add(new Entry(c.getName(), c.getByteBufferValue()));
+                }
+                return columns;
+            }
+        };
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         throw new UnsupportedOperationException();
@@ -27,6 +27,7 @@ import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KCVMutation;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.StoreTransaction;
 import com.thinkaurelius.titan.diskstorage.util.TimeUtility;
+import org.apache.cassandra.dht.IPartitioner;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -179,6 +180,17 @@ public class AstyanaxStoreManager extends AbstractCassandraStoreManager {
         }
     }
 
+    public IPartitioner<?> getCassandraPartitioner() throws StorageException {
+        Cluster cl = clusterContext.getEntity();
+        try {
+            return (IPartitioner<?>) Class.forName(cl.describePartitioner()).newInstance();
+        } catch (ConnectionException e) {
+            throw new TemporaryStorageException(e);
+        } catch (Exception e) {
+            throw new PermanentStorageException(e);
+        }
+    }
+
     @Override
     public String toString() {
         return "astyanax" + super.toString();
@@ -7,6 +7,8 @@ import com.google.common.collect.Iterators;
 import com.thinkaurelius.titan.diskstorage.PermanentStorageException;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.TemporaryStorageException;
+import com.thinkaurelius.titan.diskstorage.cassandra.CassandraKeySplits;
+import com.thinkaurelius.titan.diskstorage.cassandra.TokenRangeKeyIterator;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.*;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.ConsistencyLevel;
@@ -209,6 +211,53 @@ public class CassandraEmbeddedKeyColumnValueStore implements KeyColumnValueStore
         });
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        List<Token> tokens = StorageService.instance.getTokenMetadata().sortedTokens();
+        return CassandraKeySplits.getKeySplits(StorageService.getPartitioner(), tokens, numSplits);
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, final SliceQuery slice, StoreTransaction txh) throws StorageException {
+        final IPartitioner<?> partitioner = StorageService.getPartitioner();
+        final ConsistencyLevel consistency = getTx(txh).getReadConsistencyLevel().getDBConsistency();
+        final SlicePredicate predicate = new SlicePredicate().setSlice_range(new SliceRange()
+                .setStart(CassandraKeySplits.getSliceStart(slice))
+                .setFinish(CassandraKeySplits.getSliceEnd(slice))
+                .setCount(CassandraKeySplits.getSliceCount(slice)));
+
+        return new TokenRangeKeyIterator<Row>(partitioner, split, slice) {
+            @Override
+            protected List<Row> getRows(Token start, Token end, int pageSize) throws StorageException {
+                Range<RowPosition> range = new Range<RowPosition>(start.maxKeyBound(partitioner),
+                                                                  end.maxKeyBound(partitioner),
+                                                                  partitioner);
+                try {
+                    IDiskAtomFilter filter = ThriftValidation.asIFilter(predicate, BytesType.instance);
+                    return StorageProxy.getRangeSlice(new RangeSliceCommand(keyspace,
+                                                                            new ColumnParent(columnFamily),
+                                                                            filter,
+                                                                            range,
+                                                                            null,
+                                                                            pageSize), consistency);
+                } catch (Exception e) {
+                    throw new PermanentStorageException(e);
+                }
+            }
+
+            @Override
+            protected ByteBuffer getKey(Row row) {
+                return row.key.key;
+            }
+
+            @Override
+            protected List<Entry> getColumns(Row row) throws StorageException {
+                if (row.cf == null || row.cf.isMarkedForDelete()) return Collections.emptyList();
+                return cfToEntries(row.cf, CassandraKeySplits.getSliceStart(slice), ByteBufferUtil.EMPTY_BYTE_BUFFER);
+            }
+        };
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         return storeManager.getLocalKeyPartition();
@@ -303,6 +352,39 @@ public class CassandraEmbeddedKeyColumnValueStore implements KeyColumnValueStore
         return cfToEntries(cf, query.getSliceStart(), query.getSliceEnd());
     }
 
+    /**
+     * Issues the slice commands for all keys to the StorageProxy at once, which reads the rows concurrently.
+     */
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        if (keys.isEmpty()) return new ArrayList<List<Entry>>(0);
+
+        QueryPath slicePath = new QueryPath(columnFamily);
+        List<ReadCommand> sliceCmds = new ArrayList<ReadCommand>(keys.size());
+        for (ByteBuffer key : keys) {
+            sliceCmds.add(new SliceFromReadCommand(keyspace, key.duplicate(), slicePath,
+                    query.getSliceStart().duplicate(), query.getSliceEnd().duplicate(), false, query.getLimit()));
+        }
+
+        List<Row> slices = read(sliceCmds, getTx(txh).getReadConsistencyLevel().getDBConsistency());
+
+        //The rows are not necessarily returned in the order of the commands
+        Map<ByteBuffer, ColumnFamily> rows = new HashMap<ByteBuffer, ColumnFamily>(keys.size());
+        if (null != slices) {
+            for (Row r : slices) {
+                if (null != r && null != r.cf) rows.put(r.key.key, r.cf);
+            }
+        }
+
+        List<List<Entry>> results = new ArrayList<List<Entry>>(keys.size());
+        for (ByteBuffer key : keys) {
+            ColumnFamily cf = rows.get(key);
+            if (null == cf || cf.isMarkedForDelete()) results.add(new ArrayList<Entry>(0));
+            else results.add(cfToEntries(cf, query.getSliceStart(), query.getSliceEnd()));
+        }
+        return results;
+    }
+
     @Override
     public void mutate(ByteBuffer key, List<Entry> additions,
                        List<ByteBuffer> deletions, StoreTransaction txh) throws StorageException {
@@ -8,10 +8,13 @@ import com.google.common.collect.Iterators;
 import com.thinkaurelius.titan.diskstorage.PermanentStorageException;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.TemporaryStorageException;
+import com.thinkaurelius.titan.diskstorage.cassandra.CassandraKeySplits;
+import com.thinkaurelius.titan.diskstorage.cassandra.TokenRangeKeyIterator;
 import com.thinkaurelius.titan.diskstorage.cassandra.thrift.thriftpool.CTConnection;
 import com.thinkaurelius.titan.diskstorage.cassandra.thrift.thriftpool.UncheckedGenericKeyedObjectPool;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.*;
 import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
+import com.thinkaurelius.titan.diskstorage.util.KCVSUtil;
 import org.apache.cassandra.dht.*;
 import org.apache.cassandra.thrift.*;
 import org.apache.cassandra.thrift.ConsistencyLevel;
@@ -99,12 +102,7 @@ public class CassandraThriftKeyColumnValueStore implements KeyColumnValueStore {
 
         // true: columnStart < columnEnd
         ConsistencyLevel consistency = getTx(txh).getReadConsistencyLevel().getThriftConsistency();
-        SlicePredicate predicate = new SlicePredicate();
-        SliceRange range = new SliceRange();
-        range.setCount(query.getLimit());
-        range.setStart(query.getSliceStart());
-        range.setFinish(query.getSliceEnd());
-        predicate.setSlice_range(range);
+        SlicePredicate predicate = getPredicate(query);
 
 
         CTConnection conn = null;
@@ -112,21 +110,41 @@ public class CassandraThriftKeyColumnValueStore implements KeyColumnValueStore {
             conn = pool.genericBorrowObject(keyspace);
             Cassandra.Client client = conn.getClient();
             List<ColumnOrSuperColumn> rows = client.get_slice(query.getKey(), parent, predicate, consistency);
-			/*
-			 * The final size of the "result" List may be at most rows.size().
-			 * However, "result" could also be up to two elements smaller than
-			 * rows.size(), depending on startInclusive and endInclusive
-			 */
-            List<Entry> result = new ArrayList<Entry>(rows.size());
-            for (ColumnOrSuperColumn r : rows) {
-                Column c = r.getColumn();
-
-                // Skip column if it is equal to columnEnd because columnEnd is exclusive
-                if (query.getSliceEnd().equals(c.bufferForName())) continue;
-
-                result.add(new Entry(c.bufferForName(), c.bufferForValue()));
+            return convert(rows, query.getSliceEnd());
+        } catch (Exception e) {
+            throw convertException(e);
+        } finally {
+            if (null != conn)
+                pool.genericReturnObject(keyspace, conn);
+        }
+    }
+
+    /**
+     * Calls Cassandra's Thrift multiget_slice() method to retrieve the slices of all keys in a single request. Empty
+     * or invalid slices are handled by {@link #getSlice(com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySliceQuery, com.thinkaurelius.titan.diskstorage.keycolumnvalue.StoreTransaction)}
+     * for each key.
+     */
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        if (keys.isEmpty() || ByteBufferUtil.compare(query.getSliceStart(), query.getSliceEnd())>=0) {
+            return KCVSUtil.getSlice(this, keys, query, txh);
+        }
+
+        ConsistencyLevel consistency = getTx(txh).getReadConsistencyLevel().getThriftConsistency();
+        SlicePredicate predicate = getPredicate(query);
+
+        CTConnection conn = null;
+        try {
+            conn = pool.genericBorrowObject(keyspace);
+            Cassandra.Client client = conn.getClient();
+            Map<ByteBuffer, List<ColumnOrSuperColumn>> rows =
+                    client.multiget_slice(keys, new ColumnParent(columnFamily), predicate, consistency);
+            List<List<Entry>> results = new ArrayList<List<Entry>>(keys.size());
+            for (ByteBuffer key : keys) {
+                List<ColumnOrSuperColumn> row = rows.get(key);
+                results.add(row == null ? ImmutableList.<Entry>of() : convert(row, query.getSliceEnd()));
             }
-            return result;
+            return results;
         } catch (Exception e) {
             throw convertException(e);
         } finally {
@@ -135,6 +153,34 @@ public class CassandraThriftKeyColumnValueStore implements KeyColumnValueStore {
         }
     }
 
+    private static SlicePredicate getPredicate(SliceQuery query) {
+        SlicePredicate predicate = new SlicePredicate();
+        SliceRange range = new SliceRange();
+        range.setCount(query.getLimit());
+        range.setStart(query.getSliceStart());
+        range.setFinish(query.getSliceEnd());
+        predicate.setSlice_range(range);
+        return predicate;
+    }
+
+    private static List<Entry> convert(List<ColumnOrSuperColumn> rows, ByteBuffer sliceEnd) {
+		/*
+		 * The final size of the "result" List may be at most rows.size().
+		 * However, "result" could also be up to two elements smaller than
+		 * rows.size(), depending on startInclusive and endInclusive
+		 */
+        List<Entry> result = new ArrayList<Entry>(rows.size());
+        for (ColumnOrSuperColumn r : rows) {
+            Column c = r.getColumn();
+
+            // Skip column if it is equal to columnEnd because columnEnd is exclusive
+            if (sliceEnd.equals(c.bufferForName())) continue;
+
+            result.add(new Entry(c.bufferForName(), c.bufferForValue()));
+        }
+        return result;
+    }
+
     @Override
     public void close() {
         // Do nothing
@@ -279,6 +325,73 @@ public class CassandraThriftKeyColumnValueStore implements KeyColumnValueStore {
         }
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        IPartitioner<?> partitioner = storeManager.getCassandraPartitioner();
+        Token.TokenFactory<?> tokenFactory = partitioner.getTokenFactory();
+        CTConnection conn = null;
+        try {
+            conn = pool.genericBorrowObject(keyspace);
+            List<Token> tokens = new ArrayList<Token>();
+            for (TokenRange range : conn.getClient().describe_ring(keyspace)) {
+                tokens.add(tokenFactory.fromString(range.getEnd_token()));
+            }
+            return CassandraKeySplits.getKeySplits(partitioner, tokens, numSplits);
+        } catch (Exception e) {
+            throw convertException(e);
+        } finally {
+            if (conn != null)
+                pool.genericReturnObject(keyspace, conn);
+        }
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        final IPartitioner<?> partitioner = storeManager.getCassandraPartitioner();
+        final ColumnParent parent = new ColumnParent(columnFamily);
+        final ConsistencyLevel consistency = getTx(txh).getReadConsistencyLevel().getThriftConsistency();
+        final SlicePredicate predicate = new SlicePredicate().setSlice_range(new SliceRange()
+                .setStart(CassandraKeySplits.getSliceStart(slice))
+                .setFinish(CassandraKeySplits.getSliceEnd(slice))
+                .setCount(CassandraKeySplits.getSliceCount(slice)));
+
+        return new TokenRangeKeyIterator<KeySlice>(partitioner, split, slice) {
+            @Override
+            @SuppressWarnings({"rawtypes", "unchecked"})
+            protected List<KeySlice> getRows(Token start, Token end, int pageSize) throws StorageException {
+                Token.TokenFactory tokenFactory = partitioner.getTokenFactory();
+                KeyRange keyRange = new KeyRange().setStart_token(tokenFactory.toString(start))
+                                                  .setEnd_token(tokenFactory.toString(end))
+                                                  .setCount(pageSize);
+                CTConnection conn = null;
+                try {
+                    conn = pool.genericBorrowObject(keyspace);
+                    return conn.getClient().get_range_slices(parent, predicate, keyRange, consistency);
+                } catch (Exception e) {
+                    throw convertException(e);
+                } finally {
+                    if (conn != null)
+                        pool.genericReturnObject(keyspace, conn);
+                }
+            }
+
+            @Override
+            protected ByteBuffer getKey(KeySlice row) {
+                return row.bufferForKey();
+            }
+
+            @Override
+            protected List<Entry> getColumns(KeySlice row) {
+                List<Entry> columns = new ArrayList<Entry>(row.getColumnsSize());
+                for (ColumnOrSuperColumn r : row.getColumns()) {
+                    Column c = r.getColumn();
+                    columns.add(new Entry(c.bufferForName(), c.bufferForValue()));
+                }
+                return columns;
+            }
+        };
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         throw new UnsupportedOperationException();
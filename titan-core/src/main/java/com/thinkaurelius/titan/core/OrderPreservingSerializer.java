@@ -0,0 +1,18 @@
+package com.thinkaurelius.titan.core;
+
+/**
+ * Marks an {@link AttributeSerializer} whose serialized form preserves the natural order of the attribute values, i.e.
+ * for any two values <i>a</i> and <i>b</i> the byte representation of <i>a</i> is smaller than that of <i>b</i> under
+ * unsigned lexicographic comparison if and only if <i>a</i> is smaller than <i>b</i> according to
+ * {@link Comparable#compareTo(Object)}.
+ * <p/>
+ * Range constraints on primary key types whose data type is serialized by an order preserving serializer are answered
+ * by retrieving only the matching slice of the adjacency list rather than filtering all relations of that type.
+ *
+ * @param <V> Type of the attribute associated with the OrderPreservingSerializer
+ * @author Matthias Br&ouml;cheler (http://www.matthiasb.com)
+ * @see TitanVertexQuery#interval(TitanKey, Comparable, Comparable)
+ */
+public interface OrderPreservingSerializer<V> extends AttributeSerializer<V> {
+
+}
@@ -27,6 +27,13 @@ public interface TitanGraph extends Graph, KeyIndexableGraph, ThreadedTransactio
      */
     public TitanTransaction newTransaction();
 
+    /**
+     * Returns a {@link TransactionBuilder} to configure and start a new thread-independent {@link TitanTransaction}
+     * whose options differ from the defaults of the graph.
+     *
+     * @return
+     */
+    public TransactionBuilder buildTransaction();
 
     /**
      * Closes the graph database.
@@ -6,6 +6,8 @@ import com.tinkerpop.blueprints.GraphQuery;
 import com.tinkerpop.blueprints.Query;
 import com.tinkerpop.blueprints.Vertex;
 
+import java.util.Map;
+
 /**
  * Constructs a query against an external index to retrieve all elements (either vertices or edges)
  * that match all conditions.
@@ -65,6 +67,19 @@ public interface TitanGraphQuery extends GraphQuery {
      */
     public Iterable<Edge> edges();
 
+    /**
+     * Returns the values of the given keys for all vertices that match the conditions. Each map contains the keys for
+     * which {@link TitanElement#getProperty(TitanKey)} returns a value on the respective vertex.
+     * <p/>
+     * If the keys are included in the standard index entries of the key which answers the query, the values are
+     * retrieved from the index without retrieving the vertices.
+     *
+     * @param keys Names of the keys to retrieve
+     * @return
+     * @see TypeMaker#include(TitanKey...)
+     */
+    public Iterable<Map<String,Object>> values(String... keys);
+
 
     /**
      * Limits the size of the returned result set
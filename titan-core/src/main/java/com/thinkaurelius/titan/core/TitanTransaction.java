@@ -111,6 +111,15 @@ public interface TitanTransaction extends TransactionalGraph, KeyIndexableGraph
 
     public TitanGraphQuery query();
 
+    /**
+     * Returns a {@link TitanTraversal} to expand the neighborhood of the given start vertices over multiple hops.
+     *
+     * @param start vertices to start the traversal from
+     * @return a new traversal
+     * @see TitanTraversal
+     */
+    public TitanTraversal traverse(TitanVertex... start);
+
     public TitanVertex getVertex(TitanKey key, Object attribute);
 
     public TitanVertex getVertex(String key, Object attribute);
@@ -0,0 +1,93 @@
+package com.thinkaurelius.titan.core;
+
+import com.tinkerpop.blueprints.Direction;
+
+/**
+ * TitanTraversal expands the neighborhood of a set of start vertices breadth-first over a fixed number of hops.
+ * <p/>
+ * Each hop is defined by a direction and the edge labels to follow from the vertices reached in the previous hop.
+ * All vertices of the current frontier are expanded together and their adjacency lists are decoded without
+ * materializing vertices or edges. The storage backend is still read once per frontier vertex; these reads are
+ * issued concurrently if parallel backend operations are enabled. Each vertex is visited at most once.
+ * <br />
+ * A TitanTraversal is initialized by calling {@link TitanTransaction#traverse(TitanVertex...)}.
+ *
+ * @author Matthias Br&ouml;cheler (http://www.matthiasb.com)
+ */
+public interface TitanTraversal {
+
+    /**
+     * Adds a hop to this traversal which follows all edges in the given direction.
+     *
+     * @param dir Direction of the edges to follow
+     * @return this traversal
+     */
+    public TitanTraversal hop(Direction dir);
+
+    /**
+     * Adds a hop to this traversal which follows all edges with one of the given labels in the given direction.
+     * If no labels are given, all edges in that direction are followed.
+     *
+     * @param dir    Direction of the edges to follow
+     * @param labels Labels of the edges to follow
+     * @return this traversal
+     */
+    public TitanTraversal hop(Direction dir, String... labels);
+
+    /**
+     * Adds a hop to this traversal which follows all edges with one of the given labels in the given direction.
+     * If no labels are given, all edges in that direction are followed.
+     *
+     * @param dir    Direction of the edges to follow
+     * @param labels Labels of the edges to follow
+     * @return this traversal
+     */
+    public TitanTraversal hop(Direction dir, TitanLabel... labels);
+
+    /**
+     * Limits the number of edges that are followed from any individual vertex in a single hop.
+     * By default, all matching edges are followed.
+     *
+     * @param limit maximum number of edges followed per vertex and hop
+     * @return this traversal
+     */
+    public TitanTraversal maxFanOut(int limit);
+
+    /**
+     * Limits the total number of vertices that are discovered by this traversal (not counting the start vertices).
+     * The traversal stops as soon as this limit is reached.
+     *
+     * @param limit maximum number of vertices to visit
+     * @return this traversal
+     */
+    public TitanTraversal maxVisited(long limit);
+
+    /* ---------------------------------------------------------------
+    * Traversal Execution
+    * ---------------------------------------------------------------
+    */
+
+    /**
+     * Executes the traversal and returns the ids of all vertices discovered (excluding the start vertices) in
+     * the order in which they were reached.
+     *
+     * @return list of all discovered vertices
+     */
+    public VertexList vertexIds();
+
+    /**
+     * Executes the traversal and returns all vertices discovered (excluding the start vertices) in
+     * the order in which they were reached.
+     *
+     * @return all discovered vertices
+     */
+    public Iterable<TitanVertex> vertices();
+
+    /**
+     * Executes the traversal and returns the number of discovered vertices (excluding the start vertices).
+     *
+     * @return number of discovered vertices
+     */
+    public long count();
+
+}
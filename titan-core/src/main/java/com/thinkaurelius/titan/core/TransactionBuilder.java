@@ -0,0 +1,32 @@
+package com.thinkaurelius.titan.core;
+
+/**
+ * TransactionBuilder configures and starts a new {@link TitanTransaction} whose options differ from the defaults of
+ * the graph. A TransactionBuilder instance is returned by {@link TitanGraph#buildTransaction()}.
+ *
+ * @author Matthias Br&ouml;cheler (http://www.matthiasb.com)
+ * @see TitanTransaction
+ */
+public interface TransactionBuilder {
+
+    /**
+     * Configures whether committing the transaction waits until its mutations have been applied to all external
+     * indexes, including those which are updated asynchronously, so that subsequent index queries read its writes.
+     * <p/>
+     * Defaults to the value of the graph configuration option
+     * {@link com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration#QUERY_WAIT_FOR_INDEX_UPDATES_KEY}.
+     *
+     * @param wait Whether commit waits for index updates
+     * @return this builder
+     */
+    public TransactionBuilder waitForIndexUpdates(boolean wait);
+
+    /**
+     * Starts the configured transaction. The transaction is thread-independent like those returned by
+     * {@link TitanGraph#newTransaction()}.
+     *
+     * @return A new transaction configured according to this builder
+     */
+    public TitanTransaction start();
+
+}
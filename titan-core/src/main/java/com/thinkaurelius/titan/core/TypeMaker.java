@@ -91,6 +91,25 @@ public interface TypeMaker {
      */
     public TypeMaker unidirected();
 
+    /**
+     * Configures the edge label to store its out-edges compactly. This only applies to edge labels.
+     * <p/>
+     * The out-edges of a vertex with a compact label are stored as blocks of sorted, delta-encoded neighbor ids
+     * rather than one entry per edge. This significantly reduces the storage footprint and the number of bytes read
+     * for vertices with many edges of that label. However, adding or removing an edge rewrites the block
+     * it belongs to and edges of a compact label cannot have properties or unidirected edges of their own.
+     * A compact label cannot have a primary key or signature and cannot be unique in the out-direction. It can be
+     * unidirected.
+     * <p/>
+     * The blocks of a vertex are always locked when they are rewritten, even if locking is disabled for the
+     * transaction, since concurrent modifications would otherwise be lost.
+     * <p/>
+     * By default, labels are not compact.
+     *
+     * @return this type maker
+     */
+    public TypeMaker compact();
+
 
     /**
      * Assigns the type to the specified {@link TypeGroup}.
@@ -161,6 +180,23 @@ public interface TypeMaker {
      */
     public TypeMaker indexed(Class<? extends Element> clazz);
 
+    /**
+     * Stores the values of the given keys in the standard vertex index entries of this property key, next to the
+     * id of the vertex. Standard index queries on this key can then filter and project on the included keys without
+     * retrieving the vertices. This only applies to property keys with a standard vertex index.
+     * <p/>
+     * The included keys must be unique in the out-direction. Modifying an included property rewrites the index entries
+     * of the vertex, and a property key with included keys cannot acquire locks for its in-uniqueness.
+     * Concurrent transactions which modify an included property and the indexed property of the same vertex can leave
+     * a stale included value in the index entry until the entry is rewritten.
+     * <p/>
+     * By default, no keys are included.
+     *
+     * @param keys Keys whose values to include
+     * @return this type maker
+     */
+    public TypeMaker include(TitanKey... keys);
+
     /**
      * Configures instances of this type to be indexed for the specified Element type using the external index with the given name.
      * This index must be configured prior to startup. One can either index vertices or edges.
@@ -3,6 +3,8 @@ package com.thinkaurelius.titan.core.attribute;
 import com.google.common.base.Preconditions;
 import com.spatial4j.core.context.SpatialContext;
 import com.spatial4j.core.distance.DistanceUtils;
+import com.spatial4j.core.io.GeohashUtils;
+import com.spatial4j.core.shape.Rectangle;
 import com.spatial4j.core.shape.Shape;
 import com.spatial4j.core.shape.SpatialRelation;
 import org.apache.commons.lang.builder.HashCodeBuilder;
@@ -31,6 +33,10 @@ public class Geoshape {
     //coordinates[0] = latitudes, coordinates[1] = longitudes
     private final float[][] coordinates;
 
+    //Lazily computed Spatial4j representation and bounding box, which are reused across comparisons
+    private transient Shape shape;
+    private transient Rectangle bounds;
+
     private Geoshape() {
         coordinates = null;
     }
@@ -150,9 +156,43 @@ public class Geoshape {
         return coordinates[1][1];
     }
 
+    /**
+     * Returns the geohash of this point with the given number of characters. Only applicable to point shapes.
+     *
+     * @param precision Length of the geohash, between 1 and {@link GeohashUtils#MAX_PRECISION}
+     * @return Base32 geohash of the given length
+     */
+    public String getGeohash(int precision) {
+        Preconditions.checkArgument(getType()==Type.POINT,"Only points have a geohash");
+        Preconditions.checkArgument(precision>0 && precision<=GeohashUtils.MAX_PRECISION,"Invalid precision: %s",precision);
+        return GeohashUtils.encodeLatLon(coordinates[0][0],coordinates[1][0],precision);
+    }
+
+    private Shape getShape() {
+        if (shape==null) shape=convert2Spatial4j();
+        return shape;
+    }
+
+    private Rectangle getBounds() {
+        if (bounds==null) bounds=getShape().getBoundingBox();
+        return bounds;
+    }
+
+    /**
+     * Whether the bounding boxes of the given shapes do not overlap, which implies that the shapes are disjoint.
+     * Bounding boxes crossing the date line are conservatively assumed to overlap in longitude.
+     */
+    private static boolean boundsDisjoint(Rectangle a, Rectangle b) {
+        if (a.getMaxY()<b.getMinY() || b.getMaxY()<a.getMinY()) return true;
+        if (a.getCrossesDateLine() || b.getCrossesDateLine()) return false;
+        return a.getMaxX()<b.getMinX() || b.getMaxX()<a.getMinX();
+    }
+
     private SpatialRelation getSpatialRelation(Geoshape other) {
         Preconditions.checkNotNull(other);
-        return convert2Spatial4j().relate(other.convert2Spatial4j());
+        //Avoid the exact distance computations for shapes that are far apart
+        if (boundsDisjoint(getBounds(),other.getBounds())) return SpatialRelation.DISJOINT;
+        return getShape().relate(other.getShape());
     }
 
     public boolean intersect(Geoshape other) {
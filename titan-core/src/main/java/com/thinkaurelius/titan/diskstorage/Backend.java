@@ -7,6 +7,7 @@ import com.thinkaurelius.titan.core.TitanException;
 import com.thinkaurelius.titan.core.TitanFactory;
 import com.thinkaurelius.titan.diskstorage.idmanagement.ConsistentKeyIDManager;
 import com.thinkaurelius.titan.diskstorage.idmanagement.TransactionalIDManager;
+import com.thinkaurelius.titan.diskstorage.indexing.AsyncIndexProvider;
 import com.thinkaurelius.titan.diskstorage.indexing.HashPrefixKeyColumnValueStore;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexInformation;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexProvider;
@@ -35,6 +36,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration.*;
 
@@ -84,6 +89,7 @@ public class Backend {
     private IDAuthority idAuthority;
 
     private final Map<String,IndexProvider> indexes;
+    private final StandardIndexInformation standardIndex;
 
     private final ConsistentKeyLockConfiguration lockConfiguration;
     private final int bufferSize;
@@ -93,9 +99,14 @@ public class Backend {
     private final int readAttempts;
     private final int persistAttemptWaittime;
 
+    private final ExecutorService threadPool;
+
+    private boolean isNewStorage = false;
+
     public Backend(Configuration storageConfig) {
         storeManager = getStorageManager(storageConfig);
         indexes = getIndexes(storageConfig);
+        standardIndex = StandardIndexInformation.of(storageConfig.getInt(STORAGE_GEOHASH_PRECISION_KEY, STORAGE_GEOHASH_PRECISION_DEFAULT));
         isKeyColumnValueStore = storeManager instanceof KeyColumnValueStoreManager;
         storeFeatures = storeManager.getFeatures();
 
@@ -125,6 +136,27 @@ public class Backend {
         } else {
             hashPrefixIndex = false;
         }
+
+        if (storageConfig.getBoolean(PARALLEL_BACKEND_OPS_KEY, PARALLEL_BACKEND_OPS_DEFAULT)) {
+            int numThreads = storageConfig.getInt(PARALLEL_BACKEND_THREADS_KEY, PARALLEL_BACKEND_THREADS_DEFAULT);
+            Preconditions.checkArgument(numThreads > 0, "Number of parallel backend threads must be positive");
+            threadPool = Executors.newFixedThreadPool(numThreads, new BackendThreadFactory());
+            log.debug("Configured thread pool with {} threads for parallel backend operations", numThreads);
+        } else {
+            threadPool = null;
+        }
+    }
+
+    private static class BackendThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "titan-backend-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 
 
@@ -202,6 +234,7 @@ public class Backend {
             }
 
             String version = storeManager.getConfigurationProperty(TITAN_BACKEND_VERSION);
+            isNewStorage = version == null;
             if (!TitanConstants.VERSION.equals(version)) {
                 if (version == null ||
                         (TitanConstants.COMPATIBLE_VERSIONS.contains(version))) {
@@ -218,10 +251,21 @@ public class Backend {
     public Map<String,IndexInformation> getIndexInformation() {
         ImmutableMap.Builder<String,IndexInformation> copy = ImmutableMap.builder();
         copy.putAll(indexes);
-        copy.put(Titan.Token.STANDARD_INDEX,StandardIndexInformation.INSTANCE);
+        copy.put(Titan.Token.STANDARD_INDEX,standardIndex);
         return copy.build();
     }
 
+    /**
+     * @return The number of committed transactions whose mutations have not yet been applied to the given external
+     * index, which is always 0 unless the index is updated asynchronously
+     * @see AsyncIndexProvider#getUpdateLag()
+     */
+    public long getIndexUpdateLag(String index) {
+        IndexProvider provider = indexes.get(index);
+        Preconditions.checkArgument(provider!=null,"Unknown index: %s",index);
+        return provider instanceof AsyncIndexProvider ? ((AsyncIndexProvider)provider).getUpdateLag() : 0;
+    }
+
     private final static StoreManager getStorageManager(Configuration storageConfig) {
         return getImplementationClass(storageConfig,GraphDatabaseConfiguration.STORAGE_BACKEND_KEY,
                                     GraphDatabaseConfiguration.STORAGE_BACKEND_DEFAULT,
@@ -240,6 +284,13 @@ public class Backend {
                     GraphDatabaseConfiguration.INDEX_BACKEND_KEY,GraphDatabaseConfiguration.INDEX_BACKEND_DEFAULT,
                     REGISTERED_INDEX_PROVIDERS);
             Preconditions.checkNotNull(provider);
+            if (config.getBoolean(AsyncIndexProvider.ASYNC_UPDATES_KEY,AsyncIndexProvider.ASYNC_UPDATES_DEFAULT)) {
+                try {
+                    provider = new AsyncIndexProvider(provider,config);
+                } catch (StorageException e) {
+                    throw new TitanException("Could not open update log of index: " + index,e);
+                }
+            }
             builder.put(index,provider);
         }
         return builder.build();
@@ -292,6 +343,58 @@ public class Backend {
         return storeManager.getFeatures();
     }
 
+    public String getConfigurationProperty(String key) throws StorageException {
+        return storeManager.getConfigurationProperty(key);
+    }
+
+    public void setConfigurationProperty(String key, String value) throws StorageException {
+        storeManager.setConfigurationProperty(key, value);
+    }
+
+    /**
+     * Returns the persisted value of a setting which determines the layout of the stored data and hence must not
+     * change over the lifetime of the graph. If the setting has not yet been persisted, the given value is persisted
+     * when the storage backend has been initialized for the first time by this instance. Otherwise, the graph has been
+     * created before the setting was introduced and the given legacy value, which describes the layout of the data
+     * written back then, is persisted instead.
+     *
+     * @param key         Name of the setting
+     * @param value       Value of the setting for a newly created graph
+     * @param legacyValue Value of the setting for graphs created before the setting was introduced
+     * @return The persisted value of the setting
+     */
+    public String getStorageSetting(String key, String value, String legacyValue) {
+        Preconditions.checkNotNull(idAuthority, "Backend has not yet been initialized");
+        Preconditions.checkNotNull(value);
+        Preconditions.checkNotNull(legacyValue);
+        try {
+            String stored = storeManager.getConfigurationProperty(key);
+            if (stored == null) {
+                stored = isNewStorage ? value : legacyValue;
+                storeManager.setConfigurationProperty(key, stored);
+            }
+            return stored;
+        } catch (StorageException e) {
+            throw new TitanException("Could not access configuration of storage backend", e);
+        }
+    }
+
+    /**
+     * Verifies that the configured value of a setting which determines the layout of the stored data is the one
+     * the graph has been created with.
+     *
+     * @param key         Name of the setting
+     * @param value       Configured value
+     * @param legacyValue Value of the setting for graphs created before the setting was introduced
+     * @throws TitanException if the configured value differs from the persisted one
+     * @see #getStorageSetting(String, String, String)
+     */
+    public void verifyStorageSetting(String key, Object value, Object legacyValue) {
+        String stored = getStorageSetting(key, value.toString(), legacyValue.toString());
+        if (!stored.equals(value.toString()))
+            throw new TitanException("Option [" + key + "] has been set to [" + stored + "] when the graph was created and cannot be changed to: " + value);
+    }
+
     //2. Entity Index
 
     //3. Messaging queues
@@ -322,10 +425,12 @@ public class Backend {
             indexTx.put(entry.getKey(),new IndexTransaction(entry.getValue()));
         }
 
-        return new BackendTransaction(tx, edgeStore, vertexIndexStore, edgeIndexStore, readAttempts, persistAttemptWaittime, indexTx);
+        return new BackendTransaction(tx, edgeStore, vertexIndexStore, edgeIndexStore, readAttempts, persistAttemptWaittime, indexTx, threadPool,
+                storeFeatures.supportsMultiQuery());
     }
 
     public void close() throws StorageException {
+        if (threadPool != null) threadPool.shutdown();
         edgeStore.close();
         vertexIndexStore.close();
         edgeIndexStore.close();
@@ -336,6 +441,7 @@ public class Backend {
     }
 
     public void clearStorage() throws StorageException {
+        if (threadPool != null) threadPool.shutdown();
         edgeStore.close();
         vertexIndexStore.close();
         edgeIndexStore.close();
@@ -356,6 +462,7 @@ public class Backend {
         put("hbase", "com.thinkaurelius.titan.diskstorage.hbase.HBaseStoreManager");
         put("embeddedcassandra", "com.thinkaurelius.titan.diskstorage.cassandra.embedded.CassandraEmbeddedStoreManager");
         put("inmemory","com.thinkaurelius.titan.diskstorage.keycolumnvalue.inmemory.InMemoryStoreManager");
+        put("lsm","com.thinkaurelius.titan.diskstorage.lsm.LSMStoreManager");
     }};
 
     private static final Map<String, String> REGISTERED_INDEX_PROVIDERS = new HashMap<String, String>() {{
@@ -10,9 +10,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Bundles all transaction handles from the various backend systems and provides a proxy for some of their
@@ -37,10 +41,21 @@ public class BackendTransaction implements TransactionHandle {
 
     private final Map<String,IndexTransaction> indexTx;
 
+    private final ExecutorService threadPool;
+    private final boolean supportsMultiQuery;
+
     public BackendTransaction(StoreTransaction storeTx, KeyColumnValueStore edgeStore,
                               KeyColumnValueStore vertexIndexStore, KeyColumnValueStore edgeIndexStore,
                               int maxReadRetryAttempts, int retryStorageWaitTime,
                               Map<String, IndexTransaction> indexTx) {
+        this(storeTx, edgeStore, vertexIndexStore, edgeIndexStore, maxReadRetryAttempts, retryStorageWaitTime, indexTx, null, false);
+    }
+
+    public BackendTransaction(StoreTransaction storeTx, KeyColumnValueStore edgeStore,
+                              KeyColumnValueStore vertexIndexStore, KeyColumnValueStore edgeIndexStore,
+                              int maxReadRetryAttempts, int retryStorageWaitTime,
+                              Map<String, IndexTransaction> indexTx, ExecutorService threadPool,
+                              boolean supportsMultiQuery) {
         this.storeTx = storeTx;
         this.edgeStore = edgeStore;
         this.vertexIndexStore = vertexIndexStore;
@@ -48,6 +63,8 @@ public class BackendTransaction implements TransactionHandle {
         this.maxReadRetryAttempts = maxReadRetryAttempts;
         this.retryStorageWaitTime = retryStorageWaitTime;
         this.indexTx = indexTx;
+        this.threadPool = threadPool;
+        this.supportsMultiQuery = supportsMultiQuery;
     }
 
     public StoreTransaction getStoreTransactionHandle() {
@@ -67,6 +84,18 @@ public class BackendTransaction implements TransactionHandle {
         for (IndexTransaction itx : indexTx.values()) itx.commit();
     }
 
+    /**
+     * Blocks until the committed mutations of all external indexes have been applied, so that they are visible to
+     * subsequent index queries.
+     */
+    public void awaitIndexUpdates() {
+        try {
+            for (IndexTransaction itx : indexTx.values()) itx.awaitApplied();
+        } catch (InterruptedException e) {
+            throw new TitanException("Interrupted while waiting for index updates to be applied",e);
+        }
+    }
+
     @Override
     public void rollback() throws StorageException {
         storeTx.rollback();
@@ -162,6 +191,76 @@ public class BackendTransaction implements TransactionHandle {
         });
     }
 
+    /**
+     * Whether independent read operations issued through {@link #edgeStoreMultiQuery(java.util.List)} are
+     * executed concurrently.
+     *
+     * @return True, if this transaction has been configured with a thread pool for parallel reads
+     */
+    public boolean hasParallelReads() {
+        return threadPool != null;
+    }
+
+    /**
+     * Retrieves the slices for all of the given queries against the edge store. If this transaction has been
+     * configured for parallel reads, the queries are executed concurrently, otherwise one after another.
+     * The returned list contains the results in the same order as the given queries.
+     *
+     * @param queries Queries to execute
+     * @return List of results, one for each query
+     */
+    public List<List<Entry>> edgeStoreMultiQuery(final List<KeySliceQuery> queries) {
+        List<List<Entry>> results = new ArrayList<List<Entry>>(queries.size());
+        if (threadPool == null || queries.size() <= 1) {
+            for (KeySliceQuery query : queries) results.add(edgeStoreQuery(query));
+        } else {
+            List<Future<List<Entry>>> futures = new ArrayList<Future<List<Entry>>>(queries.size());
+            for (final KeySliceQuery query : queries) {
+                futures.add(threadPool.submit(new Callable<List<Entry>>() {
+                    @Override
+                    public List<Entry> call() throws Exception {
+                        return edgeStoreQuery(query);
+                    }
+                }));
+            }
+            try {
+                for (Future<List<Entry>> future : futures) results.add(future.get());
+            } catch (InterruptedException e) {
+                for (Future<List<Entry>> future : futures) future.cancel(true);
+                throw new TitanException("Interrupted while waiting for parallel reads", e);
+            } catch (ExecutionException e) {
+                for (Future<List<Entry>> future : futures) future.cancel(true);
+                if (e.getCause() instanceof TitanException) throw (TitanException) e.getCause();
+                else throw new TitanException("Could not read from storage", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Retrieves the given slice for each of the given keys against the edge store. If the store supports multi-key
+     * reads, or if this transaction has not been configured for parallel reads, the slices are retrieved with a single
+     * call to {@link KeyColumnValueStore#getSlice(java.util.List, SliceQuery, StoreTransaction)}. Otherwise, the
+     * keys are read concurrently as in {@link #edgeStoreMultiQuery(java.util.List)}.
+     *
+     * @param keys  Keys to retrieve the slice for
+     * @param query Slice to retrieve for each key
+     * @return List of results, one for each key in the order of the given keys
+     */
+    public List<List<Entry>> edgeStoreMultiQuery(final List<ByteBuffer> keys, final SliceQuery query) {
+        if (threadPool != null && !supportsMultiQuery) {
+            List<KeySliceQuery> queries = new ArrayList<KeySliceQuery>(keys.size());
+            for (ByteBuffer key : keys) queries.add(new KeySliceQuery(key, query));
+            return edgeStoreMultiQuery(queries);
+        }
+        return executeRead(new Callable<List<List<Entry>>>() {
+            @Override
+            public List<List<Entry>> call() throws Exception {
+                return edgeStore.getSlice(keys, query, storeTx);
+            }
+        });
+    }
+
     public boolean edgeStoreContainsKey(final ByteBuffer key)  {
         return executeRead(new Callable<Boolean>() {
             @Override
@@ -180,6 +279,24 @@ public class BackendTransaction implements TransactionHandle {
         });
     }
 
+    public List<KeySplit> edgeStoreKeySplits(final int numSplits) {
+        return executeRead(new Callable<List<KeySplit>>() {
+            @Override
+            public List<KeySplit> call() throws Exception {
+                return edgeStore.getKeySplits(numSplits,storeTx);
+            }
+        });
+    }
+
+    public KeyIterator edgeStoreKeys(final KeySplit split, final SliceQuery slice) {
+        return executeRead(new Callable<KeyIterator>() {
+            @Override
+            public KeyIterator call() throws Exception {
+                return edgeStore.getKeys(split,slice,storeTx);
+            }
+        });
+    }
+
     public List<Entry> vertexIndexQuery(final KeySliceQuery query) {
         return executeRead(new Callable<List<Entry>>() {
             @Override
@@ -190,6 +307,15 @@ public class BackendTransaction implements TransactionHandle {
 
     }
 
+    public RecordIterator<ByteBuffer> vertexIndexKeys() {
+        return executeRead(new Callable<RecordIterator<ByteBuffer>>() {
+            @Override
+            public RecordIterator<ByteBuffer> call() throws Exception {
+                return vertexIndexStore.getKeys(storeTx);
+            }
+        });
+    }
+
     public List<Entry> edgeIndexQuery(final KeySliceQuery query) {
         return executeRead(new Callable<List<Entry>>() {
             @Override
@@ -199,12 +325,12 @@ public class BackendTransaction implements TransactionHandle {
         });
     }
 
-    public List<String> indexQuery(String index, final IndexQuery query) {
+    public RecordIterator<String> indexQuery(String index, final IndexQuery query) {
         final IndexTransaction indexTx = getIndexTransactionHandle(index);
-        return executeRead(new Callable<List<String>>() {
+        return executeRead(new Callable<RecordIterator<String>>() {
             @Override
-            public List<String> call() throws Exception {
-                return indexTx.query(query);
+            public RecordIterator<String> call() throws Exception {
+                return indexTx.iterate(query);
             }
         });
     }
@@ -0,0 +1,412 @@
+package com.thinkaurelius.titan.diskstorage.indexing;
+
+import com.google.common.base.Preconditions;
+import com.thinkaurelius.titan.core.TitanException;
+import com.thinkaurelius.titan.diskstorage.PermanentStorageException;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.TransactionHandle;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
+import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
+import com.thinkaurelius.titan.graphdb.query.keycondition.Relation;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps an {@link IndexProvider} so that mutations are applied to it asynchronously. A transaction's mutations are
+ * appended to a local {@link IndexUpdateLog} when the transaction commits and are applied to the wrapped index by a
+ * background thread, which combines the mutations of consecutive transactions into batches of up to
+ * {@link #BATCH_SIZE_KEY} documents. Records which have not been applied when the index is closed or fails are
+ * replayed from the log when it is opened again. If the mutations of a transaction cannot be applied within
+ * {@link #UPDATE_ATTEMPTS_KEY} attempts, the background thread stops applying mutations, since applying later ones
+ * would leave the index out of sync with the storage backend. Subsequent transactions are still appended to the log,
+ * but committing or waiting for them fails with the error, and all pending mutations are replayed once the index is
+ * opened again.
+ * <p/>
+ * Queries are answered by the wrapped index and hence do not reflect mutations which have not yet been applied. The
+ * number of such transactions is reported by {@link #getUpdateLag()}. Transactions which need to read their own
+ * writes from the index can wait for their mutations to be applied with {@link #awaitApplied(long)}.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class AsyncIndexProvider implements IndexProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncIndexProvider.class);
+
+    /**
+     * Whether the mutations of an index are applied asynchronously
+     */
+    public static final String ASYNC_UPDATES_KEY = "async-updates";
+    public static final boolean ASYNC_UPDATES_DEFAULT = false;
+    /**
+     * Directory of the update log. Defaults to the subdirectory <code>updatelog</code> of the index directory.
+     */
+    public static final String LOG_DIRECTORY_KEY = "update-log-directory";
+    /**
+     * Maximum number of documents whose mutations are applied to the index at once
+     */
+    public static final String BATCH_SIZE_KEY = "update-batch-size";
+    public static final int BATCH_SIZE_DEFAULT = 1000;
+    /**
+     * Number of attempts to apply the mutations of a transaction before mutations are no longer applied
+     */
+    public static final String UPDATE_ATTEMPTS_KEY = "update-attempts";
+    public static final int UPDATE_ATTEMPTS_DEFAULT = 10;
+
+    private static final long RETRY_WAIT_MS = 1000;
+    private static final long POLL_WAIT_MS = 100;
+
+    private final IndexProvider index;
+    private final IndexUpdateLog updateLog;
+    private final int batchSize;
+    private final int updateAttempts;
+
+    private final LinkedBlockingQueue<IndexUpdateLog.Record> queue = new LinkedBlockingQueue<IndexUpdateLog.Record>();
+    private final Object appliedMonitor = new Object();
+    private volatile long applied;
+    private volatile boolean running = true;
+    private volatile Throwable failure = null;
+    private final Thread applier;
+
+    public AsyncIndexProvider(IndexProvider index, Configuration config) throws StorageException {
+        Preconditions.checkNotNull(index);
+        this.index = index;
+        String directory = config.getString(LOG_DIRECTORY_KEY,null);
+        if (directory==null) {
+            String indexDirectory = config.getString(GraphDatabaseConfiguration.STORAGE_DIRECTORY_KEY,null);
+            Preconditions.checkArgument(StringUtils.isNotBlank(indexDirectory),"Need to configure a directory for the update log");
+            directory = indexDirectory + File.separator + "updatelog";
+        }
+        batchSize = config.getInt(BATCH_SIZE_KEY,BATCH_SIZE_DEFAULT);
+        Preconditions.checkArgument(batchSize>0,"Batch size must be positive: %s",batchSize);
+        updateAttempts = config.getInt(UPDATE_ATTEMPTS_KEY,UPDATE_ATTEMPTS_DEFAULT);
+        Preconditions.checkArgument(updateAttempts>0,"Update attempts must be positive: %s",updateAttempts);
+
+        updateLog = new IndexUpdateLog(new File(directory));
+        applied = updateLog.getCheckpoint();
+        List<IndexUpdateLog.Record> pending = updateLog.recover();
+        if (!pending.isEmpty()) log.info("Replaying {} transactions from index update log in [{}]",pending.size(),directory);
+        queue.addAll(pending);
+
+        applier = new Thread(new Applier(),"AsyncIndexProvider-"+directory);
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    /**
+     * @return The number of committed transactions whose mutations have not yet been applied to the index
+     */
+    public long getUpdateLag() {
+        return updateLog.getLastSequence() - applied;
+    }
+
+    /**
+     * Blocks until the mutations of the transaction with the given sequence number have been applied to the index.
+     */
+    public void awaitApplied(long sequence) throws InterruptedException {
+        synchronized (appliedMonitor) {
+            while (applied<sequence) {
+                if (failure!=null) throw new TitanException("Mutations could not be applied to index",failure);
+                Preconditions.checkState(running,"Index has been closed");
+                appliedMonitor.wait(POLL_WAIT_MS);
+            }
+        }
+    }
+
+    @Override
+    public void register(String store, String key, Class<?> dataType, TransactionHandle tx) throws StorageException {
+        index.register(store,key,dataType,unwrap(tx));
+    }
+
+    @Override
+    public void mutate(Map<String, Map<String, IndexMutation>> mutations, TransactionHandle tx) throws StorageException {
+        Preconditions.checkState(running,"Index has been closed");
+        long sequence;
+        synchronized (queue) { //Records are queued in the order of their sequence numbers
+            sequence = updateLog.append(mutations);
+            queue.add(new IndexUpdateLog.Record(sequence,mutations));
+        }
+        if (tx instanceof Transaction) ((Transaction)tx).sequence = sequence;
+    }
+
+    private static TransactionHandle unwrap(TransactionHandle tx) {
+        return tx instanceof Transaction ? ((Transaction)tx).indexTx : tx;
+    }
+
+    @Override
+    public RecordIterator<String> query(IndexQuery query, TransactionHandle tx) throws StorageException {
+        return index.query(query,unwrap(tx));
+    }
+
+    @Override
+    public TransactionHandle beginTransaction() throws StorageException {
+        return new Transaction(index.beginTransaction());
+    }
+
+    @Override
+    public boolean supports(Class<?> dataType, Relation relation) {
+        return index.supports(dataType,relation);
+    }
+
+    @Override
+    public boolean supports(Class<?> dataType) {
+        return index.supports(dataType);
+    }
+
+    /**
+     * Applies all pending mutations before closing the wrapped index, unless applying them has failed.
+     */
+    @Override
+    public void close() throws StorageException {
+        stopApplier();
+        try {
+            if (failure==null) apply();
+            else log.warn("Closing index with {} transactions which are replayed from the update log when it is opened again",queue.size());
+        } finally {
+            updateLog.close();
+            index.close();
+        }
+    }
+
+    @Override
+    public void clearStorage() throws StorageException {
+        stopApplier();
+        queue.clear();
+        updateLog.clear();
+        index.clearStorage();
+    }
+
+    private void stopApplier() {
+        //Not interrupted since that would close the file channels used by the index
+        running = false;
+        try {
+            applier.join();
+        } catch (InterruptedException e) {
+            throw new TitanException("Interrupted while waiting for index updates to be applied",e);
+        }
+    }
+
+    private class Applier implements Runnable {
+
+        //After a batch fails, transactions are applied one at a time to isolate the failing one
+        private boolean isolate = false;
+        private int failures = 0;
+
+        @Override
+        public void run() {
+            while (running) {
+                IndexUpdateLog.Record first = null;
+                try {
+                    first = queue.poll(POLL_WAIT_MS,TimeUnit.MILLISECONDS);
+                    if (first==null) continue;
+                    applyBatch(first,!isolate);
+                    isolate = false;
+                    failures = 0;
+                } catch (InterruptedException e) {
+                    //Check whether still running
+                } catch (Throwable e) {
+                    if (isolate) failures++;
+                    isolate = true;
+                    if (failures>=updateAttempts && first!=null) {
+                        //The failed transaction remains at the head of the queue and in the log
+                        log.error("Stopped applying mutations to index since transaction ["+first.sequence+"] could not be applied in "+failures+" attempts",e);
+                        synchronized (appliedMonitor) {
+                            failure = e;
+                            appliedMonitor.notifyAll();
+                        }
+                        return;
+                    }
+                    log.error("Could not apply mutations to index, retrying",e);
+                    try {
+                        Thread.sleep(RETRY_WAIT_MS);
+                    } catch (InterruptedException e1) {
+                        //Check whether still running
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies all queued mutations in the calling thread.
+     */
+    private void apply() throws StorageException {
+        IndexUpdateLog.Record first;
+        while ((first = queue.poll())!=null) applyBatch(first,true);
+    }
+
+    /**
+     * Combines the given record with the records queued behind it into one batch, if merging is enabled, and applies
+     * it. If applying the batch fails, its records are put back at the head of the queue to be retried.
+     */
+    private void applyBatch(IndexUpdateLog.Record first, boolean mergeRecords) throws StorageException {
+        Map<String,Map<String,IndexMutation>> batch = copy(first.mutations);
+        List<IndexUpdateLog.Record> records = new ArrayList<IndexUpdateLog.Record>();
+        records.add(first);
+        int size = count(first.mutations);
+        try {
+            IndexUpdateLog.Record next;
+            while (mergeRecords && size<batchSize && (next = queue.peek())!=null && merge(batch,next.mutations)) {
+                queue.poll();
+                records.add(next);
+                size += count(next.mutations);
+            }
+            TransactionHandle tx = index.beginTransaction();
+            index.mutate(batch,tx);
+            tx.commit();
+        } catch (StorageException e) {
+            requeue(records);
+            throw e;
+        } catch (RuntimeException e) {
+            requeue(records);
+            throw e;
+        }
+        markApplied(records.get(records.size()-1).sequence);
+        log.debug("Applied {} transactions to index, update lag is {}",records.size(),getUpdateLag());
+    }
+
+    private void markApplied(long sequence) throws StorageException {
+        try {
+            updateLog.checkpoint(sequence);
+        } finally {
+            //Records which were applied but not checkpointed are replayed when the index is opened again
+            synchronized (appliedMonitor) {
+                applied = sequence;
+                appliedMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void requeue(List<IndexUpdateLog.Record> records) {
+        synchronized (queue) {
+            List<IndexUpdateLog.Record> remaining = new ArrayList<IndexUpdateLog.Record>(records);
+            queue.drainTo(remaining);
+            queue.addAll(remaining);
+        }
+    }
+
+    private static int count(Map<String,Map<String,IndexMutation>> mutations) {
+        int count = 0;
+        for (Map<String,IndexMutation> docs : mutations.values()) count+=docs.size();
+        return count;
+    }
+
+    private static Map<String,Map<String,IndexMutation>> copy(Map<String,Map<String,IndexMutation>> mutations) {
+        Map<String,Map<String,IndexMutation>> copy = new HashMap<String,Map<String,IndexMutation>>(mutations.size());
+        for (Map.Entry<String,Map<String,IndexMutation>> store : mutations.entrySet()) {
+            Map<String,IndexMutation> docs = new HashMap<String,IndexMutation>(store.getValue().size());
+            for (Map.Entry<String,IndexMutation> doc : store.getValue().entrySet()) {
+                docs.put(doc.getKey(),combine(null,doc.getValue()));
+            }
+            copy.put(store.getKey(),docs);
+        }
+        return copy;
+    }
+
+    /**
+     * Merges the mutations of a later transaction into the batch, unless a document which has been deleted in the
+     * batch is updated again. In that case, the batch is left unchanged and false is returned.
+     */
+    private static boolean merge(Map<String,Map<String,IndexMutation>> batch, Map<String,Map<String,IndexMutation>> mutations) {
+        for (Map.Entry<String,Map<String,IndexMutation>> store : mutations.entrySet()) {
+            Map<String,IndexMutation> docs = batch.get(store.getKey());
+            if (docs==null) continue;
+            for (Map.Entry<String,IndexMutation> doc : store.getValue().entrySet()) {
+                IndexMutation previous = docs.get(doc.getKey());
+                IndexMutation next = doc.getValue();
+                if (previous!=null && previous.isDeleted() && !next.isNew() && !next.isDeleted()) return false;
+            }
+        }
+        for (Map.Entry<String,Map<String,IndexMutation>> store : mutations.entrySet()) {
+            Map<String,IndexMutation> docs = batch.get(store.getKey());
+            if (docs==null) {
+                docs = new HashMap<String,IndexMutation>(store.getValue().size());
+                batch.put(store.getKey(),docs);
+            }
+            for (Map.Entry<String,IndexMutation> doc : store.getValue().entrySet()) {
+                docs.put(doc.getKey(),combine(docs.get(doc.getKey()),doc.getValue()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Combines two consecutive mutations of the same document into one. Creating or deleting a document supersedes
+     * all previous mutations and the field deletions of a deleted document are dropped.
+     */
+    private static IndexMutation combine(IndexMutation previous, IndexMutation next) {
+        if (next.isDeleted()) return new IndexMutation(false,true);
+        if (previous==null || next.isNew()) previous = new IndexMutation(next.isNew(),false);
+        Preconditions.checkArgument(!previous.isDeleted(),"Cannot update a deleted document");
+        Set<String> overwritten = new HashSet<String>();
+        if (next.hasAdditions()) for (IndexEntry add : next.getAdditions()) overwritten.add(add.key);
+        if (next.hasDeletions()) overwritten.addAll(next.getDeletions());
+
+        IndexMutation combined = new IndexMutation(previous.isNew(),previous.isDeleted());
+        if (previous.hasAdditions()) {
+            for (IndexEntry add : previous.getAdditions()) {
+                if (!overwritten.contains(add.key)) combined.addition(add);
+            }
+        }
+        if (next.hasAdditions()) {
+            for (IndexEntry add : next.getAdditions()) combined.addition(add);
+        }
+        if (!combined.isNew()) {
+            Set<String> deletions = new HashSet<String>();
+            if (previous.hasDeletions()) deletions.addAll(previous.getDeletions());
+            if (next.hasDeletions()) deletions.addAll(next.getDeletions());
+            for (String key : deletions) combined.deletion(key);
+        }
+        return combined;
+    }
+
+    /**
+     * Transaction of the wrapped index which remembers the sequence number of its mutations in the update log.
+     */
+    public class Transaction implements TransactionHandle {
+
+        private final TransactionHandle indexTx;
+        private volatile long sequence = 0;
+
+        private Transaction(TransactionHandle indexTx) {
+            this.indexTx = indexTx;
+        }
+
+        /**
+         * Blocks until the mutations of this transaction have been applied to the index.
+         */
+        public void awaitApplied() throws InterruptedException {
+            if (sequence>0) AsyncIndexProvider.this.awaitApplied(sequence);
+        }
+
+        @Override
+        public void commit() throws StorageException {
+            indexTx.commit();
+            if (failure!=null && sequence>0)
+                throw new PermanentStorageException("Mutations have been logged but are not applied to index until it is opened again",failure);
+        }
+
+        @Override
+        public void rollback() throws StorageException {
+            indexTx.rollback();
+        }
+
+        @Override
+        public void flush() throws StorageException {
+            indexTx.flush();
+        }
+    }
+
+}
@@ -7,6 +7,7 @@ import com.thinkaurelius.titan.diskstorage.keycolumnvalue.*;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -68,6 +69,13 @@ public class HashPrefixKeyColumnValueStore implements KeyColumnValueStore {
         return store.getSlice(prefixQuery, txh);
     }
 
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        List<ByteBuffer> prefixKeys = new ArrayList<ByteBuffer>(keys.size());
+        for (ByteBuffer key : keys) prefixKeys.add(prefixKey(key));
+        return store.getSlice(prefixKeys, query, txh);
+    }
+
     @Override
     public ByteBuffer get(ByteBuffer key, ByteBuffer column, StoreTransaction txh) throws StorageException {
         return store.get(prefixKey(key), column, txh);
@@ -110,6 +118,38 @@ public class HashPrefixKeyColumnValueStore implements KeyColumnValueStore {
         };
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        return store.getKeySplits(numSplits, txh);
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        final KeyIterator keys = store.getKeys(split, slice, txh);
+        return new KeyIterator() {
+
+            @Override
+            public boolean hasNext() throws StorageException {
+                return keys.hasNext();
+            }
+
+            @Override
+            public ByteBuffer next() throws StorageException {
+                return truncateKey(keys.next());
+            }
+
+            @Override
+            public List<Entry> getEntries() {
+                return keys.getEntries();
+            }
+
+            @Override
+            public void close() throws StorageException {
+                keys.close();
+            }
+        };
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         throw new UnsupportedOperationException();
@@ -2,8 +2,8 @@ package com.thinkaurelius.titan.diskstorage.indexing;
 
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.TransactionHandle;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
 
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -44,13 +44,16 @@ public interface IndexProvider extends IndexInformation {
     /**
      * Executes the given query against the index.
      *
+     * The ids of the matching documents are retrieved from the index in pages as the returned iterator advances,
+     * so that large result sets are never materialized at once. The iterator should be closed if it is not exhausted.
+     *
      * @param query Query to execute
      * @param tx Enclosing transaction
-     * @return The ids of all matching documents
+     * @return Iterator over the ids of all matching documents
      * @throws StorageException
      * @see IndexQuery
      */
-    public List<String> query(IndexQuery query, TransactionHandle tx) throws StorageException;
+    public RecordIterator<String> query(IndexQuery query, TransactionHandle tx) throws StorageException;
 
     /**
      * Returns a transaction handle for a new index transaction.
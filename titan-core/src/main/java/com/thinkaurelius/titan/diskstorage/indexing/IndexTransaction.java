@@ -3,7 +3,9 @@ package com.thinkaurelius.titan.diskstorage.indexing;
 import com.google.common.base.Preconditions;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.TransactionHandle;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -61,10 +63,36 @@ public class IndexTransaction implements TransactionHandle {
         index.register(store,key,dataType,indexTx);
     }
 
+    /**
+     * Retrieves the ids of all documents matching the given query at once.
+     *
+     * @see #iterate(IndexQuery)
+     */
     public List<String> query(IndexQuery query) throws StorageException {
+        RecordIterator<String> iter = iterate(query);
+        try {
+            List<String> result = new ArrayList<String>();
+            while (iter.hasNext()) result.add(iter.next());
+            return result;
+        } finally {
+            iter.close();
+        }
+    }
+
+    public RecordIterator<String> iterate(IndexQuery query) throws StorageException {
         return index.query(query,indexTx);
     }
 
+    /**
+     * Blocks until the mutations of this transaction have been applied to the index, if the index applies them
+     * asynchronously.
+     *
+     * @see AsyncIndexProvider
+     */
+    public void awaitApplied() throws InterruptedException {
+        if (indexTx instanceof AsyncIndexProvider.Transaction) ((AsyncIndexProvider.Transaction)indexTx).awaitApplied();
+    }
+
     @Override
     public void commit() throws StorageException {
         flushInternal();
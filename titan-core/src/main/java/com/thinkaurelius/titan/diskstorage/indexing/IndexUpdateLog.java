@@ -0,0 +1,334 @@
+package com.thinkaurelius.titan.diskstorage.indexing;
+
+import com.google.common.base.Preconditions;
+import com.thinkaurelius.titan.core.attribute.Geoshape;
+import com.thinkaurelius.titan.diskstorage.PermanentStorageException;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only log of index mutations. Each record holds the mutations of one transaction under a sequence
+ * number and is forced to disk before {@link #append(Map)} returns. The sequence number of the last record that has
+ * been applied to the index is checkpointed separately, so that the remaining records can be replayed after a
+ * restart. Once all records have been applied, the log file is truncated.
+ * <p/>
+ * A record consists of its length, sequence number, payload and a checksum of the payload. A partially written
+ * record at the end of the log is discarded when the log is opened.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class IndexUpdateLog {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexUpdateLog.class);
+
+    private static final String LOG_FILE = "updates.log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int HEADER_LENGTH = 4 + 8;
+    private static final long TRUNCATE_THRESHOLD = 1 << 20;
+
+    private static final byte INTEGER = 0, LONG = 1, FLOAT = 2, DOUBLE = 3, STRING = 4, GEOSHAPE = 5;
+
+    private final File directory;
+    private final RandomAccessFile logFile;
+    private final FileChannel channel;
+
+    private long lastSequence;
+    private long checkpoint;
+
+    public IndexUpdateLog(File directory) throws StorageException {
+        Preconditions.checkNotNull(directory);
+        if (!directory.exists()) directory.mkdirs();
+        Preconditions.checkArgument(directory.isDirectory() && directory.canWrite(),"Cannot access or write to directory: %s",directory);
+        this.directory = directory;
+        try {
+            File checkpointFile = new File(directory,CHECKPOINT_FILE);
+            checkpoint = checkpointFile.exists()?Long.parseLong(FileUtils.readFileToString(checkpointFile,"UTF-8").trim()):0;
+            lastSequence = checkpoint;
+            logFile = new RandomAccessFile(new File(directory,LOG_FILE),"rw");
+            channel = logFile.getChannel();
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new PermanentStorageException("Could not open index update log in: " + directory,e);
+        } catch (NumberFormatException e) {
+            throw new PermanentStorageException("Invalid checkpoint in index update log: " + directory,e);
+        }
+    }
+
+    /**
+     * Reads all records which have not yet been checkpointed. Must be called once before any records are appended.
+     *
+     * @return The sequence numbers and mutations of all records following the checkpoint, in order
+     * @throws StorageException
+     */
+    public synchronized List<Record> recover() throws StorageException {
+        List<Record> records = new ArrayList<Record>();
+        try {
+            long position = 0, length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            while (position + HEADER_LENGTH + 8 <= length) {
+                header.clear();
+                channel.read(header,position);
+                header.flip();
+                int size = header.getInt();
+                long sequence = header.getLong();
+                if (size<0 || position + HEADER_LENGTH + size + 8 > length) break;
+                ByteBuffer payload = ByteBuffer.allocate(size + 8);
+                channel.read(payload,position + HEADER_LENGTH);
+                payload.flip();
+                byte[] data = new byte[size];
+                payload.get(data);
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                if (payload.getLong()!=crc.getValue()) break;
+                position += HEADER_LENGTH + size + 8;
+                lastSequence = Math.max(lastSequence,sequence);
+                if (sequence>checkpoint) records.add(new Record(sequence,read(data)));
+            }
+            if (position<length) {
+                log.warn("Discarding incomplete record at the end of index update log: {}",directory);
+                channel.truncate(position);
+            }
+            channel.position(position);
+        } catch (IOException e) {
+            throw new PermanentStorageException("Could not read index update log: " + directory,e);
+        }
+        return records;
+    }
+
+    /**
+     * Appends the given mutations to the log and forces them to disk.
+     *
+     * @return The sequence number of the appended record
+     * @throws StorageException
+     */
+    public long append(Map<String,Map<String,IndexMutation>> mutations) throws StorageException {
+        byte[] data = write(mutations);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + data.length + 8);
+        synchronized (this) {
+            long sequence = lastSequence + 1;
+            record.putInt(data.length).putLong(sequence).put(data).putLong(crc.getValue());
+            record.flip();
+            try {
+                while (record.hasRemaining()) channel.write(record);
+                channel.force(false);
+            } catch (IOException e) {
+                throw new PermanentStorageException("Could not append to index update log: " + directory,e);
+            }
+            lastSequence = sequence;
+            return sequence;
+        }
+    }
+
+    /**
+     * Records that all records up to and including the given sequence number have been applied to the index.
+     */
+    public synchronized void checkpoint(long sequence) throws StorageException {
+        Preconditions.checkArgument(sequence>=checkpoint && sequence<=lastSequence);
+        try {
+            File tmp = new File(directory,CHECKPOINT_FILE+".tmp");
+            FileUtils.writeStringToFile(tmp,String.valueOf(sequence),"UTF-8");
+            File checkpointFile = new File(directory,CHECKPOINT_FILE);
+            if (!tmp.renameTo(checkpointFile)) {
+                checkpointFile.delete();
+                if (!tmp.renameTo(checkpointFile)) throw new IOException("Could not replace checkpoint file");
+            }
+            checkpoint = sequence;
+            if (checkpoint==lastSequence && channel.size()>TRUNCATE_THRESHOLD) {
+                channel.truncate(0);
+                channel.position(0);
+            }
+        } catch (IOException e) {
+            throw new PermanentStorageException("Could not checkpoint index update log: " + directory,e);
+        }
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public synchronized void close() throws StorageException {
+        try {
+            logFile.close();
+        } catch (IOException e) {
+            throw new PermanentStorageException("Could not close index update log: " + directory,e);
+        }
+    }
+
+    public synchronized void clear() throws StorageException {
+        close();
+        try {
+            FileUtils.deleteDirectory(directory);
+        } catch (IOException e) {
+            throw new PermanentStorageException("Could not delete index update log: " + directory,e);
+        }
+    }
+
+    public static class Record {
+
+        public final long sequence;
+        public final Map<String,Map<String,IndexMutation>> mutations;
+
+        public Record(long sequence, Map<String, Map<String, IndexMutation>> mutations) {
+            this.sequence = sequence;
+            this.mutations = mutations;
+        }
+    }
+
+    /* ################################################
+                Serialization
+    ################################################### */
+
+    private static byte[] write(Map<String,Map<String,IndexMutation>> mutations) throws StorageException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(mutations.size());
+            for (Map.Entry<String,Map<String,IndexMutation>> store : mutations.entrySet()) {
+                writeString(out,store.getKey());
+                out.writeInt(store.getValue().size());
+                for (Map.Entry<String,IndexMutation> doc : store.getValue().entrySet()) {
+                    IndexMutation mutation = doc.getValue();
+                    writeString(out,doc.getKey());
+                    out.writeBoolean(mutation.isNew());
+                    out.writeBoolean(mutation.isDeleted());
+                    List<IndexEntry> additions = mutation.hasAdditions()?mutation.getAdditions():new ArrayList<IndexEntry>(0);
+                    out.writeInt(additions.size());
+                    for (IndexEntry add : additions) {
+                        writeString(out,add.key);
+                        writeValue(out,add.value);
+                    }
+                    List<String> deletions = mutation.hasDeletions()?mutation.getDeletions():new ArrayList<String>(0);
+                    out.writeInt(deletions.size());
+                    for (String key : deletions) writeString(out,key);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new PermanentStorageException("Could not serialize index mutations",e);
+        }
+    }
+
+    private static Map<String,Map<String,IndexMutation>> read(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int numStores = in.readInt();
+        Map<String,Map<String,IndexMutation>> mutations = new HashMap<String,Map<String,IndexMutation>>(numStores);
+        for (int s=0;s<numStores;s++) {
+            String store = readString(in);
+            int numDocs = in.readInt();
+            Map<String,IndexMutation> docs = new HashMap<String,IndexMutation>(numDocs);
+            for (int d=0;d<numDocs;d++) {
+                String docid = readString(in);
+                IndexMutation mutation = new IndexMutation(in.readBoolean(),in.readBoolean());
+                int numAdditions = in.readInt();
+                for (int i=0;i<numAdditions;i++) mutation.addition(new IndexEntry(readString(in),readValue(in)));
+                int numDeletions = in.readInt();
+                for (int i=0;i<numDeletions;i++) mutation.deletion(readString(in));
+                docs.put(docid,mutation);
+            }
+            mutations.put(store,docs);
+        }
+        return mutations;
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes,UTF8);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer)value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float)value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double)value);
+        } else if (value instanceof Number) {
+            //Indexes treat all other numbers as longs or doubles
+            if (value instanceof Long || value instanceof Short || value instanceof Byte) {
+                out.writeByte(LONG);
+                out.writeLong(((Number)value).longValue());
+            } else {
+                out.writeByte(DOUBLE);
+                out.writeDouble(((Number)value).doubleValue());
+            }
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out,(String)value);
+        } else if (value instanceof Geoshape) {
+            Geoshape shape = (Geoshape)value;
+            out.writeByte(GEOSHAPE);
+            out.writeByte(shape.getType().ordinal());
+            switch (shape.getType()) {
+                case POINT:
+                    out.writeFloat(shape.getPoint().getLatitude());
+                    out.writeFloat(shape.getPoint().getLongitude());
+                    break;
+                case CIRCLE:
+                    out.writeFloat(shape.getPoint().getLatitude());
+                    out.writeFloat(shape.getPoint().getLongitude());
+                    out.writeFloat(shape.getRadius());
+                    break;
+                case BOX:
+                    for (int i=0;i<2;i++) {
+                        out.writeFloat(shape.getPoint(i).getLatitude());
+                        out.writeFloat(shape.getPoint(i).getLongitude());
+                    }
+                    break;
+                default: throw new IllegalArgumentException("Unsupported geo type: " + shape.getType());
+            }
+        } else throw new IllegalArgumentException("Unsupported type: " + value);
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case INTEGER: return in.readInt();
+            case LONG: return in.readLong();
+            case FLOAT: return in.readFloat();
+            case DOUBLE: return in.readDouble();
+            case STRING: return readString(in);
+            case GEOSHAPE:
+                Geoshape.Type geoType = Geoshape.Type.values()[in.readByte()];
+                switch (geoType) {
+                    case POINT: return Geoshape.point(in.readFloat(),in.readFloat());
+                    case CIRCLE: return Geoshape.circle(in.readFloat(),in.readFloat(),in.readFloat());
+                    case BOX: return Geoshape.box(in.readFloat(),in.readFloat(),in.readFloat(),in.readFloat());
+                    default: throw new IllegalArgumentException("Unsupported geo type: " + geoType);
+                }
+            default: throw new IllegalArgumentException("Unknown value type: " + type);
+        }
+    }
+
+}
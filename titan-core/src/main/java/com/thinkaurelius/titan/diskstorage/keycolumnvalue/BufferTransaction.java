@@ -116,7 +116,7 @@ public class BufferTransaction implements StoreTransaction {
     @Override
     public void commit() throws StorageException {
         flushInternal();
-        tx.flush();
+        tx.commit();
     }
 
     @Override
@@ -36,6 +36,11 @@ public class BufferedKeyColumnValueStore implements KeyColumnValueStore {
         return store.getSlice(query, getTx(txh));
     }
 
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        return store.getSlice(keys, query, getTx(txh));
+    }
+
     @Override
     public ByteBuffer get(ByteBuffer key, ByteBuffer column, StoreTransaction txh) throws StorageException {
         return store.get(key, column, getTx(txh));
@@ -66,6 +71,16 @@ public class BufferedKeyColumnValueStore implements KeyColumnValueStore {
         return store.getKeys(getTx(txh));
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        return store.getKeySplits(numSplits, getTx(txh));
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        return store.getKeys(split, slice, getTx(txh));
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         return store.getLocalKeyPartition();
@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -92,6 +93,30 @@ public class CachedKeyColumnValueStore implements KeyColumnValueStore {
         }
     }
 
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        if (!query.isStatic() || query.hasLimit()) return store.getSlice(keys,query,txh);
+        //Cached slices are served directly, all others are retrieved in a single request
+        List<List<Entry>> results = new ArrayList<List<Entry>>(keys.size());
+        List<ByteBuffer> missing = new ArrayList<ByteBuffer>();
+        for (ByteBuffer key : keys) {
+            cacheRetrieval.incrementAndGet();
+            List<Entry> result = cache.getIfPresent(new KeySliceQuery(key,query));
+            if (result==null) missing.add(key);
+            results.add(result);
+        }
+        if (missing.isEmpty()) return results;
+        cacheMiss.addAndGet(missing.size());
+        List<List<Entry>> retrieved = store.getSlice(missing,query,txh);
+        for (int i=0,m=0;i<results.size();i++) {
+            if (results.get(i)!=null) continue;
+            List<Entry> result = retrieved.get(m++);
+            if (!result.isEmpty()) cache.put(new KeySliceQuery(keys.get(i),query),result);
+            results.set(i,result);
+        }
+        return results;
+    }
+
     @Override
     public ByteBuffer get(ByteBuffer key, ByteBuffer column, StoreTransaction txh) throws StorageException {
         return store.get(key,column,txh);
@@ -117,6 +142,16 @@ public class CachedKeyColumnValueStore implements KeyColumnValueStore {
         return store.getKeys(txh);
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        return store.getKeySplits(numSplits, txh);
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        return store.getKeys(split, slice, txh);
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         return store.getLocalKeyPartition();
@@ -1,9 +1,8 @@
 package com.thinkaurelius.titan.diskstorage.keycolumnvalue;
 
 import com.google.common.base.Preconditions;
-import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
+import com.thinkaurelius.titan.diskstorage.util.ByteSlice;
 import com.thinkaurelius.titan.util.datastructures.ImmutableLongObjectMap;
-import org.apache.commons.lang.builder.HashCodeBuilder;
 
 import java.nio.ByteBuffer;
 
@@ -11,6 +10,8 @@ import java.nio.ByteBuffer;
  * An entry is the primitive persistence unit used in the graph database middleware.
  * <p/>
  * An entry consists of a column and value both of which are general {@link java.nio.ByteBuffer}s.
+ * Entries are compared, hashed and tested for equality by their column which is accessed through an immutable
+ * {@link ByteSlice}, so that neither operation modifies or duplicates the column buffer.
  *
  * @author Matthias Br&ouml;cheler (me@matthiasb.com);
  */
@@ -18,6 +19,7 @@ public class Entry implements Comparable<Entry> {
 
     private final ByteBuffer column;
     private final ByteBuffer value;
+    private ByteSlice columnSlice;
 
     private volatile transient ImmutableLongObjectMap cache;
 
@@ -28,6 +30,11 @@ public class Entry implements Comparable<Entry> {
         this.cache = null;
     }
 
+    public Entry(ByteSlice column, ByteSlice value) {
+        this(column.asByteBuffer(), value == null ? null : value.asByteBuffer());
+        this.columnSlice = column;
+    }
+
     /**
      * Returns the column ByteBuffer of this entry.
      *
@@ -47,9 +54,20 @@ public class Entry implements Comparable<Entry> {
         return value;
     }
 
+    /**
+     * Returns the column of this entry as an immutable slice.
+     *
+     * @return Column slice
+     */
+    public ByteSlice getColumnSlice() {
+        //Benign race: slices are immutable and wrap the same bytes
+        if (columnSlice == null) columnSlice = ByteSlice.of(column);
+        return columnSlice;
+    }
+
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(column.duplicate()).toHashCode();
+        return getColumnSlice().hashCode();
     }
 
     @Override
@@ -58,12 +76,12 @@ public class Entry implements Comparable<Entry> {
         if (obj == null) return false;
         if (!getClass().isInstance(obj)) return false;
         Entry other = (Entry) obj;
-        return column.duplicate().equals(other.column.duplicate());
+        return getColumnSlice().equals(other.getColumnSlice());
     }
 
     @Override
     public int compareTo(Entry entry) {
-        return ByteBufferUtil.compare(column.duplicate(),entry.column.duplicate());
+        return getColumnSlice().compareTo(entry.getColumnSlice());
     }
 
     public ImmutableLongObjectMap getCache() {
@@ -31,6 +31,21 @@ public interface KeyColumnValueStore {
      */
     public List<Entry> getSlice(KeySliceQuery query, StoreTransaction txh) throws StorageException;
 
+    /**
+     * Retrieves the list of entries matching the given slice for each of the given keys.
+     * <p/>
+     * Stores which can read multiple keys in a single request against the storage backend implement this natively and
+     * advertise it via {@link StoreFeatures#supportsMultiQuery()}. All other stores retrieve the slices one key after
+     * another via {@link com.thinkaurelius.titan.diskstorage.util.KCVSUtil#getSlice(KeyColumnValueStore, java.util.List, SliceQuery, StoreTransaction)}.
+     *
+     * @param keys  Keys to retrieve the slice for
+     * @param query Slice to retrieve for each key
+     * @param txh   Transaction
+     * @return List of results, one for each key in the order of the given keys
+     * @throws StorageException
+     */
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException;
+
 
     /**
      * Retrieves the value for the specified column and key under the given transaction
@@ -92,6 +107,34 @@ public interface KeyColumnValueStore {
      */
     public RecordIterator<ByteBuffer> getKeys(StoreTransaction txh) throws StorageException;
 
+    /**
+     * Splits the key space of this store into disjoint {@link KeySplit}s which together cover all keys and can be
+     * scanned independently via {@link #getKeys(KeySplit, SliceQuery, StoreTransaction)}.
+     * <p/>
+     * The requested number of splits is a hint. Stores align the splits with their physical partitioning of the key space
+     * (e.g. token ranges, regions or key ranges) and may therefore return more or fewer splits. Stores which cannot
+     * split their key space return {@link KeySplit#all()} as the only split.
+     *
+     * @param numSplits Desired number of splits
+     * @param txh       Transaction
+     * @return List of disjoint splits covering the entire key space
+     * @throws UnsupportedOperationException if the underlying store does not support this operation. Check {@link StoreFeatures#supportsScan()} first.
+     */
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException;
+
+    /**
+     * Returns an iterator over all keys in the given split, which must have been returned by {@link #getKeySplits(int, StoreTransaction)}
+     * of this store. If a slice query is given, the entries of each key matching that slice are retrieved together with
+     * the key and only keys which have at least one such entry are returned.
+     *
+     * @param split Split to scan
+     * @param slice Slice of columns to retrieve for each key, or null to retrieve only keys
+     * @param txh   Transaction
+     * @return An iterator over all keys in the given split
+     * @throws UnsupportedOperationException if the underlying store does not support this operation. Check {@link StoreFeatures#supportsScan()} first.
+     */
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException;
+
 
     /**
      * Returns an array that describes the key boundaries of the locally hosted partition of this store.
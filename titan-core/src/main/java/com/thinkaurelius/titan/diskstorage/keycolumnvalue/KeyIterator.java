@@ -0,0 +1,24 @@
+package com.thinkaurelius.titan.diskstorage.keycolumnvalue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Iterates over the keys of a {@link KeySplit} and provides access to the slice of columns that has been retrieved
+ * together with each key.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ * @see KeyColumnValueStore#getKeys(KeySplit, SliceQuery, StoreTransaction)
+ */
+
+public interface KeyIterator extends RecordIterator<ByteBuffer> {
+
+    /**
+     * Returns the entries of the key most recently returned by {@link #next()} which match the slice query
+     * that this iterator was created with, or an empty list if no slice query was given.
+     *
+     * @return entries of the current key
+     */
+    public List<Entry> getEntries();
+
+}
@@ -0,0 +1,86 @@
+package com.thinkaurelius.titan.diskstorage.keycolumnvalue;
+
+import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A contiguous, disjoint portion of the key space of a {@link KeyColumnValueStore} as returned by
+ * {@link KeyColumnValueStore#getKeySplits(int, StoreTransaction)}. The splits of a store together cover all of its keys
+ * and each key belongs to exactly one split, so that the splits can be scanned independently and in parallel.
+ * <p/>
+ * The boundaries of a split are only meaningful to the store which created it. For key ordered stores they are keys
+ * (start inclusive, end exclusive), whereas stores that partition keys by hash encode the boundaries of the hash range.
+ * A null boundary means that the split is unbounded in that direction.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class KeySplit {
+
+    private static final KeySplit ALL = new KeySplit(null, null);
+
+    private final ByteBuffer start;
+    private final ByteBuffer end;
+
+    public KeySplit(ByteBuffer start, ByteBuffer end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return The split which covers the entire key space of a store
+     */
+    public static KeySplit all() {
+        return ALL;
+    }
+
+    public ByteBuffer getStart() {
+        return start;
+    }
+
+    public ByteBuffer getEnd() {
+        return end;
+    }
+
+    public boolean hasStart() {
+        return start != null;
+    }
+
+    public boolean hasEnd() {
+        return end != null;
+    }
+
+    /**
+     * Checks whether the given key lies within this split, assuming that the boundaries of this split are keys.
+     *
+     * @param key Key to check
+     * @return true, if start <= key < end, else false
+     */
+    public boolean containsKey(ByteBuffer key) {
+        return (start == null || ByteBufferUtil.compare(start, key) <= 0) &&
+                (end == null || ByteBufferUtil.compare(key, end) < 0);
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder().append(start).append(end).toHashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        else if (other == null) return false;
+        else if (!getClass().isInstance(other)) return false;
+        KeySplit oth = (KeySplit) other;
+        return (start == null ? oth.start == null : start.equals(oth.start)) &&
+                (end == null ? oth.end == null : end.equals(oth.end));
+    }
+
+    @Override
+    public String toString() {
+        return "[" + (start == null ? "-" : ByteBufferUtil.bytesToHex(start)) + "," +
+                (end == null ? "-" : ByteBufferUtil.bytesToHex(end)) + ")";
+    }
+}
@@ -29,6 +29,16 @@ public class ReadOnlyKeyColumnValueStore implements KeyColumnValueStore {
         return store.getKeys(txh);
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        return store.getKeySplits(numSplits, txh);
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        return store.getKeys(split, slice, txh);
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         return store.getLocalKeyPartition();
@@ -66,4 +76,9 @@ public class ReadOnlyKeyColumnValueStore implements KeyColumnValueStore {
         return store.getSlice(query, txh);
     }
 
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        return store.getSlice(keys, query, txh);
+    }
+
 }
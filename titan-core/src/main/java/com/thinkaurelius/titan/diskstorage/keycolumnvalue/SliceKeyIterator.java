@@ -0,0 +1,96 @@
+package com.thinkaurelius.titan.diskstorage.keycolumnvalue;
+
+import com.google.common.base.Preconditions;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link KeyIterator} over the keys returned by a given key iterator which retrieves the slice of columns for each key
+ * with an individual {@link KeyColumnValueStore#getSlice(KeySliceQuery, StoreTransaction)} call.
+ * Keys outside the given split, and keys which have no entries in the given slice, are skipped.
+ * <p/>
+ * This iterator is used by stores which cannot retrieve keys and columns together.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class SliceKeyIterator implements KeyIterator {
+
+    private final RecordIterator<ByteBuffer> keys;
+    private final KeySplit split;
+    private final SliceQuery slice;
+    private final KeyColumnValueStore store;
+    private final StoreTransaction txh;
+
+    private ByteBuffer nextKey;
+    private List<Entry> nextEntries;
+    private List<Entry> entries;
+
+    /**
+     * @param keys  Keys to iterate over
+     * @param split Split the keys are restricted to. The boundaries of this split must be keys.
+     * @param slice Slice of columns to retrieve for each key or null if only keys are retrieved
+     * @param store Store to retrieve the slices from
+     * @param txh   Transaction
+     */
+    public SliceKeyIterator(RecordIterator<ByteBuffer> keys, KeySplit split, SliceQuery slice,
+                            KeyColumnValueStore store, StoreTransaction txh) throws StorageException {
+        Preconditions.checkNotNull(keys);
+        Preconditions.checkNotNull(split);
+        this.keys = keys;
+        this.split = split;
+        this.slice = slice;
+        this.store = store;
+        this.txh = txh;
+        this.entries = Collections.emptyList();
+        advance();
+    }
+
+    private void advance() throws StorageException {
+        nextKey = null;
+        nextEntries = null;
+        while (nextKey == null && keys.hasNext()) {
+            ByteBuffer key = keys.next();
+            if (!split.containsKey(key)) continue;
+            if (slice == null) {
+                nextKey = key;
+                nextEntries = Collections.emptyList();
+            } else {
+                List<Entry> result = store.getSlice(new KeySliceQuery(key, slice), txh);
+                if (result != null && !result.isEmpty()) {
+                    nextKey = key;
+                    nextEntries = result;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws StorageException {
+        return nextKey != null;
+    }
+
+    @Override
+    public ByteBuffer next() throws StorageException {
+        if (nextKey == null) throw new NoSuchElementException();
+        ByteBuffer key = nextKey;
+        entries = nextEntries;
+        advance();
+        return key;
+    }
+
+    @Override
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public void close() throws StorageException {
+        keys.close();
+    }
+
+}
@@ -13,6 +13,7 @@ import java.lang.reflect.Field;
 public class StoreFeatures {
 
     public Boolean supportsScan;
+    public Boolean supportsMultiQuery;
     public Boolean supportsBatchMutation;
 
     public Boolean supportsTransactions;
@@ -56,6 +57,17 @@ public class StoreFeatures {
         return supportsScan;
     }
 
+    /**
+     * Whether this storage backend retrieves the slices of multiple keys in a single request via
+     * {@link KeyColumnValueStore#getSlice(java.util.List, SliceQuery, StoreTransaction)}.
+     *
+     * @return
+     */
+    public boolean supportsMultiQuery() {
+        verify();
+        return supportsMultiQuery;
+    }
+
     /**
      * Whether this storage backend is transactional.
      *
@@ -4,6 +4,7 @@ import com.google.common.base.Preconditions;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.*;
 import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
+import com.thinkaurelius.titan.diskstorage.util.KCVSUtil;
 import org.apache.commons.lang.StringUtils;
 
 import java.nio.ByteBuffer;
@@ -23,6 +24,7 @@ import java.util.concurrent.locks.ReentrantLock;
 public class InMemoryKeyColumnValueStore implements KeyColumnValueStore {
 
     private static final ByteBuffer ZERO = ByteBufferUtil.zeroByteBuffer(8);
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
 
     private final String name;
     private final ConcurrentSkipListMap<KeyColumn,ByteBuffer> kcv;
@@ -69,6 +71,11 @@ public class InMemoryKeyColumnValueStore implements KeyColumnValueStore {
         return result;
     }
 
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        return KCVSUtil.getSlice(this, keys, query, txh);
+    }
+
     @Override
     public ByteBuffer get(ByteBuffer key, ByteBuffer column, StoreTransaction txh) throws StorageException {
         Lock lock = getLock(key,txh);
@@ -123,38 +130,80 @@ public class InMemoryKeyColumnValueStore implements KeyColumnValueStore {
     @Override
     public RecordIterator<ByteBuffer> getKeys(StoreTransaction txh) throws StorageException {
         Preconditions.checkArgument(txh.getConsistencyLevel()==ConsistencyLevel.DEFAULT);
-        return new RecordIterator<ByteBuffer>() {
+        return new KeysIterator(kcv.keySet().iterator(),null);
+    }
 
-            private final Iterator<KeyColumn> iter = kcv.keySet().iterator();
-            private ByteBuffer nextKey=nextInternal(null);
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        Preconditions.checkArgument(numSplits>0,"Invalid number of splits: %s",numSplits);
+        Preconditions.checkArgument(txh.getConsistencyLevel()==ConsistencyLevel.DEFAULT);
+        List<ByteBuffer> keys = new ArrayList<ByteBuffer>();
+        RecordIterator<ByteBuffer> iter = getKeys(txh);
+        while (iter.hasNext()) keys.add(iter.next());
+        if (numSplits==1 || keys.size()<=1) return Collections.singletonList(KeySplit.all());
+
+        numSplits = Math.min(numSplits,keys.size());
+        List<KeySplit> splits = new ArrayList<KeySplit>(numSplits);
+        ByteBuffer start = null;
+        for (int i=1;i<numSplits;i++) {
+            ByteBuffer end = keys.get((int)((long)i*keys.size()/numSplits));
+            splits.add(new KeySplit(start,end));
+            start = end;
+        }
+        splits.add(new KeySplit(start,null));
+        return splits;
+    }
 
-            private ByteBuffer nextInternal(ByteBuffer previous) {
-                ByteBuffer next = null;
-                while (next==null && iter.hasNext()) {
-                    next = iter.next().key.duplicate();
-                    if (previous!=null && previous.equals(next)) next=null;
-                }
-                return next;
-            }
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        Preconditions.checkArgument(txh.getConsistencyLevel()==ConsistencyLevel.DEFAULT);
+        Iterator<KeyColumn> iter = split.hasStart()?kcv.tailMap(new KeyColumn(split.getStart(),EMPTY)).keySet().iterator()
+                                                   :kcv.keySet().iterator();
+        return new SliceKeyIterator(new KeysIterator(iter,split.getEnd()),split,slice,this,txh);
+    }
 
-            @Override
-            public boolean hasNext() throws StorageException {
-                return nextKey!=null;
-            }
+    /**
+     * Iterates over the distinct keys of the given key-column iterator up to the given end key (exclusive).
+     */
+    private static class KeysIterator implements RecordIterator<ByteBuffer> {
 
-            @Override
-            public ByteBuffer next() throws StorageException {
-                if (!hasNext()) throw new NoSuchElementException();
-                ByteBuffer result = nextKey;
-                nextKey=nextInternal(result);
-                return result;
-            }
+        private final Iterator<KeyColumn> iter;
+        private final ByteBuffer end;
+        private ByteBuffer nextKey;
 
-            @Override
-            public void close() throws StorageException {
+        private KeysIterator(Iterator<KeyColumn> iter, ByteBuffer end) {
+            this.iter = iter;
+            this.end = end;
+            this.nextKey = nextInternal(null);
+        }
 
+        private ByteBuffer nextInternal(ByteBuffer previous) {
+            ByteBuffer next = null;
+            while (next==null && iter.hasNext()) {
+                next = iter.next().key.duplicate();
+                if (previous!=null && previous.equals(next)) next=null;
             }
-        };
+            if (next!=null && end!=null && ByteBufferUtil.compare(next,end)>=0) next=null;
+            return next;
+        }
+
+        @Override
+        public boolean hasNext() throws StorageException {
+            return nextKey!=null;
+        }
+
+        @Override
+        public ByteBuffer next() throws StorageException {
+            if (!hasNext()) throw new NoSuchElementException();
+            ByteBuffer result = nextKey;
+            nextKey=nextInternal(result);
+            return result;
+        }
+
+        @Override
+        public void close() throws StorageException {
+
+        }
     }
 
     @Override
@@ -200,9 +249,9 @@ public class InMemoryKeyColumnValueStore implements KeyColumnValueStore {
 
         @Override
         public int compareTo(KeyColumn keyColumn) {
-            int comp = ByteBufferUtil.compare(key.duplicate(),keyColumn.key.duplicate());
+            int comp = ByteBufferUtil.compare(key,keyColumn.key);
             if (comp!=0) return comp;
-            else return ByteBufferUtil.compare(column.duplicate(),keyColumn.column.duplicate());
+            else return ByteBufferUtil.compare(column,keyColumn.column);
         }
     }
 
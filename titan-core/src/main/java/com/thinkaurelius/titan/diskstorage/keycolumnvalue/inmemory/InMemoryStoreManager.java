@@ -33,6 +33,7 @@ public class InMemoryStoreManager implements KeyColumnValueStoreManager {
 
         features = new StoreFeatures();
         features.supportsScan = true;
+        features.supportsMultiQuery = false;
         features.supportsBatchMutation = false;
         features.supportsTransactions = false;
         features.supportsConsistentKeyOperations = true;
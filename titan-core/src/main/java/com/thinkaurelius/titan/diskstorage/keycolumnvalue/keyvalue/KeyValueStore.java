@@ -17,6 +17,24 @@ public interface KeyValueStore {
      */
     public RecordIterator<ByteBuffer> getKeys(StoreTransaction txh) throws StorageException;
 
+    /**
+     * Returns an iterator over all keys in this store which lie in the given range in ascending order.
+     *
+     * @param keyStart Start of the range (inclusive) or null if the range is unbounded from below
+     * @param keyEnd   End of the range (exclusive) or null if the range is unbounded from above
+     * @return An iterator over all keys in the given range.
+     */
+    public RecordIterator<ByteBuffer> getKeys(ByteBuffer keyStart, ByteBuffer keyEnd, StoreTransaction txh) throws StorageException;
+
+    /**
+     * Returns keys in ascending order which divide this store into (at most) the given number of contiguous key ranges
+     * of roughly equal size. Returns an empty list if the store cannot be divided.
+     *
+     * @param numSplits Desired number of key ranges
+     * @return Boundaries of the key ranges
+     */
+    public List<ByteBuffer> getSplitKeys(int numSplits, StoreTransaction txh) throws StorageException;
+
     public List<KeyValueEntry> getSlice(ByteBuffer keyStart, ByteBuffer keyEnd, KeySelector selector, StoreTransaction txh) throws StorageException;
 
     public List<KeyValueEntry> getSlice(ByteBuffer keyStart, ByteBuffer keyEnd, int limit, StoreTransaction txh) throws StorageException;
@@ -4,6 +4,7 @@ import com.google.common.base.Preconditions;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.*;
 import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
+import com.thinkaurelius.titan.diskstorage.util.KCVSUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +48,11 @@ public class KeyValueStoreAdapter implements KeyColumnValueStore {
                 new KeyColumnSliceSelector(query.getKey(), query.getLimit()), txh));
     }
 
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        return KCVSUtil.getSlice(this, keys, query, txh);
+    }
+
     @Override
     public void mutate(ByteBuffer key, List<Entry> additions, List<ByteBuffer> deletions, StoreTransaction txh) throws StorageException {
         if (deletions != null && !deletions.isEmpty()) {
@@ -81,6 +87,28 @@ public class KeyValueStoreAdapter implements KeyColumnValueStore {
         return new KeysIterator(store.getKeys(txh));
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        Preconditions.checkArgument(numSplits > 0, "Invalid number of splits: %s", numSplits);
+        //Keys of variable length do not sort consistently with their concatenation, hence the store cannot be split by key
+        if (numSplits == 1 || !hasFixedKeyLength()) return Collections.singletonList(KeySplit.all());
+        List<KeySplit> splits = new ArrayList<KeySplit>(numSplits);
+        ByteBuffer start = null;
+        for (ByteBuffer splitKey : store.getSplitKeys(numSplits, txh)) {
+            ByteBuffer end = ByteBuffer.wrap(ByteBufferUtil.getArray(getKey(splitKey)));
+            if (start != null && !ByteBufferUtil.isSmallerThan(start, end)) continue;
+            splits.add(new KeySplit(start, end));
+            start = end;
+        }
+        splits.add(new KeySplit(start, null));
+        return splits;
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        return new SliceKeyIterator(new KeysIterator(store.getKeys(split.getStart(), split.getEnd(), txh)), split, slice, this, txh);
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         return store.getLocalKeyPartition();
@@ -81,6 +81,11 @@ public class ConsistentKeyLockStore implements KeyColumnValueStore {
         return dataStore.getSlice(query, getTx(txh));
     }
 
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        return dataStore.getSlice(keys, query, getTx(txh));
+    }
+
     @Override
     public ByteBuffer get(ByteBuffer key, ByteBuffer column, StoreTransaction txh) throws StorageException {
         return dataStore.get(key, column, getTx(txh));
@@ -120,6 +125,16 @@ public class ConsistentKeyLockStore implements KeyColumnValueStore {
         return dataStore.getKeys(getTx(txh));
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        return dataStore.getKeySplits(numSplits, getTx(txh));
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        return dataStore.getKeys(split, slice, getTx(txh));
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         return dataStore.getLocalKeyPartition();
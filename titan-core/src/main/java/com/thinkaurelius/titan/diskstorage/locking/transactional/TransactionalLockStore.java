@@ -28,6 +28,11 @@ public class TransactionalLockStore implements KeyColumnValueStore {
         return store.getSlice(query, txh);
     }
 
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        return store.getSlice(keys, query, txh);
+    }
+
     @Override
     public ByteBuffer get(ByteBuffer key, ByteBuffer column, StoreTransaction txh) throws StorageException {
         return store.get(key, column, txh);
@@ -53,6 +58,16 @@ public class TransactionalLockStore implements KeyColumnValueStore {
         return store.getKeys(txh);
     }
 
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        return store.getKeySplits(numSplits, txh);
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        return store.getKeys(split, slice, txh);
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         return store.getLocalKeyPartition();
@@ -99,43 +99,16 @@ public class ByteBufferUtil {
         if (a == b) {
             return 0;
         }
-        a.mark();
-        b.mark();
-        int result = -1;
-        while (true) {
-            if (!a.hasRemaining() && b.hasRemaining()) break;
-            else if (a.hasRemaining() && b.hasRemaining()) {
-                byte ca = a.get(), cb = b.get();
-                if (ca != cb) {
-                    if (ca >= 0 && cb >= 0) {
-                        if (ca < cb) break;
-                        else if (ca > cb) {
-                            result = 1;
-                            break;
-                        }
-                    } else if (ca < 0 && cb < 0) {
-                        if (ca < cb) break;
-                        else if (ca > cb) {
-                            result = 1;
-                            break;
-                        }
-                    } else if (ca >= 0 && cb < 0) break;
-                    else {
-                        result = 1;
-                        break;
-                    }
-                }
-            } else if (a.hasRemaining() && !b.hasRemaining()) {
-                result = 1;
-                break;
-            } else { //!a.hasRemaining() && !b.hasRemaining()
-                result = 0;
-                break;
-            }
+        //Absolute reads so that the buffers are neither modified nor need to be duplicated
+        int posa = a.position(), posb = b.position();
+        int lena = a.remaining(), lenb = b.remaining();
+        int min = Math.min(lena, lenb);
+        for (int i = 0; i < min; i++) {
+            int ca = a.get(posa + i) & 0xff, cb = b.get(posb + i) & 0xff;
+            if (ca != cb) return ca < cb ? -1 : 1;
         }
-        a.reset();
-        b.reset();
-        return result;
+        if (lena == lenb) return 0;
+        else return lena < lenb ? -1 : 1;
     }
 
     public static final String toBitString(ByteBuffer b, String byteSeparator) {
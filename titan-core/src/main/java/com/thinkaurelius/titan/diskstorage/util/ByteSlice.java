@@ -0,0 +1,157 @@
+package com.thinkaurelius.titan.diskstorage.util;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable slice of bytes identified by an offset and length into either a byte array or a direct {@link ByteBuffer}.
+ * <p/>
+ * In contrast to {@link ByteBuffer}, a slice has no mutable position, hence it can be shared between threads and compared
+ * or hashed without duplicating it first. The hash code is computed once. Slices are ordered by comparing their bytes
+ * as unsigned values which is the byte order used by the storage backends.
+ * <p/>
+ * A slice wraps the bytes it is created from without copying them. Use {@link #of(java.nio.ByteBuffer)} and
+ * {@link #asByteBuffer()} to convert at the boundaries to code operating on {@link ByteBuffer}s.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public final class ByteSlice implements Comparable<ByteSlice> {
+
+    public static final ByteSlice EMPTY = new ByteSlice(new byte[0], 0, 0);
+
+    private final byte[] array;
+    private final ByteBuffer direct;
+    private final int offset;
+    private final int length;
+
+    private int hashcode;
+
+    private ByteSlice(byte[] array, int offset, int length) {
+        this.array = array;
+        this.direct = null;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    private ByteSlice(ByteBuffer direct, int offset, int length) {
+        this.array = null;
+        this.direct = direct;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static ByteSlice of(byte[] array) {
+        return of(array, 0, array.length);
+    }
+
+    public static ByteSlice of(byte[] array, int offset, int length) {
+        Preconditions.checkNotNull(array);
+        Preconditions.checkArgument(offset >= 0 && length >= 0 && offset + length <= array.length,
+                "Invalid slice [%s,%s) of array with length %s", offset, offset + length, array.length);
+        return new ByteSlice(array, offset, length);
+    }
+
+    /**
+     * Wraps the remaining bytes of the given buffer. The position and limit of the buffer are not modified and later
+     * modifications to them do not affect the slice. The content of the buffer must not be modified afterwards.
+     *
+     * @param buffer Buffer to wrap
+     * @return Slice over the bytes between position and limit of the buffer
+     */
+    public static ByteSlice of(ByteBuffer buffer) {
+        Preconditions.checkNotNull(buffer);
+        if (buffer.hasArray()) {
+            return new ByteSlice(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            return new ByteSlice(buffer, buffer.position(), buffer.remaining());
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte getByte(int index) {
+        Preconditions.checkElementIndex(index, length);
+        return array != null ? array[offset + index] : direct.get(offset + index);
+    }
+
+    /**
+     * @return A new {@link ByteBuffer} over the bytes of this slice with position 0. The buffer shares its content with
+     *         this slice and must therefore not be written to.
+     */
+    public ByteBuffer asByteBuffer() {
+        if (array != null) {
+            return ByteBuffer.wrap(array, offset, length).slice();
+        } else {
+            ByteBuffer b = direct.duplicate();
+            b.limit(offset + length).position(offset);
+            return b.slice();
+        }
+    }
+
+    /**
+     * @return A copy of the bytes of this slice
+     */
+    public byte[] toByteArray() {
+        byte[] result = new byte[length];
+        if (array != null) {
+            System.arraycopy(array, offset, result, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) result[i] = direct.get(offset + i);
+        }
+        return result;
+    }
+
+    private int get(int index) {
+        return (array != null ? array[offset + index] : direct.get(offset + index)) & 0xff;
+    }
+
+    @Override
+    public int compareTo(ByteSlice other) {
+        if (this == other) return 0;
+        int min = Math.min(length, other.length);
+        for (int i = 0; i < min; i++) {
+            int a = get(i), b = other.get(i);
+            if (a != b) return a - b;
+        }
+        return length - other.length;
+    }
+
+    @Override
+    public int hashCode() {
+        if (hashcode == 0) {
+            int h = 1;
+            for (int i = 0; i < length; i++) h = 31 * h + get(i);
+            if (h == 0) h = 1;
+            //Thread-safe since the hash code is an int and computed deterministically
+            hashcode = h;
+        }
+        return hashcode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || !(obj instanceof ByteSlice)) return false;
+        ByteSlice other = (ByteSlice) obj;
+        if (length != other.length || hashCode() != other.hashCode()) return false;
+        for (int i = 0; i < length; i++) {
+            if (get(i) != other.get(i)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            int b = get(i);
+            s.append(Hex.byteToChar[b >> 4]).append(Hex.byteToChar[b & 0x0f]);
+        }
+        return s.toString();
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.thinkaurelius.titan.diskstorage.util;
+
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeyColumnValueStore;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySliceQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.StoreTransaction;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utility methods for implementing {@link KeyColumnValueStore}s.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class KCVSUtil {
+
+    /**
+     * Retrieves the given slice for each of the given keys one key after another. This is the implementation of
+     * {@link KeyColumnValueStore#getSlice(java.util.List, SliceQuery, StoreTransaction)} for stores which cannot read
+     * multiple keys in a single request.
+     *
+     * @param store Store to read from
+     * @param keys  Keys to retrieve the slice for
+     * @param query Slice to retrieve
+     * @param txh   Transaction
+     * @return List of results, one for each key in the order of the given keys
+     * @throws StorageException
+     */
+    public static List<List<Entry>> getSlice(KeyColumnValueStore store, List<ByteBuffer> keys, SliceQuery query,
+                                             StoreTransaction txh) throws StorageException {
+        List<List<Entry>> results = new ArrayList<List<Entry>>(keys.size());
+        for (ByteBuffer key : keys) results.add(store.getSlice(new KeySliceQuery(key, query), txh));
+        return results;
+    }
+
+}
@@ -11,6 +11,8 @@ public class KeyColumn {
 
     private final ByteBuffer key;
     private final ByteBuffer col;
+    private final ByteSlice keySlice;
+    private final ByteSlice colSlice;
     private int cachedHashCode;
 
     public KeyColumn(ByteBuffer key, ByteBuffer col) {
@@ -19,6 +21,10 @@ public class KeyColumn {
 
         assert null != this.key;
         assert null != this.col;
+
+        //Equality and hashing must not depend on the positions of the buffers
+        this.keySlice = ByteSlice.of(key);
+        this.colSlice = ByteSlice.of(col);
     }
 
     public ByteBuffer getKey() {
@@ -37,8 +43,8 @@ public class KeyColumn {
 
         final int prime = 31;
         int result = 1;
-        result = prime * result + col.hashCode();
-        result = prime * result + key.hashCode();
+        result = prime * result + colSlice.hashCode();
+        result = prime * result + keySlice.hashCode();
 
         // This is only thread-safe because cachedHashCode is an int and not a long
         cachedHashCode = result;
@@ -55,7 +61,7 @@ public class KeyColumn {
         if (getClass() != obj.getClass())
             return false;
         KeyColumn other = (KeyColumn) obj;
-        return other.key.equals(key) && other.col.equals(col);
+        return other.keySlice.equals(keySlice) && other.colSlice.equals(colSlice);
     }
 
     @Override
@@ -3,10 +3,12 @@ package com.thinkaurelius.titan.graphdb.configuration;
 import com.google.common.base.Preconditions;
 import com.thinkaurelius.titan.core.AttributeSerializer;
 import com.thinkaurelius.titan.core.DefaultTypeMaker;
+import com.thinkaurelius.titan.core.TitanException;
 import com.thinkaurelius.titan.diskstorage.Backend;
 import com.thinkaurelius.titan.graphdb.blueprints.BlueprintsDefaultTypeMaker;
 import com.thinkaurelius.titan.graphdb.database.idassigner.VertexIDAssigner;
 import com.thinkaurelius.titan.graphdb.database.serialize.Serializer;
+import com.thinkaurelius.titan.graphdb.database.serialize.SerializerInitialization;
 import com.thinkaurelius.titan.graphdb.database.serialize.kryo.KryoSerializer;
 import com.thinkaurelius.titan.graphdb.types.DisableDefaultTypeMaker;
 import org.apache.commons.configuration.BaseConfiguration;
@@ -81,6 +83,38 @@ public class GraphDatabaseConfiguration {
     public static final String STORAGE_BATCH_KEY = "batch-loading";
     public static final boolean STORAGE_BATCH_DEFAULT = false;
 
+    /**
+     * Stores the values of all property keys which are unique in OUT direction and have neither a primary key nor a
+     * signature in a single entry per vertex, so that retrieving the properties of a vertex reads only one column.
+     * Such properties cannot have properties themselves. Modifying them locks the entry, even if locking is disabled
+     * for the transaction. Since it changes the layout of the stored data, this option is
+     * persisted in the storage backend when the graph is created and opening the graph with a different value fails.
+     */
+    public static final String STORAGE_PACKED_PROPERTIES_KEY = "packed-properties";
+    public static final boolean STORAGE_PACKED_PROPERTIES_DEFAULT = false;
+
+    /**
+     * When larger than 0, the standard index additionally stores indexed point values under the prefixes of their
+     * geohash up to the given length, so that geographic WITHIN queries can be answered from the standard index by
+     * retrieving the cells covering the query shape and filtering the candidates. Since it changes the layout of the
+     * stored data, this option is persisted in the storage backend when the graph is created and opening the graph
+     * with a different value fails. The limit of such queries applies to the filtered results, hence the buckets are
+     * retrieved one after another until the limit is reached.
+     */
+    public static final String STORAGE_GEOHASH_PRECISION_KEY = "geohash-precision";
+    public static final int STORAGE_GEOHASH_PRECISION_DEFAULT = 0;
+
+    /**
+     * When larger than 0, maintains a Bloom filter sized for the given number of vertices and unique values, over the
+     * ids of all vertices and the values of all unique keys with a standard vertex index. Vertex existence checks
+     * and lookups of unique values which the filter rules out do not access the storage backend. The filter is
+     * built by scanning the storage backend when the graph is opened, unless a snapshot of it has been saved in the
+     * storage directory when the graph was last shut down, and is updated by the transactions of this graph instance.
+     * Hence, it may only be enabled if no other graph instance modifies the graph.
+     */
+    public static final String STORAGE_LOOKUP_FILTER_SIZE_KEY = "lookup-filter-size";
+    public static final long STORAGE_LOOKUP_FILTER_SIZE_DEFAULT = 0;
+
     /**
      * Enables transactions on storage backends that support them
      */
@@ -117,6 +151,23 @@ public class GraphDatabaseConfiguration {
      */
     public static final String STORAGE_ATTEMPT_WAITTIME_KEY = "attempt-wait";
     public static final int STORAGE_ATTEMPT_WAITTIME_DEFAULT = 250;
+
+    /**
+     * Enables the concurrent execution of independent read operations against the storage backend, such as the
+     * slices of a vertex-centric query that has been split by type or direction. The reads are executed by a
+     * thread pool that is shared by all transactions. The storage backend's transaction handles must support concurrent
+     * reads in order to enable this option.
+     */
+    public static final String PARALLEL_BACKEND_OPS_KEY = "parallel-backend-ops";
+    public static final boolean PARALLEL_BACKEND_OPS_DEFAULT = false;
+
+    /**
+     * Number of threads in the pool used for parallel backend operations. Only applies if {@link #PARALLEL_BACKEND_OPS_KEY}
+     * is enabled. Defaults to twice the number of available processors.
+     */
+    public static final String PARALLEL_BACKEND_THREADS_KEY = "parallel-backend-threads";
+    public static final int PARALLEL_BACKEND_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors() * 2;
+
     /**
      * A unique identifier for the machine running the @TitanGraph@ instance.
      * It must be ensured that no other machine accessing the storage backend can have the same identifier.
@@ -236,6 +287,34 @@ public class GraphDatabaseConfiguration {
     public static final String INDEX_BACKEND_KEY = "backend";
     public static final String INDEX_BACKEND_DEFAULT = "lucene";
 
+    // ################ QUERY #########################
+    // ################################################
+
+    public static final String QUERY_NAMESPACE = "query";
+
+    /**
+     * Maximum total number of element ids in the results of index queries which are cached across transactions.
+     * Cached results are invalidated when a local transaction commits changes to the queried keys.
+     * The cache is disabled if this option is 0.
+     */
+    public static final String QUERY_INDEX_CACHE_SIZE_KEY = "index-cache-size";
+    public static final long QUERY_INDEX_CACHE_SIZE_DEFAULT = 0;
+
+    /**
+     * Time in milliseconds after which cached index query results expire, which bounds the time for which changes
+     * committed by other graph instances are not observed.
+     */
+    public static final String QUERY_INDEX_CACHE_TTL_KEY = "index-cache-ttl";
+    public static final long QUERY_INDEX_CACHE_TTL_DEFAULT = 10000;
+
+    /**
+     * Whether transactions wait on commit until their mutations have been applied to all external indexes, including
+     * those which are updated asynchronously, so that subsequent index queries read their writes. Indexes which make
+     * mutations visible with a periodic refresh may still lag behind.
+     */
+    public static final String QUERY_WAIT_FOR_INDEX_UPDATES_KEY = "wait-for-index-updates";
+    public static final boolean QUERY_WAIT_FOR_INDEX_UPDATES_DEFAULT = false;
+
 
     // ############## Attributes ######################
     // ################################################
@@ -244,6 +323,24 @@ public class GraphDatabaseConfiguration {
 
     public static final String ATTRIBUTE_ALLOW_ALL_SERIALIZABLE_KEY = "allow-all";
     public static final boolean ATTRIBUTE_ALLOW_ALL_SERIALIZABLE_DEFAULT = true;
+
+    /**
+     * Minimum serialized size (in bytes) of the value of a String or byte[] property for it to be stored compressed.
+     * Values below the threshold and values which do not shrink are stored uncompressed. Compression is disabled if
+     * this option is 0.
+     * Enabling compression adds a flag byte to all values of String and byte[] properties, hence this option is
+     * persisted in the storage backend when the graph is created and opening the graph with a different value fails.
+     */
+    public static final String ATTRIBUTE_COMPRESSION_THRESHOLD_KEY = "compression-threshold";
+    public static final int ATTRIBUTE_COMPRESSION_THRESHOLD_DEFAULT = 0;
+
+    /**
+     * Serialization format of the attribute values. This is not a configuration option: the format is persisted in the
+     * storage backend when the graph is created and graphs created before the format was persisted use the legacy format.
+     *
+     * @see com.thinkaurelius.titan.graphdb.database.serialize.SerializerInitialization#LEGACY_FORMAT
+     */
+    public static final String ATTRIBUTE_FORMAT_KEY = "format";
     private static final String ATTRIBUTE_PREFIX = "attribute";
     private static final String SERIALIZER_PREFIX = "serializer";
 
@@ -318,6 +415,32 @@ public class GraphDatabaseConfiguration {
         return batchLoading;
     }
 
+    public boolean hasPackedProperties() {
+        return configuration.subset(STORAGE_NAMESPACE).getBoolean(STORAGE_PACKED_PROPERTIES_KEY, STORAGE_PACKED_PROPERTIES_DEFAULT);
+    }
+
+    public long getLookupFilterSize() {
+        long size = configuration.subset(STORAGE_NAMESPACE).getLong(STORAGE_LOOKUP_FILTER_SIZE_KEY, STORAGE_LOOKUP_FILTER_SIZE_DEFAULT);
+        Preconditions.checkArgument(size>=0,"Invalid lookup filter size: %s",size);
+        return size;
+    }
+
+    public long getIndexQueryCacheSize() {
+        long size = configuration.subset(QUERY_NAMESPACE).getLong(QUERY_INDEX_CACHE_SIZE_KEY, QUERY_INDEX_CACHE_SIZE_DEFAULT);
+        Preconditions.checkArgument(size >= 0, "Index query cache size must not be negative");
+        return size;
+    }
+
+    public long getIndexQueryCacheTTL() {
+        long ttl = configuration.subset(QUERY_NAMESPACE).getLong(QUERY_INDEX_CACHE_TTL_KEY, QUERY_INDEX_CACHE_TTL_DEFAULT);
+        Preconditions.checkArgument(ttl > 0, "Index query cache time to live must be positive");
+        return ttl;
+    }
+
+    public boolean hasWaitForIndexUpdates() {
+        return configuration.subset(QUERY_NAMESPACE).getBoolean(QUERY_WAIT_FOR_INDEX_UPDATES_KEY, QUERY_WAIT_FOR_INDEX_UPDATES_DEFAULT);
+    }
+
     public DefaultTypeMaker getDefaultTypeMaker() {
         return defaultTypeMaker;
     }
@@ -408,15 +531,60 @@ public class GraphDatabaseConfiguration {
         return backend;
     }
 
-    public Serializer getSerializer() {
+    /**
+     * Returns the serializer for the attribute values of the graph, which uses the serialization format the graph has
+     * been created with.
+     *
+     * @param backend Initialized backend of the graph
+     * @return Serializer for the attribute values
+     */
+    public Serializer getSerializer(Backend backend) {
         Configuration config = configuration.subset(ATTRIBUTE_NAMESPACE);
-        Serializer serializer = new KryoSerializer(config.getBoolean(ATTRIBUTE_ALLOW_ALL_SERIALIZABLE_KEY, ATTRIBUTE_ALLOW_ALL_SERIALIZABLE_DEFAULT));
+        String format = backend.getStorageSetting(keyInNamespace(ATTRIBUTE_NAMESPACE, ATTRIBUTE_FORMAT_KEY),
+                String.valueOf(SerializerInitialization.CURRENT_FORMAT), String.valueOf(SerializerInitialization.LEGACY_FORMAT));
+        int version;
+        try {
+            version = Integer.parseInt(format);
+        } catch (NumberFormatException e) {
+            throw new TitanException("Invalid serialization format in storage backend: " + format);
+        }
+        if (version > SerializerInitialization.CURRENT_FORMAT)
+            throw new TitanException("Graph uses serialization format " + version + " which is not supported by Titan version: " + TitanConstants.VERSION);
+        Serializer serializer = new KryoSerializer(config.getBoolean(ATTRIBUTE_ALLOW_ALL_SERIALIZABLE_KEY, ATTRIBUTE_ALLOW_ALL_SERIALIZABLE_DEFAULT), version);
         for (RegisteredAttributeClass<?> clazz : getRegisteredAttributeClasses(config)) {
             clazz.registerWith(serializer);
         }
         return serializer;
     }
 
+    public int getCompressionThreshold() {
+        int threshold = configuration.subset(ATTRIBUTE_NAMESPACE).getInt(ATTRIBUTE_COMPRESSION_THRESHOLD_KEY, ATTRIBUTE_COMPRESSION_THRESHOLD_DEFAULT);
+        Preconditions.checkArgument(threshold >= 0, "Compression threshold must be non-negative");
+        return threshold;
+    }
+
+    private static String getCompressionState(int threshold) {
+        return threshold > 0 ? "enabled" : "disabled";
+    }
+
+    /**
+     * Verifies that the options which determine the layout of the stored data have the values the graph has been
+     * created with.
+     *
+     * @param backend Initialized backend of the graph
+     * @throws com.thinkaurelius.titan.core.TitanException if any of those options has been changed
+     */
+    public void verifyStorageSettings(Backend backend) {
+        //Compressed values are flagged individually, hence only disabling or enabling compression changes the layout
+        backend.verifyStorageSetting(keyInNamespace(ATTRIBUTE_NAMESPACE, ATTRIBUTE_COMPRESSION_THRESHOLD_KEY),
+                getCompressionState(getCompressionThreshold()), getCompressionState(ATTRIBUTE_COMPRESSION_THRESHOLD_DEFAULT));
+        backend.verifyStorageSetting(keyInNamespace(STORAGE_NAMESPACE, STORAGE_PACKED_PROPERTIES_KEY),
+                hasPackedProperties(), STORAGE_PACKED_PROPERTIES_DEFAULT);
+        backend.verifyStorageSetting(keyInNamespace(STORAGE_NAMESPACE, STORAGE_GEOHASH_PRECISION_KEY),
+                configuration.subset(STORAGE_NAMESPACE).getInt(STORAGE_GEOHASH_PRECISION_KEY, STORAGE_GEOHASH_PRECISION_DEFAULT),
+                STORAGE_GEOHASH_PRECISION_DEFAULT);
+    }
+
     public boolean hasSerializeAll() {
         return configuration.subset(ATTRIBUTE_NAMESPACE).getBoolean(ATTRIBUTE_ALLOW_ALL_SERIALIZABLE_KEY, ATTRIBUTE_ALLOW_ALL_SERIALIZABLE_DEFAULT);
     }
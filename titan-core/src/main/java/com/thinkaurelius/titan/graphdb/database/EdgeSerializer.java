@@ -1,5 +1,6 @@
 package com.thinkaurelius.titan.graphdb.database;
 
+import cern.colt.list.LongArrayList;
 import com.carrotsearch.hppc.LongOpenHashSet;
 import com.carrotsearch.hppc.LongSet;
 import com.google.common.base.Preconditions;
@@ -7,9 +8,11 @@ import com.google.common.collect.Multimap;
 import com.thinkaurelius.titan.core.*;
 import com.thinkaurelius.titan.core.attribute.Cmp;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
 import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
 import com.thinkaurelius.titan.graphdb.database.idhandling.IDHandler;
 import com.thinkaurelius.titan.graphdb.database.idhandling.VariableLong;
+import com.thinkaurelius.titan.graphdb.database.serialize.CompressedValue;
 import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
 import com.thinkaurelius.titan.graphdb.database.serialize.Serializer;
 import com.thinkaurelius.titan.graphdb.idmanagement.IDManager;
@@ -23,14 +26,22 @@ import com.thinkaurelius.titan.graphdb.relations.CacheEdge;
 import com.thinkaurelius.titan.graphdb.relations.CacheProperty;
 import com.thinkaurelius.titan.graphdb.relations.EdgeDirection;
 import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
+import com.thinkaurelius.titan.graphdb.types.EdgeLabelDefinition;
 import com.thinkaurelius.titan.graphdb.types.TypeDefinition;
+import com.thinkaurelius.titan.graphdb.types.system.SystemKey;
+import com.thinkaurelius.titan.graphdb.types.system.SystemType;
 import com.thinkaurelius.titan.util.datastructures.ImmutableLongObjectMap;
 import com.tinkerpop.blueprints.Direction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * (c) Matthias Broecheler (me@matthiasb.com)
@@ -44,41 +55,59 @@ public class EdgeSerializer {
     private static final int DEFAULT_PRIMARY_CAPACITY = 60;
     private static final int DEFAULT_VALUE_CAPACITY = 128;
 
-    private static final long DIRECTION_ID = -101;
-    private static final long TYPE_ID = -102;
-    private static final long VALUE_ID = -103;
-    private static final long OTHER_VERTEX_ID = -104;
-    private static final long RELATION_ID = -105;
+    private static final ImmutableLongObjectMap NO_PROPERTIES = new ImmutableLongObjectMap.Builder().build();
 
     private final Serializer serializer;
     private final IDManager idManager;
+    private final int compressionThreshold;
+    private final boolean packProperties;
+    private final ByteBuffer packedColumn;
 
     public EdgeSerializer(Serializer serializer, IDManager idManager) {
+        this(serializer, idManager, 0, false);
+    }
+
+    /**
+     * @param compressionThreshold Minimum serialized size of String and byte[] property values to be compressed,
+     *                             or 0 to disable compression
+     * @param packProperties       Whether to pack the properties of a vertex into a single entry
+     * @see com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration#ATTRIBUTE_COMPRESSION_THRESHOLD_KEY
+     * @see com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration#STORAGE_PACKED_PROPERTIES_KEY
+     */
+    public EdgeSerializer(Serializer serializer, IDManager idManager, int compressionThreshold, boolean packProperties) {
+        Preconditions.checkArgument(compressionThreshold >= 0);
         this.serializer = serializer;
         this.idManager = idManager;
+        this.compressionThreshold = compressionThreshold;
+        this.packProperties = packProperties;
+        this.packedColumn = IDHandler.getEdgeType(SystemKey.PackedProperties.getID(), 0, idManager);
+    }
+
+    /**
+     * Returns a new decoder for edge store entries. Decoders are meant to be reused for all entries of a scan.
+     *
+     * @return new decoder
+     * @see RelationDecoder
+     */
+    public RelationDecoder newDecoder() {
+        return new RelationDecoder(serializer, idManager, compressionThreshold > 0);
     }
 
     public InternalRelation readRelation(InternalVertex vertex, Entry data) {
-        ImmutableLongObjectMap map;
+        return readRelation(vertex, data, newDecoder());
+    }
+
+    public InternalRelation readRelation(InternalVertex vertex, Entry data, RelationDecoder decoder) {
         StandardTitanTx tx = vertex.tx();
-        if (data.getCache()==null) {
-            synchronized (data) {
-                if (data.getCache()==null) {
-                    map = parseProperties(vertex.getID(),data,true,tx);
-                } else map = data.getCache();
-            }
-        } else map = data.getCache();
-        Direction dir = (Direction) map.get(DIRECTION_ID);
-        long typeid = (Long)map.get(TYPE_ID);
-        TitanType type = tx.getExistingType(typeid);
-        long relationId = (Long)map.get(RELATION_ID);
+        decoder.reset(vertex.getID(),data,tx);
+        Direction dir = decoder.getDirection();
+        TitanType type = decoder.getType();
+        long relationId = decoder.getRelationId();
         if (type.isPropertyKey()) {
             Preconditions.checkArgument(dir==Direction.OUT);
-            Object value = map.get(VALUE_ID);
-            return new CacheProperty(relationId,(TitanKey)type,vertex,value,data);
+            return new CacheProperty(relationId,(TitanKey)type,vertex,decoder.getLazyValue(),data);
         } else if (type.isEdgeLabel()) {
-            long otherid = (Long)map.get(OTHER_VERTEX_ID);
-            InternalVertex otherv = tx.getExistingVertex(otherid);
+            InternalVertex otherv = tx.getExistingVertex(decoder.getOtherVertexId());
             if (dir==Direction.IN) {
                 return new CacheEdge(relationId,(TitanLabel)type,otherv,vertex,(byte)1,data);
             } else if (dir==Direction.OUT) {
@@ -88,26 +117,22 @@ public class EdgeSerializer {
     }
 
     public void readRelation(RelationFactory factory, Entry data, StandardTitanTx tx) {
-        ImmutableLongObjectMap map = parseProperties(factory.getVertexID(),data,false,tx);
+        RelationDecoder decoder = newDecoder().reset(factory.getVertexID(),data,tx);
 
-        factory.setDirection((Direction) map.get(DIRECTION_ID));
-        long typeid = (Long)map.get(TYPE_ID);
-        TitanType type = tx.getExistingType(typeid);
+        factory.setDirection(decoder.getDirection());
+        TitanType type = decoder.getType();
         factory.setType(type);
-        factory.setRelationID((Long) map.get(RELATION_ID));
+        factory.setRelationID(decoder.getRelationId());
         if (type.isPropertyKey()) {
-            factory.setValue(map.get(VALUE_ID));
+            factory.setValue(decoder.getValue());
         } else if (type.isEdgeLabel()) {
-            factory.setOtherVertexID((Long)map.get(OTHER_VERTEX_ID));
+            factory.setOtherVertexID(decoder.getOtherVertexId());
         } else throw new AssertionError();
         //Add properties
+        ImmutableLongObjectMap map = decoder.getProperties();
         for (int i=0;i<map.size();i++) {
-            long propTypeId = map.getKey(i);
-            if (propTypeId>0) {
-                TitanType pt = tx.getExistingType(propTypeId);
-                if (map.getValue(i)!=null) {
-                    factory.addProperty(pt,map.getValue(i));
-                }
+            if (map.getValue(i)!=null) {
+                factory.addProperty(tx.getExistingType(map.getKey(i)),map.getValue(i));
             }
         }
     }
@@ -116,7 +141,10 @@ public class EdgeSerializer {
         if (data.getCache()==null) {
             synchronized (data) {
                 if (data.getCache()==null) {
-                    ImmutableLongObjectMap props = parseProperties(vertex.getID(),data,false,tx);
+                    RelationDecoder decoder = newDecoder().reset(vertex.getID(),data,tx);
+                    //Packed properties and compact edges do not have properties
+                    ImmutableLongObjectMap props = (isPackedEntry(decoder) || isCompactEntry(decoder))?
+                            NO_PROPERTIES:decoder.getProperties();
                     data.setCache(props);
                     return props;
                 } else return data.getCache();
@@ -124,93 +152,53 @@ public class EdgeSerializer {
         } else return data.getCache();
     }
 
-    private ImmutableLongObjectMap parseProperties(long vertexid, Entry data, boolean parseHeaderOnly, StandardTitanTx tx) {
-        Preconditions.checkArgument(vertexid>0);
-        ImmutableLongObjectMap.Builder builder = new ImmutableLongObjectMap.Builder();
-
-        ByteBuffer column = data.getColumn().duplicate();
-        ByteBuffer value = data.getValue().duplicate();
-
-        int dirID = IDHandler.getDirectionID(column.get(column.position()));
-        Direction dir=null;
-        RelationType rtype=null;
-        switch(dirID) {
-            case 0: dir=Direction.OUT; rtype=RelationType.PROPERTY; break;
-            case 2: dir=Direction.OUT; rtype=RelationType.EDGE; break;
-            case 3: dir=Direction.IN; rtype=RelationType.EDGE; break;
-            default: throw new IllegalArgumentException("Invalid dirID read from disk: " + dirID);
-        }
-        builder.put(DIRECTION_ID,dir);
-        long typeId = IDHandler.readEdgeType(column, idManager);
-        builder.put(TYPE_ID,typeId);
-        TitanType titanType = tx.getExistingType(typeId);
-
-        TypeDefinition def = ((InternalType) titanType).getDefinition();
-        long[] keysig = def.getPrimaryKey();
-        if (keysig.length>0) {
-            for (int i = 0; i < keysig.length; i++) {
-                TitanType keyType = tx.getExistingType(keysig[i]);
-                builder.put(keyType.getID(),readInline(column, keyType));
-            }
-        }
+    static final boolean hasGenericDataType(TitanKey key) {
+        return key.getDataType().equals(Object.class);
+    }
 
-        ByteBuffer reader = column;
-        if (titanType.isUnique(dir)) {
-            reader = value;
-        }
+    /**
+     * Whether values of the given key are preceded by a compression flag if compression is enabled. System types are
+     * excluded so that the schema can be read regardless of the compression setting.
+     */
+    static final boolean hasCompressibleDataType(TitanKey key) {
+        return !(key instanceof SystemType) &&
+                (key.getDataType().equals(String.class) || key.getDataType().equals(byte[].class));
+    }
 
-        if (rtype==RelationType.EDGE) {
-            Preconditions.checkArgument(titanType.isEdgeLabel());
-            long vertexIdDiff = VariableLong.read(reader);
-            builder.put(OTHER_VERTEX_ID,vertexid+vertexIdDiff);
+    private void writeValue(DataOutput writer, TitanKey key, Object value) {
+        if (hasGenericDataType(key)) {
+            writer.writeClassAndObject(value);
+        } else if (compressionThreshold > 0 && hasCompressibleDataType(key)) {
+            writeCompressible(writer, value);
         } else {
-            Preconditions.checkArgument(titanType.isPropertyKey());
-            TitanKey key = ((TitanKey) titanType);
-            Object attribute = null;
-
-            if (hasGenericDataType(key)) {
-                attribute = serializer.readClassAndObject(reader);
-            } else {
-                attribute = serializer.readObjectNotNull(reader, key.getDataType());
-            }
-            Preconditions.checkNotNull(attribute);
-            builder.put(VALUE_ID,attribute);
-        }
-        long relationId = VariableLong.readPositive(reader);
-        Preconditions.checkArgument(relationId>0);
-        builder.put(RELATION_ID,relationId);
-
-        if (!parseHeaderOnly) {
-            //value signature
-            for (long typeID : def.getSignature())
-                builder.put(typeID,readInline(value,tx.getExistingType(typeID)));
-
-            //Third: read rest
-            while (value.hasRemaining()) {
-                TitanType type = tx.getExistingType(IDHandler.readInlineEdgeType(value, idManager));
-                builder.put(type.getID(), readInline(value, type));
-            }
+            writer.writeObjectNotNull(value);
         }
-
-        return builder.build();
     }
 
-    private Object readInline(ByteBuffer read, TitanType type) {
-        if (type.isPropertyKey()) {
-            TitanKey proptype = ((TitanKey) type);
-            if (hasGenericDataType(proptype))
-                return serializer.readClassAndObject(read);
-            else return serializer.readObject(read, proptype.getDataType());
-        } else {
-            assert type.isEdgeLabel();
-            Long id = Long.valueOf(VariableLong.readPositive(read));
-            if (id.longValue() == 0) return null;
-            else return id;
+    private void writeCompressible(DataOutput writer, Object value) {
+        //Values which are certainly smaller than the threshold are not serialized twice
+        int maxLength;
+        if (value instanceof String) maxLength = ((String) value).length() * 3 + 5;
+        else maxLength = ((byte[]) value).length + 5;
+        if (maxLength < compressionThreshold) {
+            writer.putByte(CompressedValue.UNCOMPRESSED);
+            writer.writeObjectNotNull(value);
+            return;
         }
-    }
 
-    private static final boolean hasGenericDataType(TitanKey key) {
-        return key.getDataType().equals(Object.class);
+        DataOutput out = serializer.getDataOutput(DEFAULT_VALUE_CAPACITY, true);
+        out.writeObjectNotNull(value);
+        byte[] bytes = ByteBufferUtil.getArray(out.getByteBuffer());
+        byte[] compressed = bytes.length >= compressionThreshold ? CompressedValue.deflate(bytes) : null;
+        if (compressed == null) {
+            writer.putByte(CompressedValue.UNCOMPRESSED);
+            writer.putBytes(bytes);
+        } else {
+            writer.putByte(CompressedValue.DEFLATE);
+            VariableLong.writePositive(writer, bytes.length);
+            VariableLong.writePositive(writer, compressed.length);
+            writer.putBytes(compressed);
+        }
     }
 
 
@@ -267,11 +255,7 @@ public class EdgeSerializer {
             Preconditions.checkNotNull(value);
             TitanKey key = (TitanKey)type;
             assert key.getDataType().isInstance(value);
-            if (hasGenericDataType(key)) {
-                writer.writeClassAndObject(value);
-            } else {
-                writer.writeObjectNotNull(value);
-            }
+            writeValue(writer, key, value);
         }
         VariableLong.writePositive(writer, relation.getID());
 
@@ -350,6 +334,479 @@ public class EdgeSerializer {
         return ids[0];
     }
 
+    // ################### PACKED PROPERTIES ######################
+
+    /*
+     * If packed properties are enabled, the properties of packable keys are stored in a single entry per vertex of
+     * the system key PackedProperties. Its value is a byte array which consists of an offset table, i.e. the number
+     * of properties followed by the type id and offset of each property, followed by the relation id and value of each
+     * property. Packable keys are the user defined property keys that are unique in OUT direction and have neither a
+     * primary key nor a signature.
+     */
+
+    public boolean hasPackedProperties() {
+        return packProperties;
+    }
+
+    /**
+     * @return The column of the entry holding the packed properties of a vertex
+     */
+    public ByteBuffer getPackedColumn() {
+        return packedColumn.duplicate();
+    }
+
+    /**
+     * @return Whether the properties of the given type are stored in the packed properties entry
+     */
+    public boolean isPackable(TitanType type) {
+        if (!packProperties || !type.isPropertyKey() || (type instanceof SystemType) || !type.isUnique(Direction.OUT))
+            return false;
+        TypeDefinition def = ((InternalType) type).getDefinition();
+        return def.getPrimaryKey().length == 0 && def.getSignature().length == 0;
+    }
+
+    /**
+     * @return Whether the given relation is stored in the packed properties entry of its vertex
+     */
+    public boolean isPacked(InternalRelation relation) {
+        return relation.isProperty() && isPackable(relation.getType());
+    }
+
+    /**
+     * @return Whether the decoder is positioned on the packed properties entry of a vertex
+     */
+    public boolean isPackedEntry(RelationDecoder decoder) {
+        return packProperties && decoder.getTypeId() == SystemKey.PackedProperties.getID();
+    }
+
+    /**
+     * Reads the properties stored in the given packed properties entry. Only the offset table and the properties
+     * being returned are decoded.
+     *
+     * @param vertex  Vertex the entry belongs to
+     * @param data    Packed properties entry
+     * @param decoder Decoder to use for reading the entry
+     * @param key     If not null, only the property of this key is returned
+     * @return The packed properties
+     */
+    public List<InternalRelation> readPackedProperties(InternalVertex vertex, Entry data, RelationDecoder decoder, TitanKey key) {
+        StandardTitanTx tx = vertex.tx();
+        decoder.reset(vertex.getID(), data, tx);
+        Preconditions.checkArgument(isPackedEntry(decoder), "Not a packed properties entry");
+        byte[] packed = (byte[]) decoder.getValue();
+        ByteBuffer table = ByteBuffer.wrap(packed);
+        int size = (int) VariableLong.readPositive(table);
+        List<InternalRelation> result = new ArrayList<InternalRelation>(key == null ? size : 1);
+        long[] typeids = new long[size];
+        int[] offsets = new int[size];
+        for (int i = 0; i < size; i++) {
+            typeids[i] = VariableLong.readPositive(table);
+            offsets[i] = table.getInt();
+        }
+        int start = table.position();
+        for (int i = 0; i < size; i++) {
+            if (key != null && typeids[i] != key.getID()) continue;
+            ByteBuffer reader = ByteBuffer.wrap(packed, start + offsets[i], packed.length - start - offsets[i]);
+            long relationId = VariableLong.readPositive(reader);
+            TitanKey type = (TitanKey) tx.getExistingType(typeids[i]);
+            result.add(new CacheProperty(relationId, type, vertex, decoder.readValue(reader, type), data));
+        }
+        return result;
+    }
+
+    /**
+     * Computes the packed properties entry of the given vertex after applying the given mutations of packed properties.
+     * Properties in the current entry are copied without decoding them.
+     *
+     * @param vertex    Vertex whose packed properties are modified
+     * @param current   Current packed properties entry of the vertex or null if the vertex has none
+     * @param mutations Added and removed packed properties of the vertex
+     * @param tx        Transaction
+     * @return The new packed properties entry or null if the vertex has no packed properties left
+     */
+    public Entry writePackedProperties(InternalVertex vertex, Entry current, List<InternalRelation> mutations, StandardTitanTx tx) {
+        SortedMap<Long, ByteBuffer> properties = new TreeMap<Long, ByteBuffer>();
+        if (current != null) {
+            RelationDecoder decoder = newDecoder().reset(vertex.getID(), current, tx);
+            Preconditions.checkArgument(isPackedEntry(decoder), "Not a packed properties entry");
+            byte[] packed = (byte[]) decoder.getValue();
+            ByteBuffer table = ByteBuffer.wrap(packed);
+            int size = (int) VariableLong.readPositive(table);
+            long[] typeids = new long[size];
+            int[] offsets = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                typeids[i] = VariableLong.readPositive(table);
+                offsets[i] = table.getInt();
+            }
+            int start = table.position();
+            offsets[size] = packed.length - start;
+            for (int i = 0; i < size; i++) {
+                properties.put(typeids[i], ByteBuffer.wrap(packed, start + offsets[i], offsets[i + 1] - offsets[i]).slice());
+            }
+        }
+        for (InternalRelation relation : mutations) {
+            if (!relation.isRemoved()) continue;
+            ByteBuffer property = properties.get(relation.getType().getID());
+            if (property != null && VariableLong.readPositive(property.duplicate()) == relation.getID())
+                properties.remove(relation.getType().getID());
+        }
+        for (InternalRelation relation : mutations) {
+            if (relation.isRemoved()) continue;
+            Preconditions.checkArgument(!relation.getPropertyKeysDirect().iterator().hasNext(),
+                    "Packed properties cannot have properties: %s", relation);
+            DataOutput out = serializer.getDataOutput(DEFAULT_VALUE_CAPACITY, true);
+            VariableLong.writePositive(out, relation.getID());
+            writeValue(out, (TitanKey) relation.getType(), ((TitanProperty) relation).getValue());
+            properties.put(relation.getType().getID(), out.getByteBuffer());
+        }
+        if (properties.isEmpty()) return null;
+
+        DataOutput out = serializer.getDataOutput(DEFAULT_VALUE_CAPACITY, true);
+        VariableLong.writePositive(out, properties.size());
+        int offset = 0;
+        for (Map.Entry<Long, ByteBuffer> property : properties.entrySet()) {
+            VariableLong.writePositive(out, property.getKey());
+            out.putInt(offset);
+            offset += property.getValue().remaining();
+        }
+        for (ByteBuffer property : properties.values()) out.putBytes(ByteBufferUtil.getArray(property));
+
+        DataOutput value = serializer.getDataOutput(offset + 16, true);
+        value.writeObjectNotNull(ByteBufferUtil.getArray(out.getByteBuffer()));
+        //The packed properties entry uses the vertex id as its relation id
+        VariableLong.writePositive(value, vertex.getID());
+        return new Entry(getPackedColumn(), value.getByteBuffer());
+    }
+
+    /**
+     * Whether the result of the given query may contain entries which hold multiple relations, i.e. packed properties
+     * or compact blocks, and hence need to be unpacked. Queries which are not restricted to specific types are assumed
+     * to contain compact blocks, since compact labels may be created by other graph instances at any time, and the
+     * blocks are detected per entry.
+     */
+    public boolean hasPackedEntries(VertexCentricQuery query) {
+        if (query.hasType()) {
+            for (TitanType type : query.getTypes()) {
+                if (isPackable(type) || (query.getDirection() != Direction.IN && isCompact(type))) return true;
+            }
+            return false;
+        } else return (packProperties && query.getReturnType() != RelationType.EDGE)
+                || (query.getDirection() != Direction.IN && query.getReturnType() != RelationType.PROPERTY);
+    }
+
+    // ################### COMPACT ADJACENCY ######################
+
+    /*
+     * The out-edges of a compact label are stored in blocks. Each block is an entry whose column is the type prefix
+     * followed by the id of the first neighbor in the block. The value holds the number of edges in the block followed
+     * by the delta-encoded neighbor id and the relation id of each edge, sorted by neighbor id. All neighbor ids in a
+     * block are smaller than the first neighbor id of the next block so that the block of an edge is determined by its
+     * neighbor id, i.e. the block columns serve as restart points when slicing.
+     */
+
+    /**
+     * Targeted number of edges per block. Blocks are split once they hold twice as many edges.
+     */
+    public static final int COMPACT_BLOCK_SIZE = 128;
+
+    /**
+     * @return Whether the out-edges of the given type are stored in compact blocks
+     * @see com.thinkaurelius.titan.core.TypeMaker#compact()
+     */
+    public static boolean isCompact(TitanType type) {
+        return type.isEdgeLabel() && !(type instanceof SystemType)
+                && ((EdgeLabelDefinition) ((InternalType) type).getDefinition()).isCompact();
+    }
+
+    /**
+     * @return Whether the given relation is stored in a compact block for the vertex at the given position
+     */
+    public boolean isCompact(InternalRelation relation, int pos) {
+        return pos == 0 && relation.isEdge() && isCompact(relation.getType());
+    }
+
+    /**
+     * @return Whether the decoder is positioned on a compact block of out-edges
+     */
+    public boolean isCompactEntry(RelationDecoder decoder) {
+        return decoder.isEdge() && decoder.getDirection() == Direction.OUT && isCompact(decoder.getType());
+    }
+
+    /**
+     * @return The slice containing all compact blocks of the given label
+     */
+    public SliceQuery getCompactQuery(TitanLabel label) {
+        Preconditions.checkArgument(isCompact(label), "Not a compact label: %s", label);
+        ByteBuffer start = IDHandler.getEdgeType(label.getID(), getDirID(Direction.OUT, RelationType.EDGE), idManager);
+        return new SliceQuery(start, FittedSliceQuery.pointRange(start));
+    }
+
+    /**
+     * Decodes the neighbor and relation ids of the given compact block.
+     *
+     * @param data        Compact block
+     * @param otherIds    Ids of the neighbor vertices are added to this list
+     * @param relationIds Ids of the edges are added to this list
+     */
+    public void readCompactBlock(Entry data, LongArrayList otherIds, LongArrayList relationIds) {
+        ByteBuffer column = data.getColumn().duplicate();
+        IDHandler.readEdgeType(column, idManager);
+        long otherId = column.getLong();
+        ByteBuffer value = data.getValue().duplicate();
+        int size = (int) VariableLong.readPositive(value);
+        for (int i = 0; i < size; i++) {
+            otherId += VariableLong.readPositive(value);
+            otherIds.add(otherId);
+            relationIds.add(VariableLong.readPositive(value));
+        }
+    }
+
+    /**
+     * Reads the edges stored in the given compact block.
+     *
+     * @param vertex  Vertex the block belongs to
+     * @param data    Compact block
+     * @param decoder Decoder to use for reading the entry
+     * @return The edges in the block
+     */
+    public List<InternalRelation> readCompactEdges(InternalVertex vertex, Entry data, RelationDecoder decoder) {
+        StandardTitanTx tx = vertex.tx();
+        decoder.reset(vertex.getID(), data, tx);
+        Preconditions.checkArgument(isCompactEntry(decoder), "Not a compact block");
+        TitanLabel label = (TitanLabel) decoder.getType();
+        LongArrayList otherIds = new LongArrayList(COMPACT_BLOCK_SIZE);
+        LongArrayList relationIds = new LongArrayList(COMPACT_BLOCK_SIZE);
+        readCompactBlock(data, otherIds, relationIds);
+        List<InternalRelation> result = new ArrayList<InternalRelation>(otherIds.size());
+        for (int i = 0; i < otherIds.size(); i++) {
+            result.add(new CacheEdge(relationIds.get(i), label, vertex, tx.getExistingVertex(otherIds.get(i)), (byte) 0, data));
+        }
+        return result;
+    }
+
+    /**
+     * Computes the changes to the compact blocks of a vertex and label for the given added and removed edges.
+     * Only the blocks containing a mutated edge are rewritten.
+     *
+     * @param vertex    Vertex whose out-edges are modified
+     * @param label     Compact label of the edges
+     * @param current   Current blocks of the vertex and label as retrieved by {@link #getCompactQuery(TitanLabel)}
+     * @param mutations Added and removed edges of the label with the vertex as out-vertex
+     * @return The changes to the blocks
+     */
+    public CompactUpdate writeCompactEdges(InternalVertex vertex, TitanLabel label, List<Entry> current,
+                                           Collection<InternalRelation> mutations) {
+        Preconditions.checkArgument(isCompact(label), "Not a compact label: %s", label);
+        List<CompactBlock> blocks = new ArrayList<CompactBlock>(current.size() + 1);
+        for (Entry entry : current) {
+            CompactBlock block = new CompactBlock(entry);
+            readCompactBlock(entry, block.otherIds, block.relationIds);
+            blocks.add(block);
+        }
+        for (InternalRelation edge : mutations) {
+            Preconditions.checkArgument(edge.getVertex(0).equals(vertex) && edge.getType().equals(label));
+            if (!edge.isRemoved()) continue;
+            long otherId = edge.getVertex(1).getID();
+            int pos = findCompactBlock(blocks, otherId);
+            if (pos < 0) continue;
+            CompactBlock block = blocks.get(pos);
+            for (int i = 0; i < block.size(); i++) {
+                if (block.relationIds.get(i) == edge.getID()) {
+                    Preconditions.checkArgument(block.otherIds.get(i) == otherId);
+                    block.otherIds.remove(i);
+                    block.relationIds.remove(i);
+                    block.modified = true;
+                    break;
+                }
+            }
+        }
+        for (InternalRelation edge : mutations) {
+            if (edge.isRemoved()) continue;
+            Preconditions.checkArgument(!edge.getPropertyKeysDirect().iterator().hasNext(),
+                    "Edges of a compact label cannot have properties: %s", edge);
+            long otherId = edge.getVertex(1).getID();
+            int pos = findCompactBlock(blocks, otherId);
+            if (pos < 0) {
+                if (blocks.isEmpty()) blocks.add(new CompactBlock(null));
+                pos = 0;
+            }
+            CompactBlock block = blocks.get(pos);
+            int i = 0;
+            while (i < block.size() && (block.otherIds.get(i) < otherId ||
+                    (block.otherIds.get(i) == otherId && block.relationIds.get(i) < edge.getID()))) i++;
+            block.otherIds.beforeInsert(i, otherId);
+            block.relationIds.beforeInsert(i, edge.getID());
+            block.modified = true;
+        }
+
+        CompactUpdate update = new CompactUpdate();
+        for (CompactBlock block : blocks) {
+            if (!block.modified) continue;
+            ByteBuffer oldColumn = block.entry == null ? null : block.entry.getColumn();
+            boolean overwritten = false;
+            int start = 0;
+            while (start < block.size()) {
+                int end = block.size();
+                if (end - start >= 2 * COMPACT_BLOCK_SIZE) {
+                    //Split, but never between edges to the same neighbor
+                    end = start + COMPACT_BLOCK_SIZE;
+                    while (end < block.size() && block.otherIds.get(end) == block.otherIds.get(end - 1)) end++;
+                }
+                Entry entry = writeCompactBlock(label, block, start, end);
+                if (oldColumn != null && entry.getColumn().equals(oldColumn)) overwritten = true;
+                else update.lockColumns.add(entry.getColumn());
+                update.additions.add(entry);
+                start = end;
+            }
+            if (oldColumn != null) {
+                if (!overwritten) update.deletions.add(oldColumn);
+                update.replaced.add(block.entry);
+            }
+        }
+        return update;
+    }
+
+    private Entry writeCompactBlock(TitanLabel label, CompactBlock block, int start, int end) {
+        DataOutput column = serializer.getDataOutput(DEFAULT_PRIMARY_CAPACITY, true);
+        IDHandler.writeEdgeType(column, label.getID(), getDirID(Direction.OUT, RelationType.EDGE), idManager);
+        long previous = block.otherIds.get(start);
+        column.putLong(previous);
+        DataOutput value = serializer.getDataOutput(DEFAULT_VALUE_CAPACITY + (end - start) * 8, true);
+        VariableLong.writePositive(value, end - start);
+        for (int i = start; i < end; i++) {
+            VariableLong.writePositive(value, block.otherIds.get(i) - previous);
+            VariableLong.writePositive(value, block.relationIds.get(i));
+            previous = block.otherIds.get(i);
+        }
+        return new Entry(column.getByteBuffer(), value.getByteBuffer());
+    }
+
+    /**
+     * @return Position of the last block whose first neighbor id is smaller or equal to the given id, or -1 if
+     *         there is none
+     */
+    private static int findCompactBlock(List<CompactBlock> blocks, long otherId) {
+        int pos = -1;
+        for (int i = 0; i < blocks.size(); i++) {
+            CompactBlock block = blocks.get(i);
+            if (block.entry != null && block.firstId > otherId) break;
+            pos = i;
+        }
+        return pos;
+    }
+
+    private static class CompactBlock {
+
+        private final Entry entry;
+        private final long firstId;
+        private final LongArrayList otherIds = new LongArrayList(COMPACT_BLOCK_SIZE);
+        private final LongArrayList relationIds = new LongArrayList(COMPACT_BLOCK_SIZE);
+        private boolean modified = false;
+
+        private CompactBlock(Entry entry) {
+            this.entry = entry;
+            this.firstId = entry == null ? 0 : entry.getColumn().getLong(entry.getColumn().limit() - 8);
+        }
+
+        private int size() {
+            return otherIds.size();
+        }
+
+    }
+
+    /**
+     * Changes to the compact blocks of a vertex and label.
+     *
+     * @see #writeCompactEdges(InternalVertex, TitanLabel, List, Collection)
+     */
+    public static class CompactUpdate {
+
+        private final List<Entry> additions = new ArrayList<Entry>(2);
+        private final List<ByteBuffer> deletions = new ArrayList<ByteBuffer>(2);
+        private final List<Entry> replaced = new ArrayList<Entry>(2);
+        private final List<ByteBuffer> lockColumns = new ArrayList<ByteBuffer>(2);
+
+        /**
+         * @return The blocks to be written
+         */
+        public List<Entry> getAdditions() {
+            return additions;
+        }
+
+        /**
+         * @return The columns of the blocks to be deleted
+         */
+        public List<ByteBuffer> getDeletions() {
+            return deletions;
+        }
+
+        /**
+         * @return The current blocks which are rewritten or deleted. These must be locked with their current value.
+         */
+        public List<Entry> getReplaced() {
+            return replaced;
+        }
+
+        /**
+         * @return The columns of blocks which did not exist before. These must be locked with an expected value of null.
+         */
+        public List<ByteBuffer> getNewColumns() {
+            return lockColumns;
+        }
+
+    }
+
+    // ################### QUERIES ######################
+
+    /**
+     * Returns the slice which contains all edges with the given label that are incident on a vertex in the given direction.
+     * If the label is null, the slice contains all edges in that direction.
+     *
+     * @param label edge label or null
+     * @param dir either OUT or IN
+     * @param limit maximum number of edges to retrieve
+     * @return slice query
+     */
+    public SliceQuery getEdgeQuery(TitanLabel label, Direction dir, int limit) {
+        Preconditions.checkArgument(dir==Direction.OUT || dir==Direction.IN,"Expected proper direction: %s",dir);
+        int dirID = getDirID(dir,RelationType.EDGE);
+        ByteBuffer sliceStart, sliceEnd;
+        if (label!=null) {
+            sliceStart = IDHandler.getEdgeType(label.getID(), dirID, idManager);
+            sliceEnd = SliceQuery.pointRange(sliceStart);
+        } else {
+            sliceStart = IDHandler.getEdgeTypeGroup(0, dirID, idManager);
+            sliceEnd = IDHandler.getEdgeTypeGroup(idManager.getMaxGroupID() + 1, dirID, idManager);
+        }
+        return new SliceQuery(sliceStart,sliceEnd,limit);
+    }
+
+    /**
+     * Returns the slice which contains the properties of the given keys and, if outEdges is set, all out-edges of a
+     * vertex, so that scans over all vertices only retrieve the entries relevant to these types. The slice may contain
+     * further entries which need to be filtered out.
+     *
+     * @param keys property keys whose properties to retrieve
+     * @param outEdges whether to retrieve all out-edges
+     * @return slice query
+     */
+    public SliceQuery getScanQuery(List<TitanKey> keys, boolean outEdges) {
+        Preconditions.checkArgument(!keys.isEmpty() || outEdges,"Need to specify at least one key or out-edges");
+        int propertyDir = getDirID(Direction.OUT,RelationType.PROPERTY);
+        int edgeDir = getDirID(Direction.OUT,RelationType.EDGE);
+        ByteBuffer sliceStart;
+        if (keys.isEmpty()) {
+            sliceStart = IDHandler.getEdgeTypeGroup(0, edgeDir, idManager);
+        } else if (keys.size()==1 && !isPackable(keys.get(0))) {
+            sliceStart = IDHandler.getEdgeType(keys.get(0).getID(), propertyDir, idManager);
+            if (!outEdges) return new SliceQuery(sliceStart, SliceQuery.pointRange(sliceStart));
+        } else {
+            sliceStart = IDHandler.getEdgeTypeGroup(0, propertyDir, idManager);
+        }
+        ByteBuffer sliceEnd = IDHandler.getEdgeTypeGroup(idManager.getMaxGroupID() + 1, outEdges?edgeDir:propertyDir, idManager);
+        return new SliceQuery(sliceStart, sliceEnd);
+    }
+
     public FittedSliceQuery getQuery(VertexCentricQuery query) {
         Preconditions.checkNotNull(query);
         Preconditions.checkArgument(!query.getVertex().isNew() && query.getVertex().hasId());
@@ -366,16 +823,29 @@ public class EdgeSerializer {
             int dirID = getDirID(dir,rt);
             if (query.hasGroup()) {
                 int groupid = query.getGroup().getID();
-                sliceStart = IDHandler.getEdgeTypeGroup(groupid, dirID, idManager);
-                sliceEnd = FittedSliceQuery.pointRange(sliceStart);
-                isFitted = !query.hasType() && !query.hasConstraints() && query.isIncludeHidden();
+                if (packProperties && rt==RelationType.PROPERTY) {
+                    //Packed properties are not stored in the group, hence all properties need to be retrieved
+                    sliceStart = IDHandler.getEdgeTypeGroup(0, dirID, idManager);
+                    sliceEnd = IDHandler.getEdgeTypeGroup(idManager.getMaxGroupID() + 1, dirID, idManager);
+                    isFitted = false;
+                } else {
+                    sliceStart = IDHandler.getEdgeTypeGroup(groupid, dirID, idManager);
+                    sliceEnd = FittedSliceQuery.pointRange(sliceStart);
+                    isFitted = !query.hasType() && !query.hasConstraints() && query.isIncludeHidden();
+                }
             } else {
                 Preconditions.checkArgument(query.numberTypes()==1);
                 TitanType type = query.getTypes()[0];
                 isStatic = ((InternalType)type).isStatic(dir);
                 TypeDefinition def = ((InternalType)type).getDefinition();
 
-                if (query.hasConstraints() && def.getPrimaryKey().length>0) {
+                if (dir==Direction.OUT && isPackable(type)) {
+                    //Packed properties need to be filtered by type
+                    sliceStart = getPackedColumn();
+                    sliceEnd = FittedSliceQuery.pointRange(sliceStart);
+                    isStatic = false;
+                    isFitted = false;
+                } else if (query.hasConstraints() && def.getPrimaryKey().length>0) {
                     Multimap<TitanType,KeyAtom<TitanType>> constraintMap = query.getConstraintMap();
                     long[] primaryKey = def.getPrimaryKey();
                     StandardTitanTx tx = query.getVertex().tx();
@@ -394,6 +864,8 @@ public class EdgeSerializer {
                         //Find equality constraint if exists
                         KeyAtom<TitanType> equals = null;
                         for (KeyAtom<TitanType> a : cons) if (a.getRelation()== Cmp.EQUAL) equals=a;
+                        //Range constraints can only be answered by the slice if the encoding preserves the order
+                        if (equals==null && !serializer.isOrderPreserving(((TitanKey) kt).getDataType())) break;
                         if (equals!=null) {
                             Object condition = equals.getCondition();
                             if (kt.isEdgeLabel()) {
@@ -457,7 +929,8 @@ public class EdgeSerializer {
                 } else {
                     sliceStart = IDHandler.getEdgeType(type.getID(), dirID, idManager);
                     sliceEnd = FittedSliceQuery.pointRange(sliceStart);
-                    isFitted=!query.hasConstraints();
+                    //Compact blocks hold multiple edges and hence need to be unpacked
+                    isFitted=!query.hasConstraints() && !(dir==Direction.OUT && isCompact(type));
                 }
             }
         } else {
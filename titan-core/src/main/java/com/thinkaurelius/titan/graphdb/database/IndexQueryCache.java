@@ -0,0 +1,225 @@
+package com.thinkaurelius.titan.graphdb.database;
+
+import com.carrotsearch.hppc.LongOpenHashSet;
+import com.carrotsearch.hppc.LongSet;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Iterables;
+import com.thinkaurelius.titan.core.Titan;
+import com.thinkaurelius.titan.core.TitanKey;
+import com.thinkaurelius.titan.core.TitanProperty;
+import com.thinkaurelius.titan.core.TitanType;
+import com.thinkaurelius.titan.graphdb.internal.InternalRelation;
+import com.thinkaurelius.titan.graphdb.query.StandardElementQuery;
+import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAtom;
+import com.thinkaurelius.titan.graphdb.query.keycondition.KeyCondition;
+import com.thinkaurelius.titan.graphdb.types.system.SystemType;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the ids of the elements matching {@link StandardElementQuery}s across transactions of a graph, for the
+ * standard index and external indexes alike.
+ * <p/>
+ * When a transaction commits, all cached results of queries on the keys of its added and removed properties and edge
+ * properties are invalidated, including the queries whose index entries include the keys of those properties.
+ * Modifications by other graph instances are not observed, hence cached results expire after a configurable time to
+ * live which bounds their staleness.
+ * <p/>
+ * Since the cache is keyed by key ids rather than {@link TitanKey} instances, it does not retain the transactions
+ * in which queries were answered.
+ * <p/>
+ * Queries on system keys, such as the type name lookups of transactions, are not cached (see
+ * {@link #isCacheable(StandardElementQuery)}), since types defined by other graph instances must become visible
+ * immediately.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class IndexQueryCache {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexQueryCache.class);
+
+    private final Cache<QueryKey, List<Object>> cache;
+    /**
+     * Incremented on every invalidation, so that results loaded concurrently with an invalidation are not retained
+     */
+    private final AtomicLong invalidations = new AtomicLong(0);
+    /**
+     * Keys included in the index entries of cached queries, which need not be indexed themselves
+     */
+    private final Set<Long> includedKeys = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+    public IndexQueryCache(long maxSize, long ttlMs) {
+        Preconditions.checkArgument(maxSize > 0, "Invalid cache size: %s", maxSize);
+        Preconditions.checkArgument(ttlMs > 0, "Invalid time to live: %s", ttlMs);
+        cache = CacheBuilder.newBuilder().weigher(new Weigher<QueryKey, List<Object>>() {
+            @Override
+            public int weigh(QueryKey q, List<Object> r) {
+                return 2 + r.size();
+            }
+        }).maximumWeight(maxSize).expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS).recordStats().build();
+    }
+
+    /**
+     * Returns the cached result of the given query or retrieves and caches it with the given loader.
+     *
+     * @param query  Query to answer
+     * @param loader Retrieves the result of the query from its index
+     * @return Ids of the elements matching the query
+     */
+    public List<Object> get(StandardElementQuery query, Callable<List<Object>> loader) throws ExecutionException {
+        QueryKey key = new QueryKey(query);
+        for (long included : key.included) includedKeys.add(included);
+        long before = invalidations.get();
+        List<Object> result = cache.get(key, loader);
+        //The result may have been retrieved before a concurrent commit which it hence does not reflect
+        if (invalidations.get() != before) cache.invalidate(key);
+        return result;
+    }
+
+    /**
+     * Whether the results of the given query may be cached, which is the case unless it is conditioned on a system key.
+     *
+     * @param query
+     * @return
+     */
+    public static boolean isCacheable(StandardElementQuery query) {
+        return !hasSystemKey(query.getCondition());
+    }
+
+    private static boolean hasSystemKey(KeyCondition<TitanKey> condition) {
+        if (condition instanceof KeyAtom) return ((KeyAtom<TitanKey>) condition).getKey() instanceof SystemType;
+        for (KeyCondition<TitanKey> child : condition.getChildren()) {
+            if (hasSystemKey(child)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Invalidates the cached results of all queries on the indexed keys of the given properties and edges.
+     *
+     * @param relations Added or removed relations of a committed transaction
+     */
+    public void invalidate(Iterable<InternalRelation> relations) {
+        LongSet keys = new LongOpenHashSet();
+        for (InternalRelation relation : relations) {
+            if (relation.isProperty()) {
+                TitanKey key = ((TitanProperty) relation).getPropertyKey();
+                if (!Iterables.isEmpty(key.getIndexes(Vertex.class)) || includedKeys.contains(key.getID()))
+                    keys.add(key.getID());
+            } else {
+                for (TitanType type : relation.getPropertyKeysDirect()) {
+                    if (type.isPropertyKey() && !Iterables.isEmpty(((TitanKey) type).getIndexes(Edge.class)))
+                        keys.add(type.getID());
+                }
+            }
+        }
+        if (keys.isEmpty()) return;
+        invalidations.incrementAndGet();
+        int removed = 0;
+        for (Iterator<QueryKey> iter = cache.asMap().keySet().iterator(); iter.hasNext(); ) {
+            QueryKey query = iter.next();
+            for (long key : query.keys) {
+                if (keys.contains(key)) {
+                    iter.remove();
+                    removed++;
+                    break;
+                }
+            }
+        }
+        log.trace("Invalidated {} cached index queries", removed);
+    }
+
+    /**
+     * Invalidates all cached query results.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return Hit, miss and load statistics of this cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Identifies a query independently of the transaction in which it was constructed.
+     */
+    private static class QueryKey {
+
+        private final StandardElementQuery.Type type;
+        private final String index;
+        private final int limit;
+        private final KeyCondition<String> condition;
+        private final long[] keys;
+        private final long[] included;
+
+        private QueryKey(StandardElementQuery query) {
+            type = query.getType();
+            index = query.getIndex();
+            limit = query.getLimit();
+            condition = IndexSerializer.convert(query.getCondition());
+            LongOpenHashSet keySet = new LongOpenHashSet();
+            LongSet includedSet = new LongOpenHashSet();
+            collectKeys(query.getCondition(), keySet, includedSet);
+            //Only results of the standard vertex index carry the values of included keys
+            if (type != StandardElementQuery.Type.VERTEX || !Titan.Token.STANDARD_INDEX.equals(index)) includedSet.clear();
+            keySet.addAll(includedSet);
+            keys = keySet.toArray();
+            included = includedSet.toArray();
+        }
+
+        private static void collectKeys(KeyCondition<TitanKey> condition, LongSet keys, LongSet included) {
+            if (condition instanceof KeyAtom) {
+                TitanKey key = ((KeyAtom<TitanKey>) condition).getKey();
+                keys.add(key.getID());
+                for (long includedKey : IndexSerializer.getIncludedKeys(key)) included.add(includedKey);
+            } else {
+                for (KeyCondition<TitanKey> child : condition.getChildren()) collectKeys(child, keys, included);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return condition.hashCode() * 9676463 + type.hashCode() * 4711 + index.hashCode() * 31 + limit;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            else if (other == null || !getClass().isInstance(other)) return false;
+            QueryKey oth = (QueryKey) other;
+            return type == oth.type && limit == oth.limit && index.equals(oth.index) && condition.equals(oth.condition);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + condition + "]" + "(" + limit + "):" + type + "@" + index + Arrays.toString(keys);
+        }
+    }
+
+}
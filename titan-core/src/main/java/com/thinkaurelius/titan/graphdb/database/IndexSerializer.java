@@ -1,25 +1,36 @@
 package com.thinkaurelius.titan.graphdb.database;
 
+import com.carrotsearch.hppc.LongSet;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.thinkaurelius.titan.core.*;
 import com.thinkaurelius.titan.core.attribute.Cmp;
+import com.thinkaurelius.titan.core.attribute.Geo;
+import com.thinkaurelius.titan.core.attribute.Geoshape;
 import com.thinkaurelius.titan.diskstorage.BackendTransaction;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexInformation;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexQuery;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySliceQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
 import com.thinkaurelius.titan.graphdb.database.idhandling.VariableLong;
+import com.thinkaurelius.titan.graphdb.database.indexing.GeohashBuckets;
+import com.thinkaurelius.titan.graphdb.database.indexing.StandardIndexInformation;
 import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
 import com.thinkaurelius.titan.graphdb.database.serialize.Serializer;
 import com.thinkaurelius.titan.graphdb.internal.InternalRelation;
 import com.thinkaurelius.titan.graphdb.internal.InternalType;
+import com.thinkaurelius.titan.graphdb.internal.InternalVertex;
 import com.thinkaurelius.titan.graphdb.query.StandardElementQuery;
 import com.thinkaurelius.titan.graphdb.query.keycondition.*;
 import com.thinkaurelius.titan.graphdb.relations.RelationIdentifier;
+import com.thinkaurelius.titan.graphdb.types.vertices.TitanKeyVertex;
 import com.thinkaurelius.titan.util.encoding.LongEncoding;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
@@ -30,8 +41,14 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * (c) Matthias Broecheler (me@matthiasb.com)
@@ -42,13 +59,20 @@ public class IndexSerializer {
     private static final Logger log = LoggerFactory.getLogger(IndexSerializer.class);
 
     private static final int DEFAULT_VALUE_CAPACITY = 40;
+    private static final long[] NO_INCLUDED_KEYS = new long[0];
+
+    private static final String GEOHASH_BUCKET_PREFIX = "\u0000geohash:";
 
     private final Serializer serializer;
     private final Map<String,? extends IndexInformation> indexes;
+    private final int geohashPrecision;
 
     public IndexSerializer(Serializer serializer, Map<String,? extends IndexInformation> indexes) {
         this.serializer = serializer;
         this.indexes = indexes;
+        IndexInformation standard = indexes.get(Titan.Token.STANDARD_INDEX);
+        this.geohashPrecision = standard instanceof StandardIndexInformation?
+                ((StandardIndexInformation)standard).getGeohashPrecision():0;
     }
 
     /* ################################################
@@ -67,19 +91,31 @@ public class IndexSerializer {
     }
 
     public void addProperty(TitanProperty prop, BackendTransaction tx) throws StorageException {
+        for (String index : prop.getPropertyKey().getIndexes(Vertex.class)) {
+            addProperty(prop,index,tx);
+        }
+    }
+
+    /**
+     * Adds the given property to the given index only, which must be one of the vertex indexes of its key.
+     * Used to rebuild an index for existing properties.
+     */
+    public void addProperty(TitanProperty prop, String index, BackendTransaction tx) throws StorageException {
         TitanKey key = prop.getPropertyKey();
-        for (String index : key.getIndexes(Vertex.class)) {
-            if (index.equals(Titan.Token.STANDARD_INDEX)) {
-                if (key.isUnique(Direction.IN)) {
-                    tx.mutateVertexIndex(getIndexKey(prop.getValue()),
-                            Lists.newArrayList(new Entry(getUniqueIndexColumn(key), getIndexValue(prop))), null);
-                } else {
-                    tx.mutateVertexIndex(getIndexKey(prop.getValue()),
-                            Lists.newArrayList(new Entry(getIndexColumn(key, prop.getID()), getIndexValue(prop))), null);
-                }
+        if (index.equals(Titan.Token.STANDARD_INDEX)) {
+            if (key.isUnique(Direction.IN)) {
+                tx.mutateVertexIndex(getIndexKey(prop.getValue()),
+                        Lists.newArrayList(new Entry(getUniqueIndexColumn(key), getIndexValue(prop))), null);
             } else {
-                addKeyValue(prop.getVertex(),key,prop.getValue(),index,tx);
+                tx.mutateVertexIndex(getIndexKey(prop.getValue()),
+                        Lists.newArrayList(new Entry(getIndexColumn(key, prop.getID()), getIndexValue(prop))), null);
             }
+            for (String bucket : getGeohashBuckets(prop.getValue())) {
+                tx.mutateVertexIndex(getGeohashKey(bucket),
+                        Lists.newArrayList(new Entry(getIndexColumn(key, prop.getID()), getIndexValue(prop))), null);
+            }
+        } else {
+            addKeyValue(prop.getVertex(),key,prop.getValue(),index,tx);
         }
     }
 
@@ -94,12 +130,43 @@ public class IndexSerializer {
                     tx.mutateVertexIndex(getIndexKey(prop.getValue()), null,
                             Lists.newArrayList(getIndexColumn(key, prop.getID())));
                 }
+                for (String bucket : getGeohashBuckets(prop.getValue())) {
+                    tx.mutateVertexIndex(getGeohashKey(bucket), null,
+                            Lists.newArrayList(getIndexColumn(key, prop.getID())));
+                }
             } else {
                 removeKeyValue(prop.getVertex(),key,index,tx);
             }
         }
     }
 
+    /**
+     * Rewrites the standard index entries of the persisted properties of the given vertex which include one of the
+     * given mutated keys, so that the included values reflect the mutations.
+     * <p/>
+     * The entries are rewritten from the state of the vertex as seen by the committing transaction. If one transaction
+     * modifies an included property while a concurrent transaction modifies the indexed property of the same vertex,
+     * the entry written last may hold a stale included value. It remains stale until the entry is rewritten again,
+     * e.g. by a later modification or by rebuilding the index.
+     *
+     * @param vertex      Existing vertex
+     * @param mutatedKeys Ids of the keys of the added and removed properties of the vertex which are included by
+     *                    some key
+     * @param tx
+     */
+    public void updateIncludedValues(InternalVertex vertex, LongSet mutatedKeys, BackendTransaction tx) throws StorageException {
+        for (TitanProperty prop : vertex.getProperties()) {
+            //New properties are indexed with their included values
+            if (prop.isNew()) continue;
+            for (long keyid : getIncludedKeys(prop.getPropertyKey())) {
+                if (mutatedKeys.contains(keyid)) {
+                    addProperty(prop,Titan.Token.STANDARD_INDEX,tx);
+                    break;
+                }
+            }
+        }
+    }
+
     public void lockKeyedProperty(TitanProperty prop, BackendTransaction tx) throws StorageException {
         TitanKey key = prop.getPropertyKey();
         if (key.isUnique(Direction.IN) && ((InternalType)key).uniqueLock(Direction.IN)) {
@@ -119,19 +186,34 @@ public class IndexSerializer {
             if (type instanceof TitanKey) {
                 TitanKey key = (TitanKey)type;
                 for (String index : key.getIndexes(Edge.class)) {
-                    Object value = relation.getPropertyDirect(key);
-                    if (index.equals(Titan.Token.STANDARD_INDEX)) {
-                        tx.mutateEdgeIndex(getIndexKey(value),
-                                Lists.newArrayList(new Entry(getIndexColumn(key, relation.getID()),
-                                        relationID2ByteBuffer((RelationIdentifier) relation.getId()))), null);
-                    } else {
-                        addKeyValue(relation,key,value,index,tx);
-                    }
+                    addEdge(relation,key,index,tx);
                 }
             }
         }
     }
 
+    /**
+     * Adds the value of the given key on the given edge to the given index only, which must be one of the edge indexes
+     * of the key. Used to rebuild an index for existing edges.
+     */
+    public void addEdge(InternalRelation relation, TitanKey key, String index, BackendTransaction tx) throws StorageException  {
+        Preconditions.checkArgument(relation instanceof TitanEdge,"Only edges can be indexed for now");
+        Object value = relation.getPropertyDirect(key);
+        if (value==null) return;
+        if (index.equals(Titan.Token.STANDARD_INDEX)) {
+            tx.mutateEdgeIndex(getIndexKey(value),
+                    Lists.newArrayList(new Entry(getIndexColumn(key, relation.getID()),
+                            relationID2ByteBuffer((RelationIdentifier) relation.getId()))), null);
+            for (String bucket : getGeohashBuckets(value)) {
+                tx.mutateEdgeIndex(getGeohashKey(bucket),
+                        Lists.newArrayList(new Entry(getIndexColumn(key, relation.getID()),
+                                relationID2ByteBuffer((RelationIdentifier) relation.getId()))), null);
+            }
+        } else {
+            addKeyValue(relation,key,value,index,tx);
+        }
+    }
+
     public void removeEdge(InternalRelation relation, BackendTransaction tx) throws StorageException {
         Preconditions.checkArgument(relation instanceof TitanEdge,"Only edges can be indexed for now");
         for (TitanType type : relation.getPropertyKeysDirect()) {
@@ -142,6 +224,10 @@ public class IndexSerializer {
                     if (index.equals(Titan.Token.STANDARD_INDEX)) {
                         tx.mutateEdgeIndex(getIndexKey(value), null,
                                 Lists.newArrayList(getIndexColumn(key, relation.getID())));
+                        for (String bucket : getGeohashBuckets(value)) {
+                            tx.mutateEdgeIndex(getGeohashKey(bucket), null,
+                                    Lists.newArrayList(getIndexColumn(key, relation.getID())));
+                        }
                     } else {
                         removeKeyValue(relation, key, index, tx);
                     }
@@ -150,7 +236,7 @@ public class IndexSerializer {
         }
     }
 
-    private static final ByteBuffer relationID2ByteBuffer(RelationIdentifier rid) {
+    static final ByteBuffer relationID2ByteBuffer(RelationIdentifier rid) {
         long[] longs = rid.getLongRepresentation();
         Preconditions.checkArgument(longs.length==3);
         ByteBuffer buffer = ByteBuffer.allocate(24);
@@ -159,7 +245,7 @@ public class IndexSerializer {
         return buffer;
     }
 
-    private static final RelationIdentifier bytebuffer2RelationId(ByteBuffer b) {
+    static final RelationIdentifier bytebuffer2RelationId(ByteBuffer b) {
         long[] relationId = new long[3];
         for (int i=0;i<3;i++) relationId[i]=VariableLong.readPositive(b);
         return RelationIdentifier.get(relationId);
@@ -179,7 +265,11 @@ public class IndexSerializer {
                 Querying
     ################################################### */
 
-    public List<Object> query(StandardElementQuery query, BackendTransaction tx) {
+    /**
+     * Answers the given query against its index and returns the ids of the matching elements. Results of
+     * external indexes are streamed, i.e. retrieved from the index in pages as the returned iterator advances.
+     */
+    public Iterator<Object> query(StandardElementQuery query, BackendTransaction tx) {
         Preconditions.checkArgument(query.hasIndex());
         String index = query.getIndex();
         Preconditions.checkArgument(indexes.containsKey(index),"Index unknown or unconfigured: %s",index);
@@ -190,39 +280,196 @@ public class IndexSerializer {
             else if (query.getCondition() instanceof KeyAnd || query.getCondition() instanceof KeyOr) {
                 cond = (KeyAtom<TitanKey>)Iterables.getOnlyElement(query.getCondition().getChildren());
             }
-            Preconditions.checkArgument(cond.getRelation()==Cmp.EQUAL,"Only equality relations are supported by standard index [%s]",cond);
+            Preconditions.checkArgument(indexes.get(index).supports(cond.getKey().getDataType(),cond.getRelation()),
+                    "Relation is not supported by standard index [%s]",cond);
             TitanKey key = cond.getKey();
             Object value = cond.getCondition();
             Preconditions.checkArgument(key.hasIndex(index,query.getType().getElementType()),
                     "Cannot retrieve for given property key - it does not have an index [%s]",key.getName());
 
             ByteBuffer column = getUniqueIndexColumn(key);
-            KeySliceQuery sq = new KeySliceQuery(getIndexKey(value),column, SliceQuery.pointRange(column),query.getLimit(),((InternalType)key).isStatic(Direction.IN));
-            List<Entry> r;
-            if (query.getType()== StandardElementQuery.Type.VERTEX) {
-                r = tx.vertexIndexQuery(sq);
-            } else {
-                r = tx.edgeIndexQuery(sq);
-            }
-            List<Object> results = new ArrayList<Object>(r.size());
-            for (Entry entry : r) {
-                ByteBuffer entryValue = entry.getValue().duplicate();
-                if (query.getType()== StandardElementQuery.Type.VERTEX) {
-                    results.add(Long.valueOf(VariableLong.readPositive(entryValue)));
-                } else {
-                    results.add(bytebuffer2RelationId(entryValue));
-                }
+            if (cond.getRelation()==Geo.WITHIN) {
+                //Candidates from the covering buckets, which the caller needs to filter. Since the limit applies to the
+                //filtered results, buckets are read lazily as the candidates are consumed.
+                return new BucketIterator(query,key,GeohashBuckets.getCover((Geoshape)value,geohashPrecision).iterator(),tx);
             }
+            KeySliceQuery sq = new KeySliceQuery(getIndexKey(value),column, SliceQuery.pointRange(column),query.getLimit(),((InternalType)key).isStatic(Direction.IN));
+            List<Object> results = new ArrayList<Object>();
+            readIndexEntries(query,key,sq,tx,results);
             Preconditions.checkArgument(!(query.getType()== StandardElementQuery.Type.VERTEX && key.isUnique(Direction.IN)) || results.size()<=1);
-            return results;
+            return results.iterator();
         } else {
             verifyQuery(query.getCondition(),index,query.getType().getElementType());
             KeyCondition<String> condition = convert(query.getCondition());
             IndexQuery iquery = new IndexQuery(getStoreName(query),condition,query.getLimit());
-            List<String> r = tx.indexQuery(index, iquery);
-            List<Object> result = new ArrayList<Object>(r.size());
-            for (String id : r) result.add(string2ElementId(id));
-            return result;
+            return new ElementIdIterator(tx.indexQuery(index, iquery));
+        }
+    }
+
+    private class BucketIterator extends AbstractIterator<Object> {
+
+        private final StandardElementQuery query;
+        private final TitanKey key;
+        private final ByteBuffer column;
+        private final Iterator<String> buckets;
+        private final BackendTransaction tx;
+        private final Set<Object> seen = new HashSet<Object>();
+        private Iterator<Object> current;
+
+        private BucketIterator(StandardElementQuery query, TitanKey key, Iterator<String> buckets, BackendTransaction tx) {
+            this.query = query;
+            this.key = key;
+            this.column = getUniqueIndexColumn(key);
+            this.buckets = buckets;
+            this.tx = tx;
+            this.current = Iterators.emptyIterator();
+        }
+
+        @Override
+        protected Object computeNext() {
+            while (true) {
+                while (current.hasNext()) {
+                    Object result = current.next();
+                    //Elements with multiple values of a key are contained in the buckets of each value
+                    Object id = result instanceof IndexedVertex ? Long.valueOf(((IndexedVertex) result).getID()) : result;
+                    if (seen.add(id)) return result;
+                }
+                if (!buckets.hasNext()) return endOfData();
+                KeySliceQuery sq = new KeySliceQuery(getGeohashKey(buckets.next()),column, SliceQuery.pointRange(column),false);
+                List<Object> results = new ArrayList<Object>();
+                readIndexEntries(query,key,sq,tx,results);
+                current = results.iterator();
+            }
+        }
+    }
+
+    private void readIndexEntries(StandardElementQuery query, TitanKey key, KeySliceQuery sq, BackendTransaction tx, Collection<Object> results) {
+        List<Entry> r;
+        if (query.getType()== StandardElementQuery.Type.VERTEX) {
+            r = tx.vertexIndexQuery(sq);
+        } else {
+            r = tx.edgeIndexQuery(sq);
+        }
+        for (Entry entry : r) {
+            ByteBuffer entryValue = entry.getValue().duplicate();
+            if (query.getType()== StandardElementQuery.Type.VERTEX) {
+                long vertexid = VariableLong.readPositive(entryValue);
+                long[] included = getIncludedKeys(key);
+                if (included.length>0 && entryValue.hasRemaining()) {
+                    Object[] values = new Object[included.length];
+                    for (int i=0;i<included.length;i++) {
+                        if (entryValue.get()!=0) values[i]=serializer.readClassAndObject(entryValue);
+                    }
+                    results.add(new IndexedVertex(vertexid,included,values));
+                } else {
+                    results.add(Long.valueOf(vertexid));
+                }
+            } else {
+                results.add(bytebuffer2RelationId(entryValue));
+            }
+        }
+    }
+
+    /**
+     * The id of a vertex retrieved from the standard index together with the values of the keys included in its index
+     * entry as of the retrieval.
+     *
+     * @see TypeMaker#include(TitanKey...)
+     */
+    public static class IndexedVertex {
+
+        private final long id;
+        private final long[] keys;
+        private final Object[] values;
+
+        private IndexedVertex(long id, long[] keys, Object[] values) {
+            this.id = id;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        public long getID() {
+            return id;
+        }
+
+        public boolean isIncluded(long keyid) {
+            return position(keyid)>=0;
+        }
+
+        /**
+         * @param keyid Id of an included key
+         * @return The value of the included key or null if the vertex has no such property
+         */
+        public Object getValue(long keyid) {
+            int pos = position(keyid);
+            Preconditions.checkArgument(pos>=0,"Key is not included: %s",keyid);
+            return values[pos];
+        }
+
+        private int position(long keyid) {
+            for (int i=0;i<keys.length;i++) {
+                if (keys[i]==keyid) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.valueOf(id).hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this==other) return true;
+            else if (other==null || !getClass().isInstance(other)) return false;
+            return id==((IndexedVertex)other).id;
+        }
+
+        @Override
+        public String toString() {
+            return id + Arrays.toString(values);
+        }
+    }
+
+    /**
+     * Converts the document ids returned by an external index into element ids as they are consumed and closes
+     * the underlying iterator once it is exhausted.
+     */
+    private static class ElementIdIterator implements Iterator<Object> {
+
+        private final RecordIterator<String> docids;
+        private boolean closed = false;
+
+        private ElementIdIterator(RecordIterator<String> docids) {
+            this.docids = docids;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) return false;
+            try {
+                if (docids.hasNext()) return true;
+                closed = true;
+                docids.close();
+                return false;
+            } catch (StorageException e) {
+                throw new TitanException("Read exception on open iterator", e);
+            }
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            try {
+                return string2ElementId(docids.next());
+            } catch (StorageException e) {
+                throw new TitanException("Read exception on open iterator", e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
         }
     }
 
@@ -236,7 +483,7 @@ public class IndexSerializer {
         }
     }
 
-    private static final KeyCondition<String> convert(KeyCondition<TitanKey> condition) {
+    static final KeyCondition<String> convert(KeyCondition<TitanKey> condition) {
         if (condition instanceof KeyAtom) {
             KeyAtom<TitanKey> atom = (KeyAtom<TitanKey>) condition;
             Relation relation = atom.getRelation();
@@ -277,12 +524,12 @@ public class IndexSerializer {
         return longID2Name(key.getID());
     }
 
-    private static final String longID2Name(long id) {
+    static final String longID2Name(long id) {
         Preconditions.checkArgument(id>0);
         return LongEncoding.encode(id);
     }
 
-    private static final long name2LongID(String name) {
+    static final long name2LongID(String name) {
         return LongEncoding.decode(name);
     }
 
@@ -303,21 +550,57 @@ public class IndexSerializer {
         else throw new IllegalArgumentException("Invalid class: " + element.getClass());
     }
 
-    private final ByteBuffer getIndexKey(Object att) {
+    final ByteBuffer getIndexKey(Object att) {
         DataOutput out = serializer.getDataOutput(DEFAULT_VALUE_CAPACITY, true);
         out.writeObjectNotNull(att);
         return out.getByteBuffer();
     }
 
-    private static final ByteBuffer getIndexValue(TitanProperty prop) {
-        return VariableLong.positiveByteBuffer(prop.getVertex().getID());
+    /**
+     * Returns the geohash buckets under which the given value is stored in the standard index, if enabled.
+     */
+    private final List<String> getGeohashBuckets(Object value) {
+        if (geohashPrecision==0 || !(value instanceof Geoshape)) return ImmutableList.of();
+        return GeohashBuckets.getBuckets((Geoshape)value,geohashPrecision);
+    }
+
+    //Bucket rows never clash with the entries of other keys, since their columns are prefixed by the key id
+    final ByteBuffer getGeohashKey(String bucket) {
+        return getIndexKey(GEOHASH_BUCKET_PREFIX+bucket);
+    }
+
+    /**
+     * @return The ids of the keys included in the standard vertex index entries of the given key
+     */
+    public static final long[] getIncludedKeys(TitanKey key) {
+        if (key instanceof TitanKeyVertex) return ((TitanKeyVertex)key).getIncludedKeys();
+        else return NO_INCLUDED_KEYS;
+    }
+
+    private final ByteBuffer getIndexValue(TitanProperty prop) {
+        long[] included = getIncludedKeys(prop.getPropertyKey());
+        if (included.length==0) return VariableLong.positiveByteBuffer(prop.getVertex().getID());
+        //The vertex id followed by a flag and, if present, the value of each included key
+        InternalVertex vertex = (InternalVertex)prop.getVertex();
+        DataOutput out = serializer.getDataOutput(DEFAULT_VALUE_CAPACITY, true);
+        VariableLong.writePositive(out,vertex.getID());
+        for (long keyid : included) {
+            Object value = vertex.getProperty((TitanKey)vertex.tx().getExistingType(keyid));
+            if (value==null) {
+                out.putByte((byte)0);
+            } else {
+                out.putByte((byte)1);
+                out.writeClassAndObject(value);
+            }
+        }
+        return out.getByteBuffer();
     }
 
-    private static final ByteBuffer getUniqueIndexColumn(TitanKey type) {
+    static final ByteBuffer getUniqueIndexColumn(TitanKey type) {
         return VariableLong.positiveByteBuffer(type.getID());
     }
 
-    private static final ByteBuffer getIndexColumn(TitanKey type, long propertyID) {
+    static final ByteBuffer getIndexColumn(TitanKey type, long propertyID) {
         return VariableLong.positiveByteBuffer(new long[]{type.getID(), propertyID});
     }
 
@@ -0,0 +1,306 @@
+package com.thinkaurelius.titan.graphdb.database;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.thinkaurelius.titan.core.Titan;
+import com.thinkaurelius.titan.core.TitanException;
+import com.thinkaurelius.titan.core.TitanKey;
+import com.thinkaurelius.titan.core.TitanProperty;
+import com.thinkaurelius.titan.core.attribute.Cmp;
+import com.thinkaurelius.titan.diskstorage.BackendTransaction;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySliceQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
+import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
+import com.thinkaurelius.titan.graphdb.database.idhandling.IDHandler;
+import com.thinkaurelius.titan.graphdb.database.idhandling.VariableLong;
+import com.thinkaurelius.titan.graphdb.internal.InternalRelation;
+import com.thinkaurelius.titan.graphdb.internal.InternalVertex;
+import com.thinkaurelius.titan.graphdb.query.StandardElementQuery;
+import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAnd;
+import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAtom;
+import com.thinkaurelius.titan.graphdb.query.keycondition.KeyCondition;
+import com.thinkaurelius.titan.util.datastructures.BloomFilter;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Vertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Rules out the existence of vertices and of values of unique keys without accessing the storage backend.
+ * <p/>
+ * Maintains a {@link BloomFilter} over the ids of all vertices and the values of all keys which are unique in
+ * the IN direction and have a standard vertex index, i.e. the row keys of the edge store and the unique entries of the
+ * vertex index. Hence, a negative answer is definite while a positive answer must be verified against storage.
+ * The filter only reflects the modifications of the graph instance which owns it.
+ * <p/>
+ * Upon shutdown, the filter can be saved to a snapshot file which is consumed the next time the graph is opened,
+ * so that the storage backend does not have to be scanned again.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class LookupFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(LookupFilter.class);
+
+    public static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private static final String SNAPSHOT_FILE = "lookup-filter";
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final ByteBuffer LOWER_SLICE = ByteBufferUtil.zeroByteBuffer(1);
+    private static final ByteBuffer UPPER_SLICE = ByteBufferUtil.oneByteBuffer(24);
+
+    private static final int PAGE_SIZE = 16;
+
+    private static final byte VERTEX_PREFIX = 0;
+    private static final byte VALUE_PREFIX = 1;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final IndexSerializer indexSerializer;
+    private final BloomFilter filter;
+    private final long size;
+
+    private LookupFilter(IndexSerializer indexSerializer, BloomFilter filter, long size) {
+        this.indexSerializer = indexSerializer;
+        this.filter = filter;
+        this.size = size;
+    }
+
+    /**
+     * Builds the filter by scanning the row keys of the edge store and the unique entries of the vertex index.
+     *
+     * @param size            Expected number of vertices and unique values
+     * @param indexSerializer
+     * @param tx              Transaction to scan the storage backend with
+     * @return
+     */
+    public static LookupFilter build(long size, IndexSerializer indexSerializer, BackendTransaction tx) throws StorageException {
+        LookupFilter lookup = new LookupFilter(indexSerializer,new BloomFilter(size,FALSE_POSITIVE_RATE),size);
+        long vertices = 0, values = 0;
+        RecordIterator<ByteBuffer> keys = tx.edgeStoreKeys();
+        try {
+            while (keys.hasNext()) {
+                lookup.filter.add(hashVertex(keys.next()));
+                vertices++;
+            }
+        } finally {
+            keys.close();
+        }
+        keys = tx.vertexIndexKeys();
+        try {
+            while (keys.hasNext()) {
+                ByteBuffer value = keys.next();
+                //Read the row in pages and skip over the entries of non-unique keys, which can be arbitrarily many
+                ByteBuffer start = LOWER_SLICE;
+                while (start!=null) {
+                    List<Entry> entries = tx.vertexIndexQuery(new KeySliceQuery(value,start,UPPER_SLICE,PAGE_SIZE));
+                    start = null;
+                    for (Entry entry : entries) {
+                        ByteBuffer column = entry.getColumn().duplicate();
+                        long keyid = VariableLong.readPositive(column);
+                        //Unique entries consist of the key id only
+                        boolean unique = !column.hasRemaining();
+                        if (unique) {
+                            lookup.filter.add(hashValue(keyid,value));
+                            values++;
+                        }
+                        if (!unique || entries.size()==PAGE_SIZE) {
+                            ByteBuffer prefix = entry.getColumn().duplicate();
+                            prefix.limit(column.position());
+                            start = nextKeyStart(prefix.slice());
+                        }
+                        if (!unique) break;
+                    }
+                }
+            }
+        } finally {
+            keys.close();
+        }
+        log.info("Built lookup filter over {} vertices and {} unique values",vertices,values);
+        return lookup;
+    }
+
+    /**
+     * Reads and deletes the snapshot in the given directory, if it exists and has been saved for the given size.
+     * Must be called whenever the graph is opened, also if the filter is disabled, since the snapshot becomes stale
+     * as soon as the graph is modified without the filter.
+     *
+     * @param directory
+     * @param size            Expected number of vertices and unique values or 0 if the filter is disabled, in which
+     *                        case the snapshot is only deleted
+     * @param indexSerializer
+     * @return The filter or null if no applicable snapshot exists
+     */
+    public static LookupFilter load(File directory, long size, IndexSerializer indexSerializer) {
+        File file = new File(directory,SNAPSHOT_FILE);
+        if (!file.exists()) return null;
+        LookupFilter lookup = null;
+        if (size>0) {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    if (in.readInt()==SNAPSHOT_VERSION && in.readLong()==size) {
+                        lookup = new LookupFilter(indexSerializer,BloomFilter.readFrom(in),size);
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                log.warn("Could not read lookup filter snapshot, rebuilding it",e);
+            }
+        }
+        //The snapshot becomes stale as soon as the graph is modified
+        if (!file.delete()) throw new TitanException("Could not delete lookup filter snapshot: " + file);
+        return lookup;
+    }
+
+    /**
+     * Saves this filter to a snapshot in the given directory. No transactions may be running.
+     *
+     * @param directory
+     */
+    public void save(File directory) {
+        File file = new File(directory,SNAPSHOT_FILE);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(size);
+                filter.writeTo(out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            log.error("Could not save lookup filter snapshot",e);
+            file.delete();
+        }
+    }
+
+    /**
+     * Whether the given key is covered by lookup filters
+     *
+     * @param key
+     * @return
+     */
+    public static boolean isFiltered(TitanKey key) {
+        return key.isUnique(Direction.IN) && key.hasIndex(Titan.Token.STANDARD_INDEX, Vertex.class);
+    }
+
+    public boolean mightContainVertex(long vertexid) {
+        return filter.mightContain(hashVertex(IDHandler.getKey(vertexid)));
+    }
+
+    /**
+     * Returns false if no vertex has the given value for the given key. The key must be covered by the filter.
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    public boolean mightContainValue(TitanKey key, Object value) {
+        Preconditions.checkArgument(isFiltered(key),"Key is not covered by the lookup filter: %s",key.getName());
+        return filter.mightContain(hashValue(key.getID(),indexSerializer.getIndexKey(value)));
+    }
+
+    /**
+     * Returns false if the given query cannot have any persisted result, i.e. it is an equality query on the standard
+     * index for a unique value which the filter rules out.
+     *
+     * @param query
+     * @return
+     */
+    public boolean mightMatch(StandardElementQuery query) {
+        if (query.getType()!=StandardElementQuery.Type.VERTEX || !Titan.Token.STANDARD_INDEX.equals(query.getIndex()))
+            return true;
+        KeyCondition<TitanKey> condition = query.getCondition();
+        if (condition instanceof KeyAnd && condition.hasChildren()) {
+            for (KeyCondition<TitanKey> child : condition.getChildren()) {
+                if (child instanceof KeyAtom && !mightMatch((KeyAtom<TitanKey>)child)) return false;
+            }
+            return true;
+        } else if (condition instanceof KeyAtom) {
+            return mightMatch((KeyAtom<TitanKey>)condition);
+        } else return true;
+    }
+
+    private boolean mightMatch(KeyAtom<TitanKey> atom) {
+        if (atom.getRelation()!=Cmp.EQUAL || atom.getCondition()==null || !isFiltered(atom.getKey())) return true;
+        return mightContainValue(atom.getKey(),atom.getCondition());
+    }
+
+    /**
+     * Adds the new vertices and unique values of the given relations to the filter. Must be called after ids have
+     * been assigned and before the relations are persisted, so that concurrent lookups never miss them.
+     *
+     * @param relations
+     */
+    public void add(Iterable<InternalRelation> relations) {
+        for (InternalRelation relation : relations) {
+            for (int pos=0;pos<relation.getLen();pos++) {
+                InternalVertex vertex = relation.getVertex(pos);
+                if (vertex.isNew()) filter.add(hashVertex(IDHandler.getKey(vertex.getID())));
+            }
+            if (relation.isProperty()) add((TitanProperty)relation);
+        }
+    }
+
+    /**
+     * Adds the value of the given property to the filter if its key is covered by the filter, e.g. when the index
+     * entry of an existing property is rebuilt. Must be called before the index entry is persisted.
+     *
+     * @param prop
+     */
+    public void add(TitanProperty prop) {
+        if (isFiltered(prop.getPropertyKey())) {
+            filter.add(hashValue(prop.getPropertyKey().getID(),indexSerializer.getIndexKey(prop.getValue())));
+        }
+    }
+
+    /**
+     * @param prefix Encoded key id, which is the prefix of all vertex index entries of the key
+     * @return The first column after all entries of the key or null if there is none
+     */
+    private static ByteBuffer nextKeyStart(ByteBuffer prefix) {
+        for (int i=0;i<prefix.remaining();i++) {
+            if (prefix.get(i)!=(byte)-1) return ByteBufferUtil.nextBiggerBuffer(prefix);
+        }
+        return null;
+    }
+
+    private static HashCode hashVertex(ByteBuffer key) {
+        return putBytes(HASH.newHasher().putByte(VERTEX_PREFIX),key).hash();
+    }
+
+    private static HashCode hashValue(long keyid, ByteBuffer value) {
+        return putBytes(HASH.newHasher().putByte(VALUE_PREFIX).putLong(keyid),value).hash();
+    }
+
+    private static Hasher putBytes(Hasher hasher, ByteBuffer b) {
+        if (b.hasArray()) {
+            return hasher.putBytes(b.array(),b.arrayOffset()+b.position(),b.remaining());
+        } else {
+            byte[] bytes = new byte[b.remaining()];
+            b.duplicate().get(bytes);
+            return hasher.putBytes(bytes);
+        }
+    }
+
+}
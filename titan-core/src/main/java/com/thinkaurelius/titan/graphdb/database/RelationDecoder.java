@@ -0,0 +1,265 @@
+package com.thinkaurelius.titan.graphdb.database;
+
+import com.google.common.base.Preconditions;
+import com.thinkaurelius.titan.core.TitanKey;
+import com.thinkaurelius.titan.core.TitanType;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.graphdb.database.idhandling.IDHandler;
+import com.thinkaurelius.titan.graphdb.database.idhandling.VariableLong;
+import com.thinkaurelius.titan.graphdb.database.serialize.CompressedValue;
+import com.thinkaurelius.titan.graphdb.database.serialize.Serializer;
+import com.thinkaurelius.titan.graphdb.idmanagement.IDManager;
+import com.thinkaurelius.titan.graphdb.internal.InternalType;
+import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
+import com.thinkaurelius.titan.graphdb.types.TypeDefinition;
+import com.thinkaurelius.titan.util.datastructures.ImmutableLongObjectMap;
+import com.tinkerpop.blueprints.Direction;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable cursor that decodes the relation stored in an edge store {@link Entry}. A decoder is positioned on an entry
+ * with {@link #reset(long, Entry, StandardTitanTx)} and decodes only those parts of the entry that are requested, in the
+ * order in which they are stored: the direction and type are read from the first bytes of the column, the adjacent vertex,
+ * property value and relation id require reading past the primary key, and the remaining properties are only decoded
+ * by {@link #getProperties()}.
+ * <p/>
+ * The header fields are exposed as primitives so that scanning the entries of an adjacency list does not allocate beyond
+ * one view of the column per entry. A decoder is not thread-safe and must not be used across nested reads, since
+ * resolving a type may trigger the decoding of other entries.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class RelationDecoder {
+
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final Serializer serializer;
+    private final IDManager idManager;
+    private final boolean compression;
+
+    private Entry data;
+    private long vertexid;
+    private StandardTitanTx tx;
+
+    //Stage 1: direction and type
+    private ByteBuffer column;
+    private int dirID;
+    private long typeid;
+    private InternalType type;
+
+    //Stage 2: header
+    private boolean headerRead;
+    private Object[] primaryKey = NO_VALUES;
+    private long otherVertexId;
+    private Object value;
+    private long relationId;
+    private ByteBuffer propertyReader;
+
+    RelationDecoder(Serializer serializer, IDManager idManager, boolean compression) {
+        this.serializer = serializer;
+        this.idManager = idManager;
+        this.compression = compression;
+    }
+
+    /**
+     * Positions this decoder on the given entry. Repositioning on the entry the decoder is currently positioned on
+     * retains everything that has been decoded so far.
+     *
+     * @param vertexid id of the vertex the entry was read for
+     * @param data     edge store entry
+     * @param tx       transaction used to resolve types
+     * @return this decoder
+     */
+    public RelationDecoder reset(long vertexid, Entry data, StandardTitanTx tx) {
+        Preconditions.checkArgument(vertexid > 0);
+        Preconditions.checkNotNull(data);
+        if (this.data == data && this.vertexid == vertexid && this.tx == tx) return this;
+        this.data = data;
+        this.vertexid = vertexid;
+        this.tx = tx;
+        column = null;
+        type = null;
+        headerRead = false;
+        value = null;
+        propertyReader = null;
+        return this;
+    }
+
+    private void readType() {
+        if (column != null) return;
+        Preconditions.checkState(data != null, "Decoder has not been positioned on an entry");
+        column = data.getColumn().duplicate();
+        dirID = IDHandler.getDirectionID(column.get(column.position()));
+        if (dirID != 0 && dirID != 2 && dirID != 3)
+            throw new IllegalArgumentException("Invalid dirID read from disk: " + dirID);
+        typeid = IDHandler.readEdgeType(column, idManager);
+    }
+
+    private void readHeader() {
+        if (headerRead) return;
+        InternalType t = (InternalType) getType();
+        TypeDefinition def = t.getDefinition();
+        long[] keysig = def.getPrimaryKey();
+        if (primaryKey.length < keysig.length) primaryKey = new Object[keysig.length];
+        for (int i = 0; i < keysig.length; i++) {
+            primaryKey[i] = readInline(column, tx.getExistingType(keysig[i]));
+        }
+
+        ByteBuffer reader = column;
+        if (t.isUnique(getDirection())) {
+            reader = data.getValue().duplicate();
+        }
+
+        if (isEdge()) {
+            Preconditions.checkArgument(t.isEdgeLabel());
+            otherVertexId = vertexid + VariableLong.read(reader);
+        } else {
+            Preconditions.checkArgument(t.isPropertyKey());
+            value = readValue(reader, (TitanKey) t);
+        }
+        relationId = VariableLong.readPositive(reader);
+        Preconditions.checkArgument(relationId > 0);
+        propertyReader = (reader == column) ? null : reader;
+        headerRead = true;
+    }
+
+    public Direction getDirection() {
+        readType();
+        return dirID == 3 ? Direction.IN : Direction.OUT;
+    }
+
+    public boolean isProperty() {
+        readType();
+        return dirID == 0;
+    }
+
+    public boolean isEdge() {
+        readType();
+        return dirID != 0;
+    }
+
+    public long getTypeId() {
+        readType();
+        return typeid;
+    }
+
+    public TitanType getType() {
+        readType();
+        if (type == null) type = (InternalType) tx.getExistingType(typeid);
+        return type;
+    }
+
+    public boolean isHidden() {
+        return ((InternalType) getType()).isHidden();
+    }
+
+    /**
+     * @return id of the adjacent vertex of the edge
+     * @throws IllegalArgumentException if the entry does not represent an edge
+     */
+    public long getOtherVertexId() {
+        Preconditions.checkArgument(isEdge(), "Entry does not represent an edge");
+        readHeader();
+        return otherVertexId;
+    }
+
+    /**
+     * @return value of the property
+     * @throws IllegalArgumentException if the entry does not represent a property
+     */
+    public Object getValue() {
+        Object v = getLazyValue();
+        if (v instanceof CompressedValue) {
+            v = ((CompressedValue) v).decompress();
+            value = v;
+        }
+        return v;
+    }
+
+    /**
+     * Like {@link #getValue()} but returns a compressed value as a {@link CompressedValue} which is decompressed
+     * on access.
+     */
+    public Object getLazyValue() {
+        Preconditions.checkArgument(isProperty(), "Entry does not represent a property");
+        readHeader();
+        return value;
+    }
+
+    public long getRelationId() {
+        readHeader();
+        return relationId;
+    }
+
+    /**
+     * Decodes all properties of the relation, i.e. the primary key, the signature and all remaining properties,
+     * into a map from type id to value.
+     *
+     * @return properties of the relation
+     */
+    public ImmutableLongObjectMap getProperties() {
+        readHeader();
+        ImmutableLongObjectMap.Builder builder = new ImmutableLongObjectMap.Builder();
+        TypeDefinition def = type.getDefinition();
+        long[] keysig = def.getPrimaryKey();
+        for (int i = 0; i < keysig.length; i++) builder.put(keysig[i], primaryKey[i]);
+
+        ByteBuffer reader = propertyReader != null ? propertyReader.duplicate() : data.getValue().duplicate();
+        //value signature
+        for (long typeID : def.getSignature())
+            builder.put(typeID, readInline(reader, tx.getExistingType(typeID)));
+
+        //Third: read rest
+        while (reader.hasRemaining()) {
+            TitanType t = tx.getExistingType(IDHandler.readInlineEdgeType(reader, idManager));
+            builder.put(t.getID(), readInline(reader, t));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads a property value of the given key as written by {@link EdgeSerializer}. Compressed values are returned
+     * as {@link CompressedValue}.
+     */
+    public Object readValue(ByteBuffer reader, TitanKey key) {
+        Object v;
+        if (EdgeSerializer.hasGenericDataType(key)) {
+            v = serializer.readClassAndObject(reader);
+        } else if (compression && EdgeSerializer.hasCompressibleDataType(key)) {
+            v = readCompressible(reader, key.getDataType());
+        } else {
+            v = serializer.readObjectNotNull(reader, key.getDataType());
+        }
+        Preconditions.checkNotNull(v);
+        return v;
+    }
+
+    private Object readCompressible(ByteBuffer read, Class<?> datatype) {
+        byte flag = read.get();
+        if (flag == CompressedValue.UNCOMPRESSED) {
+            return serializer.readObjectNotNull(read, datatype);
+        } else if (flag == CompressedValue.DEFLATE) {
+            int length = (int) VariableLong.readPositive(read);
+            byte[] compressed = new byte[(int) VariableLong.readPositive(read)];
+            read.get(compressed);
+            return new CompressedValue(compressed, length, datatype, serializer);
+        } else throw new IllegalArgumentException("Invalid compression flag read from disk: " + flag);
+    }
+
+    private Object readInline(ByteBuffer read, TitanType type) {
+        if (type.isPropertyKey()) {
+            TitanKey proptype = ((TitanKey) type);
+            if (EdgeSerializer.hasGenericDataType(proptype))
+                return serializer.readClassAndObject(read);
+            else return serializer.readObject(read, proptype.getDataType());
+        } else {
+            assert type.isEdgeLabel();
+            long id = VariableLong.readPositive(read);
+            if (id == 0) return null;
+            else return Long.valueOf(id);
+        }
+    }
+
+}
@@ -1,13 +1,19 @@
 package com.thinkaurelius.titan.graphdb.database;
 
+import com.carrotsearch.hppc.LongOpenHashSet;
+import com.carrotsearch.hppc.LongSet;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
 import com.thinkaurelius.titan.core.*;
 import com.thinkaurelius.titan.diskstorage.*;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexInformation;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeyIterator;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySliceQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySplit;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
 import com.thinkaurelius.titan.graphdb.blueprints.TitanBlueprintsGraph;
@@ -25,23 +31,39 @@ import com.thinkaurelius.titan.graphdb.internal.InternalVertex;
 import com.thinkaurelius.titan.graphdb.query.StandardElementQuery;
 import com.thinkaurelius.titan.graphdb.relations.EdgeDirection;
 import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
+import com.thinkaurelius.titan.graphdb.transaction.StandardTransactionBuilder;
 import com.thinkaurelius.titan.graphdb.transaction.TransactionConfig;
+import com.thinkaurelius.titan.graphdb.types.system.SystemType;
 import com.thinkaurelius.titan.graphdb.types.system.SystemTypeManager;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Features;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class StandardTitanGraph extends TitanBlueprintsGraph {
 
     private static final Logger log =
             LoggerFactory.getLogger(StandardTitanGraph.class);
 
+    /**
+     * Prefix of the properties persisted in the storage backend for the keys which are included in the index entries
+     * of other keys, followed by the id of the included key. Each key has its own property so that graph instances
+     * creating keys concurrently do not overwrite each other's included keys.
+     */
+    private static final String INCLUDED_KEY_PROPERTY_PREFIX = "included-key-";
+
     private final GraphDatabaseConfiguration config;
     private final IDManager idManager;
     private final VertexIDAssigner idAssigner;
@@ -53,6 +75,9 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
     private final int retryStorageWaitTime;
 
     protected final IndexSerializer indexSerializer;
+    private final IndexQueryCache indexQueryCache;
+    private final LookupFilter lookupFilter;
+    private final Set<Long> includedKeys = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
     protected final EdgeSerializer edgeSerializer;
     protected final Serializer serializer;
 
@@ -60,6 +85,17 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
     public StandardTitanGraph(GraphDatabaseConfiguration configuration) {
         this.config = configuration;
         this.backend = configuration.getBackend();
+        try {
+            config.verifyStorageSettings(backend);
+            this.serializer = config.getSerializer(backend);
+        } catch (TitanException e) {
+            try {
+                backend.close();
+            } catch (StorageException se) {
+                log.warn("Could not close storage backend", se);
+            }
+            throw e;
+        }
         this.maxWriteRetryAttempts = config.getWriteAttempts();
         this.retryStorageWaitTime = config.getStorageWaittime();
 
@@ -67,12 +103,71 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
         this.idAssigner = config.getIDAssigner(backend);
         this.idManager = idAssigner.getIDManager();
 
-        this.serializer = config.getSerializer();
         this.indexSerializer = new IndexSerializer(this.serializer,this.backend.getIndexInformation());
-        this.edgeSerializer = new EdgeSerializer(this.serializer,this.idManager);
+        this.edgeSerializer = new EdgeSerializer(this.serializer,this.idManager,config.getCompressionThreshold(),config.hasPackedProperties());
+        long indexCacheSize = config.getIndexQueryCacheSize();
+        this.indexQueryCache = indexCacheSize>0?new IndexQueryCache(indexCacheSize,config.getIndexQueryCacheTTL()):null;
+        this.lookupFilter = openLookupFilter();
         isOpen = true;
     }
 
+    /**
+     * Persists that the given keys are included in the index entries of a newly created key. Commits maintain the
+     * included values in the index entries only for included keys.
+     */
+    private void addIncludedKeys(long[] keyids) throws StorageException {
+        for (long keyid : keyids) {
+            if (includedKeys.contains(keyid)) continue;
+            backend.setConfigurationProperty(INCLUDED_KEY_PROPERTY_PREFIX + keyid, Boolean.TRUE.toString());
+            includedKeys.add(keyid);
+        }
+    }
+
+    /**
+     * Whether the given key is included in the index entries of some key. Since keys which include it may be created
+     * by other graph instances at any time, the persisted property is read unless the key is known to be included.
+     */
+    private boolean isIncludedKey(long keyid) throws StorageException {
+        if (includedKeys.contains(keyid)) return true;
+        if (backend.getConfigurationProperty(INCLUDED_KEY_PROPERTY_PREFIX + keyid) == null) return false;
+        includedKeys.add(keyid);
+        return true;
+    }
+
+    private LookupFilter openLookupFilter() {
+        long size = config.getLookupFilterSize();
+        File directory = getLookupFilterDirectory();
+        //Consume the snapshot also if the filter is disabled, since it is stale once the graph has been opened without it
+        LookupFilter filter = directory==null?null:LookupFilter.load(directory,size,indexSerializer);
+        if (size==0) return null;
+        if (filter!=null) return filter;
+        if (!backend.getStoreFeatures().supportsScan()) {
+            log.warn("Lookup filter is disabled since the storage backend does not support scans");
+            return null;
+        }
+        try {
+            BackendTransaction tx = backend.beginTransaction();
+            try {
+                return LookupFilter.build(size,indexSerializer,tx);
+            } finally {
+                tx.rollback();
+            }
+        } catch (StorageException e) {
+            throw new TitanException("Could not build lookup filter",e);
+        }
+    }
+
+    /**
+     * @return The directory in which the lookup filter snapshot is kept or null if the storage backend has none
+     */
+    private File getLookupFilterDirectory() {
+        try {
+            return config.getHomeDirectory();
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
     @Override
     public boolean isOpen() {
         return isOpen;
@@ -84,6 +179,10 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
         try {
             super.shutdown();
             idAssigner.close();
+            if (lookupFilter!=null) {
+                File directory = getLookupFilterDirectory();
+                if (directory!=null) lookupFilter.save(directory);
+            }
             backend.close();
         } catch (StorageException e) {
             throw new TitanException("Could not close storage backend", e);
@@ -103,6 +202,11 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
         return newTransaction(new TransactionConfig(config, false));
     }
 
+    @Override
+    public TransactionBuilder buildTransaction() {
+        return new StandardTransactionBuilder(this);
+    }
+
     @Override
     public TitanTransaction newThreadBoundTransaction() {
         return newTransaction(new TransactionConfig(config, true));
@@ -122,6 +226,14 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
         return indexinfo;
     }
 
+    /**
+     * @return The number of committed transactions whose mutations have not yet been applied to the given external
+     * index, which is always 0 unless the index is configured to be updated asynchronously
+     */
+    public long getIndexUpdateLag(String indexName) {
+        return backend.getIndexUpdateLag(indexName);
+    }
+
     public IDInspector getIDInspector() {
         return idManager;
     }
@@ -130,6 +242,24 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
         return edgeSerializer;
     }
 
+    public IndexSerializer getIndexSerializer() {
+        return indexSerializer;
+    }
+
+    /**
+     * @return The cache of index query results shared by all transactions, or null if it has not been enabled
+     */
+    public IndexQueryCache getIndexQueryCache() {
+        return indexQueryCache;
+    }
+
+    /**
+     * @return The filter ruling out non-existent vertices and unique values, or null if it has not been enabled
+     */
+    public LookupFilter getLookupFilter() {
+        return lookupFilter;
+    }
+
     public GraphDatabaseConfiguration getConfiguration() {
         return config;
     }
@@ -138,6 +268,7 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
 
     public boolean containsVertexID(long id, BackendTransaction tx) {
         log.trace("Checking node existence for {}", id);
+        if (lookupFilter!=null && !lookupFilter.mightContainVertex(id)) return false;
         return tx.edgeStoreContainsKey(IDHandler.getKey(id));
     }
 
@@ -165,7 +296,40 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
     }
 
 
-    public List<Object> elementQuery(StandardElementQuery query, BackendTransaction tx) {
+    /**
+     * Splits the vertex id space into disjoint splits which can be scanned in parallel with
+     * {@link #getVertexIDs(KeySplit, BackendTransaction)}. The number of splits is a hint to the storage backend.
+     */
+    public List<KeySplit> getVertexIDSplits(int numSplits, final BackendTransaction tx) {
+        if (!backend.getStoreFeatures().supportsScan())
+            throw new UnsupportedOperationException("The configured storage backend does not support global graph operations - use Faunus instead");
+        return tx.edgeStoreKeySplits(numSplits);
+    }
+
+    public RecordIterator<Long> getVertexIDs(KeySplit split, final BackendTransaction tx) {
+        if (!backend.getStoreFeatures().supportsScan())
+            throw new UnsupportedOperationException("The configured storage backend does not support global graph operations - use Faunus instead");
+        final KeyIterator keyiter = tx.edgeStoreKeys(split, null);
+        return new RecordIterator<Long>() {
+
+            @Override
+            public boolean hasNext() throws StorageException {
+                return keyiter.hasNext();
+            }
+
+            @Override
+            public Long next() throws StorageException {
+                return IDHandler.getKeyID(keyiter.next());
+            }
+
+            @Override
+            public void close() throws StorageException {
+                keyiter.close();
+            }
+        };
+    }
+
+    public Iterator<Object> elementQuery(StandardElementQuery query, BackendTransaction tx) {
         return indexSerializer.query(query,tx);
     }
 
@@ -174,6 +338,14 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
         return tx.edgeStoreQuery(new KeySliceQuery(IDHandler.getKey(vid),query));
     }
 
+    public List<List<Entry>> edgeMultiQuery(long vid, List<? extends SliceQuery> queries, BackendTransaction tx) {
+        Preconditions.checkArgument(vid>0);
+        List<KeySliceQuery> keyQueries = new ArrayList<KeySliceQuery>(queries.size());
+        //Each query gets its own key buffer since the queries may be executed concurrently
+        for (SliceQuery query : queries) keyQueries.add(new KeySliceQuery(IDHandler.getKey(vid),query));
+        return tx.edgeStoreMultiQuery(keyQueries);
+    }
+
 
 
     // ################### WRITE #########################
@@ -193,6 +365,8 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
         //1. Assign TitanVertex IDs
         if (!tx.getConfiguration().hasAssignIDsImmediately())
             idAssigner.assignIDs(addedRelations);
+        //New vertices and unique values must pass the lookup filter before they become visible in storage
+        if (lookupFilter!=null) lookupFilter.add(addedRelations);
 
         for (int saveAttempt = 0; saveAttempt < maxWriteRetryAttempts; saveAttempt++) {
 //        while (true) { //Indefinite loop, broken if no exception occurs, otherwise retried or failed immediately
@@ -204,9 +378,10 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
                         Preconditions.checkArgument(del.isRemoved());
                         for (int pos = 0; pos < del.getLen(); pos++) {
                             InternalVertex vertex = del.getVertex(pos);
-                            mutations.put(vertex, del);
+                            //Self-loops are persisted for both positions when the vertex is processed
+                            if (pos == 0 || !vertex.equals(del.getVertex(0))) mutations.put(vertex, del);
                             Direction dir = EdgeDirection.fromPosition(pos);
-                            if (acquireLocks && del.getType().isUnique(dir) &&
+                            if (acquireLocks && del.getType().isUnique(dir) && !edgeSerializer.isPacked(del) &&
                                     ((InternalType) del.getType()).uniqueLock(dir)) {
                                 Entry entry = edgeSerializer.writeRelation(del,pos,tx);
                                 mutator.acquireEdgeLock(IDHandler.getKey(vertex.getID()), entry.getColumn(), entry.getValue());
@@ -235,9 +410,10 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
                     } else { //STANDARD TitanRelation
                         for (int pos = 0; pos < relation.getLen(); pos++) {
                             InternalVertex node = relation.getVertex(pos);
-                            mutations.put(node, relation);
+                            if (pos == 0 || !node.equals(relation.getVertex(0))) mutations.put(node, relation);
                             Direction dir = EdgeDirection.fromPosition(pos);
                             if (acquireLocks && relation.getType().isUnique(dir) && !node.isNew()
+                                    && !edgeSerializer.isPacked(relation)
                                     && ((InternalType) relation.getType()).uniqueLock(dir)) {
                                 Entry entry = edgeSerializer.writeRelation(relation, pos, false, tx);
                                 mutator.acquireEdgeLock(IDHandler.getKey(node.getID()), entry.getColumn(), null);
@@ -251,9 +427,75 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
 
                 }
 
-                //3. Persist
+                //4. Read and lock the packed properties of mutated vertices
+                Map<InternalVertex, Entry> packedProperties = null;
+                if (edgeSerializer.hasPackedProperties()) {
+                    packedProperties = new HashMap<InternalVertex, Entry>();
+                    SliceQuery packedQuery = new SliceQuery(edgeSerializer.getPackedColumn(),
+                            FittedSliceQuery.pointRange(edgeSerializer.getPackedColumn()));
+                    for (Map.Entry<InternalVertex, InternalRelation> mutation : mutations.entries()) {
+                        InternalVertex vertex = mutation.getKey();
+                        if (packedProperties.containsKey(vertex) || !edgeSerializer.isPacked(mutation.getValue())) continue;
+                        Entry current = null;
+                        if (!vertex.isNew()) {
+                            List<Entry> entries = edgeQuery(vertex.getID(), packedQuery, mutator);
+                            if (!entries.isEmpty()) current = entries.get(0);
+                            //The entry is always locked since the read-modify-write would otherwise silently lose
+                            //the properties set or removed by concurrent transactions, even if locking is disabled
+                            mutator.acquireEdgeLock(IDHandler.getKey(vertex.getID()), edgeSerializer.getPackedColumn(),
+                                    current == null ? null : current.getValue());
+                        }
+                        packedProperties.put(vertex, current);
+                    }
+                }
+
+                //5. Read and lock the compact blocks of mutated vertices and labels
+                Map<InternalVertex, List<EdgeSerializer.CompactUpdate>> compactUpdates = null;
+                Map<InternalVertex, SetMultimap<TitanLabel, InternalRelation>> compactEdges = null;
+                for (Map.Entry<InternalVertex, InternalRelation> mutation : mutations.entries()) {
+                    InternalRelation relation = mutation.getValue();
+                    if (!edgeSerializer.isCompact(relation, 0) || !relation.getVertex(0).equals(mutation.getKey())) continue;
+                    if (compactEdges == null) compactEdges = new HashMap<InternalVertex, SetMultimap<TitanLabel, InternalRelation>>();
+                    SetMultimap<TitanLabel, InternalRelation> edges = compactEdges.get(mutation.getKey());
+                    if (edges == null) {
+                        edges = LinkedHashMultimap.create();
+                        compactEdges.put(mutation.getKey(), edges);
+                    }
+                    edges.put((TitanLabel) relation.getType(), relation);
+                }
+                if (compactEdges != null) {
+                    compactUpdates = new HashMap<InternalVertex, List<EdgeSerializer.CompactUpdate>>();
+                    for (Map.Entry<InternalVertex, SetMultimap<TitanLabel, InternalRelation>> vertexEdges : compactEdges.entrySet()) {
+                        InternalVertex vertex = vertexEdges.getKey();
+                        ByteBuffer key = IDHandler.getKey(vertex.getID());
+                        List<EdgeSerializer.CompactUpdate> updates = new ArrayList<EdgeSerializer.CompactUpdate>();
+                        for (TitanLabel label : vertexEdges.getValue().keySet()) {
+                            List<Entry> current = vertex.isNew() ? Collections.<Entry>emptyList()
+                                    : edgeQuery(vertex.getID(), edgeSerializer.getCompactQuery(label), mutator);
+                            EdgeSerializer.CompactUpdate update = edgeSerializer.writeCompactEdges(vertex, label,
+                                    current, vertexEdges.getValue().get(label));
+                            //Blocks are always locked since the read-modify-write would otherwise silently lose
+                            //the edges added or removed by concurrent transactions, even if locking is disabled
+                            if (!vertex.isNew()) {
+                                for (Entry block : update.getReplaced())
+                                    mutator.acquireEdgeLock(key, block.getColumn(), block.getValue());
+                                for (ByteBuffer column : update.getNewColumns())
+                                    mutator.acquireEdgeLock(key, column, null);
+                            }
+                            updates.add(update);
+                        }
+                        compactUpdates.put(vertex, updates);
+                    }
+                }
+
+                //6. Persist
                 if (!otherEdgeTypes.isEmpty()) {
-                    persist(otherEdgeTypes, tx);
+                    //Modifications of included keys must update the index entries as soon as a key includes them
+                    for (InternalType itype : otherEdgeTypes.keySet()) {
+                        if (itype.isPropertyKey() && itype.isNew())
+                            addIncludedKeys(IndexSerializer.getIncludedKeys((TitanKey)itype));
+                    }
+                    persist(otherEdgeTypes, null, null, tx);
                     mutator.flush();
                     //Register new keys with indexprovider
                     for (InternalType itype : otherEdgeTypes.keySet()) {
@@ -261,7 +503,7 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
                     }
                 }
 
-                if (!mutations.isEmpty()) persist(mutations, tx);
+                if (!mutations.isEmpty()) persist(mutations, packedProperties, compactUpdates, tx);
 
 
                 //Successfully completed - return to break out of loop
@@ -282,6 +524,8 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
 
 
     private <V extends InternalVertex> void persist(ListMultimap<V, InternalRelation> mutatedEdges,
+                                                    Map<InternalVertex, Entry> packedProperties,
+                                                    Map<InternalVertex, List<EdgeSerializer.CompactUpdate>> compactUpdates,
                                                     StandardTitanTx tx) throws StorageException {
         assert mutatedEdges != null && !mutatedEdges.isEmpty();
 
@@ -292,11 +536,13 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
 //			vertices=sortedvertices;
 //		}
         BackendTransaction mutator = tx.getTxHandle();
+        LongSet notIncludedKeys = new LongOpenHashSet();
         for (V vertex : vertices) {
             Preconditions.checkArgument(vertex.getID()>0,"Vertex has no id: %s",vertex.getID());
             List<InternalRelation> edges = mutatedEdges.get(vertex);
             List<Entry> additions = new ArrayList<Entry>(edges.size());
             List<ByteBuffer> deletions = new ArrayList<ByteBuffer>(Math.max(10, edges.size() / 10));
+            List<InternalRelation> packed = null;
             for (InternalRelation edge : edges) {
                 for (int pos=0;pos<edge.getLen();pos++) {
                     if (edge.getVertex(pos).equals(vertex)) {
@@ -306,7 +552,12 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
                             } else if (edge.isEdge()) {
                                 indexSerializer.removeEdge(edge,mutator);
                             }
-                            deletions.add(edgeSerializer.writeRelation(edge, pos, false, tx).getColumn());
+                            if (packedProperties != null && edgeSerializer.isPacked(edge)) {
+                                if (packed == null) packed = new ArrayList<InternalRelation>();
+                                packed.add(edge);
+                            } else if (compactUpdates == null || !edgeSerializer.isCompact(edge, pos)) {
+                                deletions.add(edgeSerializer.writeRelation(edge, pos, false, tx).getColumn());
+                            }
                         } else {
                             assert edge.isNew();
                             if (edge.isProperty()) {
@@ -314,11 +565,39 @@ public class StandardTitanGraph extends TitanBlueprintsGraph {
                             } else {
                                 indexSerializer.addEdge(edge, mutator);
                             }
-                            additions.add(edgeSerializer.writeRelation(edge, pos, tx));
+                            if (packedProperties != null && edgeSerializer.isPacked(edge)) {
+                                if (packed == null) packed = new ArrayList<InternalRelation>();
+                                packed.add(edge);
+                            } else if (compactUpdates == null || !edgeSerializer.isCompact(edge, pos)) {
+                                additions.add(edgeSerializer.writeRelation(edge, pos, tx));
+                            }
                         }
                     }
                 }
             }
+            if (!vertex.isNew() && !vertex.isRemoved()) {
+                LongSet mutatedKeys = new LongOpenHashSet();
+                for (InternalRelation edge : edges) {
+                    if (!edge.isProperty() || edge.getType() instanceof SystemType) continue;
+                    long keyid = edge.getType().getID();
+                    if (mutatedKeys.contains(keyid) || notIncludedKeys.contains(keyid)) continue;
+                    if (isIncludedKey(keyid)) mutatedKeys.add(keyid);
+                    else notIncludedKeys.add(keyid);
+                }
+                if (!mutatedKeys.isEmpty()) indexSerializer.updateIncludedValues(vertex, mutatedKeys, mutator);
+            }
+            if (packed != null) {
+                Entry current = packedProperties.get(vertex);
+                Entry updated = edgeSerializer.writePackedProperties(vertex, current, packed, tx);
+                if (updated != null) additions.add(updated);
+                else if (current != null) deletions.add(current.getColumn());
+            }
+            if (compactUpdates != null && compactUpdates.containsKey(vertex)) {
+                for (EdgeSerializer.CompactUpdate update : compactUpdates.get(vertex)) {
+                    additions.addAll(update.getAdditions());
+                    deletions.addAll(update.getDeletions());
+                }
+            }
             mutator.mutateEdges(IDHandler.getKey(vertex.getID()), additions, deletions);
         }
 
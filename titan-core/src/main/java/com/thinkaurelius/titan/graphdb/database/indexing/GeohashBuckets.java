@@ -0,0 +1,115 @@
+package com.thinkaurelius.titan.graphdb.database.indexing;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.spatial4j.core.io.GeohashUtils;
+import com.spatial4j.core.shape.Rectangle;
+import com.thinkaurelius.titan.core.attribute.Geoshape;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Determines the geohash buckets under which the standard index stores geographic values and the buckets which need
+ * to be retrieved to answer a {@link com.thinkaurelius.titan.core.attribute.Geo#WITHIN} query.
+ * <p/>
+ * A point is stored in the bucket of each prefix of its geohash up to the configured precision, so that queries can
+ * pick the cell size which covers the query shape with a bounded number of cells. All other shapes are stored in a
+ * single bucket, identified by the empty geohash, which is part of every cover. The buckets only approximate the
+ * query shape, hence the retrieved candidates must be filtered.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class GeohashBuckets {
+
+    /**
+     * Maximum number of cells retrieved for a query. The whole earth is covered by 32 cells of length 1.
+     */
+    public static final int MAX_COVER_CELLS = 64;
+
+    private static final String NON_POINT_BUCKET = "";
+
+    //Widens query bounds to be robust against rounding at cell boundaries
+    private static final double EPSILON = 1e-6;
+
+    /**
+     * Returns the buckets in which the given value is stored.
+     *
+     * @param value     Indexed value
+     * @param precision Maximum geohash length
+     * @return Geohash prefixes of length 1 to precision for points, else the bucket of non-point shapes
+     */
+    public static List<String> getBuckets(Geoshape value, int precision) {
+        Preconditions.checkArgument(precision>0);
+        if (value.getType()!=Geoshape.Type.POINT) return ImmutableList.of(NON_POINT_BUCKET);
+        String geohash = value.getGeohash(precision);
+        List<String> buckets = new ArrayList<String>(precision);
+        for (int i=1;i<=precision;i++) buckets.add(geohash.substring(0,i));
+        return buckets;
+    }
+
+    /**
+     * Returns the buckets covering the given query shape, using the longest geohashes up to the given precision for
+     * which the number of cells does not exceed {@link #MAX_COVER_CELLS}.
+     *
+     * @param query     Query shape
+     * @param precision Maximum geohash length
+     * @return Disjoint geohash cells of equal length covering the bounding box of the query shape, and the bucket of
+     *         non-point shapes
+     */
+    public static Set<String> getCover(Geoshape query, int precision) {
+        Preconditions.checkArgument(precision>0);
+        Rectangle bounds = query.convert2Spatial4j().getBoundingBox();
+        int length = precision;
+        while (length>1 && countCells(bounds,length)>MAX_COVER_CELLS) length--;
+
+        double[] size = GeohashUtils.lookupDegreesSizeForHashLen(length);
+        double height = size[0], width = size[1];
+        Set<String> cover = new LinkedHashSet<String>();
+        cover.add(NON_POINT_BUCKET);
+        int[] lat = range(bounds.getMinY(),bounds.getMaxY(),-90.0,height);
+        for (double[] lonRange : getLongitudeRanges(bounds)) {
+            int[] lon = range(lonRange[0],lonRange[1],-180.0,width);
+            for (int i=lat[0];i<=lat[1];i++) {
+                for (int j=lon[0];j<=lon[1];j++) {
+                    cover.add(GeohashUtils.encodeLatLon(-90.0+(i+0.5)*height,-180.0+(j+0.5)*width,length));
+                }
+            }
+        }
+        return cover;
+    }
+
+    private static int countCells(Rectangle bounds, int length) {
+        double[] size = GeohashUtils.lookupDegreesSizeForHashLen(length);
+        int[] lat = range(bounds.getMinY(),bounds.getMaxY(),-90.0,size[0]);
+        int cells = 0;
+        for (double[] lonRange : getLongitudeRanges(bounds)) {
+            int[] lon = range(lonRange[0],lonRange[1],-180.0,size[1]);
+            cells += (lat[1]-lat[0]+1)*(lon[1]-lon[0]+1);
+        }
+        return cells;
+    }
+
+    private static double[][] getLongitudeRanges(Rectangle bounds) {
+        if (bounds.getCrossesDateLine()) {
+            return new double[][]{{bounds.getMinX(),180.0},{-180.0,bounds.getMaxX()}};
+        } else {
+            return new double[][]{{bounds.getMinX(),bounds.getMaxX()}};
+        }
+    }
+
+    /**
+     * Returns the first and last index of the cells of the given size, starting at the given origin, which overlap
+     * the interval from min to max.
+     */
+    private static int[] range(double min, double max, double origin, double cellSize) {
+        int numCells = (int)Math.round(-2*origin/cellSize);
+        int first = (int)Math.floor((min-EPSILON-origin)/cellSize);
+        int last = (int)Math.floor((max+EPSILON-origin)/cellSize);
+        return new int[]{Math.max(0,first),Math.min(numCells-1,last)};
+    }
+
+}
@@ -1,6 +1,10 @@
 package com.thinkaurelius.titan.graphdb.database.indexing;
 
+import com.google.common.base.Preconditions;
+import com.spatial4j.core.io.GeohashUtils;
 import com.thinkaurelius.titan.core.attribute.Cmp;
+import com.thinkaurelius.titan.core.attribute.Geo;
+import com.thinkaurelius.titan.core.attribute.Geoshape;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexInformation;
 import com.thinkaurelius.titan.graphdb.query.keycondition.Relation;
 
@@ -10,13 +14,42 @@ import com.thinkaurelius.titan.graphdb.query.keycondition.Relation;
 
 public class StandardIndexInformation implements IndexInformation {
 
-    public static final StandardIndexInformation INSTANCE = new StandardIndexInformation();
+    public static final StandardIndexInformation INSTANCE = new StandardIndexInformation(0);
 
-    private StandardIndexInformation() {}
+    private final int geohashPrecision;
+
+    private StandardIndexInformation(int geohashPrecision) {
+        this.geohashPrecision = geohashPrecision;
+    }
+
+    /**
+     * Returns the standard index information for the given geohash precision, where 0 disables geohash buckets.
+     *
+     * @param geohashPrecision Maximum length of the geohash buckets
+     * @return Standard index information for the given precision
+     */
+    public static StandardIndexInformation of(int geohashPrecision) {
+        Preconditions.checkArgument(geohashPrecision>=0 && geohashPrecision<=GeohashUtils.MAX_PRECISION,
+                "Invalid geohash precision: %s",geohashPrecision);
+        if (geohashPrecision==0) return INSTANCE;
+        return new StandardIndexInformation(geohashPrecision);
+    }
+
+    /**
+     * @return The maximum length of the geohash buckets under which points are indexed or 0 if disabled
+     */
+    public int getGeohashPrecision() {
+        return geohashPrecision;
+    }
+
+    public boolean hasGeohashBuckets() {
+        return geohashPrecision>0;
+    }
 
     @Override
     public boolean supports(Class<?> dataType, Relation relation) {
-        return relation==Cmp.EQUAL;
+        if (relation==Cmp.EQUAL) return true;
+        return hasGeohashBuckets() && relation==Geo.WITHIN && dataType.equals(Geoshape.class);
     }
 
     @Override
@@ -0,0 +1,124 @@
+package com.thinkaurelius.titan.graphdb.database.serialize;
+
+import com.google.common.base.Preconditions;
+import com.thinkaurelius.titan.core.TitanException;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A property value as read from disk in its compressed form. The value is only decompressed and deserialized when
+ * {@link #decompress()} is called, so that reading a relation does not pay for decompressing values which are never
+ * accessed.
+ * <p/>
+ * Also provides the codec used for compressing values which is the JDK's {@link Deflater}. Deflaters and inflaters are
+ * reused per thread since they hold native memory.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class CompressedValue {
+
+    /**
+     * Flag byte preceding values which may be compressed
+     */
+    public static final byte UNCOMPRESSED = 0;
+    public static final byte DEFLATE = 1;
+
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    private final byte[] compressed;
+    private final int length;
+    private final Class<?> type;
+    private final Serializer serializer;
+
+    public CompressedValue(byte[] compressed, int length, Class<?> type, Serializer serializer) {
+        Preconditions.checkNotNull(compressed);
+        Preconditions.checkArgument(length >= 0);
+        Preconditions.checkNotNull(type);
+        Preconditions.checkNotNull(serializer);
+        this.compressed = compressed;
+        this.length = length;
+        this.type = type;
+        this.serializer = serializer;
+    }
+
+    /**
+     * @return The deserialized value
+     */
+    public Object decompress() {
+        return serializer.readObjectNotNull(ByteBuffer.wrap(inflate(compressed, length)), type);
+    }
+
+    /**
+     * Compresses the given bytes.
+     *
+     * @param data Bytes to compress
+     * @return The compressed bytes or null if compression does not reduce the size
+     */
+    public static byte[] deflate(byte[] data) {
+        Deflater deflater = deflaters.get();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] out = new byte[data.length];
+            int len = 0;
+            while (!deflater.finished() && len < out.length) {
+                len += deflater.deflate(out, len, out.length - len);
+            }
+            if (!deflater.finished() || len >= data.length) return null;
+            byte[] result = new byte[len];
+            System.arraycopy(out, 0, result, 0, len);
+            return result;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    /**
+     * Decompresses the given bytes.
+     *
+     * @param data   Compressed bytes
+     * @param length Number of bytes before compression
+     * @return The decompressed bytes
+     */
+    public static byte[] inflate(byte[] data, int length) {
+        Inflater inflater = inflaters.get();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[length];
+            int len = 0;
+            while (len < length) {
+                int read = inflater.inflate(out, len, length - len);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                len += read;
+            }
+            if (len != length) throw new TitanException("Corrupted compressed value: expected " + length + " bytes but got " + len);
+            return out;
+        } catch (DataFormatException e) {
+            throw new TitanException("Corrupted compressed value", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedValue[" + type.getSimpleName() + "," + compressed.length + "/" + length + "]";
+    }
+
+}
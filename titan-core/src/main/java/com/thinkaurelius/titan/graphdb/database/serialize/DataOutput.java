@@ -14,6 +14,16 @@ public interface DataOutput {
 
     public DataOutput putString(String string);
 
+    public DataOutput putBytes(byte[] bytes);
+
+    public DataOutput putLongs(long[] values);
+
+    public DataOutput putInts(int[] values);
+
+    public DataOutput putDoubles(double[] values);
+
+    public DataOutput putFloats(float[] values);
+
 
     public DataOutput writeObject(Object object, Class<?> type);
 
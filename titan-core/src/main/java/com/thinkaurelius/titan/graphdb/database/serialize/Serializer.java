@@ -18,4 +18,10 @@ public interface Serializer {
 
     public DataOutput getDataOutput(int capacity, boolean serializeObjects);
 
+    /**
+     * @return Whether values of the given data type are serialized such that their byte order matches their natural order
+     * @see com.thinkaurelius.titan.core.OrderPreservingSerializer
+     */
+    public boolean isOrderPreserving(Class<?> datatype);
+
 }
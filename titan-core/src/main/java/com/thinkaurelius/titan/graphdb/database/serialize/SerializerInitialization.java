@@ -13,12 +13,38 @@ public class SerializerInitialization {
     private static final int KRYO_OFFSET = 40;
     public static final int RESERVED_ID_OFFSET = 256;
 
-    public static final void initialize(Serializer serializer) {
+    /**
+     * Serialization format of graphs created before the order-preserving encodings. Dates are stored in descending
+     * order, doubles and floats as truncated fixed-point numbers and strings, bytes, shorts, characters, booleans
+     * as well as int[], double[] and long[] with Kryo's default serializers.
+     * <p/>
+     * Such graphs keep reading and writing this format. To move a graph to the {@link #CURRENT_FORMAT}, copy its
+     * vertices and edges into a newly created graph.
+     */
+    public static final int LEGACY_FORMAT = 1;
+
+    /**
+     * Serialization format of newly created graphs. Strings, dates and numbers are encoded such that their byte order
+     * matches their natural order, and primitive arrays are copied in bulk.
+     */
+    public static final int CURRENT_FORMAT = 2;
+
+    /**
+     * Registers the standard classes with the given serializer.
+     * <p/>
+     * Classes registered more than once are written under their highest id, the lower ids remain readable. The
+     * registrations of the legacy format are hence kept, and the current format registers its serializers under new ids.
+     *
+     * @param serializer Serializer to initialize
+     * @param format     Serialization format of the graph
+     */
+    public static final void initialize(Serializer serializer, int format) {
+        Preconditions.checkArgument(format==LEGACY_FORMAT || format==CURRENT_FORMAT,"Unknown serialization format: %s",format);
         serializer.registerClass(String[].class,KRYO_OFFSET+1);
         serializer.registerClass(StandardKeyDefinition.class,KRYO_OFFSET+2);
         serializer.registerClass(StandardLabelDefinition.class,KRYO_OFFSET+3);
         serializer.registerClass(StandardTypeGroup.class,KRYO_OFFSET+4);
-        serializer.registerClass(Date.class, new DateSerializer(),KRYO_OFFSET+6);
+        serializer.registerClass(Date.class, new LegacyDateSerializer(),KRYO_OFFSET+6);
         serializer.registerClass(ArrayList.class,KRYO_OFFSET+7);
         serializer.registerClass(HashMap.class,KRYO_OFFSET+8);
         serializer.registerClass(int[].class,KRYO_OFFSET+9);
@@ -29,12 +55,26 @@ public class SerializerInitialization {
         serializer.registerClass(IndexType.class,KRYO_OFFSET+14);
         serializer.registerClass(TitanTypeClass.class,KRYO_OFFSET+15);
         serializer.registerClass(Integer.class, new IntegerSerializer(),KRYO_OFFSET+16);
-        serializer.registerClass(Double.class, new DoubleSerializer(),KRYO_OFFSET+17);
-        serializer.registerClass(Float.class, new FloatSerializer(),KRYO_OFFSET+18);
+        serializer.registerClass(Double.class, new LegacyDoubleSerializer(),KRYO_OFFSET+17);
+        serializer.registerClass(Float.class, new LegacyFloatSerializer(),KRYO_OFFSET+18);
         serializer.registerClass(Long.class, new LongSerializer(),KRYO_OFFSET+19);
         serializer.registerClass(IndexType.class,KRYO_OFFSET+20);
         serializer.registerClass(IndexType[].class,KRYO_OFFSET+21);
-        Preconditions.checkArgument(KRYO_OFFSET+21<RESERVED_ID_OFFSET,"ID allocation overflow!");
+        serializer.registerClass(float[].class, new FloatArraySerializer(),KRYO_OFFSET+22);
+        if (format==CURRENT_FORMAT) {
+            serializer.registerClass(String.class, new StringSerializer(),KRYO_OFFSET+23);
+            serializer.registerClass(Byte.class, new ByteSerializer(),KRYO_OFFSET+24);
+            serializer.registerClass(Short.class, new ShortSerializer(),KRYO_OFFSET+25);
+            serializer.registerClass(Character.class, new CharacterSerializer(),KRYO_OFFSET+26);
+            serializer.registerClass(Boolean.class, new BooleanSerializer(),KRYO_OFFSET+27);
+            serializer.registerClass(int[].class, new IntArraySerializer(),KRYO_OFFSET+28);
+            serializer.registerClass(double[].class, new DoubleArraySerializer(),KRYO_OFFSET+29);
+            serializer.registerClass(long[].class, new LongArraySerializer(),KRYO_OFFSET+30);
+            serializer.registerClass(Date.class, new DateSerializer(),KRYO_OFFSET+31);
+            serializer.registerClass(Double.class, new DoubleSerializer(),KRYO_OFFSET+32);
+            serializer.registerClass(Float.class, new FloatSerializer(),KRYO_OFFSET+33);
+        }
+        Preconditions.checkArgument(KRYO_OFFSET+33<RESERVED_ID_OFFSET,"ID allocation overflow!");
     }
 
 }
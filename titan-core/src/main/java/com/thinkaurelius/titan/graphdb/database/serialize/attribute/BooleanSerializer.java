@@ -0,0 +1,20 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
+
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+
+import java.nio.ByteBuffer;
+
+public class BooleanSerializer implements OrderPreservingSerializer<Boolean> {
+
+    @Override
+    public Boolean read(ByteBuffer buffer) {
+        return Boolean.valueOf(buffer.get() != 0);
+    }
+
+    @Override
+    public void writeObjectData(DataOutput out, Boolean object) {
+        out.putByte((byte) (object.booleanValue() ? 1 : 0));
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
+
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+
+import java.nio.ByteBuffer;
+
+public class ByteSerializer implements OrderPreservingSerializer<Byte> {
+
+    @Override
+    public Byte read(ByteBuffer buffer) {
+        return Byte.valueOf((byte) (buffer.get() + Byte.MIN_VALUE));
+    }
+
+    @Override
+    public void writeObjectData(DataOutput out, Byte object) {
+        out.putByte((byte) (object.byteValue() - Byte.MIN_VALUE));
+    }
+
+}
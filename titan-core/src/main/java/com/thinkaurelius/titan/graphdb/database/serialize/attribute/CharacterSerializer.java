@@ -0,0 +1,20 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
+
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+
+import java.nio.ByteBuffer;
+
+public class CharacterSerializer implements OrderPreservingSerializer<Character> {
+
+    @Override
+    public Character read(ByteBuffer buffer) {
+        return Character.valueOf(buffer.getChar());
+    }
+
+    @Override
+    public void writeObjectData(DataOutput out, Character object) {
+        out.putShort((short) object.charValue());
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
+
+import com.thinkaurelius.titan.core.AttributeSerializer;
+import com.thinkaurelius.titan.graphdb.database.idhandling.VariableLong;
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes double[] as its length followed by the 8-byte values, which are copied in bulk.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class DoubleArraySerializer implements AttributeSerializer<double[]> {
+
+    @Override
+    public double[] read(ByteBuffer buffer) {
+        int length = (int) VariableLong.readPositive(buffer);
+        double[] array = new double[length];
+        buffer.asDoubleBuffer().get(array);
+        buffer.position(buffer.position() + length * 8);
+        return array;
+    }
+
+    @Override
+    public void writeObjectData(DataOutput out, double[] array) {
+        VariableLong.writePositive(out, array.length);
+        out.putDoubles(array);
+    }
+
+}
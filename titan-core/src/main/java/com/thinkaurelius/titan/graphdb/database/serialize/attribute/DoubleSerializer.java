@@ -1,33 +1,29 @@
 package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
 
-import com.thinkaurelius.titan.core.AttributeSerializer;
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
 import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
 
 import java.nio.ByteBuffer;
 
-public class DoubleSerializer implements AttributeSerializer<Double> {
+/**
+ * Serializes the IEEE 754 representation of a double with the sign bit flipped for positive and all bits flipped for
+ * negative values, so that the byte order matches the numeric order.
+ */
+public class DoubleSerializer implements OrderPreservingSerializer<Double> {
 
     private static final long serialVersionUID = -1719511496523862718L;
 
-    public static final int DECIMALS = 6;
-    private static int MULTIPLIER = 0;
-
-    static {
-        MULTIPLIER = 1;
-        for (int i = 0; i < DECIMALS; i++) MULTIPLIER *= 10;
-    }
-
     @Override
     public Double read(ByteBuffer buffer) {
-        long convert = buffer.getLong();
-        convert = convert + Long.MIN_VALUE;
-        return Double.valueOf(((double) convert) / MULTIPLIER);
+        long bits = buffer.getLong();
+        bits = bits < 0 ? bits ^ Long.MIN_VALUE : ~bits;
+        return Double.valueOf(Double.longBitsToDouble(bits));
     }
 
     @Override
     public void writeObjectData(DataOutput out, Double object) {
-        long convert = (long) (object.doubleValue() * MULTIPLIER) - Long.MIN_VALUE;
-        out.putLong(convert);
+        long bits = Double.doubleToLongBits(object.doubleValue());
+        out.putLong(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE);
     }
 
 }
@@ -0,0 +1,32 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
+
+import com.thinkaurelius.titan.core.AttributeSerializer;
+import com.thinkaurelius.titan.graphdb.database.idhandling.VariableLong;
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes float[] as its length followed by the 4-byte values, which are copied in bulk.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class FloatArraySerializer implements AttributeSerializer<float[]> {
+
+    @Override
+    public float[] read(ByteBuffer buffer) {
+        int length = (int) VariableLong.readPositive(buffer);
+        float[] array = new float[length];
+        buffer.asFloatBuffer().get(array);
+        buffer.position(buffer.position() + length * 4);
+        return array;
+    }
+
+    @Override
+    public void writeObjectData(DataOutput out, float[] array) {
+        VariableLong.writePositive(out, array.length);
+        out.putFloats(array);
+    }
+
+}
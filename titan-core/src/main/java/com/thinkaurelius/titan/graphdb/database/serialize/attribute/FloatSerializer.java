@@ -1,34 +1,29 @@
 package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
 
-import com.thinkaurelius.titan.core.AttributeSerializer;
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
 import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
 
 import java.nio.ByteBuffer;
 
-public class FloatSerializer implements AttributeSerializer<Float> {
+/**
+ * Serializes the IEEE 754 representation of a float with the sign bit flipped for positive and all bits flipped for
+ * negative values, so that the byte order matches the numeric order.
+ */
+public class FloatSerializer implements OrderPreservingSerializer<Float> {
 
     private static final long serialVersionUID = -1719511423423862718L;
 
-
-    public static final int DECIMALS = 3;
-    private static int MULTIPLIER = 0;
-
-    static {
-        MULTIPLIER = 1;
-        for (int i = 0; i < DECIMALS; i++) MULTIPLIER *= 10;
-    }
-
     @Override
     public Float read(ByteBuffer buffer) {
-        long convert = buffer.getLong();
-        convert = convert + Long.MIN_VALUE;
-        return Float.valueOf(((float) convert) / MULTIPLIER);
+        int bits = buffer.getInt();
+        bits = bits < 0 ? bits ^ Integer.MIN_VALUE : ~bits;
+        return Float.valueOf(Float.intBitsToFloat(bits));
     }
 
     @Override
     public void writeObjectData(DataOutput out, Float object) {
-        long convert = (long) (object.doubleValue() * MULTIPLIER) - Long.MIN_VALUE;
-        out.putLong(convert);
+        int bits = Float.floatToIntBits(object.floatValue());
+        out.putInt(bits < 0 ? ~bits : bits ^ Integer.MIN_VALUE);
     }
 
 }
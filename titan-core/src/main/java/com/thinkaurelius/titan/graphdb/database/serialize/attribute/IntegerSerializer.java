@@ -1,11 +1,11 @@
 package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
 
-import com.thinkaurelius.titan.core.AttributeSerializer;
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
 import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
 
 import java.nio.ByteBuffer;
 
-public class IntegerSerializer implements AttributeSerializer<Integer> {
+public class IntegerSerializer implements OrderPreservingSerializer<Integer> {
 
     private static final long serialVersionUID = 1174998819862504186L;
 
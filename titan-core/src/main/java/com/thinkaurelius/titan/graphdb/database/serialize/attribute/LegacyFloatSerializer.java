@@ -0,0 +1,42 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
+
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes floats as 8-byte fixed-point numbers with 3 decimals, as written by graphs in the
+ * {@link com.thinkaurelius.titan.graphdb.database.serialize.SerializerInitialization#LEGACY_FORMAT legacy format}.
+ * The fixed-point values are offset by {@link Long#MIN_VALUE} and hence preserve the order.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class LegacyFloatSerializer implements OrderPreservingSerializer<Float> {
+
+    private static final long serialVersionUID = -1719511423423862718L;
+
+
+    public static final int DECIMALS = 3;
+    private static int MULTIPLIER = 0;
+
+    static {
+        MULTIPLIER = 1;
+        for (int i = 0; i < DECIMALS; i++) MULTIPLIER *= 10;
+    }
+
+    @Override
+    public Float read(ByteBuffer buffer) {
+        long convert = buffer.getLong();
+        convert = convert + Long.MIN_VALUE;
+        return Float.valueOf(((float) convert) / MULTIPLIER);
+    }
+
+    @Override
+    public void writeObjectData(DataOutput out, Float object) {
+        long convert = (long) (object.doubleValue() * MULTIPLIER) - Long.MIN_VALUE;
+        out.putLong(convert);
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
+
+import com.thinkaurelius.titan.core.AttributeSerializer;
+import com.thinkaurelius.titan.graphdb.database.idhandling.VariableLong;
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes long[] as its length followed by the 8-byte values, which are copied in bulk.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class LongArraySerializer implements AttributeSerializer<long[]> {
+
+    @Override
+    public long[] read(ByteBuffer buffer) {
+        int length = (int) VariableLong.readPositive(buffer);
+        long[] array = new long[length];
+        buffer.asLongBuffer().get(array);
+        buffer.position(buffer.position() + length * 8);
+        return array;
+    }
+
+    @Override
+    public void writeObjectData(DataOutput out, long[] array) {
+        VariableLong.writePositive(out, array.length);
+        out.putLongs(array);
+    }
+
+}
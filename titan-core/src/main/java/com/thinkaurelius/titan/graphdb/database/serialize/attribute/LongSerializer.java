@@ -1,11 +1,11 @@
 package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
 
-import com.thinkaurelius.titan.core.AttributeSerializer;
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
 import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
 
 import java.nio.ByteBuffer;
 
-public class LongSerializer implements AttributeSerializer<Long> {
+public class LongSerializer implements OrderPreservingSerializer<Long> {
 
     private static final long serialVersionUID = -8438674418838450877L;
 
@@ -0,0 +1,20 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
+
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+
+import java.nio.ByteBuffer;
+
+public class ShortSerializer implements OrderPreservingSerializer<Short> {
+
+    @Override
+    public Short read(ByteBuffer buffer) {
+        return Short.valueOf((short) (buffer.getShort() + Short.MIN_VALUE));
+    }
+
+    @Override
+    public void writeObjectData(DataOutput out, Short object) {
+        out.putShort((short) (object.shortValue() - Short.MIN_VALUE));
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.thinkaurelius.titan.graphdb.database.serialize.attribute;
+
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
+import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes strings such that the byte order matches {@link String#compareTo(String)}.
+ * <p/>
+ * Each character <i>c</i> is written as <i>c+1</i> in one byte if it is smaller than 0x80, in two bytes prefixed
+ * by the bits 10 if it is smaller than 0x4000 and in three bytes prefixed by the bits 11 otherwise. The string is
+ * terminated by a zero byte which orders it before all strings it is a prefix of. ASCII strings take one byte per
+ * character plus the terminator.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class StringSerializer implements OrderPreservingSerializer<String> {
+
+    private static final int TERMINATOR = 0;
+
+    @Override
+    public String read(ByteBuffer buffer) {
+        char[] chars = new char[16];
+        int length = 0;
+        while (true) {
+            int b = buffer.get() & 0xFF;
+            if (b == TERMINATOR) break;
+            int c;
+            if (b < 0x80) {
+                c = b;
+            } else if (b < 0xC0) {
+                c = ((b & 0x3F) << 8) | (buffer.get() & 0xFF);
+            } else {
+                c = ((b & 0x3F) << 16) | ((buffer.get() & 0xFF) << 8) | (buffer.get() & 0xFF);
+            }
+            if (length == chars.length) {
+                char[] grown = new char[chars.length * 2];
+                System.arraycopy(chars, 0, grown, 0, length);
+                chars = grown;
+            }
+            chars[length++] = (char) (c - 1);
+        }
+        return new String(chars, 0, length);
+    }
+
+    @Override
+    public void writeObjectData(DataOutput out, String string) {
+        for (int i = 0; i < string.length(); i++) {
+            int c = string.charAt(i) + 1;
+            if (c < 0x80) {
+                out.putByte((byte) c);
+            } else if (c < 0x4000) {
+                out.putByte((byte) (0x80 | (c >>> 8)));
+                out.putByte((byte) c);
+            } else {
+                out.putByte((byte) (0xC0 | (c >>> 16)));
+                out.putByte((byte) (c >>> 8));
+                out.putByte((byte) c);
+            }
+        }
+        out.putByte((byte) TERMINATOR);
+    }
+
+}
@@ -1,60 +1,135 @@
 package com.thinkaurelius.titan.graphdb.database.serialize.kryo;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Output;
 import com.google.common.base.Preconditions;
 import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
 
 import java.nio.ByteBuffer;
-
+import java.util.Arrays;
+
+/**
+ * {@link DataOutput} backed by a Kryo {@link Output}.
+ * <p/>
+ * Outputs created by {@link KryoSerializer#getDataOutput(int, boolean)} borrow their {@link Output} from a pool of the
+ * current thread. {@link #getByteBuffer()} copies the written bytes into an array of exactly the written length and
+ * returns the output to the pool. Writing after {@link #getByteBuffer()} borrows a new output which continues from the
+ * bytes written so far.
+ */
 public class KryoDataOutput implements DataOutput {
 
 
-    private final Output output;
+    private Output output;
+    private final KryoSerializer pool;
+    private final int capacity;
+    private byte[] bytes;
+
     private final KryoSerializer serializer;
     private final Kryo kryo;
 
     KryoDataOutput(Output output) {
-        this(output,null);
-    }
-
-    KryoDataOutput(Output output, KryoSerializer serializer) {
         Preconditions.checkNotNull(output);
         this.output=output;
+        this.pool=null;
+        this.capacity=0;
+        this.serializer=null;
+        this.kryo=null;
+    }
+
+    KryoDataOutput(KryoSerializer pool, int capacity, KryoSerializer serializer) {
+        Preconditions.checkNotNull(pool);
+        this.pool=pool;
+        this.capacity=capacity;
+        this.output=null;
+        this.bytes=null;
         this.serializer = serializer;
         if (serializer !=null) kryo = serializer.getKryo();
         else kryo = null;
     }
 
+    private Output output() {
+        if (output==null) {
+            output = pool.acquireOutput(capacity);
+            if (bytes!=null) {
+                output.writeBytes(bytes);
+                bytes=null;
+            }
+        }
+        return output;
+    }
+
     public DataOutput putLong(long val) {
-        output.writeLong(val);
+        output().writeLong(val);
         return this;
     }
 
     public DataOutput putInt(int val) {
-        output.writeInt(val);
+        output().writeInt(val);
         return this;
     }
 
     public DataOutput putShort(short val) {
-        output.writeShort(val);
+        output().writeShort(val);
         return this;
     }
 
     public DataOutput putByte(byte val) {
-        output.writeByte(val);
+        output().writeByte(val);
         return this;
     }
 
     public DataOutput putString(String string) {
-        output.writeString(string);
+        output().writeString(string);
+        return this;
+    }
+
+    public DataOutput putBytes(byte[] bytes) {
+        output().writeBytes(bytes);
         return this;
     }
 
+    public DataOutput putLongs(long[] values) {
+        reserve(values.length * 8).asLongBuffer().put(values);
+        return this;
+    }
+
+    public DataOutput putInts(int[] values) {
+        reserve(values.length * 4).asIntBuffer().put(values);
+        return this;
+    }
+
+    public DataOutput putDoubles(double[] values) {
+        reserve(values.length * 8).asDoubleBuffer().put(values);
+        return this;
+    }
+
+    public DataOutput putFloats(float[] values) {
+        reserve(values.length * 4).asFloatBuffer().put(values);
+        return this;
+    }
+
+    /**
+     * Advances the output by the given number of bytes and returns a buffer over these bytes for copying values in bulk
+     */
+    private ByteBuffer reserve(int length) {
+        Output out = output();
+        int position = out.position();
+        byte[] buffer = out.getBuffer();
+        if (buffer.length - position < length) {
+            if (position + length > KryoSerializer.MAX_OUTPUT_SIZE)
+                throw new KryoException("Buffer overflow. Max capacity: " + KryoSerializer.MAX_OUTPUT_SIZE + ", required: " + (position + length));
+            buffer = Arrays.copyOf(buffer, Math.min(KryoSerializer.MAX_OUTPUT_SIZE, Math.max(buffer.length * 2, position + length)));
+            out.setBuffer(buffer, KryoSerializer.MAX_OUTPUT_SIZE);
+        }
+        out.setPosition(position + length);
+        return ByteBuffer.wrap(buffer, position, length);
+    }
+
     public DataOutput writeObject(Object object, Class<?> type) {
         Preconditions.checkArgument(serializer != null, "This DataOutput has not been initialized for object writing!");
         Preconditions.checkArgument(serializer.isValidObject(kryo,object), "Cannot de-/serialize object: %s", object);
-        kryo.writeObjectOrNull(output, object, type);
+        kryo.writeObjectOrNull(output(), object, type);
         return this;
     }
 
@@ -62,19 +137,27 @@ public class KryoDataOutput implements DataOutput {
         Preconditions.checkNotNull(object);
         Preconditions.checkArgument(serializer != null, "This DataOutput has not been initialized for object writing!");
         Preconditions.checkArgument(serializer.isValidObject(kryo,object), "Cannot de-/serialize object: %s", object);
-        kryo.writeObject(output, object);
+        kryo.writeObject(output(), object);
         return this;
     }
 
     public DataOutput writeClassAndObject(Object object) {
         Preconditions.checkArgument(serializer != null, "This DataOutput has not been initialized for object writing!");
         Preconditions.checkArgument(serializer.isValidObject(kryo,object), "Cannot de-/serialize object: %s", object);
-        kryo.writeClassAndObject(output, object);
+        kryo.writeClassAndObject(output(), object);
         return this;
     }
 
     public ByteBuffer getByteBuffer() {
-        return ByteBuffer.wrap(output.getBuffer(),0,output.position());
+        if (pool==null) return ByteBuffer.wrap(output.getBuffer(),0,output.position());
+        if (output!=null) {
+            bytes = output.toBytes();
+            pool.releaseOutput(output);
+            output=null;
+        } else if (bytes==null) {
+            bytes = new byte[0];
+        }
+        return ByteBuffer.wrap(bytes);
     }
 
 }
@@ -9,29 +9,58 @@ import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.thinkaurelius.titan.core.AttributeSerializer;
+import com.thinkaurelius.titan.core.OrderPreservingSerializer;
+import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
 import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
 import com.thinkaurelius.titan.graphdb.database.serialize.Serializer;
 import com.thinkaurelius.titan.graphdb.database.serialize.SerializerInitialization;
 
 import java.lang.reflect.Constructor;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 public class KryoSerializer implements Serializer {
 
-    private static final int MAX_OUTPUT_SIZE = 10 * 1024 * 1024;
+    static final int MAX_OUTPUT_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Maximum number of idle outputs and the maximum buffer size of an output retained per thread for reuse
+     */
+    private static final int MAX_POOLED_OUTPUTS = 8;
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
 
     private final boolean registerRequired;
     private final ThreadLocal<Kryo> kryos;
+    private final ThreadLocal<Input> inputs;
+    private final ThreadLocal<ArrayDeque<Output>> outputs;
     private final Map<Integer,TypeRegistration> registrations;
+    private final Map<Class<?>,Integer> writeIds;
+    private final Set<Class<?>> orderPreserving;
 
     private boolean initialized=false;
 
 
     public KryoSerializer(final boolean allowAllSerializable) {
+        this(allowAllSerializable,SerializerInitialization.CURRENT_FORMAT);
+    }
+
+    /**
+     * @param allowAllSerializable Whether classes which have not been registered may be serialized
+     * @param format               Serialization format of the graph
+     * @see SerializerInitialization#CURRENT_FORMAT
+     */
+    public KryoSerializer(final boolean allowAllSerializable, final int format) {
         this.registerRequired=!allowAllSerializable;
-        this.registrations = new HashMap<Integer,TypeRegistration>();
+        this.registrations = new TreeMap<Integer,TypeRegistration>();
+        this.writeIds = new HashMap<Class<?>,Integer>();
+        this.orderPreserving = new HashSet<Class<?>>();
 
         kryos = new ThreadLocal<Kryo>() {
             public Kryo initialValue() {
@@ -39,6 +68,7 @@ public class KryoSerializer implements Serializer {
                 Kryo k = new Kryo();
                 k.setRegistrationRequired(registerRequired);
                 k.register(Class.class,new DefaultSerializers.ClassSerializer());
+                //Registered in ascending order of ids, so that Kryo writes a class registered more than once under its highest id
                 for (Map.Entry<Integer,TypeRegistration> entry : registrations.entrySet()) {
                     if (entry.getValue().serializer==null) {
                         k.register(entry.getValue().type,entry.getKey());
@@ -49,7 +79,17 @@ public class KryoSerializer implements Serializer {
                 return k;
             }
         };
-        SerializerInitialization.initialize(this);
+        inputs = new ThreadLocal<Input>() {
+            public Input initialValue() {
+                return new Input(EMPTY);
+            }
+        };
+        outputs = new ThreadLocal<ArrayDeque<Output>>() {
+            public ArrayDeque<Output> initialValue() {
+                return new ArrayDeque<Output>(MAX_POOLED_OUTPUTS);
+            }
+        };
+        SerializerInitialization.initialize(this,format);
     }
 
     @Override
@@ -60,6 +100,7 @@ public class KryoSerializer implements Serializer {
         Preconditions.checkArgument(isValidClass(type),"Class does not have a default constructor: %s",type.getName());
         registrations.put(id,new TypeRegistration(type,null));
         objectVerificationCache.put(type,Boolean.TRUE);
+        if (isWriteId(type,id)) orderPreserving.remove(type);
     }
 
     @Override
@@ -69,6 +110,28 @@ public class KryoSerializer implements Serializer {
         Preconditions.checkArgument(!registrations.containsKey(id),"ID has already been registered: %s",id);
         registrations.put(id,new TypeRegistration(type,new KryoAttributeSerializerAdapter<T>(serializer)));
         objectVerificationCache.put(type,Boolean.TRUE);
+        if (isWriteId(type,id)) {
+            if (serializer instanceof OrderPreservingSerializer) orderPreserving.add(type);
+            else orderPreserving.remove(type);
+        }
+    }
+
+    /**
+     * A class may be registered under several ids, e.g. to keep reading values in an older encoding. Values are
+     * written with the registration of the highest id, the others are only used for reading.
+     *
+     * @return true if the given id is now the id the given class is written with, else false
+     */
+    private boolean isWriteId(Class<?> type, int id) {
+        Integer writeId = writeIds.get(type);
+        if (writeId!=null && writeId>id) return false;
+        writeIds.put(type,id);
+        return true;
+    }
+
+    @Override
+    public boolean isOrderPreserving(Class<?> datatype) {
+        return orderPreserving.contains(datatype);
     }
 
     Kryo getKryo() {
@@ -77,33 +140,64 @@ public class KryoSerializer implements Serializer {
 
     @Override
     public Object readClassAndObject(ByteBuffer buffer) {
-        Input i = getInput(buffer);
-        Object value = getKryo().readClassAndObject(i);
-        updateBBPosition(i,buffer);
-        return value;
+        Input i = acquireInput(buffer);
+        try {
+            Object value = getKryo().readClassAndObject(i);
+            updateBBPosition(i,buffer);
+            return value;
+        } finally {
+            releaseInput(i);
+        }
     }
 
     @Override
     public <T> T readObject(ByteBuffer buffer, Class<T> type) {
-        Input i = getInput(buffer);
-        T value = getKryo().readObjectOrNull(i, type);
-        updateBBPosition(i,buffer);
-        return value;
+        Input i = acquireInput(buffer);
+        try {
+            T value = getKryo().readObjectOrNull(i, type);
+            updateBBPosition(i,buffer);
+            return value;
+        } finally {
+            releaseInput(i);
+        }
     }
 
     public <T> T readObjectNotNull(ByteBuffer buffer, Class<T> type) {
-        Input i = getInput(buffer);
-        T value = getKryo().readObject(i, type);
-        updateBBPosition(i,buffer);
-        return value;
+        Input i = acquireInput(buffer);
+        try {
+            T value = getKryo().readObject(i, type);
+            updateBBPosition(i,buffer);
+            return value;
+        } finally {
+            releaseInput(i);
+        }
     }
 
-    static final Input getInput(ByteBuffer b) {
-        return new Input(b.array(),b.position()+b.arrayOffset(),b.limit()+b.arrayOffset());
+    /**
+     * Returns the input of the current thread positioned on the given buffer. The input is taken out of the thread local
+     * for the duration of the read, so that a nested read (e.g. from within a custom {@link AttributeSerializer}) gets its
+     * own input. Buffers without a backing array are copied.
+     */
+    private Input acquireInput(ByteBuffer b) {
+        Input in = inputs.get();
+        if (in==null) in = new Input(EMPTY);
+        else inputs.set(null);
+        if (b.hasArray()) {
+            in.setBuffer(b.array(),b.position()+b.arrayOffset(),b.limit()+b.arrayOffset());
+        } else {
+            in.setBuffer(ByteBufferUtil.getArray(b));
+        }
+        return in;
+    }
+
+    private void releaseInput(Input in) {
+        in.setBuffer(EMPTY);
+        inputs.set(in);
     }
 
     static final void updateBBPosition(Input in, ByteBuffer b) {
-        b.position(in.position()-b.arrayOffset());
+        if (b.hasArray()) b.position(in.position()-b.arrayOffset());
+        else b.position(b.position()+in.position());
     }
 
     static final void updateInputPosition(Input in, ByteBuffer b) {
@@ -116,9 +210,29 @@ public class KryoSerializer implements Serializer {
 
     @Override
     public DataOutput getDataOutput(int capacity, boolean serializeObjects) {
-        Output output = new Output(capacity,MAX_OUTPUT_SIZE);
-        if (serializeObjects) return new KryoDataOutput(output, this);
-        else return new KryoDataOutput(output);
+        if (serializeObjects) return new KryoDataOutput(this, capacity, this);
+        else return new KryoDataOutput(this, capacity, null);
+    }
+
+    /**
+     * Returns an empty output from the pool of the current thread or creates a new one if the pool is empty.
+     */
+    Output acquireOutput(int capacity) {
+        Output output = outputs.get().pollLast();
+        if (output==null) output = new Output(capacity,MAX_OUTPUT_SIZE);
+        return output;
+    }
+
+    /**
+     * Returns the given output to the pool of the current thread unless the pool is full or the buffer of the output
+     * has grown too large to be retained.
+     */
+    void releaseOutput(Output output) {
+        ArrayDeque<Output> pool = outputs.get();
+        if (pool.size()<MAX_POOLED_OUTPUTS && output.getBuffer().length<=MAX_POOLED_BUFFER_SIZE) {
+            output.clear();
+            pool.addLast(output);
+        }
     }
 
     private final Cache<Class<?>,Boolean> objectVerificationCache = CacheBuilder.newBuilder()
@@ -0,0 +1,472 @@
+package com.thinkaurelius.titan.graphdb.olap;
+
+import com.carrotsearch.hppc.LongOpenHashSet;
+import com.carrotsearch.hppc.LongSet;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.thinkaurelius.titan.core.Titan;
+import com.thinkaurelius.titan.core.TitanException;
+import com.thinkaurelius.titan.core.TitanKey;
+import com.thinkaurelius.titan.core.TitanProperty;
+import com.thinkaurelius.titan.core.TitanType;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeyIterator;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySplit;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
+import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
+import com.thinkaurelius.titan.graphdb.database.EdgeSerializer;
+import com.thinkaurelius.titan.graphdb.database.IndexSerializer;
+import com.thinkaurelius.titan.graphdb.database.LookupFilter;
+import com.thinkaurelius.titan.graphdb.database.RelationDecoder;
+import com.thinkaurelius.titan.graphdb.database.StandardTitanGraph;
+import com.thinkaurelius.titan.graphdb.database.idhandling.IDHandler;
+import com.thinkaurelius.titan.graphdb.idmanagement.IDInspector;
+import com.thinkaurelius.titan.graphdb.internal.InternalRelation;
+import com.thinkaurelius.titan.graphdb.internal.InternalVertex;
+import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
+import com.thinkaurelius.titan.graphdb.transaction.TransactionConfig;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds an index for the existing properties and edges of a set of keys, e.g. to backfill an index which has been
+ * configured for a key after data was loaded or to restore a corrupted external index.
+ * <p/>
+ * The vertices are enumerated by scanning the key splits of the storage backend in parallel. The scan retrieves only
+ * the slice of each vertex which holds the properties of the given keys and its outgoing edges (if one of the keys is
+ * indexed for edges), and its entries are decoded and written to the index without further reads. The index entries
+ * are committed in transactions of {@link #batchSize(int)} vertices. The rate at which vertices are processed can be
+ * limited with {@link #maxRate(double)} to bound the load on the storage backend and the index. Unique values written
+ * to the standard index are added to the lookup filter of the graph, if it is enabled.
+ * <p/>
+ * If a checkpoint file is configured, the splits and the last committed vertex of each split are recorded in that file
+ * after every transaction, so that an interrupted or failed rebuild resumes where it left off when executed again
+ * with the same checkpoint file. Since indexing a property twice has no effect, vertices committed after the last
+ * checkpoint are simply indexed again.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class IndexRebuildJob {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexRebuildJob.class);
+
+    public static final int DEFAULT_NUM_THREADS = Runtime.getRuntime().availableProcessors();
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Number of key splits requested from the storage backend per worker thread, so that uneven splits are
+     * balanced across the workers
+     */
+    private static final int SPLITS_PER_THREAD = 4;
+
+    private final StandardTitanGraph graph;
+    private final String index;
+    private final String[] keyNames;
+
+    private int numThreads = DEFAULT_NUM_THREADS;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private double maxRate = 0;
+    private File checkpointFile = null;
+
+    public IndexRebuildJob(StandardTitanGraph graph, String index, String... keys) {
+        Preconditions.checkNotNull(graph);
+        Preconditions.checkNotNull(index);
+        Preconditions.checkArgument(keys != null && keys.length > 0, "Need to specify at least one key");
+        this.graph = graph;
+        this.index = index;
+        this.keyNames = keys;
+    }
+
+    /**
+     * Configures the number of worker threads that scan and index splits concurrently.
+     *
+     * @param numThreads number of worker threads
+     * @return this job
+     */
+    public IndexRebuildJob numThreads(int numThreads) {
+        Preconditions.checkArgument(numThreads > 0, "Invalid number of threads: %s", numThreads);
+        this.numThreads = numThreads;
+        return this;
+    }
+
+    /**
+     * Configures the number of vertices whose index entries are committed in one transaction.
+     *
+     * @param batchSize number of vertices per transaction
+     * @return this job
+     */
+    public IndexRebuildJob batchSize(int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "Invalid batch size: %s", batchSize);
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Limits the number of vertices processed per second across all worker threads.
+     *
+     * @param maxRate maximum number of vertices per second or 0 for no limit
+     * @return this job
+     */
+    public IndexRebuildJob maxRate(double maxRate) {
+        Preconditions.checkArgument(maxRate >= 0, "Invalid rate: %s", maxRate);
+        this.maxRate = maxRate;
+        return this;
+    }
+
+    /**
+     * Configures the file in which the progress of the rebuild is recorded. If the file exists, the rebuild resumes
+     * from the recorded progress. The file is deleted once the rebuild completes.
+     *
+     * @param checkpointFile checkpoint file
+     * @return this job
+     */
+    public IndexRebuildJob checkpoint(File checkpointFile) {
+        Preconditions.checkNotNull(checkpointFile);
+        this.checkpointFile = checkpointFile;
+        return this;
+    }
+
+    /**
+     * Executes the rebuild and returns the number of index entries written.
+     *
+     * @return number of properties and edges added to the index
+     */
+    public long execute() {
+        Preconditions.checkArgument(graph.isOpen(), "Graph has been closed");
+        LongSet vertexKeys = new LongOpenHashSet();
+        List<Long> edgeKeys = new ArrayList<Long>();
+        List<TitanKey> vertexKeyTypes = new ArrayList<TitanKey>();
+        SliceQuery slice;
+        List<KeySplit> splits;
+        StandardTitanTx tx = newTransaction();
+        try {
+            for (String name : keyNames) {
+                TitanType type = tx.getType(name);
+                Preconditions.checkArgument(type != null && type.isPropertyKey(), "Not a property key: %s", name);
+                TitanKey key = (TitanKey) type;
+                boolean indexed = false;
+                if (contains(key.getIndexes(Vertex.class), index)) {
+                    vertexKeys.add(key.getID());
+                    vertexKeyTypes.add(key);
+                    indexed = true;
+                }
+                if (contains(key.getIndexes(Edge.class), index)) {
+                    edgeKeys.add(key.getID());
+                    indexed = true;
+                }
+                Preconditions.checkArgument(indexed, "Key [%s] is not indexed by [%s]", name, index);
+            }
+            slice = graph.getEdgeSerializer().getScanQuery(vertexKeyTypes, !edgeKeys.isEmpty());
+            splits = graph.getVertexIDSplits(numThreads * SPLITS_PER_THREAD, tx.getTxHandle());
+        } finally {
+            tx.rollback();
+        }
+
+        Checkpoint checkpoint = new Checkpoint(splits);
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("titan-indexrebuild-%d").build());
+        try {
+            Rebuild rebuild = new Rebuild(vertexKeys, edgeKeys, slice, checkpoint);
+            List<Future<?>> futures = new ArrayList<Future<?>>(checkpoint.splits.size());
+            for (int i = 0; i < checkpoint.splits.size(); i++) {
+                if (!checkpoint.isCompleted(i)) futures.add(pool.submit(rebuild.newTask(i)));
+            }
+            for (Future<?> future : futures) future.get();
+            log.info("Rebuilt index [{}] with {} entries", index, rebuild.entries.get());
+            checkpoint.delete();
+            return rebuild.entries.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TitanException("Interrupted while rebuilding index", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new TitanException("Could not rebuild index", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private StandardTitanTx newTransaction() {
+        return graph.newTransaction(new TransactionConfig(graph.getConfiguration(), false, false, true));
+    }
+
+    private static boolean contains(Iterable<String> indexes, String index) {
+        for (String idx : indexes) if (idx.equals(index)) return true;
+        return false;
+    }
+
+    private class Rebuild {
+
+        private final LongSet vertexKeys;
+        private final List<Long> edgeKeys;
+        private final SliceQuery slice;
+        private final Checkpoint checkpoint;
+        private final RateLimiter rateLimiter;
+        private final IDInspector idInspector;
+        private final EdgeSerializer edgeSerializer;
+        private final IndexSerializer indexSerializer;
+        private final LookupFilter lookupFilter;
+        private final AtomicLong entries = new AtomicLong(0);
+
+        private Rebuild(LongSet vertexKeys, List<Long> edgeKeys, SliceQuery slice, Checkpoint checkpoint) {
+            this.vertexKeys = vertexKeys;
+            this.edgeKeys = edgeKeys;
+            this.slice = slice;
+            this.checkpoint = checkpoint;
+            this.rateLimiter = maxRate > 0 ? RateLimiter.create(maxRate) : null;
+            this.idInspector = graph.getIDInspector();
+            this.edgeSerializer = graph.getEdgeSerializer();
+            this.indexSerializer = graph.getIndexSerializer();
+            this.lookupFilter = Titan.Token.STANDARD_INDEX.equals(index) ? graph.getLookupFilter() : null;
+        }
+
+        private Callable<Object> newTask(final int split) {
+            return new Callable<Object>() {
+                @Override
+                public Object call() throws StorageException {
+                    rebuild(split);
+                    return null;
+                }
+            };
+        }
+
+        private void rebuild(int split) throws StorageException {
+            //The scan runs in its own transaction since the index entries are committed in batches
+            StandardTitanTx scanTx = newTransaction();
+            StandardTitanTx tx = null;
+            KeyIterator iter = null;
+            RelationDecoder decoder = edgeSerializer.newDecoder();
+            try {
+                iter = scanTx.getTxHandle().edgeStoreKeys(checkpoint.splits.get(split), slice);
+                long resumeAfter = checkpoint.getLastVertex(split);
+                if (resumeAfter > 0 && !skipTo(iter, resumeAfter)) {
+                    log.warn("Could not find last committed vertex {} in split {}, rebuilding entire split", resumeAfter, split);
+                    iter.close();
+                    iter = scanTx.getTxHandle().edgeStoreKeys(checkpoint.splits.get(split), slice);
+                }
+                tx = newTransaction();
+                int count = 0;
+                while (iter.hasNext()) {
+                    long id = IDHandler.getKeyID(iter.next());
+                    if (!rebuild(id, iter.getEntries(), decoder, tx)) continue;
+                    if (++count % batchSize == 0) tx = commit(tx, split, id);
+                }
+                tx.commit();
+                checkpoint.complete(split);
+                log.debug("Rebuilt index for {} vertices in split {}", count, split);
+            } finally {
+                if (iter != null) iter.close();
+                if (tx != null && tx.isOpen()) tx.rollback();
+                scanTx.rollback();
+            }
+        }
+
+        /**
+         * Advances the iterator past the given vertex.
+         *
+         * @return false, if the iterator does not contain the vertex and has been exhausted, else true
+         */
+        private boolean skipTo(KeyIterator iter, long vertex) throws StorageException {
+            while (iter.hasNext()) {
+                if (IDHandler.getKeyID(iter.next()) == vertex) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Adds the properties and edges in the given entries of a vertex to the index.
+         *
+         * @return false, if the given id is not the id of a vertex, else true
+         */
+        private boolean rebuild(long id, List<Entry> vertexEntries, RelationDecoder decoder, StandardTitanTx tx) throws StorageException {
+            //Filter out types
+            if (!idInspector.isNodeID(id)) return false;
+            if (rateLimiter != null) rateLimiter.acquire();
+            InternalVertex vertex = tx.getExistingVertex(id);
+            for (Entry entry : vertexEntries) {
+                decoder.reset(id, entry, tx);
+                if (edgeSerializer.isPackedEntry(decoder)) {
+                    for (InternalRelation property : edgeSerializer.readPackedProperties(vertex, entry, decoder, null)) {
+                        if (vertexKeys.contains(property.getType().getID())) addProperty((TitanProperty) property, tx);
+                    }
+                } else if (decoder.isProperty()) {
+                    if (vertexKeys.contains(decoder.getTypeId()))
+                        addProperty((TitanProperty) edgeSerializer.readRelation(vertex, entry, decoder), tx);
+                } else if (!edgeKeys.isEmpty() && decoder.getDirection() == Direction.OUT
+                        && !edgeSerializer.isCompactEntry(decoder)) {
+                    //Edges of compact labels cannot have properties
+                    InternalRelation edge = edgeSerializer.readRelation(vertex, entry, decoder);
+                    //Keys are retrieved by id since types are bound to the transaction
+                    for (long keyid : edgeKeys) {
+                        TitanKey key = (TitanKey) tx.getExistingType(keyid);
+                        if (edge.getPropertyDirect(key) == null) continue;
+                        indexSerializer.addEdge(edge, key, index, tx.getTxHandle());
+                        entries.incrementAndGet();
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void addProperty(TitanProperty property, StandardTitanTx tx) throws StorageException {
+            //Unique values must pass the lookup filter before their index entries become visible
+            if (lookupFilter != null) lookupFilter.add(property);
+            indexSerializer.addProperty(property, index, tx.getTxHandle());
+            entries.incrementAndGet();
+        }
+
+        private StandardTitanTx commit(StandardTitanTx tx, int split, long lastVertex) {
+            tx.commit();
+            checkpoint.update(split, lastVertex);
+            return newTransaction();
+        }
+
+    }
+
+    /**
+     * Records the splits of the rebuild and the progress within each split in the checkpoint file, if one is configured.
+     */
+    private class Checkpoint {
+
+        private static final String NUM_SPLITS = "splits";
+        private static final String INDEX = "index";
+        private static final String KEYS = "keys";
+
+        private final List<KeySplit> splits;
+        private final long[] lastVertex;
+        private final boolean[] completed;
+
+        private Checkpoint(List<KeySplit> newSplits) {
+            Properties properties = read();
+            if (properties != null) {
+                Preconditions.checkArgument(index.equals(properties.getProperty(INDEX)) &&
+                        Arrays.asList(keyNames).toString().equals(properties.getProperty(KEYS)),
+                        "Checkpoint [%s] belongs to a different rebuild", checkpointFile);
+                int numSplits = Integer.parseInt(properties.getProperty(NUM_SPLITS));
+                splits = new ArrayList<KeySplit>(numSplits);
+                lastVertex = new long[numSplits];
+                completed = new boolean[numSplits];
+                for (int i = 0; i < numSplits; i++) {
+                    splits.add(new KeySplit(decode(properties.getProperty(i + ".start")), decode(properties.getProperty(i + ".end"))));
+                    lastVertex[i] = Long.parseLong(properties.getProperty(i + ".last", "0"));
+                    completed[i] = Boolean.parseBoolean(properties.getProperty(i + ".completed", "false"));
+                }
+                log.info("Resuming rebuild of index [{}] from checkpoint [{}]", index, checkpointFile);
+            } else {
+                splits = Collections.unmodifiableList(new ArrayList<KeySplit>(newSplits));
+                lastVertex = new long[splits.size()];
+                completed = new boolean[splits.size()];
+                write();
+            }
+        }
+
+        private boolean isCompleted(int split) {
+            return completed[split];
+        }
+
+        private synchronized long getLastVertex(int split) {
+            return lastVertex[split];
+        }
+
+        private synchronized void update(int split, long vertex) {
+            lastVertex[split] = vertex;
+            write();
+        }
+
+        private synchronized void complete(int split) {
+            completed[split] = true;
+            write();
+        }
+
+        private void delete() {
+            if (checkpointFile != null && checkpointFile.exists() && !checkpointFile.delete())
+                log.warn("Could not delete checkpoint [{}]", checkpointFile);
+        }
+
+        private Properties read() {
+            if (checkpointFile == null || !checkpointFile.exists()) return null;
+            Properties properties = new Properties();
+            try {
+                InputStream in = new FileInputStream(checkpointFile);
+                try {
+                    properties.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new TitanException("Could not read checkpoint: " + checkpointFile, e);
+            }
+            return properties;
+        }
+
+        private void write() {
+            if (checkpointFile == null) return;
+            Properties properties = new Properties();
+            properties.setProperty(INDEX, index);
+            properties.setProperty(KEYS, Arrays.asList(keyNames).toString());
+            properties.setProperty(NUM_SPLITS, String.valueOf(splits.size()));
+            for (int i = 0; i < splits.size(); i++) {
+                KeySplit split = splits.get(i);
+                if (split.hasStart()) properties.setProperty(i + ".start", encode(split.getStart()));
+                if (split.hasEnd()) properties.setProperty(i + ".end", encode(split.getEnd()));
+                if (lastVertex[i] > 0) properties.setProperty(i + ".last", String.valueOf(lastVertex[i]));
+                if (completed[i]) properties.setProperty(i + ".completed", "true");
+            }
+            //Write to a temporary file first so that the checkpoint is replaced atomically
+            File tmp = new File(checkpointFile.getPath() + ".tmp");
+            try {
+                OutputStream out = new FileOutputStream(tmp);
+                try {
+                    properties.store(out, "Rebuild of index " + index);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                throw new TitanException("Could not write checkpoint: " + checkpointFile, e);
+            }
+            if (!tmp.renameTo(checkpointFile)) {
+                checkpointFile.delete();
+                if (!tmp.renameTo(checkpointFile)) throw new TitanException("Could not write checkpoint: " + checkpointFile);
+            }
+        }
+
+        private String encode(ByteBuffer buffer) {
+            return Hex.encodeHexString(ByteBufferUtil.getArray(buffer));
+        }
+
+        private ByteBuffer decode(String hex) {
+            if (hex == null) return null;
+            try {
+                return ByteBuffer.wrap(Hex.decodeHex(hex.toCharArray()));
+            } catch (DecoderException e) {
+                throw new TitanException("Invalid checkpoint: " + checkpointFile, e);
+            }
+        }
+
+    }
+
+}
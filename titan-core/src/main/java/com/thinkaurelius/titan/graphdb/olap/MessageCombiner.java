@@ -0,0 +1,44 @@
+package com.thinkaurelius.titan.graphdb.olap;
+
+/**
+ * Combines multiple messages sent to the same vertex in one iteration of a {@link VertexProgram} into a single message.
+ * Combining messages as they are received allows message passing to be implemented with primitive arrays holding
+ * exactly one message per vertex.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public enum MessageCombiner {
+
+    SUM {
+        @Override
+        public double combine(double m1, double m2) {
+            return m1 + m2;
+        }
+    },
+
+    MIN {
+        @Override
+        public double combine(double m1, double m2) {
+            return Math.min(m1, m2);
+        }
+    },
+
+    MAX {
+        @Override
+        public double combine(double m1, double m2) {
+            return Math.max(m1, m2);
+        }
+    };
+
+    /**
+     * Combines the two given messages into one.
+     * This operation must be commutative and associative.
+     *
+     * @param m1 first message
+     * @param m2 second message
+     * @return combined message
+     */
+    public abstract double combine(double m1, double m2);
+
+}
@@ -0,0 +1,74 @@
+package com.thinkaurelius.titan.graphdb.olap;
+
+import com.thinkaurelius.titan.core.TitanVertex;
+
+/**
+ * Provides a {@link VertexProgram} with access to the state of the vertex that is currently being computed.
+ * A VertexContext is only valid for the duration of the compute call it has been passed to.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public interface VertexContext {
+
+    /**
+     * @return The current iteration, starting with 0
+     */
+    public int getIteration();
+
+    /**
+     * @return The total number of vertices the program is executed against
+     */
+    public long getNumVertices();
+
+    /**
+     * @return The current value of this vertex, which is 0 until first set
+     */
+    public double getValue();
+
+    /**
+     * Updates the value of this vertex.
+     *
+     * @param value new value
+     */
+    public void setValue(double value);
+
+    /**
+     * @return true, if this vertex received any messages in the previous iteration, else false
+     */
+    public boolean hasMessage();
+
+    /**
+     * Returns the combination of all messages received in the previous iteration.
+     *
+     * @return combined message
+     * @throws IllegalStateException if no message has been received
+     * @see #hasMessage()
+     */
+    public double getMessage();
+
+    /**
+     * Sends a message to the vertex with the given id which is received in the next iteration.
+     * Messages sent to vertices that the program is not executed against are discarded.
+     *
+     * @param vertexid id of the receiving vertex
+     * @param message  message to send
+     */
+    public void sendMessage(long vertexid, double message);
+
+    /**
+     * Sends a message to the given vertex which is received in the next iteration.
+     *
+     * @param vertex  receiving vertex
+     * @param message message to send
+     * @see #sendMessage(long, double)
+     */
+    public void sendMessage(TitanVertex vertex, double message);
+
+    /**
+     * Deactivates this vertex. The vertex will not be computed in subsequent iterations unless it receives a message.
+     * The execution terminates once all vertices have been deactivated and no messages are in transit.
+     */
+    public void voteToHalt();
+
+}
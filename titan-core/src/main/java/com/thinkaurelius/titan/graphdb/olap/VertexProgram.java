@@ -0,0 +1,33 @@
+package com.thinkaurelius.titan.graphdb.olap;
+
+import com.thinkaurelius.titan.core.TitanVertex;
+
+/**
+ * A VertexProgram is executed against all vertices in the graph by a {@link VertexProgramExecutor} in a sequence of
+ * iterations. In each iteration, the {@link #compute(TitanVertex, VertexContext)} method is invoked for every active
+ * vertex which can read and update the value of the vertex and send messages to other vertices. Messages sent in
+ * one iteration are received in the next.
+ * <p/>
+ * Implementations must be thread-safe since vertices are computed concurrently.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public interface VertexProgram {
+
+    /**
+     * Computes the given vertex in the current iteration.
+     *
+     * @param vertex  vertex to compute
+     * @param context context of the vertex through which its value is accessed and messages are sent and received
+     */
+    public void compute(TitanVertex vertex, VertexContext context);
+
+    /**
+     * Returns the combiner used to combine all messages sent to the same vertex in one iteration.
+     *
+     * @return message combiner
+     */
+    public MessageCombiner getCombiner();
+
+}
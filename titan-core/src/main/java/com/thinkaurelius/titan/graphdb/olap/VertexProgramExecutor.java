@@ -0,0 +1,388 @@
+package com.thinkaurelius.titan.graphdb.olap;
+
+import cern.colt.list.DoubleArrayList;
+import cern.colt.list.IntArrayList;
+import cern.colt.list.LongArrayList;
+import com.carrotsearch.hppc.LongIntOpenHashMap;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.thinkaurelius.titan.core.TitanException;
+import com.thinkaurelius.titan.core.TitanVertex;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySplit;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
+import com.thinkaurelius.titan.graphdb.database.StandardTitanGraph;
+import com.thinkaurelius.titan.graphdb.idmanagement.IDInspector;
+import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
+import com.thinkaurelius.titan.graphdb.transaction.TransactionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Executes a {@link VertexProgram} against all vertices of a graph in parallel.
+ * <p/>
+ * The vertices are enumerated once by scanning the key splits of the storage backend in parallel. Their ids are split
+ * into partitions of consecutive vertices which are computed concurrently by a pool of worker threads, each partition
+ * in its own read-only transaction. Vertex values and
+ * messages are held in primitive arrays indexed by the position of the vertex. Messages sent by a partition are buffered
+ * per receiving partition and combined into the message array of that partition in parallel after each iteration,
+ * so that no locking is required.
+ * <p/>
+ * All vertex values and messages are kept in memory, hence this executor is intended for graphs whose vertex set
+ * comfortably fits into the heap of a single machine.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class VertexProgramExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(VertexProgramExecutor.class);
+
+    public static final int DEFAULT_NUM_THREADS = Runtime.getRuntime().availableProcessors();
+
+    public static final int DEFAULT_PARTITION_SIZE = 10000;
+
+    public static final int DEFAULT_MAX_ITERATIONS = 30;
+
+    /**
+     * Number of key splits requested from the storage backend per worker thread when enumerating vertices,
+     * so that uneven splits are balanced across the workers
+     */
+    private static final int SPLITS_PER_THREAD = 4;
+
+    private final StandardTitanGraph graph;
+
+    private int numThreads = DEFAULT_NUM_THREADS;
+    private int partitionSize = DEFAULT_PARTITION_SIZE;
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+
+    public VertexProgramExecutor(StandardTitanGraph graph) {
+        Preconditions.checkNotNull(graph);
+        this.graph = graph;
+    }
+
+    /**
+     * Configures the number of worker threads that compute vertices concurrently.
+     *
+     * @param numThreads number of worker threads
+     * @return this executor
+     */
+    public VertexProgramExecutor numThreads(int numThreads) {
+        Preconditions.checkArgument(numThreads > 0, "Invalid number of threads: %s", numThreads);
+        this.numThreads = numThreads;
+        return this;
+    }
+
+    /**
+     * Configures the number of vertices per partition. A partition is the unit of work of a worker thread.
+     *
+     * @param partitionSize number of vertices per partition
+     * @return this executor
+     */
+    public VertexProgramExecutor partitionSize(int partitionSize) {
+        Preconditions.checkArgument(partitionSize > 0, "Invalid partition size: %s", partitionSize);
+        this.partitionSize = partitionSize;
+        return this;
+    }
+
+    /**
+     * Configures the maximum number of iterations after which the execution is terminated, even if there are
+     * vertices which have not yet voted to halt.
+     *
+     * @param maxIterations maximum number of iterations
+     * @return this executor
+     */
+    public VertexProgramExecutor maxIterations(int maxIterations) {
+        Preconditions.checkArgument(maxIterations > 0, "Invalid number of iterations: %s", maxIterations);
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * Executes the given program against all vertices in the graph and returns the final vertex values.
+     *
+     * @param program program to execute
+     * @return final vertex values
+     */
+    public VertexProgramResult execute(VertexProgram program) {
+        Preconditions.checkNotNull(program);
+        Preconditions.checkArgument(graph.isOpen(), "Graph has been closed");
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("titan-vertexprogram-%d").build());
+        try {
+            long[] vertexIds = getVertexIDs(pool);
+            Execution execution = new Execution(program, vertexIds);
+            execution.run(pool);
+            return new VertexProgramResult(graph, vertexIds, execution.index, execution.values, execution.iteration);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private StandardTitanTx newReadOnlyTransaction() {
+        return graph.newTransaction(new TransactionConfig(graph.getConfiguration(), true, false, true));
+    }
+
+    /**
+     * Enumerates the ids of all vertices by scanning the key splits of the storage backend in parallel,
+     * each split in its own read-only transaction.
+     */
+    private long[] getVertexIDs(ExecutorService pool) {
+        List<KeySplit> splits;
+        StandardTitanTx tx = newReadOnlyTransaction();
+        try {
+            splits = graph.getVertexIDSplits(numThreads * SPLITS_PER_THREAD, tx.getTxHandle());
+        } finally {
+            tx.rollback();
+        }
+        List<Callable<LongArrayList>> scans = new ArrayList<Callable<LongArrayList>>(splits.size());
+        for (final KeySplit split : splits) {
+            scans.add(new Callable<LongArrayList>() {
+                @Override
+                public LongArrayList call() {
+                    return scanVertexIDs(split);
+                }
+            });
+        }
+        LongArrayList ids = new LongArrayList();
+        for (LongArrayList splitIds : invokeAll(pool, scans)) ids.addAllOfFromTo(splitIds, 0, splitIds.size() - 1);
+        ids.trimToSize();
+        log.debug("Enumerated {} vertices in {} splits", ids.size(), splits.size());
+        return ids.elements();
+    }
+
+    private LongArrayList scanVertexIDs(KeySplit split) {
+        IDInspector idInspector = graph.getIDInspector();
+        LongArrayList ids = new LongArrayList();
+        StandardTitanTx tx = newReadOnlyTransaction();
+        try {
+            RecordIterator<Long> iter = graph.getVertexIDs(split, tx.getTxHandle());
+            try {
+                while (iter.hasNext()) {
+                    long id = iter.next();
+                    //Filter out types
+                    if (idInspector.isNodeID(id)) ids.add(id);
+                }
+            } finally {
+                iter.close();
+            }
+        } catch (StorageException e) {
+            throw new TitanException("Could not enumerate vertices", e);
+        } finally {
+            tx.rollback();
+        }
+        return ids;
+    }
+
+    private static <V> List<V> invokeAll(ExecutorService pool, List<Callable<V>> tasks) {
+        List<V> results = new ArrayList<V>(tasks.size());
+        try {
+            for (Future<V> future : pool.invokeAll(tasks)) results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TitanException("Interrupted while executing vertex program", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new TitanException("Could not execute vertex program", e.getCause());
+        }
+        return results;
+    }
+
+    private class Execution {
+
+        private final VertexProgram program;
+        private final MessageCombiner combiner;
+        private final long[] vertexIds;
+        private final LongIntOpenHashMap index;
+        private final int numPartitions;
+
+        private final double[] values;
+        private final boolean[] halted;
+        private double[] messages;
+        private boolean[] hasMessage;
+        private double[] nextMessages;
+        private boolean[] nextHasMessage;
+
+        private int iteration = 0;
+
+        private Execution(VertexProgram program, long[] vertexIds) {
+            this.program = program;
+            this.combiner = program.getCombiner();
+            Preconditions.checkNotNull(combiner, "Program must specify a message combiner");
+            this.vertexIds = vertexIds;
+            int numVertices = vertexIds.length;
+            index = new LongIntOpenHashMap(numVertices);
+            for (int i = 0; i < numVertices; i++) index.put(vertexIds[i], i);
+            numPartitions = (numVertices + partitionSize - 1) / partitionSize;
+
+            values = new double[numVertices];
+            halted = new boolean[numVertices];
+            messages = new double[numVertices];
+            hasMessage = new boolean[numVertices];
+            nextMessages = new double[numVertices];
+            nextHasMessage = new boolean[numVertices];
+        }
+
+        private void run(ExecutorService pool) {
+            log.debug("Executing vertex program against {} vertices in {} partitions", vertexIds.length, numPartitions);
+            while (iteration < maxIterations) {
+                //1. Compute all partitions
+                List<Callable<MessageBuffer[]>> computes = new ArrayList<Callable<MessageBuffer[]>>(numPartitions);
+                for (int p = 0; p < numPartitions; p++) computes.add(new ComputePartition(p));
+                final List<MessageBuffer[]> outboxes = invokeAll(pool, computes);
+
+                //2. Deliver all messages per receiving partition
+                List<Callable<Boolean>> deliveries = new ArrayList<Callable<Boolean>>(numPartitions);
+                for (int p = 0; p < numPartitions; p++) {
+                    final int partition = p;
+                    deliveries.add(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            return deliver(partition, outboxes);
+                        }
+                    });
+                }
+                boolean hasMessages = false;
+                for (Boolean delivered : invokeAll(pool, deliveries)) hasMessages = hasMessages || delivered;
+
+                double[] tmpMessages = messages;
+                messages = nextMessages;
+                nextMessages = tmpMessages;
+                boolean[] tmpHasMessage = hasMessage;
+                hasMessage = nextHasMessage;
+                nextHasMessage = tmpHasMessage;
+                iteration++;
+
+                if (!hasMessages && allHalted()) break;
+            }
+            log.debug("Vertex program terminated after {} iterations", iteration);
+        }
+
+        private boolean allHalted() {
+            for (int i = 0; i < halted.length; i++) if (!halted[i]) return false;
+            return true;
+        }
+
+        private boolean deliver(int partition, List<MessageBuffer[]> outboxes) {
+            int start = partition * partitionSize, end = Math.min(start + partitionSize, vertexIds.length);
+            for (int i = start; i < end; i++) nextHasMessage[i] = false;
+            boolean delivered = false;
+            for (MessageBuffer[] outbox : outboxes) {
+                MessageBuffer buffer = outbox[partition];
+                if (buffer == null) continue;
+                for (int m = 0; m < buffer.size(); m++) {
+                    int pos = buffer.receivers.getQuick(m);
+                    double message = buffer.messages.getQuick(m);
+                    if (nextHasMessage[pos]) {
+                        nextMessages[pos] = combiner.combine(nextMessages[pos], message);
+                    } else {
+                        nextMessages[pos] = message;
+                        nextHasMessage[pos] = true;
+                    }
+                    delivered = true;
+                }
+            }
+            return delivered;
+        }
+
+        private class ComputePartition implements Callable<MessageBuffer[]>, VertexContext {
+
+            private final int start;
+            private final int end;
+            private final MessageBuffer[] outbox = new MessageBuffer[numPartitions];
+            private int pos;
+
+            private ComputePartition(int partition) {
+                start = partition * partitionSize;
+                end = Math.min(start + partitionSize, vertexIds.length);
+            }
+
+            @Override
+            public MessageBuffer[] call() {
+                StandardTitanTx tx = newReadOnlyTransaction();
+                try {
+                    for (pos = start; pos < end; pos++) {
+                        if (halted[pos] && !hasMessage[pos]) continue;
+                        halted[pos] = false;
+                        program.compute((TitanVertex) tx.getExistingVertex(vertexIds[pos]), this);
+                    }
+                } finally {
+                    tx.rollback();
+                }
+                return outbox;
+            }
+
+            @Override
+            public int getIteration() {
+                return iteration;
+            }
+
+            @Override
+            public long getNumVertices() {
+                return vertexIds.length;
+            }
+
+            @Override
+            public double getValue() {
+                return values[pos];
+            }
+
+            @Override
+            public void setValue(double value) {
+                values[pos] = value;
+            }
+
+            @Override
+            public boolean hasMessage() {
+                return hasMessage[pos];
+            }
+
+            @Override
+            public double getMessage() {
+                if (!hasMessage[pos]) throw new IllegalStateException("Vertex has not received a message");
+                return messages[pos];
+            }
+
+            @Override
+            public void sendMessage(long vertexid, double message) {
+                if (!index.containsKey(vertexid)) return;
+                int receiver = index.lget();
+                int partition = receiver / partitionSize;
+                if (outbox[partition] == null) outbox[partition] = new MessageBuffer();
+                outbox[partition].add(receiver, message);
+            }
+
+            @Override
+            public void sendMessage(TitanVertex vertex, double message) {
+                sendMessage(vertex.getID(), message);
+            }
+
+            @Override
+            public void voteToHalt() {
+                halted[pos] = true;
+            }
+        }
+
+    }
+
+    private static class MessageBuffer {
+
+        private final IntArrayList receivers = new IntArrayList();
+        private final DoubleArrayList messages = new DoubleArrayList();
+
+        private void add(int receiver, double message) {
+            receivers.add(receiver);
+            messages.add(message);
+        }
+
+        private int size() {
+            return receivers.size();
+        }
+
+    }
+
+}
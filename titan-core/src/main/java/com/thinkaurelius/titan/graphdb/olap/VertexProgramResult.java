@@ -0,0 +1,123 @@
+package com.thinkaurelius.titan.graphdb.olap;
+
+import com.carrotsearch.hppc.LongIntOpenHashMap;
+import com.google.common.base.Preconditions;
+import com.thinkaurelius.titan.core.TitanTransaction;
+import com.thinkaurelius.titan.core.TitanVertex;
+import com.thinkaurelius.titan.graphdb.database.StandardTitanGraph;
+
+/**
+ * The final vertex values computed by a {@link VertexProgram}.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class VertexProgramResult {
+
+    /**
+     * Receives the final value of each vertex.
+     */
+    public interface Handler {
+
+        public void handle(long vertexid, double value);
+
+    }
+
+    public static final int DEFAULT_COMMIT_SIZE = 10000;
+
+    private final StandardTitanGraph graph;
+    private final long[] vertexIds;
+    private final LongIntOpenHashMap index;
+    private final double[] values;
+    private final int iterations;
+
+    VertexProgramResult(StandardTitanGraph graph, long[] vertexIds, LongIntOpenHashMap index, double[] values, int iterations) {
+        this.graph = graph;
+        this.vertexIds = vertexIds;
+        this.index = index;
+        this.values = values;
+        this.iterations = iterations;
+    }
+
+    /**
+     * @return The number of vertices the program has been executed against
+     */
+    public int size() {
+        return vertexIds.length;
+    }
+
+    /**
+     * @return The number of iterations the program has been executed for
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @param vertexid id of a vertex
+     * @return true, if the program has been executed against the vertex with the given id, else false
+     */
+    public boolean containsVertex(long vertexid) {
+        return index.containsKey(vertexid);
+    }
+
+    /**
+     * Returns the final value of the vertex with the given id.
+     *
+     * @param vertexid id of a vertex
+     * @return final value of the vertex
+     * @throws IllegalArgumentException if the program has not been executed against the given vertex
+     */
+    public double getValue(long vertexid) {
+        Preconditions.checkArgument(index.containsKey(vertexid), "Unknown vertex: %s", vertexid);
+        return values[index.lget()];
+    }
+
+    /**
+     * Passes the final value of each vertex to the given handler.
+     *
+     * @param handler handler to receive the vertex values
+     */
+    public void process(Handler handler) {
+        Preconditions.checkNotNull(handler);
+        for (int i = 0; i < vertexIds.length; i++) handler.handle(vertexIds[i], values[i]);
+    }
+
+    /**
+     * Writes the final value of each vertex into a property with the given key.
+     * The key must be unique for vertices so that existing values are replaced.
+     * The properties are written in a sequence of transactions which are each committed after {@link #DEFAULT_COMMIT_SIZE} vertices.
+     *
+     * @param key name of the property key
+     */
+    public void writeProperty(String key) {
+        writeProperty(key, DEFAULT_COMMIT_SIZE);
+    }
+
+    /**
+     * Writes the final value of each vertex into a property with the given key.
+     *
+     * @param key        name of the property key
+     * @param commitSize number of vertices after which the transaction is committed
+     * @see #writeProperty(String)
+     */
+    public void writeProperty(String key, int commitSize) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkArgument(commitSize > 0, "Invalid commit size: %s", commitSize);
+        TitanTransaction tx = graph.newTransaction();
+        try {
+            for (int i = 0; i < vertexIds.length; i++) {
+                if (i > 0 && i % commitSize == 0) {
+                    tx.commit();
+                    tx = graph.newTransaction();
+                }
+                TitanVertex vertex = tx.getVertex(vertexIds[i]);
+                if (vertex != null) vertex.setProperty(key, values[i]);
+            }
+            tx.commit();
+        } finally {
+            if (tx.isOpen()) tx.rollback();
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.thinkaurelius.titan.graphdb.query;
 
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * (c) Matthias Broecheler (me@matthiasb.com)
@@ -14,4 +15,13 @@ public interface QueryExecutor<Q extends Query<Q>,R> {
 
     public Iterator<R> execute(Q query);
 
+    /**
+     * Gives the executor the opportunity to retrieve the results for all of the given queries at once
+     * (e.g. in parallel) before each one is executed individually via {@link #execute(Query)}.
+     * Executors that cannot take advantage of this should simply ignore the call.
+     *
+     * @param queries Queries that are about to be executed
+     */
+    public void prefetch(List<Q> queries);
+
 }
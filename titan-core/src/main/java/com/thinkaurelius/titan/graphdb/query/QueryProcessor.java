@@ -51,6 +51,8 @@ public class QueryProcessor<Q extends Query<Q>,R> implements Iterable<R> {
     public Iterator<R> getUnwrappedIterator() {
         Iterator<R> iter = null;
         if (query.isSorted()) {
+            //All sub-queries are executed up front, so their results can be retrieved in one batch
+            if (optimal.size()>1) executor.prefetch(optimal);
 
             for (int i=optimal.size()-1;i>=0;i--) {
                 if (iter==null) iter = executor.execute(optimal.get(i));
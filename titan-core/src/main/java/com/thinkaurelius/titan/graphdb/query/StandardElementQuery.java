@@ -3,6 +3,7 @@ package com.thinkaurelius.titan.graphdb.query;
 import com.google.common.base.Preconditions;
 import com.thinkaurelius.titan.core.*;
 import com.thinkaurelius.titan.graphdb.query.keycondition.*;
+import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Vertex;
@@ -131,7 +132,15 @@ public class StandardElementQuery implements Query<StandardElementQuery> {
             KeyAtom<T> atom = (KeyAtom<T>) condition;
             Object value = null;
             T type = atom.getKey();
-            if (type.isPropertyKey()) value = element.getProperty((TitanKey)type);
+            if (type.isPropertyKey() && element instanceof TitanVertex && !type.isUnique(Direction.OUT)) {
+                //A vertex matches if one of the values of a multi-valued key satisfies the condition
+                boolean hasValues = false;
+                for (TitanProperty property : ((TitanVertex) element).getProperties((TitanKey) type)) {
+                    if (atom.getRelation().satisfiesCondition(property.getValue(), atom.getCondition())) return true;
+                    hasValues = true;
+                }
+                if (hasValues) return false;
+            } else if (type.isPropertyKey()) value = element.getProperty((TitanKey)type);
             else value = ((TitanRelation)element).getProperty((TitanLabel)type);
             return atom.getRelation().satisfiesCondition(value,atom.getCondition());
         } else if (condition instanceof KeyNot) {
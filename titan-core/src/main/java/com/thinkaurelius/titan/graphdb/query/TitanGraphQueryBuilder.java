@@ -1,5 +1,6 @@
 package com.thinkaurelius.titan.graphdb.query;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
@@ -10,6 +11,8 @@ import com.thinkaurelius.titan.core.TitanKey;
 import com.thinkaurelius.titan.core.TitanType;
 import com.thinkaurelius.titan.core.attribute.Cmp;
 import com.thinkaurelius.titan.core.attribute.Interval;
+import com.thinkaurelius.titan.graphdb.database.IndexSerializer;
+import com.thinkaurelius.titan.graphdb.internal.InternalVertex;
 import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAnd;
 import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAtom;
 import com.thinkaurelius.titan.graphdb.query.keycondition.KeyCondition;
@@ -22,7 +25,10 @@ import com.tinkerpop.blueprints.Vertex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * (c) Matthias Broecheler (me@matthiasb.com)
@@ -117,6 +123,31 @@ public class TitanGraphQueryBuilder implements TitanGraphQuery, QueryOptimizer<S
     }
 
 
+    @Override
+    public Iterable<Map<String,Object>> values(String... keys) {
+        final List<TitanKey> titanKeys = new ArrayList<TitanKey>(keys.length);
+        for (String key : keys) {
+            Preconditions.checkNotNull(key);
+            TitanType type = tx.getType(key);
+            //Undefined keys have no values
+            if (type instanceof TitanKey) titanKeys.add((TitanKey)type);
+        }
+        return Iterables.transform(vertices(),new Function<Vertex, Map<String,Object>>() {
+            @Override
+            public Map<String,Object> apply(Vertex vertex) {
+                IndexSerializer.IndexedVertex entry = tx.getIndexedVertex(((InternalVertex)vertex).getID());
+                Map<String,Object> values = new HashMap<String,Object>(titanKeys.size());
+                for (TitanKey key : titanKeys) {
+                    Object value;
+                    if (entry!=null && entry.isIncluded(key.getID())) value = entry.getValue(key.getID());
+                    else value = ((InternalVertex)vertex).getProperty(key);
+                    if (value!=null) values.put(key.getName(),value);
+                }
+                return values;
+            }
+        });
+    }
+
     @Override
     public TitanGraphQueryBuilder limit(long max) {
         Preconditions.checkArgument(max>=0,"Non-negative limit expected: %s",max);
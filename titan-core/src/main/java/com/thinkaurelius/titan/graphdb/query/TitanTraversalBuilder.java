@@ -0,0 +1,254 @@
+package com.thinkaurelius.titan.graphdb.query;
+
+import cern.colt.list.LongArrayList;
+import com.carrotsearch.hppc.LongOpenHashSet;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.thinkaurelius.titan.core.*;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
+import com.thinkaurelius.titan.graphdb.database.EdgeSerializer;
+import com.thinkaurelius.titan.graphdb.database.RelationDecoder;
+import com.thinkaurelius.titan.graphdb.database.idhandling.IDHandler;
+import com.thinkaurelius.titan.graphdb.internal.InternalVertex;
+import com.thinkaurelius.titan.graphdb.relations.EdgeDirection;
+import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
+import com.tinkerpop.blueprints.Direction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Executes a {@link TitanTraversal} breadth-first. The frontier and the set of visited vertices are maintained as
+ * primitive long collections. The adjacency lists of all frontier vertices that have not been modified in the
+ * enclosing transaction are collected per hop and retrieved with one multi-key read per slice via
+ * {@link com.thinkaurelius.titan.diskstorage.BackendTransaction#edgeStoreMultiQuery(java.util.List, com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery)}.
+ * Storage backends which support multi-key reads answer it with a single request, all others read the vertices
+ * concurrently if {@code storage.parallel-backend-ops} is enabled, else one after another. The results are decoded
+ * directly into vertex ids, without materializing the vertices or edges. Modified vertices are expanded through a
+ * regular vertex-centric query so that the transactional state is taken into account.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class TitanTraversalBuilder implements TitanTraversal {
+
+    private static final Logger log = LoggerFactory.getLogger(TitanTraversalBuilder.class);
+
+    private final StandardTitanTx tx;
+    private final InternalVertex[] start;
+    private final List<Hop> hops;
+
+    private int maxFanOut = Query.NO_LIMIT;
+    private long maxVisited = Long.MAX_VALUE;
+
+    public TitanTraversalBuilder(StandardTitanTx tx, InternalVertex[] start) {
+        Preconditions.checkNotNull(tx);
+        Preconditions.checkNotNull(start);
+        this.tx = tx;
+        this.start = start;
+        this.hops = Lists.newArrayList();
+    }
+
+    /* ---------------------------------------------------------------
+     * Traversal Construction
+	 * ---------------------------------------------------------------
+	 */
+
+    @Override
+    public TitanTraversalBuilder hop(Direction dir) {
+        return hop(dir,new TitanLabel[0]);
+    }
+
+    @Override
+    public TitanTraversalBuilder hop(Direction dir, String... labels) {
+        Preconditions.checkNotNull(dir);
+        List<TitanLabel> resolved = Lists.newArrayListWithCapacity(labels.length);
+        for (String name : labels) {
+            TitanType type = tx.getType(name);
+            if (type == null) {
+                if (!tx.getConfiguration().getAutoEdgeTypeMaker().ignoreUndefinedQueryTypes())
+                    throw new IllegalArgumentException("Undefined type used in traversal: " + name);
+            } else {
+                Preconditions.checkArgument(type.isEdgeLabel(),"Expected an edge label: %s",name);
+                resolved.add((TitanLabel)type);
+            }
+        }
+        hops.add(new Hop(dir,resolved.toArray(new TitanLabel[resolved.size()]),labels.length>0));
+        return this;
+    }
+
+    @Override
+    public TitanTraversalBuilder hop(Direction dir, TitanLabel... labels) {
+        Preconditions.checkNotNull(dir);
+        hops.add(new Hop(dir,labels,labels.length>0));
+        return this;
+    }
+
+    @Override
+    public TitanTraversalBuilder maxFanOut(int limit) {
+        Preconditions.checkArgument(limit>0,"Fan-out limit must be positive [%s]",limit);
+        this.maxFanOut = limit;
+        return this;
+    }
+
+    @Override
+    public TitanTraversalBuilder maxVisited(long limit) {
+        Preconditions.checkArgument(limit>=0,"Visit limit must be non-negative [%s]",limit);
+        this.maxVisited = limit;
+        return this;
+    }
+
+    /* ---------------------------------------------------------------
+     * Traversal Execution
+	 * ---------------------------------------------------------------
+	 */
+
+    @Override
+    public VertexList vertexIds() {
+        return new VertexLongList(tx,execute());
+    }
+
+    @Override
+    public Iterable<TitanVertex> vertices() {
+        return vertexIds();
+    }
+
+    @Override
+    public long count() {
+        return execute().size();
+    }
+
+    private LongArrayList execute() {
+        LongArrayList result = new LongArrayList();
+        LongOpenHashSet visited = new LongOpenHashSet();
+        LongArrayList frontier = new LongArrayList(start.length);
+        for (InternalVertex v : start) {
+            if (v.isRemoved()) continue;
+            if (visited.add(v.getID())) frontier.add(v.getID());
+        }
+
+        for (int h=0;h<hops.size() && !frontier.isEmpty() && result.size()<maxVisited;h++) {
+            Hop hop = hops.get(h);
+            LongArrayList next = new LongArrayList();
+            if (!hop.isEmpty()) {
+                expand(hop,frontier,visited,next,result);
+            }
+            log.trace("Hop {} expanded {} vertices into {} new vertices",new Object[]{h,frontier.size(),next.size()});
+            frontier = next;
+        }
+        return result;
+    }
+
+    private void expand(Hop hop, LongArrayList frontier, LongOpenHashSet visited, LongArrayList next, LongArrayList result) {
+        EdgeSerializer edgeSerializer = tx.getGraph().getEdgeSerializer();
+        List<SliceQuery> slices = hop.getSlices(edgeSerializer, maxFanOut);
+
+        //1. Modified vertices are expanded individually, the reads for all others are collected
+        LongArrayList batched = new LongArrayList(frontier.size());
+        List<ByteBuffer> keys = Lists.newArrayListWithCapacity(frontier.size());
+        for (int i=0;i<frontier.size();i++) {
+            long vertexid = frontier.get(i);
+            InternalVertex modified = tx.getModifiedVertex(vertexid);
+            if (modified!=null) {
+                if (modified.isRemoved()) continue;
+                int fanOut = 0;
+                for (Direction dir : hop.getDirections()) {
+                    VertexCentricQueryBuilder query = new VertexCentricQueryBuilder(modified).direction(dir).types(hop.labels);
+                    if (maxFanOut!=Query.NO_LIMIT) query.limit(maxFanOut - fanOut);
+                    for (TitanEdge edge : query.titanEdges()) {
+                        if (fanOut>=maxFanOut) break;
+                        fanOut++;
+                        if (!visit(edge.getOtherVertex(modified).getID(),visited,next,result)) return;
+                    }
+                    if (fanOut>=maxFanOut) break;
+                }
+            } else {
+                batched.add(vertexid);
+                keys.add(IDHandler.getKey(vertexid));
+            }
+        }
+        if (keys.isEmpty()) return;
+
+        //2. Retrieve the adjacency lists of all other vertices with one multi-key read per slice
+        List<List<List<Entry>>> adjacencies = Lists.newArrayListWithCapacity(slices.size());
+        for (SliceQuery slice : slices) adjacencies.add(tx.getTxHandle().edgeStoreMultiQuery(keys,slice));
+        RelationDecoder decoder = edgeSerializer.newDecoder();
+        LongArrayList otherids = new LongArrayList(), relationids = new LongArrayList();
+        for (int i=0;i<batched.size();i++) {
+            long vertexid = batched.get(i);
+            int fanOut = 0;
+            for (int s=0;s<slices.size() && fanOut<maxFanOut;s++) {
+                for (Entry entry : adjacencies.get(s).get(i)) {
+                    if (fanOut>=maxFanOut) break;
+                    decoder.reset(vertexid,entry,tx);
+                    if (!hop.hasLabels && decoder.isHidden()) continue;
+                    if (edgeSerializer.isCompactEntry(decoder)) {
+                        otherids.clear();
+                        relationids.clear();
+                        edgeSerializer.readCompactBlock(entry,otherids,relationids);
+                        for (int k=0;k<otherids.size() && fanOut<maxFanOut;k++) {
+                            fanOut++;
+                            if (!visit(otherids.get(k),visited,next,result)) return;
+                        }
+                        continue;
+                    }
+                    long otherid = decoder.getOtherVertexId();
+                    fanOut++;
+                    if (!visit(otherid,visited,next,result)) return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the given vertex as visited and adds it to the next frontier if it has not yet been visited.
+     *
+     * @return false, if the visit limit has been reached and the traversal should stop, else true
+     */
+    private boolean visit(long vertexid, LongOpenHashSet visited, LongArrayList next, LongArrayList result) {
+        if (visited.add(vertexid)) {
+            next.add(vertexid);
+            result.add(vertexid);
+        }
+        return result.size()<maxVisited;
+    }
+
+    private static class Hop {
+
+        private final Direction dir;
+        private final TitanLabel[] labels;
+        private final boolean hasLabels;
+
+        private Hop(Direction dir, TitanLabel[] labels, boolean hasLabels) {
+            this.dir = dir;
+            this.labels = labels;
+            this.hasLabels = hasLabels;
+        }
+
+        /**
+         * @return true, if this hop was restricted to labels none of which are defined
+         */
+        private boolean isEmpty() {
+            return hasLabels && labels.length==0;
+        }
+
+        private Direction[] getDirections() {
+            if (dir==Direction.BOTH) return EdgeDirection.PROPER_DIRS;
+            else return new Direction[]{dir};
+        }
+
+        private List<SliceQuery> getSlices(EdgeSerializer edgeSerializer, int limit) {
+            List<SliceQuery> slices = Lists.newArrayList();
+            for (Direction d : getDirections()) {
+                if (labels.length==0) slices.add(edgeSerializer.getEdgeQuery(null,d,limit));
+                else for (TitanLabel label : labels) slices.add(edgeSerializer.getEdgeQuery(label,d,limit));
+            }
+            return slices;
+        }
+
+    }
+
+}
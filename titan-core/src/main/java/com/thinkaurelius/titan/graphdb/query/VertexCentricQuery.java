@@ -7,6 +7,7 @@ import com.google.common.collect.Multimap;
 import com.thinkaurelius.titan.core.TitanRelation;
 import com.thinkaurelius.titan.core.TitanType;
 import com.thinkaurelius.titan.core.TypeGroup;
+import com.thinkaurelius.titan.graphdb.database.RelationDecoder;
 import com.thinkaurelius.titan.graphdb.internal.InternalRelation;
 import com.thinkaurelius.titan.graphdb.internal.InternalVertex;
 import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAnd;
@@ -198,6 +199,29 @@ public class VertexCentricQuery implements Query<VertexCentricQuery> {
         return true;
     }
 
+    /**
+     * Checks the conditions of this query which can be evaluated against the header of an edge store entry, i.e.
+     * the return type, direction, visibility and type. Constraints on properties are not checked, hence a relation that
+     * passes this check still needs to be checked with {@link #matches(com.thinkaurelius.titan.core.TitanRelation)}
+     * if this query has constraints.
+     *
+     * @param decoder decoder positioned on an entry of this query's vertex
+     * @return false, if the relation stored in the entry does not match this query, else true
+     */
+    public boolean matchesHeader(RelationDecoder decoder) {
+        if ((decoder.isProperty() && returnType== RelationType.EDGE) ||
+                (decoder.isEdge() && returnType== RelationType.PROPERTY)) return false;
+        if (dir!=Direction.BOTH && decoder.getDirection()!=dir) return false;
+        if (!includeHidden && decoder.isHidden()) return false;
+        if (group!=null && !decoder.getType().getGroup().equals(group)) return false;
+        if (types.length>0) {
+            boolean matches = false;
+            for (TitanType type : types) if (decoder.getTypeId()==type.getID()) { matches = true; break; }
+            if (!matches) return false;
+        }
+        return true;
+    }
+
     public static final VertexCentricQuery INVALID = new VertexCentricQuery();
 
 }
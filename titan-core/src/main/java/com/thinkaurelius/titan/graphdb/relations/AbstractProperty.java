@@ -4,6 +4,7 @@ import com.google.common.base.Preconditions;
 import com.thinkaurelius.titan.core.TitanKey;
 import com.thinkaurelius.titan.core.TitanProperty;
 import com.thinkaurelius.titan.core.TitanVertex;
+import com.thinkaurelius.titan.graphdb.database.serialize.CompressedValue;
 import com.thinkaurelius.titan.graphdb.internal.InternalVertex;
 
 import static com.tinkerpop.blueprints.util.StringFactory.*;
@@ -15,7 +16,7 @@ import static com.tinkerpop.blueprints.util.StringFactory.*;
 public abstract class AbstractProperty extends AbstractTypedRelation implements TitanProperty {
 
     private final InternalVertex vertex;
-    private final Object value;
+    private volatile Object value;
 
     public AbstractProperty(long id, TitanKey type, InternalVertex vertex, Object value) {
         super(id, type);
@@ -27,7 +28,7 @@ public abstract class AbstractProperty extends AbstractTypedRelation implements
 
     @Override
     public String toString() {
-        String valueStr = String.valueOf(value);
+        String valueStr = String.valueOf(getValue());
         valueStr = valueStr.substring(0,Math.min(valueStr.length(),20));
         return E + L_BRACKET + getId() + R_BRACKET + L_BRACKET + getVertex().getId() + DASH + getPropertyKey() + ARROW + valueStr + R_BRACKET;
     }
@@ -60,12 +61,18 @@ public abstract class AbstractProperty extends AbstractTypedRelation implements
 
     @Override
     public Object getValue() {
-        return value;
+        Object v = value;
+        if (v instanceof CompressedValue) {
+            //Benign race: concurrent readers decompress the same value
+            v = ((CompressedValue) v).decompress();
+            value = v;
+        }
+        return v;
     }
 
     @Override
     public <O> O getValue(Class<O> clazz) {
-        return clazz.cast(value);
+        return clazz.cast(getValue());
     }
 
     @Override
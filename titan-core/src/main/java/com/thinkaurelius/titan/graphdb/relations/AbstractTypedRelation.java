@@ -3,6 +3,7 @@ package com.thinkaurelius.titan.graphdb.relations;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 import com.thinkaurelius.titan.core.*;
+import com.thinkaurelius.titan.graphdb.database.EdgeSerializer;
 import com.thinkaurelius.titan.graphdb.internal.AbstractElement;
 import com.thinkaurelius.titan.graphdb.internal.InternalRelation;
 import com.thinkaurelius.titan.graphdb.internal.InternalType;
@@ -111,6 +112,7 @@ public abstract class AbstractTypedRelation extends AbstractElement implements I
         Preconditions.checkArgument(!it().isRemoved(),"Cannot modified removed relation");
         Preconditions.checkArgument(label.isUnidirected(),"Label must be unidirected");
         Preconditions.checkArgument(label.isUnique(Direction.OUT),"Label must have unique end point");
+        Preconditions.checkArgument(!isEdge() || !EdgeSerializer.isCompact(type),"Edges of a compact label cannot have properties");
         it().setPropertyDirect(label,vertex);
     }
 
@@ -118,6 +120,7 @@ public abstract class AbstractTypedRelation extends AbstractElement implements I
     public void setProperty(TitanKey key, Object value) {
         Preconditions.checkArgument(!it().isRemoved(),"Cannot modified removed relation");
         Preconditions.checkArgument(key.isUnique(Direction.OUT),"Key must have unique assignment");
+        Preconditions.checkArgument(!isEdge() || !EdgeSerializer.isCompact(type),"Edges of a compact label cannot have properties");
         it().setPropertyDirect(key,AttributeUtil.verifyAttribute(key,value));
     }
 
@@ -16,6 +16,10 @@ import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
 import com.thinkaurelius.titan.graphdb.blueprints.TitanBlueprintsTransaction;
 import com.thinkaurelius.titan.graphdb.database.EdgeSerializer;
 import com.thinkaurelius.titan.graphdb.database.FittedSliceQuery;
+import com.thinkaurelius.titan.graphdb.database.RelationDecoder;
+import com.thinkaurelius.titan.graphdb.database.IndexQueryCache;
+import com.thinkaurelius.titan.graphdb.database.IndexSerializer;
+import com.thinkaurelius.titan.graphdb.database.LookupFilter;
 import com.thinkaurelius.titan.graphdb.database.StandardTitanGraph;
 import com.thinkaurelius.titan.graphdb.idmanagement.IDInspector;
 import com.thinkaurelius.titan.graphdb.internal.ElementLifeCycle;
@@ -93,6 +97,11 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
 
     private final Map<String,TitanType> typeCache;
 
+    /**
+     * Values of included keys retrieved with the vertices from the standard index
+     */
+    private final Map<Long,IndexSerializer.IndexedVertex> indexedVertices;
+
     private boolean isOpen;
 
 
@@ -120,11 +129,13 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
             addedRelations = new SimpleBufferAddedRelations();
             concurrencyLevel = 1;
             typeCache = new HashMap<String,TitanType>();
+            indexedVertices = new HashMap<Long,IndexSerializer.IndexedVertex>();
         } else {
             vertexCache = new ConcurrentVertexCache();
             addedRelations = new ConcurrentBufferAddedRelations();
             concurrencyLevel = 4;
             typeCache = new ConcurrentHashMap<String, TitanType>();
+            indexedVertices = new ConcurrentHashMap<Long,IndexSerializer.IndexedVertex>();
 
         }
         for (SystemType st : SystemKey.values()) typeCache.put(st.getName(),st);
@@ -217,6 +228,34 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
         return vertex;
     }
 
+    /**
+     * Returns the vertex with the given id if it has been created or its relations have been modified in this transaction.
+     * The adjacency list of such a vertex cannot be read from the storage backend directly.
+     *
+     * @param id id of the vertex
+     * @return the modified vertex, or null if the vertex has not been modified
+     */
+    public InternalVertex getModifiedVertex(final long id) {
+        if (!vertexCache.contains(id)) return null;
+        InternalVertex vertex = vertexCache.get(id,vertexConstructor);
+        if (vertex.isNew() || vertex.isRemoved() || vertex.hasAddedRelations() || vertex.hasRemovedRelations()) return vertex;
+        else return null;
+    }
+
+    /**
+     * Returns the values of the included keys which have been retrieved with the vertex of the given id from the
+     * standard index in this transaction, unless the vertex has been modified since.
+     *
+     * @param id id of the vertex
+     * @return the index entry of the vertex or null if there is none or it may be outdated
+     * @see TypeMaker#include(TitanKey...)
+     */
+    public IndexSerializer.IndexedVertex getIndexedVertex(final long id) {
+        IndexSerializer.IndexedVertex entry = indexedVertices.get(id);
+        if (entry==null || getModifiedVertex(id)!=null) return null;
+        return entry;
+    }
+
     private final Retriever<Long,InternalVertex> vertexConstructor = new Retriever<Long, InternalVertex>() {
         @Override
         public InternalVertex get(Long id) {
@@ -426,11 +465,16 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
 
 
     public TitanKey makePropertyKey(PropertyKeyDefinition definition) {
+        return makePropertyKey(definition, new long[0]);
+    }
+
+    public TitanKey makePropertyKey(PropertyKeyDefinition definition, long[] includedKeys) {
         verifyOpen();
         TitanKeyVertex prop = new TitanKeyVertex(this, temporaryID.decrementAndGet(), ElementLifeCycle.New);
         addProperty(prop, SystemKey.TypeName, definition.getName());
         addProperty(prop, SystemKey.PropertyKeyDefinition, definition);
         addProperty(prop, SystemKey.TypeClass, TitanTypeClass.KEY);
+        if (includedKeys.length>0) addProperty(prop, SystemKey.IncludedKeys, includedKeys);
         graph.assignID(prop);
         Preconditions.checkArgument(prop.getID()>0);
         vertexCache.add(prop,prop.getID());
@@ -537,16 +581,54 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
             }).iterator();
         }
 
+        private FittedSliceQuery getSliceQuery(final VertexCentricQuery query) {
+            FittedSliceQuery sq = graph.getEdgeSerializer().getQuery(query);
+            final boolean needsFiltering = !sq.isFitted() || !deletedRelations.isEmpty()
+                    || graph.getEdgeSerializer().hasPackedEntries(query);
+            if (needsFiltering && sq.hasLimit()) sq = new FittedSliceQuery(sq,QueryUtil.updateLimit(sq.getLimit(),1.1));
+            return sq;
+        }
+
+        @Override
+        public void prefetch(final List<VertexCentricQuery> queries) {
+            if (!txHandle.hasParallelReads() || queries.isEmpty()) return;
+            final InternalVertex v = queries.get(0).getVertex();
+            if (!(v instanceof CacheVertex) || v.isNew()) return;
+            CacheVertex cv = (CacheVertex)v;
+
+            //Only retrieve those slices that have not yet been loaded into the vertex's relation cache
+            List<SliceQuery> slices = Lists.newArrayListWithCapacity(queries.size());
+            for (VertexCentricQuery query : queries) {
+                Preconditions.checkArgument(query.getVertex()==v,"Expected sub-queries on the same vertex");
+                FittedSliceQuery sq = getSliceQuery(query);
+                if (!cv.hasLoadedRelations(sq)) slices.add(sq);
+            }
+            if (slices.size()<=1) return;
+
+            log.trace("Prefetching {} slices for vertex [{}]",slices.size(),v.getID());
+            List<List<Entry>> results = graph.edgeMultiQuery(v.getID(), slices, txHandle);
+            for (int i=0;i<slices.size();i++) {
+                final List<Entry> result = results.get(i);
+                cv.loadRelations(slices.get(i), new Retriever<SliceQuery, List<Entry>>() {
+                    @Override
+                    public List<Entry> get(SliceQuery query) {
+                        return result;
+                    }
+                });
+            }
+        }
+
         @Override
         public Iterator<TitanRelation> execute(final VertexCentricQuery query) {
             if (query.getVertex().isNew()) return Iterators.emptyIterator();
 
             final EdgeSerializer edgeSerializer = graph.getEdgeSerializer();
-            FittedSliceQuery sq = edgeSerializer.getQuery(query);
+            final RelationDecoder decoder = edgeSerializer.newDecoder();
+            FittedSliceQuery sq = getSliceQuery(query);
             final boolean fittedQuery = sq.isFitted();
             final InternalVertex v = query.getVertex();
-            final boolean needsFiltering = !sq.isFitted() || !deletedRelations.isEmpty();
-            if (needsFiltering && sq.hasLimit()) sq = new FittedSliceQuery(sq,QueryUtil.updateLimit(sq.getLimit(),1.1));
+            final boolean hasPackedEntries = edgeSerializer.hasPackedEntries(query);
+            final boolean needsFiltering = !sq.isFitted() || !deletedRelations.isEmpty() || hasPackedEntries;
 
             Iterable<TitanRelation> result = null;
             double limitMultiplier = 1.0;
@@ -567,20 +649,61 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
                 } else {
                     iter = graph.edgeQuery(v.getID(),sq,txHandle);
                 }
-                result = Iterables.transform(iter, new Function<Entry, TitanRelation>() {
-                    @Nullable
-                    @Override
-                    public TitanRelation apply(@Nullable Entry entry) {
-                        return edgeSerializer.readRelation(v, entry);
-                    }
-                });
+                Iterable<Entry> entries = iter;
+                if (needsFiltering) {
+                    //Filter out deleted and non-matching relations before they are materialized
+                    entries = Iterables.filter(iter, new Predicate<Entry>() {
+                        @Override
+                        public boolean apply(@Nullable Entry entry) {
+                            decoder.reset(v.getID(),entry,StandardTitanTx.this);
+                            //Packed properties and compact edges are filtered individually after unpacking them
+                            if (hasPackedEntries && (edgeSerializer.isPackedEntry(decoder)
+                                    || edgeSerializer.isCompactEntry(decoder))) return true;
+                            if (!deletedRelations.isEmpty() && deletedRelations.containsKey(Long.valueOf(decoder.getRelationId()))) return false;
+                            return fittedQuery || query.matchesHeader(decoder);
+                        }
+                    });
+                }
+                if (hasPackedEntries) {
+                    result = Iterables.concat(Iterables.transform(entries, new Function<Entry, Iterable<TitanRelation>>() {
+                        @Nullable
+                        @Override
+                        public Iterable<TitanRelation> apply(@Nullable Entry entry) {
+                            decoder.reset(v.getID(),entry,StandardTitanTx.this);
+                            List<InternalRelation> relations;
+                            if (edgeSerializer.isPackedEntry(decoder)) {
+                                TitanKey key = query.numberTypes()==1 && query.getTypes()[0].isPropertyKey() ?
+                                        (TitanKey)query.getTypes()[0] : null;
+                                relations = edgeSerializer.readPackedProperties(v, entry, decoder, key);
+                            } else if (edgeSerializer.isCompactEntry(decoder)) {
+                                relations = edgeSerializer.readCompactEdges(v, entry, decoder);
+                            } else {
+                                return ImmutableList.<TitanRelation>of(edgeSerializer.readRelation(v, entry, decoder));
+                            }
+                            List<TitanRelation> packed = new ArrayList<TitanRelation>(relations.size());
+                            for (InternalRelation r : relations) {
+                                if (deletedRelations.containsKey(Long.valueOf(r.getID()))) continue;
+                                if (fittedQuery || query.matches(r)) packed.add(r);
+                            }
+                            return packed;
+                        }
+                    }));
+                } else {
+                    result = Iterables.transform(entries, new Function<Entry, TitanRelation>() {
+                        @Nullable
+                        @Override
+                        public TitanRelation apply(@Nullable Entry entry) {
+                            return edgeSerializer.readRelation(v, entry, decoder);
+                        }
+                    });
+                }
                 if (needsFiltering) {
                     result = Iterables.filter(result,new Predicate<TitanRelation>() {
                         @Override
                         public boolean apply(@Nullable TitanRelation relation) {
-                            //Filter out updated and deleted relations
-                            return (relation==((InternalRelation)relation).it() && !deletedRelations.containsKey(Long.valueOf(relation.getID())))
-                                    && (fittedQuery || query.matches(relation));
+                            //Filter out updated relations
+                            return relation==((InternalRelation)relation).it()
+                                    && (fittedQuery || !query.hasConstraints() || query.matches(relation));
                         }
                     });
                 }
@@ -653,6 +776,38 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
             } else throw new IllegalArgumentException("Unexpected type: " + query.getType());
         }
 
+        @Override
+        public void prefetch(List<StandardElementQuery> queries) {
+            //Index queries are answered individually
+        }
+
+        /**
+         * Evaluates the query against the values of the included keys in the index entry of the given vertex, if
+         * they cover all conditions other than the given equality condition of the index, and against the vertex
+         * otherwise.
+         */
+        private boolean matchesIndexed(StandardElementQuery query, KeyAtom<TitanKey> indexAtom, TitanElement result) {
+            IndexSerializer.IndexedVertex entry = getIndexedVertex(((InternalVertex)result).getID());
+            if (entry!=null && indexAtom.getRelation()==Cmp.EQUAL) {
+                boolean covered = true;
+                for (KeyCondition<TitanKey> c : query.getCondition().getChildren()) {
+                    if (c!=indexAtom && !entry.isIncluded(((KeyAtom<TitanKey>)c).getKey().getID())) {
+                        covered = false;
+                        break;
+                    }
+                }
+                if (covered) {
+                    for (KeyCondition<TitanKey> c : query.getCondition().getChildren()) {
+                        KeyAtom<TitanKey> atom = (KeyAtom<TitanKey>)c;
+                        if (atom!=indexAtom && !atom.getRelation().satisfiesCondition(
+                                entry.getValue(atom.getKey().getID()),atom.getCondition())) return false;
+                    }
+                    return true;
+                }
+            }
+            return query.matches(result);
+        }
+
         private boolean isDeleted(StandardElementQuery query, TitanElement result) {
             if (result.isRemoved()) return true;
             else if (query.getType()== StandardElementQuery.Type.VERTEX) {
@@ -706,6 +861,20 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
                     }
                 }
                 Preconditions.checkArgument(!newConds.isEmpty(),"Invalid index assignment [%s] to query [%s]",index, query);
+                if (index.equals(Titan.Token.STANDARD_INDEX) &&
+                        (newConds.size()>1 || ((KeyAtom<TitanKey>)newConds.get(0)).getRelation()!=Cmp.EQUAL)) {
+                    //The standard index answers a single condition, preferably an equality, and approximates
+                    //geographic conditions by geohash buckets, hence the results are filtered
+                    KeyCondition<TitanKey> cond = newConds.get(0);
+                    for (KeyCondition<TitanKey> c : newConds) {
+                        if (((KeyAtom<TitanKey>)c).getRelation()==Cmp.EQUAL) {
+                            cond = c;
+                            break;
+                        }
+                    }
+                    newConds = ImmutableList.of(cond);
+                    needsFilter = true;
+                }
                 final StandardElementQuery indexQuery;
                 if (needsFilter) {
                     Preconditions.checkArgument(!newConds.isEmpty(),"Query has been assigned an index [%s] in error: %s",query.getIndex(),query);
@@ -713,26 +882,64 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
                 } else {
                     indexQuery = query;
                 }
-                try {
-                    iter = Iterators.transform(indexCache.get(indexQuery,new Callable<List<Object>>() {
-                        @Override
-                        public List<Object> call() throws Exception {
-                            return graph.elementQuery(indexQuery,txHandle);
-                        }
-                    }).iterator(),new Function<Object, TitanElement>() {
-                        @Nullable
+                //Geographic conditions against the standard index retrieve candidates bucket by bucket
+                boolean bucketed = index.equals(Titan.Token.STANDARD_INDEX) &&
+                        ((KeyAtom<TitanKey>)newConds.get(0)).getRelation()!=Cmp.EQUAL;
+                Iterator<Object> ids;
+                LookupFilter lookupFilter = graph.getLookupFilter();
+                if (lookupFilter!=null && !lookupFilter.mightMatch(indexQuery)) {
+                    //No persisted vertex has the unique value
+                    ids = Iterators.emptyIterator();
+                } else if (!bucketed && (indexQuery.hasLimit() || index.equals(Titan.Token.STANDARD_INDEX))) {
+                    //Bounded results are cached for the duration of the transaction and, if enabled and not a
+                    //lookup of system keys, across transactions
+                    try {
+                        ids = indexCache.get(indexQuery,new Callable<List<Object>>() {
+                            @Override
+                            public List<Object> call() throws Exception {
+                                final Callable<List<Object>> loader = new Callable<List<Object>>() {
+                                    @Override
+                                    public List<Object> call() throws Exception {
+                                        return Lists.newArrayList(graph.elementQuery(indexQuery,txHandle));
+                                    }
+                                };
+                                IndexQueryCache graphCache = graph.getIndexQueryCache();
+                                if (graphCache==null || !IndexQueryCache.isCacheable(indexQuery)) return loader.call();
+                                return graphCache.get(indexQuery,loader);
+                            }
+                        }).iterator();
+                    } catch (Exception e) {
+                        throw new TitanException("Could not call index",e);
+                    }
+                } else {
+                    //Unbounded results of external indexes are streamed, as are the candidates of geographic
+                    //conditions so that no further buckets are read once the filtered results reach the limit
+                    ids = graph.elementQuery(indexQuery,txHandle);
+                }
+                iter = Iterators.transform(ids,new Function<Object, TitanElement>() {
+                    @Nullable
+                    @Override
+                    public TitanElement apply(@Nullable Object id) {
+                        Preconditions.checkNotNull(id);
+                        if (id instanceof IndexSerializer.IndexedVertex) {
+                            IndexSerializer.IndexedVertex entry = (IndexSerializer.IndexedVertex)id;
+                            indexedVertices.put(entry.getID(),entry);
+                            //The index entry attests the existence of the vertex
+                            return getExistingVertex(entry.getID());
+                        } else if (id instanceof Long) return (TitanVertex)getVertex((Long)id);
+                        else if (id instanceof RelationIdentifier) return (TitanElement)getEdge((RelationIdentifier)id);
+                        else throw new IllegalArgumentException("Unexpected id type: " + id);
+                    }
+                });
+                if (needsFilter && index.equals(Titan.Token.STANDARD_INDEX) && query.getType()==StandardElementQuery.Type.VERTEX) {
+                    final KeyAtom<TitanKey> indexAtom = (KeyAtom<TitanKey>)newConds.get(0);
+                    iter = Iterators.filter(iter,new Predicate<TitanElement>() {
                         @Override
-                        public TitanElement apply(@Nullable Object id) {
-                            Preconditions.checkNotNull(id);
-                            if (id instanceof Long) return (TitanVertex)getVertex((Long)id);
-                            else if (id instanceof RelationIdentifier) return (TitanElement)getEdge((RelationIdentifier)id);
-                            else throw new IllegalArgumentException("Unexpected id type: " + id);
+                        public boolean apply(@Nullable TitanElement element) {
+                            return element!=null && !element.isRemoved() && !isDeleted(query,element) && matchesIndexed(query,indexAtom,element);
                         }
                     });
-                } catch (Exception e) {
-                    throw new TitanException("Could not call index",e);
-                }
-                if (needsFilter) {
+                } else if (needsFilter) {
                     iter = Iterators.filter(iter,new Predicate<TitanElement>() {
                         @Override
                         public boolean apply(@Nullable TitanElement element) {
@@ -758,6 +965,14 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
         return new TitanGraphQueryBuilder(this);
     }
 
+    @Override
+    public TitanTraversalBuilder traverse(TitanVertex... start) {
+        verifyAccess(start);
+        InternalVertex[] vertices = new InternalVertex[start.length];
+        for (int i=0;i<start.length;i++) vertices[i]=(InternalVertex)start[i];
+        return new TitanTraversalBuilder(this,vertices);
+    }
+
     @Override
     public Iterable<TitanVertex> getVertices(TitanKey key, Object attribute) {
         Preconditions.checkNotNull(key);
@@ -792,10 +1007,15 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
     public synchronized void commit() {
         Preconditions.checkArgument(isOpen(), "The transaction has already been closed");
         try {
-            if (hasModifications()) {
+            boolean modified = hasModifications();
+            if (modified) {
                 graph.save(addedRelations.getAll(), deletedRelations.values(), this);
             }
             txHandle.commit();
+            IndexQueryCache graphCache = graph.getIndexQueryCache();
+            if (modified && graphCache!=null) {
+                graphCache.invalidate(Iterables.concat(addedRelations.getAll(), deletedRelations.values()));
+            }
         } catch (StorageException e) {
             try {
                 txHandle.rollback();
@@ -806,6 +1026,7 @@ public class StandardTitanTx extends TitanBlueprintsTransaction {
         } finally {
             close();
         }
+        if (config.hasWaitForIndexUpdates()) txHandle.awaitIndexUpdates();
     }
 
     @Override
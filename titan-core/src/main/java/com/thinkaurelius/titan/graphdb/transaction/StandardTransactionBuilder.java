@@ -0,0 +1,35 @@
+package com.thinkaurelius.titan.graphdb.transaction;
+
+import com.thinkaurelius.titan.core.TitanTransaction;
+import com.thinkaurelius.titan.core.TransactionBuilder;
+import com.thinkaurelius.titan.graphdb.database.StandardTitanGraph;
+
+/**
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class StandardTransactionBuilder implements TransactionBuilder {
+
+    private final StandardTitanGraph graph;
+
+    private boolean waitForIndexUpdates;
+
+    public StandardTransactionBuilder(StandardTitanGraph graph) {
+        this.graph = graph;
+
+        //Default assignments
+        waitForIndexUpdates = graph.getConfiguration().hasWaitForIndexUpdates();
+    }
+
+    @Override
+    public TransactionBuilder waitForIndexUpdates(boolean wait) {
+        this.waitForIndexUpdates = wait;
+        return this;
+    }
+
+    @Override
+    public TitanTransaction start() {
+        return graph.newTransaction(new TransactionConfig(graph.getConfiguration(), false, false, false, waitForIndexUpdates));
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.thinkaurelius.titan.graphdb.transaction;
 
+import com.google.common.base.Preconditions;
 import com.thinkaurelius.titan.core.DefaultTypeMaker;
 import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
 
@@ -29,11 +30,35 @@ public class TransactionConfig {
 
     private final boolean threadBound;
 
+    private final boolean waitForIndexUpdates;
+
     /**
      * Constructs a new TitanTransaction configuration with default configuration parameters.
      */
     public TransactionConfig(GraphDatabaseConfiguration graphConfig, boolean threadBound) {
-        this.isReadOnly = graphConfig.isReadOnly();
+        this(graphConfig, graphConfig.isReadOnly(), threadBound, threadBound);
+    }
+
+    /**
+     * Constructs a new TitanTransaction configuration with default configuration parameters that is read-only
+     * if either the graph or the given flag demand it.
+     * A transaction which is not thread bound can still be declared single threaded if it is never accessed concurrently.
+     *
+     * @see GraphDatabaseConfiguration#QUERY_WAIT_FOR_INDEX_UPDATES_KEY
+     */
+    public TransactionConfig(GraphDatabaseConfiguration graphConfig, boolean readOnly, boolean threadBound, boolean singleThreaded) {
+        this(graphConfig, readOnly, threadBound, singleThreaded, graphConfig.hasWaitForIndexUpdates());
+    }
+
+    /**
+     * Constructs a new TitanTransaction configuration which, if waitForIndexUpdates is set, does not return from
+     * commit before its mutations have been applied to all external indexes, including those configured to be updated
+     * asynchronously.
+     */
+    public TransactionConfig(GraphDatabaseConfiguration graphConfig, boolean readOnly, boolean threadBound, boolean singleThreaded,
+                             boolean waitForIndexUpdates) {
+        Preconditions.checkArgument(!threadBound || singleThreaded,"A thread bound transaction must be single threaded");
+        this.isReadOnly = readOnly || graphConfig.isReadOnly();
         this.assignIDsImmediately = graphConfig.hasFlushIDs();
         this.defaultTypeMaker = graphConfig.getDefaultTypeMaker();
         if (graphConfig.isBatchLoading()) {
@@ -46,7 +71,8 @@ public class TransactionConfig {
             acquireLocks = true;
         }
         this.threadBound = threadBound;
-        singleThreaded = threadBound;
+        this.singleThreaded = singleThreaded;
+        this.waitForIndexUpdates = waitForIndexUpdates;
     }
 
     public TransactionConfig(DefaultTypeMaker defaultTypeMaker, boolean assignIDsImmediately, boolean threadBound) {
@@ -58,6 +84,7 @@ public class TransactionConfig {
         acquireLocks = true;
         this.threadBound = threadBound;
         singleThreaded = threadBound;
+        waitForIndexUpdates = false;
     }
 
     /**
@@ -128,4 +155,14 @@ public class TransactionConfig {
     public final boolean isThreadBound() {
         return threadBound;
     }
+
+    /**
+     * Whether committing this transaction waits until its mutations have been applied to all external indexes so
+     * that subsequent index queries read its writes.
+     *
+     * @return True, if commit waits for index updates, else false
+     */
+    public final boolean hasWaitForIndexUpdates() {
+        return waitForIndexUpdates;
+    }
 }
@@ -4,4 +4,10 @@ public interface EdgeLabelDefinition extends TypeDefinition {
 
     public boolean isUnidirectional();
 
+    /**
+     * @return Whether the out-edges of this label are stored in compact blocks of neighbor ids
+     * @see com.thinkaurelius.titan.core.TypeMaker#compact()
+     */
+    public boolean isCompact();
+
 }
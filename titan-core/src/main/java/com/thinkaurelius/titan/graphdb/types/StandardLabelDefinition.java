@@ -5,6 +5,7 @@ import com.thinkaurelius.titan.core.TypeGroup;
 public class StandardLabelDefinition extends AbstractTypeDefinition implements EdgeLabelDefinition {
 
     private boolean isUnidirectional;
+    private boolean isCompact;
 
     StandardLabelDefinition() {
     }
@@ -13,12 +14,25 @@ public class StandardLabelDefinition extends AbstractTypeDefinition implements E
                                    boolean[] unique, boolean[] hasUniqueLock, boolean[] isStatic,
                                    boolean hidden, boolean modifiable,
                                    long[] primaryKey, long[] signature, boolean unidirectional) {
+        this(name, group, unique, hasUniqueLock, isStatic, hidden, modifiable, primaryKey, signature, unidirectional, false);
+    }
+
+    public StandardLabelDefinition(String name, TypeGroup group,
+                                   boolean[] unique, boolean[] hasUniqueLock, boolean[] isStatic,
+                                   boolean hidden, boolean modifiable,
+                                   long[] primaryKey, long[] signature, boolean unidirectional, boolean compact) {
         super(name, group, unique, hasUniqueLock, isStatic, hidden, modifiable, primaryKey, signature);
         isUnidirectional = unidirectional;
+        isCompact = compact;
     }
 
     @Override
     public boolean isUnidirectional() {
         return isUnidirectional;
     }
+
+    @Override
+    public boolean isCompact() {
+        return isCompact;
+    }
 }
@@ -37,9 +37,11 @@ public class StandardTypeMaker implements TypeMaker {
     private List<TitanType> signature;
 
     private boolean isUnidirectional;
+    private boolean isCompact;
 
     private Class<?> dataType;
     private Set<IndexType> indexes;
+    private List<TitanKey> includedKeys;
 
 
     public StandardTypeMaker(StandardTitanTx tx) {
@@ -57,8 +59,10 @@ public class StandardTypeMaker implements TypeMaker {
         signature = new ArrayList<TitanType>(4);
 
         isUnidirectional=false;
+        isCompact=false;
 
         indexes = new HashSet<IndexType>(4);
+        includedKeys = new ArrayList<TitanKey>(4);
         dataType = null;
     }
 
@@ -119,15 +123,34 @@ public class StandardTypeMaker implements TypeMaker {
         return result;
     }
 
+    private long[] checkIncludedKeys(List<TitanKey> keys) {
+        if (keys.isEmpty()) return new long[0];
+        Preconditions.checkArgument(indexes.contains(IndexType.of(Vertex.class)),
+                "Keys can only be included in a standard vertex index");
+        Preconditions.checkArgument(!hasUniqueLock[EdgeDirection.position(IN)],
+                "Cannot include keys since the uniqueness lock verifies the index entries");
+        Preconditions.checkArgument(keys.size() == (Sets.newHashSet(keys)).size(),"Cannot include duplicate keys");
+        long[] result = new long[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            TitanKey key = keys.get(i);
+            Preconditions.checkNotNull(key);
+            Preconditions.checkArgument(key.isUnique(OUT),"Included key must be out-unique: %s",key.getName());
+            result[i] = key.getID();
+        }
+        return result;
+    }
+
     @Override
     public TitanKey makePropertyKey() {
         checkGeneralArguments();
         isUnidirectional=false;
+        Preconditions.checkArgument(!isCompact,"Cannot declare property keys to be compact");
         Preconditions.checkArgument(dataType!=null,"Need to specify a datatype");
         Preconditions.checkArgument(!isUnique[EdgeDirection.position(IN)] ||
                 indexes.contains(IndexType.of(Vertex.class)), "A unique key requires the existence of a standard vertex index");
         return tx.makePropertyKey(new StandardKeyDefinition(name, group, isUnique, hasUniqueLock, isStatic, isHidden, isModifiable,
-                checkPrimaryKey(primaryKey), checkSignature(signature), checkIndexes(indexes), dataType));
+                checkPrimaryKey(primaryKey), checkSignature(signature), checkIndexes(indexes), dataType),
+                checkIncludedKeys(includedKeys));
 
     }
 
@@ -136,14 +159,18 @@ public class StandardTypeMaker implements TypeMaker {
     public TitanLabel makeEdgeLabel() {
         checkGeneralArguments();
         Preconditions.checkArgument(indexes.isEmpty(),"Cannot declare labels to be indexed");
+        Preconditions.checkArgument(includedKeys.isEmpty(),"Cannot include keys in labels");
         Preconditions.checkArgument(dataType==null,"Cannot declare a data type for a label");
 
         Preconditions.checkArgument(!isUnidirectional ||
                 (!isUnique[EdgeDirection.position(IN)] && !hasUniqueLock[EdgeDirection.position(IN)] && !isStatic[EdgeDirection.position(IN)]),
                 "Unidirectional labels cannot be unique or static");
+        Preconditions.checkArgument(!isCompact || (primaryKey.isEmpty() && signature.isEmpty()
+                && !isUnique[EdgeDirection.position(OUT)] && !isStatic[EdgeDirection.position(OUT)]),
+                "Compact labels cannot have a primary key or signature and cannot be out-unique or out-static");
 
         return tx.makeEdgeLabel(new StandardLabelDefinition(name, group, isUnique, hasUniqueLock, isStatic, isHidden, isModifiable,
-                checkPrimaryKey(primaryKey), checkSignature(signature), isUnidirectional));
+                checkPrimaryKey(primaryKey), checkSignature(signature), isUnidirectional, isCompact));
     }
 
     @Override
@@ -179,6 +206,12 @@ public class StandardTypeMaker implements TypeMaker {
         return this;
     }
 
+    @Override
+    public StandardTypeMaker compact() {
+        isCompact=true;
+        return this;
+    }
+
     @Override
     public StandardTypeMaker group(TypeGroup group) {
         Preconditions.checkArgument(group!=null,"Need to specify a group");
@@ -232,6 +265,12 @@ public class StandardTypeMaker implements TypeMaker {
         return this;
     }
 
+    @Override
+    public StandardTypeMaker include(TitanKey... keys) {
+        includedKeys.addAll(Arrays.asList(keys));
+        return this;
+    }
+
     public StandardTypeMaker hidden() {
         this.isHidden=true;
         return this;
@@ -28,8 +28,24 @@ public class SystemKey extends SystemType implements PropertyKeyDefinition, Tita
     public static final SystemKey VertexState =
             new SystemKey("VertexState", Byte.class, 7, false, false, true);
 
+    /**
+     * Holds the packed properties of a vertex if packed properties are enabled
+     * @see com.thinkaurelius.titan.graphdb.database.EdgeSerializer#isPacked(com.thinkaurelius.titan.graphdb.internal.InternalRelation)
+     */
+    public static final SystemKey PackedProperties =
+            new SystemKey("PackedProperties", byte[].class, 8, false, false, true);
+
+    /**
+     * Holds the ids of the keys included in the standard vertex index entries of a property key. They are stored
+     * separately from the {@link #PropertyKeyDefinition} so that definitions persisted before included keys
+     * remain readable.
+     * @see com.thinkaurelius.titan.graphdb.types.vertices.TitanKeyVertex#getIncludedKeys()
+     */
+    public static final SystemKey IncludedKeys =
+            new SystemKey("IncludedKeys", long[].class, 9);
+
     public static final Iterable<SystemKey> values() {
-        return ImmutableList.of(PropertyKeyDefinition, RelationTypeDefinition, TypeName, TypeClass, VertexState);
+        return ImmutableList.of(PropertyKeyDefinition, RelationTypeDefinition, TypeName, TypeClass, VertexState, PackedProperties, IncludedKeys);
     }
 
     private final Class<?> dataType;
@@ -42,6 +42,7 @@ public abstract class SystemTypeManager {
     public static final Set<? extends SystemType> prepersistedSystemTypes = ImmutableSet.of(SystemKey.TypeName,
             SystemKey.PropertyKeyDefinition,
             SystemKey.RelationTypeDefinition,
-            SystemKey.TypeClass);
+            SystemKey.TypeClass,
+            SystemKey.IncludedKeys);
 
 }
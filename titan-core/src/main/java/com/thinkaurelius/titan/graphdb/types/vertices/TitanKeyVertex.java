@@ -1,16 +1,22 @@
 package com.thinkaurelius.titan.graphdb.types.vertices;
 
 import com.google.common.base.Preconditions;
+import com.thinkaurelius.titan.core.Titan;
 import com.thinkaurelius.titan.core.TitanKey;
+import com.thinkaurelius.titan.core.TitanProperty;
 import com.thinkaurelius.titan.graphdb.query.QueryUtil;
 import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
 import com.thinkaurelius.titan.graphdb.types.PropertyKeyDefinition;
 import com.thinkaurelius.titan.graphdb.types.system.SystemKey;
 import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Vertex;
 
 public class TitanKeyVertex extends TitanTypeVertex implements TitanKey {
 
+    private static final long[] NO_INCLUDED_KEYS = new long[0];
+
     private PropertyKeyDefinition definition = null;
+    private long[] includedKeys = null;
 
     public TitanKeyVertex(StandardTitanTx tx, long id, byte lifecycle) {
         super(tx, id, lifecycle);
@@ -30,6 +36,26 @@ public class TitanKeyVertex extends TitanTypeVertex implements TitanKey {
         return definition;
     }
 
+    /**
+     * @return The ids of the keys whose values are stored in the standard vertex index entries of this key
+     * @see com.thinkaurelius.titan.core.TypeMaker#include(com.thinkaurelius.titan.core.TitanKey...)
+     */
+    public long[] getIncludedKeys() {
+        if (includedKeys == null) {
+            synchronized (this) {
+                if (includedKeys==null) {
+                    if (!hasIndex(Titan.Token.STANDARD_INDEX, Vertex.class)) {
+                        includedKeys = NO_INCLUDED_KEYS;
+                    } else {
+                        TitanProperty included = QueryUtil.queryHiddenUniqueProperty(this, SystemKey.IncludedKeys);
+                        includedKeys = included==null?NO_INCLUDED_KEYS:included.getValue(long[].class);
+                    }
+                }
+            }
+        }
+        return includedKeys;
+    }
+
     @Override
     public Class<?> getDataType() {
         return getDefinition().getDataType();
@@ -26,6 +26,20 @@ public class CacheVertex extends StandardVertex {
         super(tx, id, lifecycle);
     }
 
+    /**
+     * Whether the relations for the given query have already been loaded into this vertex's cache so that
+     * {@link #loadRelations(SliceQuery, Retriever)} will not have to access the storage backend.
+     *
+     * @param query Slice query for which to check the cache
+     * @return true if the result of the query is contained in the cache, else false
+     */
+    public boolean hasLoadedRelations(SliceQuery query) {
+        if (isNew()) return true;
+        QueryCache cache = queryCache;
+        if (cache==null) return false;
+        else return cache.isCovered(query);
+    }
+
     @Override
     public Iterable<Entry> loadRelations(SliceQuery query, Retriever<SliceQuery, List<Entry>> lookup) {
         if (isNew()) return ImmutableList.of();
@@ -0,0 +1,101 @@
+package com.thinkaurelius.titan.util.datastructures;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over 128 bit hash codes which can be updated and queried concurrently. Bits are set atomically so
+ * that concurrent additions never get lost, hence {@link #mightContain(HashCode)} never returns false for an added
+ * element.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * Creates a Bloom filter sized for the given number of elements at the given false positive probability.
+     *
+     * @param expectedElements
+     * @param falsePositiveRate
+     */
+    public BloomFilter(long expectedElements, double falsePositiveRate) {
+        Preconditions.checkArgument(expectedElements>0,"Invalid number of elements: %s",expectedElements);
+        Preconditions.checkArgument(falsePositiveRate>0 && falsePositiveRate<1,"Invalid false positive rate: %s",falsePositiveRate);
+        long optimalBits = (long)Math.ceil(-expectedElements*Math.log(falsePositiveRate)/(Math.log(2)*Math.log(2)));
+        int numWords = (int)Math.min(Integer.MAX_VALUE,(optimalBits+63)/64);
+        this.bits = new AtomicLongArray(numWords);
+        this.numBits = numWords*64l;
+        this.numHashes = Math.max(1,(int)Math.round((double)numBits/expectedElements*Math.log(2)));
+    }
+
+    private BloomFilter(AtomicLongArray bits, int numHashes) {
+        this.bits = bits;
+        this.numBits = bits.length()*64l;
+        this.numHashes = numHashes;
+    }
+
+    public void add(HashCode hash) {
+        ByteBuffer b = toBuffer(hash);
+        long hash1 = b.getLong(), hash2 = b.getLong();
+        for (int i=0;i<numHashes;i++) {
+            long pos = ((hash1+i*hash2)&Long.MAX_VALUE)%numBits;
+            int word = (int)(pos>>>6);
+            long mask = 1l<<(pos&63);
+            while (true) {
+                long current = bits.get(word);
+                if ((current&mask)!=0 || bits.compareAndSet(word,current,current|mask)) break;
+            }
+        }
+    }
+
+    public boolean mightContain(HashCode hash) {
+        ByteBuffer b = toBuffer(hash);
+        long hash1 = b.getLong(), hash2 = b.getLong();
+        for (int i=0;i<numHashes;i++) {
+            long pos = ((hash1+i*hash2)&Long.MAX_VALUE)%numBits;
+            if ((bits.get((int)(pos>>>6))&(1l<<(pos&63)))==0) return false;
+        }
+        return true;
+    }
+
+    private static ByteBuffer toBuffer(HashCode hash) {
+        Preconditions.checkArgument(hash.bits()>=128,"Requires 128 bit hash codes");
+        return ByteBuffer.wrap(hash.asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(numHashes);
+        out.writeInt(bits.length());
+        for (int i=0;i<bits.length();i++) out.writeLong(bits.get(i));
+    }
+
+    public static BloomFilter readFrom(DataInput in) throws IOException {
+        int numHashes = in.readInt();
+        int numWords = in.readInt();
+        Preconditions.checkArgument(numHashes>0 && numWords>0,"Invalid serialized filter");
+        AtomicLongArray bits = new AtomicLongArray(numWords);
+        for (int i=0;i<numWords;i++) bits.set(i,in.readLong());
+        return new BloomFilter(bits,numHashes);
+    }
+
+}
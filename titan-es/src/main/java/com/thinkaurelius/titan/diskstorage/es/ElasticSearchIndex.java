@@ -1,6 +1,7 @@
 package com.thinkaurelius.titan.diskstorage.es;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import com.thinkaurelius.titan.core.TitanException;
 import com.thinkaurelius.titan.core.attribute.*;
@@ -12,27 +13,33 @@ import com.thinkaurelius.titan.diskstorage.indexing.IndexEntry;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexMutation;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexProvider;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
 import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
 import com.thinkaurelius.titan.graphdb.query.keycondition.*;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.StringUtils;
 import org.elasticsearch.ElasticSearchInterruptedException;
+import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.update.UpdateRequestBuilder;
+import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.unit.DistanceUnit;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -41,7 +48,6 @@ import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.node.Node;
 import org.elasticsearch.node.NodeBuilder;
 import org.elasticsearch.search.SearchHit;
-import org.elasticsearch.search.SearchHits;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +56,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -61,7 +68,7 @@ public class ElasticSearchIndex implements IndexProvider {
     private Logger log = LoggerFactory.getLogger(ElasticSearchIndex.class);
 
     private static final String[] DATA_SUBDIRS = {"data","work","logs"};
-    private static final int MAX_RESULT_SET_SIZE = 100000;
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
 
 
     public static final String CLIENT_ONLY_KEY = "client-only";
@@ -78,6 +85,18 @@ public class ElasticSearchIndex implements IndexProvider {
 
     public static final String ES_YML_KEY = "config-file";
 
+    /**
+     * Number of hits retrieved at a time when iterating over query results. Larger result sets are scrolled.
+     */
+    public static final String PAGE_SIZE_KEY = "page-size";
+    public static final int PAGE_SIZE_DEFAULT = 1000;
+    /**
+     * Whether the affected shards are refreshed when a transaction's mutations are applied so that they are visible
+     * to subsequent queries immediately. Otherwise they become visible with the periodic refresh of the index.
+     */
+    public static final String REFRESH_ON_COMMIT_KEY = "refresh-on-commit";
+    public static final boolean REFRESH_ON_COMMIT_DEFAULT = false;
+
 
 
 
@@ -85,9 +104,14 @@ public class ElasticSearchIndex implements IndexProvider {
     private final Node node;
     private final Client client;
     private final String indexName;
+    private final int pageSize;
+    private final boolean refreshOnCommit;
 
     public ElasticSearchIndex(Configuration config) {
         indexName = config.getString(INDEX_NAME_KEY, INDEX_NAME_DEFAULT);
+        pageSize = config.getInt(PAGE_SIZE_KEY, PAGE_SIZE_DEFAULT);
+        Preconditions.checkArgument(pageSize>0,"Page size must be positive: %s",pageSize);
+        refreshOnCommit = config.getBoolean(REFRESH_ON_COMMIT_KEY, REFRESH_ON_COMMIT_DEFAULT);
 
         if (!config.containsKey(GraphDatabaseConfiguration.HOSTNAME_KEY)) {
             boolean clientOnly = config.getBoolean(CLIENT_ONLY_KEY, CLIENT_ONLY_DEFAULT);
@@ -199,24 +223,21 @@ public class ElasticSearchIndex implements IndexProvider {
         }
     }
 
-    public XContentBuilder getContent(List<IndexEntry> additions) throws StorageException {
-        try {
-            XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
-            for (IndexEntry add : additions) {
-                if (add.value instanceof Number) {
-                    if (add.value instanceof Integer || add.value instanceof Long) {
-                        builder.field(add.key,((Number)add.value).longValue());
-                    } else { //double or float
-                        builder.field(add.key,((Number)add.value).doubleValue());
-                    }
-                } else if (add.value instanceof String) {
-                    builder.field(add.key,(String)add.value);
-                } else if (add.value instanceof Geoshape) {
-                    Geoshape shape = (Geoshape)add.value;
-                    if (shape.getType()== Geoshape.Type.POINT) {
-                        Geoshape.Point p = shape.getPoint();
-                        builder.field(add.key,new double[]{p.getLongitude(),p.getLatitude()});
-                    } else throw new UnsupportedOperationException("Geo type is not supported: " + shape.getType());
+    private static Object getValue(IndexEntry add) {
+        if (add.value instanceof Number) {
+            if (add.value instanceof Integer || add.value instanceof Long) {
+                return ((Number)add.value).longValue();
+            } else { //double or float
+                return ((Number)add.value).doubleValue();
+            }
+        } else if (add.value instanceof String) {
+            return add.value;
+        } else if (add.value instanceof Geoshape) {
+            Geoshape shape = (Geoshape)add.value;
+            if (shape.getType()== Geoshape.Type.POINT) {
+                Geoshape.Point p = shape.getPoint();
+                return ImmutableList.of(p.getLongitude(),p.getLatitude());
+            } else throw new UnsupportedOperationException("Geo type is not supported: " + shape.getType());
 
 //                    builder.startObject(add.key);
 //                    switch (shape.getType()) {
@@ -235,8 +256,14 @@ public class ElasticSearchIndex implements IndexProvider {
 //                        default: throw new UnsupportedOperationException("Geo type is not supported: " + shape.getType());
 //                    }
 //                    builder.endObject();
-                } else throw new IllegalArgumentException("Unsupported type: " + add.value);
+        } else throw new IllegalArgumentException("Unsupported type: " + add.value);
+    }
 
+    public XContentBuilder getContent(List<IndexEntry> additions) throws StorageException {
+        try {
+            XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+            for (IndexEntry add : additions) {
+                builder.field(add.key,getValue(add));
             }
             builder.endObject();
             return builder;
@@ -245,9 +272,18 @@ public class ElasticSearchIndex implements IndexProvider {
         }
     }
 
+    /**
+     * Applies all mutations of a transaction with a single round trip: new and deleted documents are sent as one
+     * bulk request and the updates of existing documents are executed concurrently with it. Each updated document
+     * is modified by a single request. Failures are collected per document and reported together.
+     */
     @Override
     public void mutate(Map<String, Map<String, IndexMutation>> mutations, TransactionHandle tx) throws StorageException {
-        BulkRequestBuilder brb = client.prepareBulk();
+        BulkRequestBuilder brb = client.prepareBulk().setRefresh(refreshOnCommit);
+        List<ListenableActionFuture<UpdateResponse>> updates = new ArrayList<ListenableActionFuture<UpdateResponse>>();
+        List<String> updatedDocs = new ArrayList<String>();
+        List<String> failures = new ArrayList<String>();
+        boolean interrupted = false;
         try {
             for (Map.Entry<String,Map<String, IndexMutation>> stores : mutations.entrySet()) {
                 String storename = stores.getKey();
@@ -258,47 +294,89 @@ public class ElasticSearchIndex implements IndexProvider {
                     Preconditions.checkArgument(!mutation.isNew() || !mutation.hasDeletions());
                     Preconditions.checkArgument(!mutation.isDeleted() || !mutation.hasAdditions());
 
-                    //Deletions first
-                    if (mutation.hasDeletions()) {
-                        if (mutation.isDeleted()) {
-                            log.trace("Deleting entire document {}",docid);
-                            brb.add(new DeleteRequest(indexName,storename,docid));
-                        } else {
-                            Set<String> deletions = Sets.newHashSet(mutation.getDeletions());
-                            if (mutation.hasAdditions()) {
-                                for (IndexEntry ie : mutation.getAdditions()) {
-                                    deletions.remove(ie.key);
-                                }
-                            }
-                            if (!deletions.isEmpty()) {
-                                StringBuilder script = new StringBuilder();
-                                for (String key : deletions) {
-                                    script.append("ctx._source.remove(\""+key+"\"); ");
-                                }
-                                log.trace("Deleting individual fields [{}] for document {}",deletions,docid);
-                                client.prepareUpdate(indexName,storename,docid).setScript(script.toString()).execute().actionGet();
-                            }
-                        }
-                    }
-
-                    if (mutation.hasAdditions()) {
-                        if (mutation.isNew()) { //Index
+                    if (mutation.isDeleted()) {
+                        log.trace("Deleting entire document {}",docid);
+                        brb.add(new DeleteRequest(indexName,storename,docid));
+                    } else if (mutation.isNew()) {
+                        if (mutation.hasAdditions()) {
                             log.trace("Adding entire document {}",docid);
                             brb.add(new IndexRequest(indexName,storename,docid).source(getContent(mutation.getAdditions())));
-                        } else { //Update
-                            boolean needUpsert = !mutation.hasDeletions();
-                            XContentBuilder builder = getContent(mutation.getAdditions());
-                            UpdateRequestBuilder update = client.prepareUpdate(indexName,storename,docid).setDoc(builder);
-                            if (needUpsert) update.setUpsert(builder);
-                            log.trace("Updating document {} with upsert {}",docid,needUpsert);
-                            update.execute().actionGet();
+                        }
+                    } else {
+                        UpdateRequestBuilder update = getUpdate(storename,docid,mutation);
+                        if (update!=null) {
+                            updates.add(update.setRefresh(refreshOnCommit).execute());
+                            updatedDocs.add(storename+"/"+docid);
                         }
                     }
+                }
+            }
+            if (brb.numberOfActions()>0) {
+                BulkResponse response = brb.execute().actionGet();
+                if (response.hasFailures()) {
+                    for (BulkItemResponse item : response) {
+                        if (item.isFailed()) failures.add(item.getType()+"/"+item.getId()+": "+item.getFailureMessage());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw convert(e);
+        } finally {
+            //Wait for all updates, even if the bulk request failed
+            for (int i=0;i<updates.size();i++) {
+                try {
+                    updates.get(i).actionGet();
+                } catch (ElasticSearchInterruptedException e) {
+                    interrupted = true;
+                    failures.add(updatedDocs.get(i)+": "+e.getMessage());
+                } catch (Exception e) {
+                    failures.add(updatedDocs.get(i)+": "+e.getMessage());
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            for (String failure : failures) log.debug("Failed index mutation {}",failure);
+            String message = "Could not apply "+failures.size()+" index mutations: "+failures;
+            if (interrupted) throw new TemporaryStorageException(message);
+            else throw new PermanentStorageException(message);
+        }
+    }
 
+    /**
+     * Builds the update for an existing document. Field deletions are combined with the additions into one
+     * scripted update, additions alone are merged into the document (or upserted if it does not exist).
+     */
+    private UpdateRequestBuilder getUpdate(String storename, String docid, IndexMutation mutation) throws StorageException {
+        Set<String> deletions = Sets.newHashSet(mutation.getDeletions());
+        if (mutation.hasAdditions()) {
+            for (IndexEntry ie : mutation.getAdditions()) {
+                deletions.remove(ie.key);
+            }
+        }
+        if (!deletions.isEmpty()) {
+            UpdateRequestBuilder update = client.prepareUpdate(indexName,storename,docid);
+            StringBuilder script = new StringBuilder();
+            for (String key : deletions) {
+                script.append("ctx._source.remove(\""+key+"\"); ");
+            }
+            if (mutation.hasAdditions()) {
+                int param = 0;
+                for (IndexEntry add : mutation.getAdditions()) {
+                    script.append("ctx._source.put(\""+add.key+"\",p"+param+"); ");
+                    update.addScriptParam("p"+param,getValue(add));
+                    param++;
                 }
             }
-            brb.execute().actionGet();
-        }  catch (Exception e) {  throw convert(e);  }
+            log.trace("Deleting individual fields [{}] for document {}",deletions,docid);
+            return update.setScript(script.toString());
+        } else if (mutation.hasAdditions()) {
+            boolean needUpsert = !mutation.hasDeletions();
+            XContentBuilder builder = getContent(mutation.getAdditions());
+            UpdateRequestBuilder update = client.prepareUpdate(indexName,storename,docid).setDoc(builder);
+            if (needUpsert) update.setUpsert(builder);
+            log.trace("Updating document {} with upsert {}",docid,needUpsert);
+            return update;
+        } else return null;
     }
 
     public FilterBuilder getFilter(KeyCondition<String> condition) {
@@ -369,26 +447,70 @@ public class ElasticSearchIndex implements IndexProvider {
     }
 
     @Override
-    public List<String> query(IndexQuery query, TransactionHandle tx) throws StorageException {
+    public RecordIterator<String> query(IndexQuery query, TransactionHandle tx) throws StorageException {
         SearchRequestBuilder srb = client.prepareSearch(indexName);
         srb.setTypes(query.getStore());
         srb.setQuery(QueryBuilders.matchAllQuery());
         srb.setFilter(getFilter(query.getCondition()));
         srb.setFrom(0);
-        if (query.hasLimit()) srb.setSize(query.getLimit());
-        else srb.setSize(MAX_RESULT_SET_SIZE);
+        int limit = query.hasLimit()?query.getLimit():Integer.MAX_VALUE;
+        if (limit<=pageSize) srb.setSize(limit);
+        else srb.setSize(pageSize).setScroll(SCROLL_KEEP_ALIVE);
         //srb.setExplain(true);
 
-        SearchResponse response = srb.execute().actionGet();
-        log.debug("Executed query [{}] in {} ms",query.getCondition(),response.tookInMillis());
-        SearchHits hits = response.getHits();
-        if (!query.hasLimit() && hits.totalHits()>=MAX_RESULT_SET_SIZE)
-            log.warn("Query result set truncated to first [{}] elements for query: {}",MAX_RESULT_SET_SIZE,query);
-        List<String> result = new ArrayList<String>(hits.hits().length);
-        for (SearchHit hit : hits) {
-            result.add(hit.id());
+        try {
+            SearchResponse response = srb.execute().actionGet();
+            log.debug("Executed query [{}] in {} ms",query.getCondition(),response.tookInMillis());
+            return new HitIterator(response,limit);
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
+    /**
+     * Iterates over the ids of the hits of a search response and scrolls through the remaining hits if the
+     * search was executed with a scroll.
+     */
+    private class HitIterator implements RecordIterator<String> {
+
+        private SearchResponse response;
+        private SearchHit[] hits;
+        private int position = 0;
+        private int remaining;
+
+        private HitIterator(SearchResponse response, int limit) {
+            this.response = response;
+            this.hits = response.getHits().hits();
+            this.remaining = limit;
+        }
+
+        @Override
+        public boolean hasNext() throws StorageException {
+            if (remaining<=0) return false;
+            if (position<hits.length) return true;
+            if (hits.length==0 || response.getScrollId()==null) return false;
+            try {
+                response = client.prepareSearchScroll(response.getScrollId()).setScroll(SCROLL_KEEP_ALIVE).execute().actionGet();
+            } catch (Exception e) {
+                throw convert(e);
+            }
+            hits = response.getHits().hits();
+            position = 0;
+            return hits.length>0;
+        }
+
+        @Override
+        public String next() throws StorageException {
+            if (!hasNext()) throw new NoSuchElementException();
+            remaining--;
+            return hits[position++].id();
+        }
+
+        @Override
+        public void close() throws StorageException {
+            //Open scrolls expire after the keep alive time
+            remaining = 0;
         }
-        return result;
     }
 
     @Override
@@ -1,22 +1,26 @@
 package com.thinkaurelius.titan.diskstorage.es;
 
+import com.google.common.collect.ImmutableList;
 import com.thinkaurelius.titan.StorageSetup;
 import com.thinkaurelius.titan.core.attribute.Cmp;
 import com.thinkaurelius.titan.core.attribute.Geo;
 import com.thinkaurelius.titan.core.attribute.Geoshape;
 import com.thinkaurelius.titan.core.attribute.Text;
+import com.thinkaurelius.titan.diskstorage.PermanentStorageException;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexProvider;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexProviderTest;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexQuery;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexTransaction;
 import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
+import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAtom;
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.Configuration;
 import org.junit.Test;
 
 import static com.thinkaurelius.titan.diskstorage.es.ElasticSearchIndex.CLIENT_ONLY_KEY;
 import static com.thinkaurelius.titan.diskstorage.es.ElasticSearchIndex.LOCAL_MODE_KEY;
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 /**
  * (c) Matthias Broecheler (me@matthiasb.com)
@@ -60,4 +64,53 @@ public class ElasticSearchIndexTest extends IndexProviderTest {
         assertFalse(index.supports(Geoshape.class, Geo.DISJOINT));
     }
 
+    @Test
+    public void testBatchedMutations() throws Exception {
+        index.close();
+        Configuration config = getLocalESTestConfig();
+        config.setProperty(ElasticSearchIndex.REFRESH_ON_COMMIT_KEY, true);
+        index = new ElasticSearchIndex(config);
+        tx = new IndexTransaction(index);
+        index.register("store", "location", Geoshape.class, tx);
+
+        for (int i = 0; i < 10; i++) {
+            tx.add("store", "doc" + i, "text", "Hello world", true);
+            tx.add("store", "doc" + i, "time", (long) i, true);
+            tx.add("store", "doc" + i, "location", Geoshape.point(48.0, 0.0), true);
+        }
+        tx.commit();
+
+        //Updates, field deletions combined with additions, and document deletions in one commit
+        tx = new IndexTransaction(index);
+        tx.add("store", "doc1", "time", 100l, false);
+        tx.delete("store", "doc2", "text", false);
+        tx.add("store", "doc2", "location", Geoshape.point(10.0, 10.0), false);
+        tx.delete("store", "doc3", "text", false);
+        tx.delete("store", "doc4", "text", true);
+        tx.add("store", "doc10", "text", "Hello Bob", true);
+        tx.commit();
+
+        //Visible without reopening the index
+        tx = new IndexTransaction(index);
+        assertEquals(7, tx.query(new IndexQuery("store", KeyAtom.of("text", Text.CONTAINS, "world"))).size());
+        assertEquals(ImmutableList.of("doc1"), tx.query(new IndexQuery("store", KeyAtom.of("time", Cmp.EQUAL, 100l))));
+        assertEquals(ImmutableList.of("doc2"), tx.query(new IndexQuery("store", KeyAtom.of("location", Geo.WITHIN, Geoshape.circle(10.0, 10.0, 10.0)))));
+        assertEquals(8, tx.query(new IndexQuery("store", KeyAtom.of("location", Geo.WITHIN, Geoshape.circle(48.0, 0.0, 10.0)))).size());
+        assertEquals(1, tx.query(new IndexQuery("store", KeyAtom.of("text", Text.CONTAINS, "bob"))).size());
+        assertEquals(1, tx.query(new IndexQuery("store", KeyAtom.of("time", Cmp.EQUAL, 2l))).size());
+
+        //Failed items are reported while the remaining mutations are applied
+        tx = new IndexTransaction(index);
+        tx.delete("store", "missing", "text", false);
+        tx.add("store", "doc5", "time", 500l, false);
+        try {
+            tx.commit();
+            fail();
+        } catch (PermanentStorageException e) {
+            assertTrue(e.getMessage().contains("store/missing"));
+        }
+        tx = new IndexTransaction(index);
+        assertEquals(1, tx.query(new IndexQuery("store", KeyAtom.of("time", Cmp.EQUAL, 500l))).size());
+    }
+
 }
@@ -1,6 +1,8 @@
 package com.thinkaurelius.titan.diskstorage.hbase;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.thinkaurelius.titan.diskstorage.PermanentStorageException;
 import com.thinkaurelius.titan.diskstorage.StorageException;
@@ -41,6 +43,12 @@ public class HBaseKeyColumnValueStore implements KeyColumnValueStore {
 
     private static final Logger logger = LoggerFactory.getLogger(HBaseKeyColumnValueStore.class);
 
+    /**
+     * Number of rows fetched per round trip when scanning a split
+     */
+    private static final int SCAN_CACHING = 500;
+
+    private final HBaseStoreManager storeManager;
     private final String tableName;
     private final HTablePool pool;
 
@@ -48,7 +56,8 @@ public class HBaseKeyColumnValueStore implements KeyColumnValueStore {
     // This is columnFamily.getBytes()
     private final byte[] columnFamilyBytes;
 
-    HBaseKeyColumnValueStore(HTablePool pool, String tableName, String columnFamily) {
+    HBaseKeyColumnValueStore(HBaseStoreManager storeManager, HTablePool pool, String tableName, String columnFamily) {
+        this.storeManager = storeManager;
         this.tableName = tableName;
         this.pool = pool;
         this.columnFamily = columnFamily;
@@ -136,7 +145,41 @@ public class HBaseKeyColumnValueStore implements KeyColumnValueStore {
 
     @Override
     public List<Entry> getSlice(KeySliceQuery query, StoreTransaction txh) throws StorageException {
+        return getHelper(query.getKey(), getFilter(query));
+    }
 
+    /**
+     * Retrieves the slices of all keys with a single batch of gets against the table.
+     */
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        List<Get> gets = new ArrayList<Get>(keys.size());
+        for (ByteBuffer key : keys) {
+            gets.add(new Get(ByteBufferUtil.getArray(key)).addFamily(columnFamilyBytes).setFilter(getFilter(query)));
+        }
+
+        try {
+            HTableInterface table = null;
+            Result[] r = null;
+
+            try {
+                table = pool.getTable(tableName);
+                r = table.get(gets);
+            } finally {
+                IOUtils.closeQuietly(table);
+            }
+
+            List<List<Entry>> ret = new ArrayList<List<Entry>>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                ret.add(toEntries(r == null ? null : r[i]));
+            }
+            return ret;
+        } catch (IOException e) {
+            throw new TemporaryStorageException(e);
+        }
+    }
+
+    private static Filter getFilter(SliceQuery query) {
         byte[] colStartBytes = query.getSliceEnd().hasRemaining() ? ByteBufferUtil.getArray(query.getSliceStart()) : null;
         byte[] colEndBytes = query.getSliceEnd().hasRemaining() ? ByteBufferUtil.getArray(query.getSliceEnd()) : null;
 
@@ -148,7 +191,7 @@ public class HBaseKeyColumnValueStore implements KeyColumnValueStore {
                                     new ColumnPaginationFilter(query.getLimit(), 0));
         }
 
-        return getHelper(query.getKey(), filter);
+        return filter;
     }
 
     private List<Entry> getHelper(ByteBuffer key, Filter getFilter) throws StorageException {
@@ -156,8 +199,6 @@ public class HBaseKeyColumnValueStore implements KeyColumnValueStore {
 
         Get g = new Get(keyBytes).addFamily(columnFamilyBytes).setFilter(getFilter);
 
-        List<Entry> ret;
-
         try {
             HTableInterface table = null;
             Result r = null;
@@ -169,23 +210,27 @@ public class HBaseKeyColumnValueStore implements KeyColumnValueStore {
                 IOUtils.closeQuietly(table);
             }
 
-            if (r == null)
-                return Collections.emptyList();
+            return toEntries(r);
+        } catch (IOException e) {
+            throw new TemporaryStorageException(e);
+        }
+    }
+
+    private List<Entry> toEntries(Result r) {
+        if (r == null)
+            return Collections.emptyList();
 
-            ret = new ArrayList<Entry>(r.size());
+        List<Entry> ret = new ArrayList<Entry>(r.size());
 
-            Map<byte[], byte[]> fmap = r.getFamilyMap(columnFamilyBytes);
+        Map<byte[], byte[]> fmap = r.getFamilyMap(columnFamilyBytes);
 
-            if (null != fmap) {
-                for (Map.Entry<byte[], byte[]> ent : fmap.entrySet()) {
-                    ret.add(new Entry(ByteBuffer.wrap(ent.getKey()), ByteBuffer.wrap(ent.getValue())));
-                }
+        if (null != fmap) {
+            for (Map.Entry<byte[], byte[]> ent : fmap.entrySet()) {
+                ret.add(new Entry(ByteBuffer.wrap(ent.getKey()), ByteBuffer.wrap(ent.getValue())));
             }
-
-            return ret;
-        } catch (IOException e) {
-            throw new TemporaryStorageException(e);
         }
+
+        return ret;
     }
 
     @Override
@@ -278,6 +323,133 @@ public class HBaseKeyColumnValueStore implements KeyColumnValueStore {
         };
     }
 
+    /**
+     * The splits are aligned with the regions of the table. If there are more regions than requested splits,
+     * consecutive regions are combined into one split.
+     */
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        Preconditions.checkArgument(numSplits > 0, "Invalid number of splits: %s", numSplits);
+        byte[][] startKeys = storeManager.getRegionStartKeys();
+        int numRegions = startKeys.length;
+        if (numRegions <= 1) return ImmutableList.of(KeySplit.all());
+
+        int splits = Math.min(numSplits, numRegions);
+        List<KeySplit> result = new ArrayList<KeySplit>(splits);
+        ByteBuffer start = null;
+        for (int i = 1; i < splits; i++) {
+            byte[] boundary = startKeys[(int) ((long) i * numRegions / splits)];
+            ByteBuffer end = ByteBuffer.wrap(boundary);
+            result.add(new KeySplit(start, end));
+            start = end;
+        }
+        result.add(new KeySplit(start, null));
+        return result;
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        Scan s = new Scan().addFamily(columnFamilyBytes);
+        if (split.hasStart()) s.setStartRow(ByteBufferUtil.getArray(split.getStart()));
+        if (split.hasEnd()) s.setStopRow(ByteBufferUtil.getArray(split.getEnd()));
+        s.setCaching(SCAN_CACHING);
+        s.setCacheBlocks(false);
+
+        if (slice == null) {
+            FilterList fl = new FilterList();
+            // returns first instance of a row, then skip to next row
+            fl.addFilter(new FirstKeyOnlyFilter());
+            // only return the Key, don't return the value
+            fl.addFilter(new KeyOnlyFilter());
+            s.setFilter(fl);
+        } else {
+            byte[] colStartBytes = slice.getSliceStart().hasRemaining() ? ByteBufferUtil.getArray(slice.getSliceStart()) : null;
+            byte[] colEndBytes = slice.getSliceEnd().hasRemaining() ? ByteBufferUtil.getArray(slice.getSliceEnd()) : null;
+
+            Filter filter = new ColumnRangeFilter(colStartBytes, true, colEndBytes, false);
+
+            if (slice.hasLimit()) {
+                filter = new FilterList(FilterList.Operator.MUST_PASS_ALL,
+                                        filter,
+                                        new ColumnPaginationFilter(slice.getLimit(), 0));
+            }
+            s.setFilter(filter);
+        }
+
+        HTableInterface table = pool.getTable(tableName);
+        try {
+            return new ScanKeyIterator(table, table.getScanner(s), slice != null);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(table);
+            throw new TemporaryStorageException(e);
+        }
+    }
+
+    /**
+     * Iterates over the rows returned by a scan, which retrieves the requested slice of columns together with each row.
+     */
+    private class ScanKeyIterator implements KeyIterator {
+
+        private final HTableInterface table;
+        private final ResultScanner scanner;
+        private final boolean hasSlice;
+
+        private Result next;
+        private List<Entry> entries = Collections.emptyList();
+
+        private ScanKeyIterator(HTableInterface table, ResultScanner scanner, boolean hasSlice) {
+            this.table = table;
+            this.scanner = scanner;
+            this.hasSlice = hasSlice;
+        }
+
+        @Override
+        public boolean hasNext() throws StorageException {
+            try {
+                while (next == null) {
+                    Result r = scanner.next();
+                    if (r == null) return false;
+                    if (!r.isEmpty()) next = r;
+                }
+                return true;
+            } catch (IOException e) {
+                throw new TemporaryStorageException(e);
+            }
+        }
+
+        @Override
+        public ByteBuffer next() throws StorageException {
+            if (!hasNext()) throw new NoSuchElementException();
+            Result r = next;
+            next = null;
+            if (hasSlice) {
+                Map<byte[], byte[]> fmap = r.getFamilyMap(columnFamilyBytes);
+                List<Entry> result = new ArrayList<Entry>(fmap == null ? 0 : fmap.size());
+                if (fmap != null) {
+                    for (Map.Entry<byte[], byte[]> ent : fmap.entrySet()) {
+                        result.add(new Entry(ByteBuffer.wrap(ent.getKey()), ByteBuffer.wrap(ent.getValue())));
+                    }
+                }
+                entries = result;
+            }
+            return ByteBuffer.wrap(r.getRow());
+        }
+
+        @Override
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        @Override
+        public void close() throws StorageException {
+            try {
+                scanner.close();
+            } finally {
+                IOUtils.closeQuietly(table);
+            }
+        }
+    }
+
     @Override
     public ByteBuffer[] getLocalKeyPartition() throws StorageException {
         throw new UnsupportedOperationException();
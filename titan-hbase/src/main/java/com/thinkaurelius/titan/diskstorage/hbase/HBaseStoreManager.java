@@ -98,6 +98,7 @@ public class HBaseStoreManager extends DistributedStoreManager implements KeyCol
         // TODO: allowing publicly mutate fields is bad, should be fixed
         features = new StoreFeatures();
         features.supportsScan = true;
+        features.supportsMultiQuery = true;
         features.supportsBatchMutation = true;
         features.supportsTransactions = false;
         features.supportsConsistentKeyOperations = true;
@@ -165,7 +166,7 @@ public class HBaseStoreManager extends DistributedStoreManager implements KeyCol
         HBaseKeyColumnValueStore store = openStores.get(dbName);
 
         if (store == null) {
-            HBaseKeyColumnValueStore newStore = new HBaseKeyColumnValueStore(connectionPool, tableName, dbName);
+            HBaseKeyColumnValueStore newStore = new HBaseKeyColumnValueStore(this, connectionPool, tableName, dbName);
 
             store = openStores.putIfAbsent(dbName, newStore); // nothing bad happens if we loose to other thread
 
@@ -178,6 +179,25 @@ public class HBaseStoreManager extends DistributedStoreManager implements KeyCol
         return store;
     }
 
+    /**
+     * Returns the start keys of the regions of the table backing this store manager in ascending order.
+     * The first region starts with the empty key.
+     */
+    byte[][] getRegionStartKeys() throws StorageException {
+        ensureTableExists(tableName);
+
+        HTable table = null;
+
+        try {
+            table = new HTable(hconf, tableName);
+            return table.getStartKeys();
+        } catch (IOException e) {
+            throw new TemporaryStorageException(e);
+        } finally {
+            IOUtils.closeQuietly(table);
+        }
+    }
+
     private HTableDescriptor ensureTableExists(String tableName) throws StorageException {
         HBaseAdmin adm = getAdminInterface();
 
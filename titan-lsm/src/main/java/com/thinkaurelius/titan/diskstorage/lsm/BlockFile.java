@@ -0,0 +1,399 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CountingOutputStream;
+import com.thinkaurelius.titan.util.datastructures.BloomFilter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Immutable file of cells sorted by (key, column), which is read through a memory mapping.
+ * <p/>
+ * The file consists of a sequence of data blocks, followed by a sparse index which holds the first (key, column)
+ * pair and the position of each block, a {@link BloomFilter} over the keys of the file, the smallest and largest
+ * (key, column) pair, and a fixed size footer pointing to these sections. The index and the Bloom filter are held
+ * in memory, so that a point lookup scans at most a single block and lookups of keys which are not contained
+ * in the file mostly do not touch the data blocks at all.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+final class BlockFile {
+
+    public static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private static final int MAGIC = 0x54534d31;
+    private static final int FOOTER_SIZE = 3 * 8 + 4;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final File file;
+    private final long number;
+    private final MappedByteBuffer data;
+
+    private final KeyColumn[] blockKeys;
+    private final int[] blockOffsets;
+    private final int[] blockLengths;
+    private final BloomFilter filter;
+    private final KeyColumn smallest;
+    private final KeyColumn largest;
+    private final long numCells;
+
+    private BlockFile(File file, long number, MappedByteBuffer data) throws IOException {
+        this.file = file;
+        this.number = number;
+        this.data = data;
+
+        int size = data.capacity();
+        if (size < FOOTER_SIZE || data.getInt(size - 4) != MAGIC)
+            throw new IOException("Not a valid block file: " + file);
+        int indexOffset = (int) data.getLong(size - FOOTER_SIZE);
+        int filterOffset = (int) data.getLong(size - FOOTER_SIZE + 8);
+        int metaOffset = (int) data.getLong(size - FOOTER_SIZE + 16);
+
+        ByteBuffer b = data.duplicate();
+        b.position(indexOffset);
+        int numBlocks = b.getInt();
+        blockKeys = new KeyColumn[numBlocks];
+        blockOffsets = new int[numBlocks];
+        blockLengths = new int[numBlocks];
+        for (int i = 0; i < numBlocks; i++) {
+            blockKeys[i] = new KeyColumn(readBytes(b), readBytes(b));
+            blockOffsets[i] = b.getInt();
+            blockLengths[i] = b.getInt();
+        }
+
+        byte[] filterBytes = new byte[metaOffset - filterOffset];
+        b.position(filterOffset);
+        b.get(filterBytes);
+        filter = BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(filterBytes)));
+
+        b.position(metaOffset);
+        smallest = new KeyColumn(readBytes(b), readBytes(b));
+        largest = new KeyColumn(readBytes(b), readBytes(b));
+        numCells = b.getLong();
+    }
+
+    /**
+     * Opens the given block file
+     *
+     * @param file
+     * @param number Number of the file which identifies it within the store directory
+     * @return
+     * @throws IOException
+     */
+    static BlockFile open(File file, long number) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            Preconditions.checkArgument(raf.length() < Integer.MAX_VALUE, "Block file is too large: %s", file);
+            //The mapping remains valid after the file has been closed
+            MappedByteBuffer data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            return new BlockFile(file, number, data);
+        } finally {
+            raf.close();
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getNumber() {
+        return number;
+    }
+
+    long getSize() {
+        return data.capacity();
+    }
+
+    long getNumCells() {
+        return numCells;
+    }
+
+    byte[] getSmallestKey() {
+        return smallest.key;
+    }
+
+    byte[] getLargestKey() {
+        return largest.key;
+    }
+
+    /**
+     * Returns the keys at which the data blocks of this file start, which partition the file into ranges of roughly
+     * equal size.
+     *
+     * @return
+     */
+    List<byte[]> getBlockKeys() {
+        List<byte[]> keys = new ArrayList<byte[]>(blockKeys.length);
+        for (KeyColumn kc : blockKeys) {
+            if (keys.isEmpty() || !Arrays.equals(keys.get(keys.size() - 1), kc.key)) keys.add(kc.key);
+        }
+        return keys;
+    }
+
+    /**
+     * Whether the key range of this file overlaps the given range of keys, both boundaries inclusive
+     */
+    boolean overlaps(byte[] fromKey, byte[] toKey) {
+        return KeyColumn.compare(smallest.key, toKey) <= 0 && KeyColumn.compare(largest.key, fromKey) >= 0;
+    }
+
+    /**
+     * Returns false if this file definitely does not contain any cell for the given key.
+     *
+     * @param key
+     * @return
+     */
+    boolean mightContain(byte[] key) {
+        return overlaps(key, key) && filter.mightContain(hash(key));
+    }
+
+    /**
+     * Returns the cell for the given (key, column) pair, which is deleted if this file holds a tombstone for it,
+     * or null if the pair is not contained.
+     *
+     * @param keyColumn
+     * @return
+     */
+    Cell get(KeyColumn keyColumn) {
+        if (!mightContain(keyColumn.key)) return null;
+        int block = findBlock(keyColumn);
+        if (block < 0) return null;
+        ByteBuffer b = getBlock(block);
+        while (b.hasRemaining()) {
+            Cell cell = readCell(b);
+            int comp = cell.keyColumn.compareTo(keyColumn);
+            if (comp == 0) return cell;
+            else if (comp > 0) break;
+        }
+        return null;
+    }
+
+    /**
+     * Iterates over all cells from start (inclusive) to end (exclusive) in order, including tombstones.
+     *
+     * @param start Lower boundary or null if unbounded
+     * @param end   Upper boundary or null if unbounded
+     * @return
+     */
+    Iterator<Cell> iterator(final KeyColumn start, final KeyColumn end) {
+        if ((start != null && start.compareTo(largest) > 0) || (end != null && end.compareTo(smallest) <= 0))
+            return Iterators.<Cell>emptyIterator();
+        final int first = start == null ? 0 : Math.max(0, findBlock(start));
+        return new AbstractIterator<Cell>() {
+
+            private int block = first;
+            private ByteBuffer b = getBlock(first);
+
+            @Override
+            protected Cell computeNext() {
+                while (true) {
+                    while (!b.hasRemaining()) {
+                        block++;
+                        if (block >= blockKeys.length) return endOfData();
+                        b = getBlock(block);
+                    }
+                    Cell cell = readCell(b);
+                    if (start != null && cell.keyColumn.compareTo(start) < 0) continue;
+                    if (end != null && cell.keyColumn.compareTo(end) >= 0) return endOfData();
+                    return cell;
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the last block whose first (key, column) pair is smaller or equal to the given one, or -1 if there is
+     * no such block.
+     */
+    private int findBlock(KeyColumn keyColumn) {
+        int low = 0, high = blockKeys.length - 1, result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blockKeys[mid].compareTo(keyColumn) <= 0) {
+                result = mid;
+                low = mid + 1;
+            } else high = mid - 1;
+        }
+        return result;
+    }
+
+    private ByteBuffer getBlock(int block) {
+        ByteBuffer b = data.duplicate();
+        b.limit(blockOffsets[block] + blockLengths[block]);
+        b.position(blockOffsets[block]);
+        return b;
+    }
+
+    private static Cell readCell(ByteBuffer b) {
+        KeyColumn keyColumn = new KeyColumn(readBytes(b), readBytes(b));
+        int valueLength = b.getInt();
+        byte[] value = null;
+        if (valueLength >= 0) {
+            value = new byte[valueLength];
+            b.get(value);
+        }
+        return new Cell(keyColumn, value);
+    }
+
+    private static byte[] readBytes(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return bytes;
+    }
+
+    private static HashCode hash(byte[] key) {
+        return HASH.hashBytes(key);
+    }
+
+    /**
+     * Writes a new block file from cells which are added in order.
+     */
+    static final class Writer {
+
+        private final File file;
+        private final long number;
+        private final int blockSize;
+
+        private final FileOutputStream fileOut;
+        private final CountingOutputStream counter;
+        private final DataOutputStream out;
+
+        private final List<KeyColumn> blockKeys;
+        private final List<Integer> blockOffsets;
+        private final List<HashCode> keyHashes;
+
+        private KeyColumn first;
+        private KeyColumn last;
+        private long numCells;
+
+        Writer(File file, long number, int blockSize) throws IOException {
+            Preconditions.checkArgument(blockSize > 0);
+            this.file = file;
+            this.number = number;
+            this.blockSize = blockSize;
+            fileOut = new FileOutputStream(file);
+            counter = new CountingOutputStream(new BufferedOutputStream(fileOut));
+            out = new DataOutputStream(counter);
+            blockKeys = new ArrayList<KeyColumn>();
+            blockOffsets = new ArrayList<Integer>();
+            keyHashes = new ArrayList<HashCode>();
+            numCells = 0;
+        }
+
+        void add(Cell cell) throws IOException {
+            KeyColumn kc = cell.keyColumn;
+            Preconditions.checkArgument(last == null || last.compareTo(kc) < 0, "Cells must be added in order");
+            if (blockKeys.isEmpty() || counter.getCount() - blockOffsets.get(blockOffsets.size() - 1) >= blockSize) {
+                Preconditions.checkState(counter.getCount() < Integer.MAX_VALUE, "Block file is too large");
+                blockKeys.add(kc);
+                blockOffsets.add((int) counter.getCount());
+            }
+            if (last == null || !Arrays.equals(last.key, kc.key)) keyHashes.add(hash(kc.key));
+            writeBytes(kc.key);
+            writeBytes(kc.column);
+            if (cell.isDeleted()) out.writeInt(-1);
+            else writeBytes(cell.value);
+            if (first == null) first = kc;
+            last = kc;
+            numCells++;
+        }
+
+        /**
+         * Returns the number of bytes written so far
+         *
+         * @return
+         */
+        long getSize() {
+            return counter.getCount();
+        }
+
+        /**
+         * Returns the key of the last cell added to this writer or null if no cell has been added
+         */
+        byte[] getLastKey() {
+            return last == null ? null : last.key;
+        }
+
+        boolean isEmpty() {
+            return numCells == 0;
+        }
+
+        /**
+         * Completes the file, syncs it to disk and opens it for reading.
+         *
+         * @return
+         * @throws IOException
+         */
+        BlockFile finish() throws IOException {
+            Preconditions.checkState(numCells > 0, "Cannot write an empty block file");
+            long indexOffset = counter.getCount();
+            out.writeInt(blockKeys.size());
+            for (int i = 0; i < blockKeys.size(); i++) {
+                writeBytes(blockKeys.get(i).key);
+                writeBytes(blockKeys.get(i).column);
+                int offset = blockOffsets.get(i);
+                int end = i + 1 < blockKeys.size() ? blockOffsets.get(i + 1) : (int) indexOffset;
+                out.writeInt(offset);
+                out.writeInt(end - offset);
+            }
+            long filterOffset = counter.getCount();
+            BloomFilter filter = new BloomFilter(keyHashes.size(), FALSE_POSITIVE_RATE);
+            for (HashCode hash : keyHashes) filter.add(hash);
+            filter.writeTo(out);
+            long metaOffset = counter.getCount();
+            writeBytes(first.key);
+            writeBytes(first.column);
+            writeBytes(last.key);
+            writeBytes(last.column);
+            out.writeLong(numCells);
+            out.writeLong(indexOffset);
+            out.writeLong(filterOffset);
+            out.writeLong(metaOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            fileOut.getChannel().force(true);
+            out.close();
+            return open(file, number);
+        }
+
+        /**
+         * Discards the file written so far
+         */
+        void abort() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                //Ignore since the file is deleted anyway
+            }
+            file.delete();
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The value of a (key, column) pair in one of the sources of an {@link LSMStore}. A null value is a tombstone which
+ * marks the column as deleted and shadows all older values.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+final class Cell {
+
+    final KeyColumn keyColumn;
+    final byte[] value;
+
+    Cell(KeyColumn keyColumn, byte[] value) {
+        Preconditions.checkNotNull(keyColumn);
+        Preconditions.checkArgument(keyColumn.column != null, "Cells need a column");
+        this.keyColumn = keyColumn;
+        this.value = value;
+    }
+
+    boolean isDeleted() {
+        return value == null;
+    }
+
+    int size() {
+        return keyColumn.size() + (value == null ? 0 : value.length);
+    }
+
+}
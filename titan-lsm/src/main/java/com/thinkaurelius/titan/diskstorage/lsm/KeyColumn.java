@@ -0,0 +1,85 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A (key, column) pair which is the unit of ordering in all LSM data structures: cells are sorted by key and then by
+ * column, both compared as unsigned byte sequences.
+ * <p/>
+ * A null column denotes the position behind all columns of the key and can only be used as a range boundary.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+final class KeyColumn implements Comparable<KeyColumn> {
+
+    static final byte[] EMPTY = new byte[0];
+
+    final byte[] key;
+    final byte[] column;
+
+    KeyColumn(byte[] key, byte[] column) {
+        Preconditions.checkNotNull(key);
+        this.key = key;
+        this.column = column;
+    }
+
+    /**
+     * Returns the position before all columns of the given key
+     */
+    static KeyColumn rowStart(byte[] key) {
+        return new KeyColumn(key, EMPTY);
+    }
+
+    /**
+     * Returns the position behind all columns of the given key
+     */
+    static KeyColumn rowEnd(byte[] key) {
+        return new KeyColumn(key, null);
+    }
+
+    static byte[] toArray(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+    static int compare(byte[] a, byte[] b) {
+        int min = Math.min(a.length, b.length);
+        for (int i = 0; i < min; i++) {
+            int ca = a[i] & 0xff, cb = b[i] & 0xff;
+            if (ca != cb) return ca < cb ? -1 : 1;
+        }
+        return a.length - b.length;
+    }
+
+    int size() {
+        return key.length + (column == null ? 0 : column.length);
+    }
+
+    @Override
+    public int compareTo(KeyColumn other) {
+        int comp = compare(key, other.key);
+        if (comp != 0) return comp;
+        if (column == null) return other.column == null ? 0 : 1;
+        else if (other.column == null) return -1;
+        else return compare(column, other.column);
+    }
+
+    @Override
+    public boolean equals(Object oth) {
+        if (this == oth) return true;
+        else if (oth == null || !getClass().isInstance(oth)) return false;
+        KeyColumn o = (KeyColumn) oth;
+        return Arrays.equals(key, o.key) && Arrays.equals(column, o.column);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(key) * 9743 + Arrays.hashCode(column);
+    }
+
+}
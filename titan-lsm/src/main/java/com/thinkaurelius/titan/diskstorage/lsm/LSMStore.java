@@ -0,0 +1,525 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.*;
+import com.thinkaurelius.titan.diskstorage.locking.TemporaryLockingException;
+import com.thinkaurelius.titan.diskstorage.util.KCVSUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * {@link KeyColumnValueStore} of a {@link LSMStoreManager} which is organized as a log-structured merge tree.
+ * <p/>
+ * Committed writes go into a memtable which is turned immutable and flushed to a new {@link BlockFile} on level 0 once
+ * the memtables of the manager exceed their configured size. Since the files on level 0 may overlap, they are
+ * compacted into level 1 once there are too many of them. All higher levels consist of non-overlapping files and
+ * each level is a multiple of the size of the previous one. If a level exceeds its size, one of its files is merged
+ * with the overlapping files of the next level. Hence, a read consults the memtables, all files on level 0 and
+ * at most one file per higher level, where Bloom filters rule out most files which do not contain the key.
+ * <p/>
+ * The memtables and files are captured in an immutable {@link Version} which is replaced atomically by flushes
+ * and compactions, so that reads never block.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class LSMStore implements KeyColumnValueStore {
+
+    private final String name;
+    private final LSMStoreManager manager;
+
+    private volatile Version version;
+
+    private final Map<KeyColumn, LSMTransaction> locks;
+    private final byte[][] compactionPointers;
+
+    LSMStore(String name, LSMStoreManager manager, List<List<BlockFile>> levels) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(manager);
+        this.name = name;
+        this.manager = manager;
+        this.version = new Version(new Memtable(), null, levels);
+        this.locks = new HashMap<KeyColumn, LSMTransaction>();
+        this.compactionPointers = new byte[LSMStoreManager.MAX_LEVELS][];
+    }
+
+    @Override
+    public boolean containsKey(ByteBuffer key, StoreTransaction txh) throws StorageException {
+        byte[] k = KeyColumn.toArray(key);
+        Iterator<Cell> cells = new MergingIterator(getSources(getTx(txh), KeyColumn.rowStart(k), KeyColumn.rowEnd(k), k));
+        while (cells.hasNext()) {
+            if (!cells.next().isDeleted()) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public List<Entry> getSlice(KeySliceQuery query, StoreTransaction txh) throws StorageException {
+        byte[] key = KeyColumn.toArray(query.getKey());
+        KeyColumn start = new KeyColumn(key, KeyColumn.toArray(query.getSliceStart()));
+        KeyColumn end = new KeyColumn(key, KeyColumn.toArray(query.getSliceEnd()));
+        if (start.compareTo(end) >= 0) return ImmutableList.of();
+        List<Entry> result = new ArrayList<Entry>(query.hasLimit() ? Math.min(query.getLimit(), 100) : 16);
+        Iterator<Cell> cells = new MergingIterator(getSources(getTx(txh), start, end, key));
+        while (cells.hasNext() && (!query.hasLimit() || result.size() < query.getLimit())) {
+            Cell cell = cells.next();
+            if (cell.isDeleted()) continue;
+            result.add(new Entry(ByteBuffer.wrap(cell.keyColumn.column), ByteBuffer.wrap(cell.value)));
+        }
+        return result;
+    }
+
+    @Override
+    public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+        return KCVSUtil.getSlice(this, keys, query, txh);
+    }
+
+    @Override
+    public ByteBuffer get(ByteBuffer key, ByteBuffer column, StoreTransaction txh) throws StorageException {
+        byte[] value = getValue(new KeyColumn(KeyColumn.toArray(key), KeyColumn.toArray(column)), getTx(txh));
+        return value == null ? null : ByteBuffer.wrap(value);
+    }
+
+    @Override
+    public boolean containsKeyColumn(ByteBuffer key, ByteBuffer column, StoreTransaction txh) throws StorageException {
+        return getValue(new KeyColumn(KeyColumn.toArray(key), KeyColumn.toArray(column)), getTx(txh)) != null;
+    }
+
+    private byte[] getValue(KeyColumn keyColumn, LSMTransaction tx) {
+        Cell own = tx.getWrite(this, keyColumn);
+        if (own != null) return own.value;
+        byte[] value = getCommitted(keyColumn);
+        tx.recordRead(this, keyColumn, value);
+        return value;
+    }
+
+    /**
+     * Returns the most recently committed value for the given (key, column) pair or null if there is none
+     *
+     * @param keyColumn
+     * @return
+     */
+    byte[] getCommitted(KeyColumn keyColumn) {
+        Version v = version;
+        Cell cell = v.memtable.get(keyColumn);
+        if (cell == null && v.immutable != null) cell = v.immutable.get(keyColumn);
+        for (int level = 0; cell == null && level < v.levels.size(); level++) {
+            if (level == 0) {
+                for (BlockFile file : v.levels.get(0)) {
+                    cell = file.get(keyColumn);
+                    if (cell != null) break;
+                }
+            } else {
+                BlockFile file = findFile(v.levels.get(level), keyColumn.key);
+                if (file != null) cell = file.get(keyColumn);
+            }
+        }
+        return cell == null ? null : cell.value;
+    }
+
+    /**
+     * Returns the cell iterators of all sources which might contain cells in the given range, most recent first.
+     *
+     * @param tx
+     * @param start Lower boundary or null if unbounded
+     * @param end   Upper boundary or null if unbounded
+     * @param key   The key to which the range is restricted or null if it spans multiple keys
+     * @return
+     */
+    private List<Iterator<Cell>> getSources(LSMTransaction tx, KeyColumn start, KeyColumn end, byte[] key) {
+        Version v = version;
+        List<Iterator<Cell>> sources = new ArrayList<Iterator<Cell>>();
+        Memtable own = tx.getWrites(this);
+        if (own != null) sources.add(own.iterator(start, end));
+        sources.add(v.memtable.iterator(start, end));
+        if (v.immutable != null) sources.add(v.immutable.iterator(start, end));
+        for (int level = 0; level < v.levels.size(); level++) {
+            if (key != null && level > 0) {
+                BlockFile file = findFile(v.levels.get(level), key);
+                if (file != null && file.mightContain(key)) sources.add(file.iterator(start, end));
+            } else {
+                for (BlockFile file : v.levels.get(level)) {
+                    if (key == null || file.mightContain(key)) sources.add(file.iterator(start, end));
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Returns the file of the given level above level 0 whose key range contains the given key or null if there is
+     * no such file.
+     */
+    private static BlockFile findFile(List<BlockFile> files, byte[] key) {
+        int low = 0, high = files.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            BlockFile file = files.get(mid);
+            if (KeyColumn.compare(file.getLargestKey(), key) < 0) low = mid + 1;
+            else if (KeyColumn.compare(file.getSmallestKey(), key) > 0) high = mid - 1;
+            else return file;
+        }
+        return null;
+    }
+
+    @Override
+    public void mutate(ByteBuffer key, List<Entry> additions, List<ByteBuffer> deletions, StoreTransaction txh) throws StorageException {
+        getTx(txh).mutate(this, KeyColumn.toArray(key), additions, deletions);
+    }
+
+    @Override
+    public void acquireLock(ByteBuffer key, ByteBuffer column, ByteBuffer expectedValue, StoreTransaction txh) throws StorageException {
+        KeyColumn keyColumn = new KeyColumn(KeyColumn.toArray(key), KeyColumn.toArray(column));
+        getTx(txh).acquireLock(this, keyColumn, expectedValue == null ? null : KeyColumn.toArray(expectedValue));
+    }
+
+    /**
+     * Acquires the lock on the given (key, column) pair for the given transaction, waiting at most the given time
+     * for another transaction to release it.
+     *
+     * @param keyColumn
+     * @param tx
+     * @param waitTime  Maximum time to wait in milliseconds
+     * @return True if the lock has been acquired, false if the transaction already holds it
+     * @throws TemporaryLockingException if the lock could not be acquired in time
+     */
+    boolean lock(KeyColumn keyColumn, LSMTransaction tx, long waitTime) throws TemporaryLockingException {
+        synchronized (locks) {
+            long deadline = System.currentTimeMillis() + waitTime;
+            while (true) {
+                LSMTransaction holder = locks.get(keyColumn);
+                if (holder == null) {
+                    locks.put(keyColumn, tx);
+                    return true;
+                } else if (holder == tx) return false;
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0)
+                    throw new TemporaryLockingException("Lock is held by another transaction in store " + name);
+                try {
+                    locks.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TemporaryLockingException("Interrupted while waiting for lock", e);
+                }
+            }
+        }
+    }
+
+    void unlock(KeyColumn keyColumn, LSMTransaction tx) {
+        synchronized (locks) {
+            if (locks.get(keyColumn) == tx) {
+                locks.remove(keyColumn);
+                locks.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public RecordIterator<ByteBuffer> getKeys(StoreTransaction txh) throws StorageException {
+        return new KeysIterator(new MergingIterator(getSources(getTx(txh), null, null, null)));
+    }
+
+    @Override
+    public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+        Preconditions.checkArgument(numSplits > 0, "Invalid number of splits: %s", numSplits);
+        if (numSplits == 1) return Collections.singletonList(KeySplit.all());
+        //The first keys of the blocks partition the data into ranges of roughly equal size
+        SortedSet<byte[]> sample = new TreeSet<byte[]>(BYTE_ORDER);
+        for (List<BlockFile> files : version.levels) {
+            for (BlockFile file : files) sample.addAll(file.getBlockKeys());
+        }
+        if (sample.size() < numSplits) {
+            //Most data is still held in memory
+            sample.clear();
+            RecordIterator<ByteBuffer> keys = getKeys(txh);
+            while (keys.hasNext()) sample.add(KeyColumn.toArray(keys.next()));
+            keys.close();
+        }
+        if (sample.size() <= 1) return Collections.singletonList(KeySplit.all());
+
+        List<byte[]> keys = new ArrayList<byte[]>(sample);
+        numSplits = Math.min(numSplits, keys.size());
+        List<KeySplit> splits = new ArrayList<KeySplit>(numSplits);
+        ByteBuffer start = null;
+        for (int i = 1; i < numSplits; i++) {
+            ByteBuffer end = ByteBuffer.wrap(keys.get((int) ((long) i * keys.size() / numSplits)));
+            splits.add(new KeySplit(start, end));
+            start = end;
+        }
+        splits.add(new KeySplit(start, null));
+        return splits;
+    }
+
+    @Override
+    public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+        KeyColumn start = split.hasStart() ? KeyColumn.rowStart(KeyColumn.toArray(split.getStart())) : null;
+        KeyColumn end = split.hasEnd() ? KeyColumn.rowStart(KeyColumn.toArray(split.getEnd())) : null;
+        RecordIterator<ByteBuffer> keys = new KeysIterator(new MergingIterator(getSources(getTx(txh), start, end, null)));
+        return new SliceKeyIterator(keys, split, slice, this, txh);
+    }
+
+    /**
+     * Iterates over the distinct keys which have at least one live cell.
+     */
+    private static class KeysIterator implements RecordIterator<ByteBuffer> {
+
+        private final Iterator<Cell> cells;
+        private byte[] nextKey;
+
+        private KeysIterator(Iterator<Cell> cells) {
+            this.cells = cells;
+            this.nextKey = nextInternal(null);
+        }
+
+        private byte[] nextInternal(byte[] previous) {
+            while (cells.hasNext()) {
+                Cell cell = cells.next();
+                if (cell.isDeleted()) continue;
+                if (previous != null && Arrays.equals(previous, cell.keyColumn.key)) continue;
+                return cell.keyColumn.key;
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() throws StorageException {
+            return nextKey != null;
+        }
+
+        @Override
+        public ByteBuffer next() throws StorageException {
+            if (!hasNext()) throw new NoSuchElementException();
+            byte[] result = nextKey;
+            nextKey = nextInternal(result);
+            return ByteBuffer.wrap(result);
+        }
+
+        @Override
+        public void close() throws StorageException {
+
+        }
+    }
+
+    @Override
+    public ByteBuffer[] getLocalKeyPartition() throws StorageException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() throws StorageException {
+        //The data is owned by the manager
+    }
+
+    private static LSMTransaction getTx(StoreTransaction txh) {
+        Preconditions.checkArgument(txh instanceof LSMTransaction, "Unexpected transaction: %s", txh);
+        return (LSMTransaction) txh;
+    }
+
+    /* ---------------------------------------------------------------
+     * Memtable and file management, invoked by the manager
+     * ---------------------------------------------------------------
+     */
+
+    Version getVersion() {
+        return version;
+    }
+
+    /**
+     * Applies the given committed cells to the memtable. Must be called while holding the commit lock of the manager.
+     */
+    void apply(Iterable<Cell> cells) {
+        Memtable memtable = version.memtable;
+        for (Cell cell : cells) memtable.put(cell.keyColumn, cell.value);
+    }
+
+    /**
+     * Turns the memtable immutable and starts a new one. Must be called while holding the commit lock of the manager.
+     *
+     * @return Whether there is an immutable memtable to flush
+     */
+    synchronized boolean rotate() {
+        Version v = version;
+        Preconditions.checkState(v.immutable == null, "Previous memtable has not been flushed");
+        if (v.memtable.isEmpty()) return false;
+        version = new Version(new Memtable(), v.memtable, v.levels);
+        return true;
+    }
+
+    /**
+     * Writes the immutable memtable to level 0.
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException {
+        Version v = version;
+        if (v.immutable == null) return;
+        //Files on level 0 may overlap, so that tombstones can only be dropped during compaction
+        List<BlockFile> files = write(v.immutable.iterator(null, null), -1, v.levels);
+        synchronized (this) {
+            v = version;
+            List<List<BlockFile>> levels = copy(v.levels);
+            levels.get(0).addAll(0, files);
+            version = new Version(v.memtable, null, levels);
+        }
+    }
+
+    /**
+     * Performs a single compaction if any level exceeds its size.
+     *
+     * @return The files which have become obsolete or null if no compaction was necessary
+     * @throws IOException
+     */
+    List<BlockFile> compact() throws IOException {
+        List<List<BlockFile>> levels = version.levels;
+        int level = -1;
+        if (levels.get(0).size() >= manager.getLevel0Files()) level = 0;
+        for (int l = 1; level < 0 && l < Math.min(levels.size(), LSMStoreManager.MAX_LEVELS - 1); l++) {
+            long size = 0;
+            for (BlockFile file : levels.get(l)) size += file.getSize();
+            if (size > manager.getLevelSize(l)) level = l;
+        }
+        if (level < 0) return null;
+
+        List<BlockFile> inputs;
+        if (level == 0) inputs = levels.get(0);
+        else inputs = ImmutableList.of(pickFile(level, levels.get(level)));
+        byte[] smallest = null, largest = null;
+        for (BlockFile file : inputs) {
+            if (smallest == null || KeyColumn.compare(file.getSmallestKey(), smallest) < 0) smallest = file.getSmallestKey();
+            if (largest == null || KeyColumn.compare(file.getLargestKey(), largest) > 0) largest = file.getLargestKey();
+        }
+        List<BlockFile> overlapping = new ArrayList<BlockFile>();
+        if (level + 1 < levels.size()) {
+            for (BlockFile file : levels.get(level + 1)) {
+                if (file.overlaps(smallest, largest)) overlapping.add(file);
+            }
+        }
+
+        List<Iterator<Cell>> sources = new ArrayList<Iterator<Cell>>(inputs.size() + overlapping.size());
+        for (BlockFile file : inputs) sources.add(file.iterator(null, null));
+        for (BlockFile file : overlapping) sources.add(file.iterator(null, null));
+        List<BlockFile> outputs = write(new MergingIterator(sources), level + 1, levels);
+        compactionPointers[level] = largest;
+
+        List<BlockFile> obsolete = new ArrayList<BlockFile>(inputs);
+        obsolete.addAll(overlapping);
+        synchronized (this) {
+            Version v = version;
+            List<List<BlockFile>> newLevels = copy(v.levels);
+            while (newLevels.size() <= level + 1) newLevels.add(new ArrayList<BlockFile>());
+            newLevels.get(level).removeAll(inputs);
+            newLevels.get(level + 1).removeAll(overlapping);
+            newLevels.get(level + 1).addAll(outputs);
+            Collections.sort(newLevels.get(level + 1), KEY_ORDER);
+            version = new Version(v.memtable, v.immutable, newLevels);
+        }
+        return obsolete;
+    }
+
+    /**
+     * Picks the next file of the given level to compact, rotating through the key range of the level.
+     */
+    private BlockFile pickFile(int level, List<BlockFile> files) {
+        byte[] pointer = compactionPointers[level];
+        if (pointer != null) {
+            for (BlockFile file : files) {
+                if (KeyColumn.compare(file.getSmallestKey(), pointer) > 0) return file;
+            }
+        }
+        return files.get(0);
+    }
+
+    /**
+     * Writes the given cells into new files of at most the configured file size. Files are only split between keys,
+     * so that each key is contained in at most one file per level above level 0.
+     *
+     * @param cells
+     * @param level  Level of the new files or -1 if tombstones need to be retained
+     * @param levels Current levels
+     * @return
+     * @throws IOException
+     */
+    private List<BlockFile> write(Iterator<Cell> cells, int level, List<List<BlockFile>> levels) throws IOException {
+        List<BlockFile> files = new ArrayList<BlockFile>();
+        BlockFile.Writer writer = null;
+        try {
+            while (cells.hasNext()) {
+                Cell cell = cells.next();
+                if (cell.isDeleted() && level >= 0 && !containsOlder(levels, level, cell.keyColumn.key)) continue;
+                if (writer != null && writer.getSize() >= manager.getFileSize()
+                        && !Arrays.equals(writer.getLastKey(), cell.keyColumn.key)) {
+                    files.add(writer.finish());
+                    writer = null;
+                }
+                if (writer == null) writer = manager.newBlockFile();
+                writer.add(cell);
+            }
+            if (writer != null) files.add(writer.finish());
+            writer = null;
+        } finally {
+            if (writer != null) writer.abort();
+        }
+        return files;
+    }
+
+    /**
+     * Whether any level below the given one might contain cells for the given key which a tombstone needs to shadow
+     */
+    private static boolean containsOlder(List<List<BlockFile>> levels, int level, byte[] key) {
+        for (int l = level + 1; l < levels.size(); l++) {
+            if (findFile(levels.get(l), key) != null) return true;
+        }
+        return false;
+    }
+
+    private static List<List<BlockFile>> copy(List<List<BlockFile>> levels) {
+        List<List<BlockFile>> copy = new ArrayList<List<BlockFile>>(levels.size());
+        for (List<BlockFile> files : levels) copy.add(new ArrayList<BlockFile>(files));
+        return copy;
+    }
+
+    private static final Comparator<byte[]> BYTE_ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] b1, byte[] b2) {
+            return KeyColumn.compare(b1, b2);
+        }
+    };
+
+    private static final Comparator<BlockFile> KEY_ORDER = new Comparator<BlockFile>() {
+        @Override
+        public int compare(BlockFile f1, BlockFile f2) {
+            return KeyColumn.compare(f1.getSmallestKey(), f2.getSmallestKey());
+        }
+    };
+
+    /**
+     * Immutable snapshot of the memtables and the files of each level. Files on level 0 are ordered from most to
+     * least recent, files on all other levels by key.
+     */
+    static final class Version {
+
+        final Memtable memtable;
+        final Memtable immutable;
+        final List<List<BlockFile>> levels;
+
+        Version(Memtable memtable, Memtable immutable, List<List<BlockFile>> levels) {
+            Preconditions.checkNotNull(memtable);
+            Preconditions.checkArgument(!levels.isEmpty(), "Need at least level 0");
+            this.memtable = memtable;
+            this.immutable = immutable;
+            List<List<BlockFile>> copy = new ArrayList<List<BlockFile>>(levels.size());
+            for (List<BlockFile> files : levels) copy.add(Collections.unmodifiableList(new ArrayList<BlockFile>(files)));
+            this.levels = Collections.unmodifiableList(copy);
+        }
+    }
+
+}
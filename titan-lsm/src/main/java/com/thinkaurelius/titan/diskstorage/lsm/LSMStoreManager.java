@@ -0,0 +1,549 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.thinkaurelius.titan.diskstorage.PermanentStorageException;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.*;
+import com.thinkaurelius.titan.diskstorage.util.DirectoryUtil;
+import com.thinkaurelius.titan.diskstorage.util.FileStorageConfiguration;
+import com.thinkaurelius.titan.util.system.IOUtils;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration.*;
+
+/**
+ * Embedded storage backend which keeps its data in a local directory organized as a log-structured merge tree per
+ * store (see {@link LSMStore}). Writes are sequential: committed transactions are appended to a write-ahead log and
+ * applied to in-memory memtables, which are flushed to immutable, memory mapped {@link BlockFile}s in the background
+ * and merged by leveled compaction.
+ * <p/>
+ * All stores share the write-ahead log and their memtables are flushed together, so that a log file can be deleted
+ * once all memtables it covers are persisted. The state of the block files is recorded in a {@link Manifest}.
+ * Upon opening, the log files which have not been flushed are replayed.
+ * <p/>
+ * The directory must only be accessed by a single instance since transactions are isolated within the JVM.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class LSMStoreManager implements KeyColumnValueStoreManager {
+
+    private static final Logger log = LoggerFactory.getLogger(LSMStoreManager.class);
+
+    /**
+     * Size of the memtables in bytes at which they are flushed to disk
+     */
+    public static final String MEMTABLE_SIZE_KEY = "memtable-size";
+    public static final long MEMTABLE_SIZE_DEFAULT = 16 * 1024 * 1024;
+
+    /**
+     * Target size of the data blocks of a file in bytes, i.e. the granularity of the sparse block index
+     */
+    public static final String BLOCK_SIZE_KEY = "block-size";
+    public static final int BLOCK_SIZE_DEFAULT = 4 * 1024;
+
+    /**
+     * Target size of the files produced by compactions in bytes
+     */
+    public static final String FILE_SIZE_KEY = "file-size";
+    public static final long FILE_SIZE_DEFAULT = 8 * 1024 * 1024;
+
+    /**
+     * Maximum size of level 1 in bytes. Each subsequent level is ten times larger.
+     */
+    public static final String LEVEL_SIZE_KEY = "level-size";
+    public static final long LEVEL_SIZE_DEFAULT = 64 * 1024 * 1024;
+
+    /**
+     * Number of files on level 0 which triggers their compaction into level 1
+     */
+    public static final String LEVEL0_FILES_KEY = "level0-files";
+    public static final int LEVEL0_FILES_DEFAULT = 4;
+
+    /**
+     * Whether to force the write-ahead log to disk on every commit. Otherwise, committed transactions survive
+     * a crash of the process but not of the operating system.
+     */
+    public static final String LOG_SYNC_KEY = "log-sync";
+    public static final boolean LOG_SYNC_DEFAULT = false;
+
+    static final int MAX_LEVELS = 7;
+    private static final int LEVEL_MULTIPLIER = 10;
+
+    private static final String FILE_SUFFIX = ".tbl";
+    private static final String LOG_SUFFIX = ".log";
+
+    private final File directory;
+    private final FileStorageConfiguration storageConfig;
+    private final StoreFeatures features;
+
+    private final boolean isReadOnly;
+    private final boolean batchLoading;
+    private final boolean logSync;
+    private final long memtableSize;
+    private final int blockSize;
+    private final long fileSize;
+    private final long levelSize;
+    private final int level0Files;
+    private final long lockWaitTime;
+
+    private final ConcurrentHashMap<String, LSMStore> stores;
+    private final AtomicLong nextFileNumber;
+
+    private final ReentrantLock commitLock;
+    private final Condition flushCompleted;
+    //The following fields are guarded by the commit lock
+    private WriteAheadLog writeAheadLog;
+    private long memtableBytes;
+    private boolean flushPending;
+
+    //First log file which has not been flushed, only modified by the background thread or while it is not running
+    private long logNumber;
+
+    private final ExecutorService background;
+    private volatile Throwable backgroundFailure;
+    private volatile boolean closed;
+
+    public LSMStoreManager(Configuration configuration) throws StorageException {
+        String storageDir = configuration.getString(STORAGE_DIRECTORY_KEY);
+        Preconditions.checkArgument(storageDir != null, "Need to specify storage directory");
+        directory = DirectoryUtil.getOrCreateDataDirectory(storageDir);
+        isReadOnly = configuration.getBoolean(STORAGE_READONLY_KEY, STORAGE_READONLY_DEFAULT);
+        batchLoading = configuration.getBoolean(STORAGE_BATCH_KEY, STORAGE_BATCH_DEFAULT);
+        if (batchLoading)
+            log.warn("The write-ahead log is disabled since batch loading is enabled. Data is lost if the instance is not shut down properly.");
+        logSync = configuration.getBoolean(LOG_SYNC_KEY, LOG_SYNC_DEFAULT);
+        memtableSize = configuration.getLong(MEMTABLE_SIZE_KEY, MEMTABLE_SIZE_DEFAULT);
+        blockSize = configuration.getInt(BLOCK_SIZE_KEY, BLOCK_SIZE_DEFAULT);
+        fileSize = configuration.getLong(FILE_SIZE_KEY, FILE_SIZE_DEFAULT);
+        levelSize = configuration.getLong(LEVEL_SIZE_KEY, LEVEL_SIZE_DEFAULT);
+        level0Files = configuration.getInt(LEVEL0_FILES_KEY, LEVEL0_FILES_DEFAULT);
+        lockWaitTime = configuration.getLong(LOCK_WAIT_MS, LOCK_WAIT_MS_DEFAULT);
+        Preconditions.checkArgument(memtableSize > 0, "Invalid memtable size: %s", memtableSize);
+        Preconditions.checkArgument(blockSize > 0, "Invalid block size: %s", blockSize);
+        Preconditions.checkArgument(fileSize > 0 && fileSize < Integer.MAX_VALUE / 2, "Invalid file size: %s", fileSize);
+        Preconditions.checkArgument(levelSize > 0, "Invalid level size: %s", levelSize);
+        Preconditions.checkArgument(level0Files > 0, "Invalid number of level 0 files: %s", level0Files);
+
+        features = new StoreFeatures();
+        features.supportsScan = true;
+        features.supportsMultiQuery = false;
+        features.supportsBatchMutation = true;
+        features.supportsTransactions = true;
+        features.supportsConsistentKeyOperations = false;
+        features.supportsLocking = true;
+        features.isKeyOrdered = true;
+        features.isDistributed = false;
+        features.hasLocalKeyPartition = false;
+
+        storageConfig = new FileStorageConfiguration(directory);
+        stores = new ConcurrentHashMap<String, LSMStore>();
+        nextFileNumber = new AtomicLong(1);
+        commitLock = new ReentrantLock();
+        flushCompleted = commitLock.newCondition();
+
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new PermanentStorageException("Could not open LSM storage in " + directory, e);
+        }
+        background = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("titan-lsm-%d").build());
+        if (!isReadOnly) background.submit(new Runnable() {
+            @Override
+            public void run() {
+                compact();
+            }
+        });
+    }
+
+    /**
+     * Opens the files listed in the manifest, deletes obsolete files and replays the log files
+     */
+    private void recover() throws IOException {
+        Manifest manifest = Manifest.read(directory);
+        Set<Long> liveFiles = new HashSet<Long>();
+        logNumber = 0;
+        if (manifest != null) {
+            nextFileNumber.set(manifest.getNextFileNumber());
+            logNumber = manifest.getLogNumber();
+            for (Map.Entry<String, List<List<Long>>> store : manifest.getLevels().entrySet()) {
+                List<List<BlockFile>> levels = new ArrayList<List<BlockFile>>();
+                for (List<Long> numbers : store.getValue()) {
+                    List<BlockFile> files = new ArrayList<BlockFile>(numbers.size());
+                    for (Long number : numbers) {
+                        files.add(BlockFile.open(getFile(number, FILE_SUFFIX), number));
+                        liveFiles.add(number);
+                    }
+                    levels.add(files);
+                }
+                stores.put(store.getKey(), new LSMStore(store.getKey(), this, levels));
+            }
+        }
+
+        SortedMap<Long, File> logs = new TreeMap<Long, File>();
+        for (File file : directory.listFiles()) {
+            long number = getFileNumber(file, FILE_SUFFIX);
+            if (number < 0) {
+                number = getFileNumber(file, LOG_SUFFIX);
+                if (number >= logNumber) logs.put(number, file);
+                else if (number >= 0) delete(file);
+            } else if (!liveFiles.contains(number)) {
+                //Left behind by an interrupted flush or compaction
+                delete(file);
+            }
+            if (number >= nextFileNumber.get()) nextFileNumber.set(number + 1);
+        }
+
+        for (File file : logs.values()) {
+            for (byte[] payload : WriteAheadLog.replay(file)) {
+                for (Map.Entry<String, List<Cell>> writes : decode(payload).entrySet()) {
+                    getStore(writes.getKey()).apply(writes.getValue());
+                }
+            }
+        }
+        if (isReadOnly) return;
+        //Persist the recovered writes so that the log files can be discarded
+        flushMemtables();
+        if (!batchLoading) writeAheadLog = newLog();
+    }
+
+    @Override
+    public StoreFeatures getFeatures() {
+        return features;
+    }
+
+    @Override
+    public StoreTransaction beginTransaction(ConsistencyLevel consistencyLevel) throws StorageException {
+        return new LSMTransaction(this, consistencyLevel);
+    }
+
+    @Override
+    public LSMStore openDatabase(String name) throws StorageException {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkState(!closed, "Storage manager has been closed");
+        return getStore(name);
+    }
+
+    private LSMStore getStore(String name) {
+        LSMStore store = stores.get(name);
+        if (store == null) {
+            List<List<BlockFile>> levels = new ArrayList<List<BlockFile>>();
+            levels.add(new ArrayList<BlockFile>());
+            store = new LSMStore(name, this, levels);
+            LSMStore existing = stores.putIfAbsent(name, store);
+            if (existing != null) store = existing;
+        }
+        return store;
+    }
+
+    @Override
+    public void mutateMany(Map<String, Map<ByteBuffer, KCVMutation>> mutations, StoreTransaction txh) throws StorageException {
+        for (Map.Entry<String, Map<ByteBuffer, KCVMutation>> storeMut : mutations.entrySet()) {
+            LSMStore store = openDatabase(storeMut.getKey());
+            for (Map.Entry<ByteBuffer, KCVMutation> keyMut : storeMut.getValue().entrySet()) {
+                store.mutate(keyMut.getKey(), keyMut.getValue().getAdditions(), keyMut.getValue().getDeletions(), txh);
+            }
+        }
+    }
+
+    /**
+     * Validates the given transaction and atomically applies its mutations.
+     *
+     * @param tx
+     * @throws StorageException
+     */
+    void commit(LSMTransaction tx) throws StorageException {
+        Map<LSMStore, Memtable> writes = tx.getWrites();
+        if (writes.isEmpty()) return;
+        if (isReadOnly) throw new PermanentStorageException("Cannot write to read-only storage");
+        commitLock.lock();
+        try {
+            if (closed) throw new PermanentStorageException("Storage manager has been closed");
+            if (backgroundFailure != null)
+                throw new PermanentStorageException("Could not persist memtables", backgroundFailure);
+            tx.validate();
+            Map<LSMStore, List<Cell>> cells = new HashMap<LSMStore, List<Cell>>(writes.size());
+            for (Map.Entry<LSMStore, Memtable> entry : writes.entrySet()) {
+                cells.put(entry.getKey(), Lists.newArrayList(entry.getValue().iterator(null, null)));
+                memtableBytes += entry.getValue().getSize();
+            }
+            if (writeAheadLog != null) writeAheadLog.append(encode(cells), logSync);
+            for (Map.Entry<LSMStore, List<Cell>> entry : cells.entrySet()) entry.getKey().apply(entry.getValue());
+
+            if (memtableBytes >= memtableSize) {
+                //Stall writes if the memtables grow faster than they can be flushed
+                while (flushPending && memtableBytes >= 2 * memtableSize && backgroundFailure == null)
+                    flushCompleted.awaitUninterruptibly();
+                if (!flushPending) rotate();
+            }
+        } catch (IOException e) {
+            throw new PermanentStorageException("Could not write to log", e);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Turns all memtables immutable, starts a new log file and schedules the flush. Must be called while holding
+     * the commit lock.
+     */
+    private void rotate() throws IOException {
+        if (writeAheadLog != null) {
+            WriteAheadLog previous = writeAheadLog;
+            writeAheadLog = newLog();
+            previous.close();
+        }
+        final long firstLiveLog = writeAheadLog != null ? writeAheadLog.getNumber() : nextFileNumber.get();
+        for (LSMStore store : stores.values()) store.rotate();
+        memtableBytes = 0;
+        flushPending = true;
+        background.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush(firstLiveLog);
+                } catch (Throwable e) {
+                    log.error("Could not flush memtables", e);
+                    backgroundFailure = e;
+                }
+                commitLock.lock();
+                try {
+                    if (backgroundFailure == null) flushPending = false;
+                    flushCompleted.signalAll();
+                } finally {
+                    commitLock.unlock();
+                }
+                compact();
+            }
+        });
+    }
+
+    /**
+     * Writes all immutable memtables to level 0 and discards the log files which precede the given one
+     */
+    private void flush(long firstLiveLog) throws IOException {
+        for (LSMStore store : stores.values()) store.flush();
+        logNumber = firstLiveLog;
+        writeManifest();
+        for (File file : directory.listFiles()) {
+            long number = getFileNumber(file, LOG_SUFFIX);
+            if (number >= 0 && number < logNumber) delete(file);
+        }
+    }
+
+    /**
+     * Flushes all memtables synchronously, which requires that the background thread is not running
+     */
+    private void flushMemtables() throws IOException {
+        boolean hasData = false;
+        for (LSMStore store : stores.values()) hasData = store.rotate() || hasData;
+        if (hasData || logNumber < nextFileNumber.get()) flush(nextFileNumber.get());
+    }
+
+    /**
+     * Compacts all stores until no level exceeds its size
+     */
+    private void compact() {
+        try {
+            for (LSMStore store : stores.values()) {
+                while (!closed) {
+                    List<BlockFile> obsolete = store.compact();
+                    if (obsolete == null) break;
+                    writeManifest();
+                    for (BlockFile file : obsolete) delete(file.getFile());
+                }
+            }
+        } catch (Throwable e) {
+            //Compaction is retried after the next flush
+            log.error("Could not compact block files", e);
+        }
+    }
+
+    private synchronized void writeManifest() throws IOException {
+        Map<String, List<List<Long>>> levels = new HashMap<String, List<List<Long>>>();
+        for (LSMStore store : stores.values()) {
+            List<List<Long>> numbers = new ArrayList<List<Long>>();
+            for (List<BlockFile> files : store.getVersion().levels) {
+                List<Long> level = new ArrayList<Long>(files.size());
+                for (BlockFile file : files) level.add(file.getNumber());
+                numbers.add(level);
+            }
+            levels.put(store.getName(), numbers);
+        }
+        new Manifest(nextFileNumber.get(), logNumber, levels).write(directory);
+    }
+
+    private WriteAheadLog newLog() throws IOException {
+        long number = nextFileNumber.getAndIncrement();
+        return new WriteAheadLog(getFile(number, LOG_SUFFIX), number);
+    }
+
+    BlockFile.Writer newBlockFile() throws IOException {
+        long number = nextFileNumber.getAndIncrement();
+        return new BlockFile.Writer(getFile(number, FILE_SUFFIX), number, blockSize);
+    }
+
+    private File getFile(long number, String suffix) {
+        return new File(directory, String.format("%06d%s", number, suffix));
+    }
+
+    private static long getFileNumber(File file, String suffix) {
+        String name = file.getName();
+        if (!name.endsWith(suffix)) return -1;
+        try {
+            return Long.parseLong(name.substring(0, name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void delete(File file) {
+        //Fails on some platforms while the file is still mapped, in which case it is deleted upon the next start
+        if (!file.delete()) log.warn("Could not delete obsolete file {}", file);
+    }
+
+    private static byte[] encode(Map<LSMStore, List<Cell>> writes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(writes.size());
+        for (Map.Entry<LSMStore, List<Cell>> entry : writes.entrySet()) {
+            out.writeUTF(entry.getKey().getName());
+            out.writeInt(entry.getValue().size());
+            for (Cell cell : entry.getValue()) {
+                writeBytes(out, cell.keyColumn.key);
+                writeBytes(out, cell.keyColumn.column);
+                if (cell.isDeleted()) out.writeInt(-1);
+                else writeBytes(out, cell.value);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, List<Cell>> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int numStores = in.readInt();
+        Map<String, List<Cell>> writes = new HashMap<String, List<Cell>>(numStores);
+        for (int s = 0; s < numStores; s++) {
+            String name = in.readUTF();
+            int numCells = in.readInt();
+            List<Cell> cells = new ArrayList<Cell>(numCells);
+            for (int c = 0; c < numCells; c++) {
+                KeyColumn keyColumn = new KeyColumn(readBytes(in), readBytes(in));
+                int length = in.readInt();
+                byte[] value = null;
+                if (length >= 0) {
+                    value = new byte[length];
+                    in.readFully(value);
+                }
+                cells.add(new Cell(keyColumn, value));
+            }
+            writes.put(name, cells);
+        }
+        return writes;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    long getLockWaitTime() {
+        return lockWaitTime;
+    }
+
+    long getFileSize() {
+        return fileSize;
+    }
+
+    int getLevel0Files() {
+        return level0Files;
+    }
+
+    /**
+     * Returns the maximum size of the given level in bytes
+     */
+    long getLevelSize(int level) {
+        Preconditions.checkArgument(level > 0);
+        long size = levelSize;
+        for (int i = 1; i < level; i++) size *= LEVEL_MULTIPLIER;
+        return size;
+    }
+
+    @Override
+    public void close() throws StorageException {
+        if (closed) return;
+        closed = true;
+        background.shutdown();
+        try {
+            while (!background.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.debug("Waiting for background flush and compaction to complete");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PermanentStorageException("Interrupted while closing storage", e);
+        }
+        commitLock.lock();
+        try {
+            if (writeAheadLog != null) {
+                writeAheadLog.close();
+                writeAheadLog = null;
+            }
+            if (!isReadOnly && backgroundFailure == null) flushMemtables();
+        } catch (IOException e) {
+            throw new PermanentStorageException("Could not persist memtables", e);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    @Override
+    public void clearStorage() throws StorageException {
+        close();
+        stores.clear();
+        IOUtils.deleteFromDirectory(directory);
+    }
+
+    @Override
+    public String getConfigurationProperty(String key) throws StorageException {
+        return storageConfig.getConfigurationProperty(key);
+    }
+
+    @Override
+    public void setConfigurationProperty(String key, String value) throws StorageException {
+        storageConfig.setConfigurationProperty(key, value);
+    }
+
+    @Override
+    public String toString() {
+        return "lsm:" + directory.getAbsolutePath();
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.base.Preconditions;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.common.AbstractStoreTransaction;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.ConsistencyLevel;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.locking.PermanentLockingException;
+import com.thinkaurelius.titan.diskstorage.locking.TemporaryLockingException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transaction against the stores of a {@link LSMStoreManager}.
+ * <p/>
+ * Mutations are buffered in the transaction, are visible to its own reads, and are applied atomically upon commit.
+ * Reads see the most recently committed state. To make read-modify-write cycles safe, the values returned by point
+ * reads are validated upon commit and the commit fails with a {@link TemporaryLockingException} if any of them has been
+ * modified concurrently. In addition, locks on individual (key, column) pairs can be acquired, which are exclusive
+ * among the transactions of the manager and are held until the transaction completes.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class LSMTransaction extends AbstractStoreTransaction {
+
+    private final LSMStoreManager manager;
+
+    private final ConcurrentHashMap<LSMStore, Memtable> writes;
+    private final List<Expectation> reads;
+    private final List<Expectation> locks;
+
+    LSMTransaction(LSMStoreManager manager, ConsistencyLevel level) {
+        super(level);
+        Preconditions.checkNotNull(manager);
+        this.manager = manager;
+        writes = new ConcurrentHashMap<LSMStore, Memtable>(4);
+        reads = new ArrayList<Expectation>();
+        locks = new ArrayList<Expectation>();
+    }
+
+    /**
+     * Returns the cell which this transaction has written for the given (key, column) pair or null if it has not
+     * been modified by this transaction.
+     */
+    Cell getWrite(LSMStore store, KeyColumn keyColumn) {
+        Memtable memtable = writes.get(store);
+        return memtable == null ? null : memtable.get(keyColumn);
+    }
+
+    /**
+     * Returns the buffered mutations of this transaction for the given store or null if there are none
+     */
+    Memtable getWrites(LSMStore store) {
+        return writes.get(store);
+    }
+
+    Map<LSMStore, Memtable> getWrites() {
+        return writes;
+    }
+
+    void mutate(LSMStore store, byte[] key, List<Entry> additions, List<ByteBuffer> deletions) {
+        Memtable memtable = writes.get(store);
+        if (memtable == null) {
+            memtable = new Memtable();
+            Memtable existing = writes.putIfAbsent(store, memtable);
+            if (existing != null) memtable = existing;
+        }
+        if (deletions != null) {
+            for (ByteBuffer column : deletions) {
+                Preconditions.checkNotNull(column);
+                memtable.put(new KeyColumn(key, KeyColumn.toArray(column)), null);
+            }
+        }
+        if (additions != null) {
+            for (Entry entry : additions) {
+                Preconditions.checkNotNull(entry);
+                memtable.put(new KeyColumn(key, KeyColumn.toArray(entry.getColumn())), KeyColumn.toArray(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Records that this transaction has read the given committed value so that it can be validated upon commit.
+     */
+    void recordRead(LSMStore store, KeyColumn keyColumn, byte[] value) {
+        synchronized (reads) {
+            reads.add(new Expectation(store, keyColumn, value));
+        }
+    }
+
+    /**
+     * Acquires the lock on the given (key, column) pair and verifies the expected value. If this transaction already
+     * holds the lock, the request is skipped and the expected value of the original request remains in effect.
+     */
+    void acquireLock(LSMStore store, KeyColumn keyColumn, byte[] expectedValue) throws StorageException {
+        if (!store.lock(keyColumn, this, manager.getLockWaitTime())) return;
+        synchronized (locks) {
+            locks.add(new Expectation(store, keyColumn, expectedValue));
+        }
+        if (!Arrays.equals(store.getCommitted(keyColumn), expectedValue))
+            throw new PermanentLockingException("Expected value mismatch for locked column in store " + store.getName());
+    }
+
+    /**
+     * Verifies that the values read and the expected values of the locked columns have not been modified since.
+     * Must be called while holding the commit lock of the manager.
+     */
+    void validate() throws StorageException {
+        synchronized (locks) {
+            for (Expectation lock : locks) {
+                if (!lock.isValid())
+                    throw new PermanentLockingException("Expected value mismatch for locked column in store " + lock.store.getName());
+            }
+        }
+        synchronized (reads) {
+            for (Expectation read : reads) {
+                if (!read.isValid())
+                    throw new TemporaryLockingException("Value read by the transaction has been modified concurrently in store " + read.store.getName());
+            }
+        }
+    }
+
+    @Override
+    public void commit() throws StorageException {
+        try {
+            manager.commit(this);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public void rollback() throws StorageException {
+        release();
+    }
+
+    private void release() {
+        writes.clear();
+        synchronized (reads) {
+            reads.clear();
+        }
+        synchronized (locks) {
+            for (Expectation lock : locks) lock.store.unlock(lock.keyColumn, this);
+            locks.clear();
+        }
+    }
+
+    private static final class Expectation {
+
+        private final LSMStore store;
+        private final KeyColumn keyColumn;
+        private final byte[] value;
+
+        private Expectation(LSMStore store, KeyColumn keyColumn, byte[] value) {
+            this.store = store;
+            this.keyColumn = keyColumn;
+            this.value = value;
+        }
+
+        private boolean isValid() {
+            return Arrays.equals(store.getCommitted(keyColumn), value);
+        }
+    }
+
+}
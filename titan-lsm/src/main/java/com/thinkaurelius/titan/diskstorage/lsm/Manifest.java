@@ -0,0 +1,132 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent description of the durable state of a {@link LSMStoreManager}: the block files of each level of each
+ * store, the first log file which has not yet been flushed to block files, and the next unused file number.
+ * <p/>
+ * The manifest is replaced atomically by writing a temporary file which is then renamed, so that it either
+ * reflects the state before or after a flush or compaction. Any file not referenced by the manifest is obsolete.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+final class Manifest {
+
+    private static final String FILE_NAME = "MANIFEST";
+    private static final String TEMP_FILE_NAME = "MANIFEST.tmp";
+    private static final int VERSION = 1;
+
+    private final long nextFileNumber;
+    private final long logNumber;
+    private final Map<String, List<List<Long>>> levels;
+
+    /**
+     * @param nextFileNumber Next unused file number
+     * @param logNumber      Number of the first log file which has to be replayed upon recovery
+     * @param levels         Block file numbers by level for each store
+     */
+    Manifest(long nextFileNumber, long logNumber, Map<String, List<List<Long>>> levels) {
+        Preconditions.checkArgument(nextFileNumber >= logNumber);
+        this.nextFileNumber = nextFileNumber;
+        this.logNumber = logNumber;
+        this.levels = levels;
+    }
+
+    long getNextFileNumber() {
+        return nextFileNumber;
+    }
+
+    long getLogNumber() {
+        return logNumber;
+    }
+
+    Map<String, List<List<Long>>> getLevels() {
+        return levels;
+    }
+
+    /**
+     * Reads the manifest from the given directory.
+     *
+     * @param directory
+     * @return The manifest or null if the directory does not contain one
+     * @throws IOException
+     */
+    static Manifest read(File directory) throws IOException {
+        File file = new File(directory, FILE_NAME);
+        if (!file.exists()) return null;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported manifest version: " + version);
+            long nextFileNumber = in.readLong();
+            long logNumber = in.readLong();
+            int numStores = in.readInt();
+            Map<String, List<List<Long>>> levels = new HashMap<String, List<List<Long>>>(numStores);
+            for (int s = 0; s < numStores; s++) {
+                String name = in.readUTF();
+                int numLevels = in.readInt();
+                List<List<Long>> storeLevels = new ArrayList<List<Long>>(numLevels);
+                for (int l = 0; l < numLevels; l++) {
+                    int numFiles = in.readInt();
+                    List<Long> files = new ArrayList<Long>(numFiles);
+                    for (int f = 0; f < numFiles; f++) files.add(in.readLong());
+                    storeLevels.add(files);
+                }
+                levels.put(name, storeLevels);
+            }
+            return new Manifest(nextFileNumber, logNumber, levels);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Atomically replaces the manifest in the given directory with this one.
+     *
+     * @param directory
+     * @throws IOException
+     */
+    void write(File directory) throws IOException {
+        File temp = new File(directory, TEMP_FILE_NAME);
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        try {
+            out.writeInt(VERSION);
+            out.writeLong(nextFileNumber);
+            out.writeLong(logNumber);
+            out.writeInt(levels.size());
+            for (Map.Entry<String, List<List<Long>>> store : levels.entrySet()) {
+                out.writeUTF(store.getKey());
+                out.writeInt(store.getValue().size());
+                for (List<Long> files : store.getValue()) {
+                    out.writeInt(files.size());
+                    for (Long number : files) out.writeLong(number);
+                }
+            }
+            out.flush();
+            fileOut.getChannel().force(true);
+        } finally {
+            out.close();
+        }
+        File file = new File(directory, FILE_NAME);
+        //Rename does not replace existing files on all platforms
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+            throw new IOException("Could not replace manifest: " + file);
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sorted in-memory buffer of cells which can be read and written concurrently. Memtables hold the most recent writes
+ * of a store until they are flushed to a {@link BlockFile} and buffer the writes of a {@link LSMTransaction} until
+ * it commits.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+final class Memtable {
+
+    //Skip list maps do not allow null values
+    private static final byte[] TOMBSTONE = new byte[0];
+
+    //Approximate memory overhead of a skip list entry
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final ConcurrentSkipListMap<KeyColumn, byte[]> cells;
+    private final AtomicLong size;
+
+    Memtable() {
+        cells = new ConcurrentSkipListMap<KeyColumn, byte[]>();
+        size = new AtomicLong(0);
+    }
+
+    /**
+     * Sets the value of the given (key, column) pair. A null value deletes the column.
+     *
+     * @param keyColumn
+     * @param value
+     */
+    void put(KeyColumn keyColumn, byte[] value) {
+        Preconditions.checkArgument(keyColumn.column != null);
+        byte[] previous = cells.put(keyColumn, value == null ? TOMBSTONE : value);
+        if (previous == null) size.addAndGet(keyColumn.size() + ENTRY_OVERHEAD);
+        else size.addAndGet(-previous.length);
+        if (value != null) size.addAndGet(value.length);
+    }
+
+    /**
+     * Adds all cells of the given memtable to this one, overwriting existing values.
+     *
+     * @param other
+     */
+    void putAll(Memtable other) {
+        for (Map.Entry<KeyColumn, byte[]> entry : other.cells.entrySet()) {
+            byte[] value = entry.getValue();
+            put(entry.getKey(), value == TOMBSTONE ? null : value);
+        }
+    }
+
+    /**
+     * Returns the cell for the given (key, column) pair, which is deleted if this memtable holds a tombstone for it,
+     * or null if the pair is not contained.
+     *
+     * @param keyColumn
+     * @return
+     */
+    Cell get(KeyColumn keyColumn) {
+        byte[] value = cells.get(keyColumn);
+        if (value == null) return null;
+        return new Cell(keyColumn, value == TOMBSTONE ? null : value);
+    }
+
+    /**
+     * Iterates over all cells from start (inclusive) to end (exclusive) in order, including tombstones.
+     *
+     * @param start Lower boundary or null if unbounded
+     * @param end   Upper boundary or null if unbounded
+     * @return
+     */
+    Iterator<Cell> iterator(KeyColumn start, KeyColumn end) {
+        NavigableMap<KeyColumn, byte[]> range = cells;
+        if (start != null && end != null) {
+            if (start.compareTo(end) >= 0) return Iterators.<Cell>emptyIterator();
+            range = cells.subMap(start, true, end, false);
+        } else if (start != null) {
+            range = cells.tailMap(start, true);
+        } else if (end != null) {
+            range = cells.headMap(end, false);
+        }
+        final Iterator<Map.Entry<KeyColumn, byte[]>> iter = range.entrySet().iterator();
+        return new AbstractIterator<Cell>() {
+            @Override
+            protected Cell computeNext() {
+                if (!iter.hasNext()) return endOfData();
+                Map.Entry<KeyColumn, byte[]> entry = iter.next();
+                byte[] value = entry.getValue();
+                return new Cell(entry.getKey(), value == TOMBSTONE ? null : value);
+            }
+        };
+    }
+
+    boolean isEmpty() {
+        return cells.isEmpty();
+    }
+
+    int getNumCells() {
+        return cells.size();
+    }
+
+    /**
+     * Returns the approximate number of bytes occupied by this memtable
+     *
+     * @return
+     */
+    long getSize() {
+        return size.get();
+    }
+
+}
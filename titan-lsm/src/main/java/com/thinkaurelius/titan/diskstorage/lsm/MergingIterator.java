@@ -0,0 +1,74 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the sorted cell iterators of multiple sources into a single sorted iterator. The sources are given in order
+ * of recency, and if multiple sources contain a cell for the same (key, column) pair, only the cell of the most recent
+ * source is returned. Tombstones are returned as well so that they can shadow older cells.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+final class MergingIterator extends AbstractIterator<Cell> {
+
+    private final PriorityQueue<Source> queue;
+
+    /**
+     * @param sources Cell iterators, most recent first
+     */
+    MergingIterator(List<Iterator<Cell>> sources) {
+        queue = new PriorityQueue<Source>(Math.max(1, sources.size()), SOURCE_ORDER);
+        for (int i = 0; i < sources.size(); i++) {
+            PeekingIterator<Cell> iter = Iterators.peekingIterator(sources.get(i));
+            if (iter.hasNext()) queue.add(new Source(iter, i));
+        }
+    }
+
+    @Override
+    protected Cell computeNext() {
+        if (queue.isEmpty()) return endOfData();
+        Source first = queue.poll();
+        Cell result = first.iter.next();
+        advance(first);
+        //Skip the shadowed cells of older sources
+        while (!queue.isEmpty() && queue.peek().iter.peek().keyColumn.compareTo(result.keyColumn) == 0) {
+            Source older = queue.poll();
+            older.iter.next();
+            advance(older);
+        }
+        return result;
+    }
+
+    private void advance(Source source) {
+        if (source.iter.hasNext()) queue.add(source);
+    }
+
+    private static final class Source {
+
+        private final PeekingIterator<Cell> iter;
+        private final int recency;
+
+        private Source(PeekingIterator<Cell> iter, int recency) {
+            this.iter = iter;
+            this.recency = recency;
+        }
+    }
+
+    private static final Comparator<Source> SOURCE_ORDER = new Comparator<Source>() {
+        @Override
+        public int compare(Source s1, Source s2) {
+            int comp = s1.iter.peek().keyColumn.compareTo(s2.iter.peek().keyColumn);
+            if (comp != 0) return comp;
+            return s1.recency - s2.recency;
+        }
+    };
+
+}
@@ -0,0 +1,123 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the committed write sets which have not yet been flushed to block files. Each record consists
+ * of the length and the CRC32 checksum of its payload followed by the payload itself, so that a record which has only
+ * partially been written before a crash is detected and ignored upon replay.
+ *
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+final class WriteAheadLog {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final int HEADER_SIZE = 4 + 8;
+
+    private final File file;
+    private final long number;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    /**
+     * Creates a new, empty log file
+     *
+     * @param file
+     * @param number Number of the file which identifies it within the store directory
+     * @throws IOException
+     */
+    WriteAheadLog(File file, long number) throws IOException {
+        Preconditions.checkArgument(!file.exists(), "Log file already exists: %s", file);
+        this.file = file;
+        this.number = number;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getNumber() {
+        return number;
+    }
+
+    /**
+     * Appends the given payload as a record to this log.
+     *
+     * @param payload
+     * @param sync    Whether to force the record to disk before returning
+     * @throws IOException
+     */
+    void append(byte[] payload, boolean sync) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        record.putInt(payload.length);
+        record.putLong(crc.getValue());
+        record.put(payload);
+        record.flip();
+        while (record.hasRemaining()) channel.write(record);
+        if (sync) channel.force(false);
+    }
+
+    void close() throws IOException {
+        channel.force(false);
+        raf.close();
+    }
+
+    /**
+     * Reads the payloads of all complete records of the given log file in the order in which they were appended.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    static List<byte[]> replay(File file) throws IOException {
+        List<byte[]> payloads = new ArrayList<byte[]>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            long remaining = file.length();
+            while (remaining >= HEADER_SIZE) {
+                int length = in.readInt();
+                long checksum = in.readLong();
+                remaining -= HEADER_SIZE;
+                if (length < 0 || length > remaining) break;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                remaining -= length;
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != checksum) {
+                    log.warn("Ignoring corrupted tail of log file {}", file);
+                    return payloads;
+                }
+                payloads.add(payload);
+            }
+            if (remaining > 0) log.warn("Ignoring incomplete record at the end of log file {}", file);
+        } catch (EOFException e) {
+            log.warn("Ignoring incomplete record at the end of log file {}", file);
+        } finally {
+            in.close();
+        }
+        return payloads;
+    }
+
+}
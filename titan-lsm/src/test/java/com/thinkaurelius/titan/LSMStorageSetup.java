@@ -0,0 +1,23 @@
+package com.thinkaurelius.titan;
+
+
+import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+
+public class LSMStorageSetup extends StorageSetup {
+
+    public static Configuration getLSMStorageConfiguration() {
+        BaseConfiguration config = new BaseConfiguration();
+        config.addProperty(GraphDatabaseConfiguration.STORAGE_DIRECTORY_KEY, getHomeDir());
+        return config;
+    }
+
+    public static Configuration getLSMGraphConfiguration() {
+        BaseConfiguration config = new BaseConfiguration();
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE).addProperty(GraphDatabaseConfiguration.STORAGE_DIRECTORY_KEY, getHomeDir());
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE).addProperty(GraphDatabaseConfiguration.STORAGE_BACKEND_KEY, "lsm");
+        return config;
+    }
+
+}
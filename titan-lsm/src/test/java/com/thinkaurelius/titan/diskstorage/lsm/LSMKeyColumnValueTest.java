@@ -0,0 +1,14 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.thinkaurelius.titan.LSMStorageSetup;
+import com.thinkaurelius.titan.diskstorage.KeyColumnValueStoreTest;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeyColumnValueStoreManager;
+
+public class LSMKeyColumnValueTest extends KeyColumnValueStoreTest {
+
+    public KeyColumnValueStoreManager openStorageManager() throws StorageException {
+        return new LSMStoreManager(LSMStorageSetup.getLSMStorageConfiguration());
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.thinkaurelius.titan.LSMStorageSetup;
+import com.thinkaurelius.titan.diskstorage.MultiWriteKeyColumnValueStoreTest;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeyColumnValueStoreManager;
+
+public class LSMMultiWriteKeyColumnValueTest extends MultiWriteKeyColumnValueStoreTest {
+
+    public KeyColumnValueStoreManager openStorageManager() throws StorageException {
+        return new LSMStoreManager(LSMStorageSetup.getLSMStorageConfiguration());
+    }
+
+}
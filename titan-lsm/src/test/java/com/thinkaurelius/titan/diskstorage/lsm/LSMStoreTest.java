@@ -0,0 +1,186 @@
+package com.thinkaurelius.titan.diskstorage.lsm;
+
+import com.google.common.collect.ImmutableList;
+import com.thinkaurelius.titan.LSMStorageSetup;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.ConsistencyLevel;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.KeySliceQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.StoreTransaction;
+import com.thinkaurelius.titan.diskstorage.locking.PermanentLockingException;
+import com.thinkaurelius.titan.diskstorage.locking.TemporaryLockingException;
+import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
+import org.apache.commons.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LSMStoreTest {
+
+    private static final String STORE_NAME = "testStore";
+
+    private LSMStoreManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        open(getConfiguration()).clearStorage();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (manager != null) manager.close();
+    }
+
+    private LSMStoreManager open(Configuration config) throws StorageException {
+        manager = new LSMStoreManager(config);
+        return manager;
+    }
+
+    private static Configuration getConfiguration() {
+        Configuration config = LSMStorageSetup.getLSMStorageConfiguration();
+        config.setProperty(LSMStoreManager.MEMTABLE_SIZE_KEY, 16 * 1024);
+        config.setProperty(LSMStoreManager.BLOCK_SIZE_KEY, 512);
+        config.setProperty(LSMStoreManager.FILE_SIZE_KEY, 8 * 1024);
+        config.setProperty(LSMStoreManager.LEVEL_SIZE_KEY, 32 * 1024);
+        config.setProperty(LSMStoreManager.LEVEL0_FILES_KEY, 2);
+        return config;
+    }
+
+    private static ByteBuffer key(int i) {
+        return ByteBufferUtil.getIntByteBuffer(i);
+    }
+
+    private static ByteBuffer value(int i, int version) {
+        return ByteBufferUtil.getLongByteBuffer(i * 1000l + version);
+    }
+
+    private void write(LSMStore store, int numKeys, int numColumns, int version) throws StorageException {
+        for (int i = 0; i < numKeys; i++) {
+            StoreTransaction tx = manager.beginTransaction(ConsistencyLevel.DEFAULT);
+            ImmutableList.Builder<Entry> additions = ImmutableList.builder();
+            for (int j = 0; j < numColumns; j++) additions.add(new Entry(key(j), value(i, version)));
+            store.mutate(key(i), additions.build(), null, tx);
+            tx.commit();
+        }
+    }
+
+    private void delete(LSMStore store, int numKeys, int every) throws StorageException {
+        StoreTransaction tx = manager.beginTransaction(ConsistencyLevel.DEFAULT);
+        for (int i = 0; i < numKeys; i += every) {
+            List<Entry> entries = store.getSlice(new KeySliceQuery(key(i), key(0), key(Integer.MAX_VALUE)), tx);
+            ImmutableList.Builder<ByteBuffer> deletions = ImmutableList.builder();
+            for (Entry entry : entries) deletions.add(entry.getColumn());
+            store.mutate(key(i), null, deletions.build(), tx);
+        }
+        tx.commit();
+    }
+
+    private void check(LSMStore store, int numKeys, int numColumns, int version, int deletedEvery) throws StorageException {
+        StoreTransaction tx = manager.beginTransaction(ConsistencyLevel.DEFAULT);
+        for (int i = 0; i < numKeys; i++) {
+            boolean deleted = deletedEvery > 0 && i % deletedEvery == 0;
+            assertEquals(!deleted, store.containsKey(key(i), tx));
+            List<Entry> entries = store.getSlice(new KeySliceQuery(key(i), key(0), key(numColumns)), tx);
+            assertEquals(deleted ? 0 : numColumns, entries.size());
+            for (Entry entry : entries) assertEquals(value(i, version), entry.getValue());
+            ByteBuffer v = store.get(key(i), key(numColumns - 1), tx);
+            if (deleted) assertNull(v);
+            else assertEquals(value(i, version), v);
+        }
+        int count = 0;
+        RecordIterator<ByteBuffer> keys = store.getKeys(tx);
+        while (keys.hasNext()) {
+            keys.next();
+            count++;
+        }
+        keys.close();
+        assertEquals(numKeys - (deletedEvery > 0 ? (numKeys + deletedEvery - 1) / deletedEvery : 0), count);
+        tx.commit();
+    }
+
+    @Test
+    public void flushAndCompact() throws Exception {
+        int numKeys = 500, numColumns = 10;
+        LSMStore store = open(getConfiguration()).openDatabase(STORE_NAME);
+        write(store, numKeys, numColumns, 1);
+        write(store, numKeys, numColumns, 2);
+        delete(store, numKeys, 7);
+        check(store, numKeys, numColumns, 2, 7);
+        manager.close();
+
+        store = open(getConfiguration()).openDatabase(STORE_NAME);
+        check(store, numKeys, numColumns, 2, 7);
+        List<List<BlockFile>> levels = store.getVersion().levels;
+        assertTrue(levels.size() > 1);
+        //Files above level 0 must not overlap
+        for (int level = 1; level < levels.size(); level++) {
+            List<BlockFile> files = levels.get(level);
+            for (int i = 1; i < files.size(); i++) {
+                assertTrue(KeyColumn.compare(files.get(i - 1).getLargestKey(), files.get(i).getSmallestKey()) < 0);
+            }
+        }
+    }
+
+    @Test
+    public void recoverFromLog() throws Exception {
+        Configuration config = LSMStorageSetup.getLSMStorageConfiguration();
+        LSMStore store = open(config).openDatabase(STORE_NAME);
+        write(store, 100, 5, 1);
+        //Reopen without closing, so that the writes are only contained in the log
+        store = open(config).openDatabase(STORE_NAME);
+        check(store, 100, 5, 1, 0);
+    }
+
+    @Test
+    public void readWriteConflict() throws Exception {
+        LSMStore store = open(getConfiguration()).openDatabase(STORE_NAME);
+        StoreTransaction tx1 = manager.beginTransaction(ConsistencyLevel.DEFAULT);
+        StoreTransaction tx2 = manager.beginTransaction(ConsistencyLevel.DEFAULT);
+        assertNull(store.get(key(1), key(1), tx1));
+        assertNull(store.get(key(1), key(1), tx2));
+        store.mutate(key(1), ImmutableList.of(new Entry(key(1), value(1, 1))), null, tx1);
+        store.mutate(key(1), ImmutableList.of(new Entry(key(1), value(1, 2))), null, tx2);
+        //Own writes are visible, others' uncommitted writes are not
+        assertEquals(value(1, 1), store.get(key(1), key(1), tx1));
+        tx1.commit();
+        try {
+            tx2.commit();
+            fail();
+        } catch (TemporaryLockingException e) {
+        }
+        StoreTransaction tx3 = manager.beginTransaction(ConsistencyLevel.DEFAULT);
+        assertEquals(value(1, 1), store.get(key(1), key(1), tx3));
+        tx3.commit();
+    }
+
+    @Test
+    public void lockExpectedValue() throws Exception {
+        LSMStore store = open(getConfiguration()).openDatabase(STORE_NAME);
+        StoreTransaction tx1 = manager.beginTransaction(ConsistencyLevel.DEFAULT);
+        StoreTransaction tx2 = manager.beginTransaction(ConsistencyLevel.DEFAULT);
+        store.acquireLock(key(1), key(1), null, tx1);
+        try {
+            store.acquireLock(key(1), key(1), null, tx2);
+            fail();
+        } catch (TemporaryLockingException e) {
+        }
+        store.mutate(key(1), ImmutableList.of(new Entry(key(1), value(1, 1))), null, tx1);
+        tx1.commit();
+        try {
+            store.acquireLock(key(1), key(1), null, tx2);
+            fail();
+        } catch (PermanentLockingException e) {
+        }
+        tx2.rollback();
+        StoreTransaction tx3 = manager.beginTransaction(ConsistencyLevel.DEFAULT);
+        store.acquireLock(key(1), key(1), value(1, 1), tx3);
+        tx3.commit();
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.thinkaurelius.titan.graphdb.lsm;
+
+import com.thinkaurelius.titan.LSMStorageSetup;
+import com.thinkaurelius.titan.graphdb.TitanGraphConcurrentTest;
+
+public class LSMGraphConcurrentTest extends TitanGraphConcurrentTest {
+
+    public LSMGraphConcurrentTest() {
+        super(LSMStorageSetup.getLSMGraphConfiguration());
+    }
+
+}
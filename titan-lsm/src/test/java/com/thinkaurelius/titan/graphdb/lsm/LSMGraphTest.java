@@ -0,0 +1,19 @@
+package com.thinkaurelius.titan.graphdb.lsm;
+
+import com.thinkaurelius.titan.LSMStorageSetup;
+import com.thinkaurelius.titan.graphdb.TitanGraphTest;
+
+public class LSMGraphTest extends TitanGraphTest {
+
+    public LSMGraphTest() {
+        super(LSMStorageSetup.getLSMGraphConfiguration());
+    }
+
+    //The storage directory can only be opened by a single graph instance at a time
+    @Override
+    public void testCompactLabelsOfOtherInstance() {}
+
+    @Override
+    public void testCoveringIndexOfOtherInstance() {}
+
+}
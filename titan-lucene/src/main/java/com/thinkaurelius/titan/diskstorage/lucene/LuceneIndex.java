@@ -1,9 +1,8 @@
 package com.thinkaurelius.titan.diskstorage.lucene;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.spatial4j.core.context.SpatialContext;
 import com.spatial4j.core.shape.Shape;
 import com.thinkaurelius.titan.core.attribute.*;
@@ -15,6 +14,7 @@ import com.thinkaurelius.titan.diskstorage.indexing.IndexEntry;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexMutation;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexProvider;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexQuery;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
 import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
 import com.thinkaurelius.titan.graphdb.query.keycondition.*;
 import org.apache.commons.configuration.Configuration;
@@ -33,6 +33,7 @@ import org.apache.lucene.spatial.query.SpatialOperation;
 import org.apache.lucene.spatial.vector.PointVectorStrategy;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,9 +42,29 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Index provider backed by one Lucene index per store in the configured directory.
+ * <p/>
+ * Each store keeps a single {@link IndexWriter} and a near-real-time {@link SearcherManager} on top of it which is
+ * shared by all transactions. Commits of concurrent transactions are grouped: a transaction only calls
+ * {@link IndexWriter#commit()} if no other commit has covered its mutations in the meantime. With
+ * {@link #DURABILITY_KEY} set to <code>async</code> mutations are committed in the background every
+ * {@link #COMMIT_INTERVAL_KEY} milliseconds instead. With a positive {@link #REFRESH_INTERVAL_KEY} the searchers are
+ * refreshed on that schedule, otherwise they are refreshed when a transaction commits.
+ * <p/>
+ * Lucene can only replace entire documents. To update a document without reading it back from the index, the field
+ * values of recently written documents are cached per store, up to {@link #DOCUMENT_CACHE_SIZE_KEY} documents.
+ * <p/>
+ * Query results are retrieved in pages of {@link #PAGE_SIZE_KEY} hits with {@link IndexSearcher#searchAfter}. The
+ * document ids are read from doc values, falling back to the stored field for documents written without them.
+ *
  * (c) Matthias Broecheler (me@matthiasb.com)
  */
 
@@ -52,15 +73,43 @@ public class LuceneIndex implements IndexProvider {
     private Logger log = LoggerFactory.getLogger(LuceneIndex.class);
 
 
-    private static final String DOCID = "_____elementid";
+    static final String DOCID = "_____elementid";
     private static final String GEOID = "_____geo";
     private static final int MAX_STRING_FIELD_LEN = 256;
 
     private static final int GEO_MAX_LEVELS = 11;
 
+    /**
+     * Whether a transaction's mutations are committed to disk before the transaction returns (<code>sync</code>)
+     * or periodically in the background (<code>async</code>)
+     */
+    public static final String DURABILITY_KEY = "durability";
+    public static final String DURABILITY_DEFAULT = "sync";
+    /**
+     * Milliseconds between background commits when durability is <code>async</code>
+     */
+    public static final String COMMIT_INTERVAL_KEY = "commit-interval";
+    public static final long COMMIT_INTERVAL_DEFAULT = 1000;
+    /**
+     * Milliseconds between refreshes of the shared searchers. If 0, the searchers are refreshed when a transaction
+     * commits so that its mutations are visible to subsequent queries.
+     */
+    public static final String REFRESH_INTERVAL_KEY = "refresh-interval";
+    public static final long REFRESH_INTERVAL_DEFAULT = 0;
+    /**
+     * Maximum number of documents per store whose field values are cached for updates. 0 disables the cache.
+     */
+    public static final String DOCUMENT_CACHE_SIZE_KEY = "document-cache-size";
+    public static final int DOCUMENT_CACHE_SIZE_DEFAULT = 10000;
+    /**
+     * Number of hits retrieved at a time when iterating over query results
+     */
+    public static final String PAGE_SIZE_KEY = "page-size";
+    public static final int PAGE_SIZE_DEFAULT = 1000;
+
     private final Analyzer analyzer = new StandardAnalyzer(Version.LUCENE_41);
 
-    private final Map<String,IndexWriter> writers = new HashMap<String, IndexWriter>(4);
+    private final Map<String,StoreIndex> stores = new ConcurrentHashMap<String, StoreIndex>(4);
     private final ReentrantLock writerLock = new ReentrantLock();
 
     private Map<String,SpatialStrategy> spatial=new ConcurrentHashMap<String, SpatialStrategy>(12);
@@ -68,6 +117,12 @@ public class LuceneIndex implements IndexProvider {
 
     private final String basePath;
 
+    private final boolean syncCommit;
+    private final long refreshInterval;
+    private final int documentCacheSize;
+    private final int pageSize;
+    private final ScheduledExecutorService scheduler;
+
     public LuceneIndex(Configuration config) {
         String dir = config.getString(GraphDatabaseConfiguration.STORAGE_DIRECTORY_KEY,"");
         Preconditions.checkArgument(StringUtils.isNotBlank(dir),"Need to configure directory for lucene");
@@ -76,6 +131,57 @@ public class LuceneIndex implements IndexProvider {
         if (!directory.exists() || !directory.isDirectory() || !directory.canWrite()) throw new IllegalArgumentException("Cannot access or write to directory: " + dir);
         basePath = directory.getAbsolutePath();
         log.debug("Configured Lucene to use base directory [{}]",basePath);
+
+        String durability = config.getString(DURABILITY_KEY,DURABILITY_DEFAULT);
+        Preconditions.checkArgument(durability.equals("sync") || durability.equals("async"),"Invalid durability mode: %s",durability);
+        syncCommit = durability.equals("sync");
+        long commitInterval = config.getLong(COMMIT_INTERVAL_KEY,COMMIT_INTERVAL_DEFAULT);
+        Preconditions.checkArgument(syncCommit || commitInterval>0,"Commit interval must be positive: %s",commitInterval);
+        refreshInterval = config.getLong(REFRESH_INTERVAL_KEY,REFRESH_INTERVAL_DEFAULT);
+        Preconditions.checkArgument(refreshInterval>=0,"Refresh interval must be non-negative: %s",refreshInterval);
+        documentCacheSize = config.getInt(DOCUMENT_CACHE_SIZE_KEY,DOCUMENT_CACHE_SIZE_DEFAULT);
+        Preconditions.checkArgument(documentCacheSize>=0,"Document cache size must be non-negative: %s",documentCacheSize);
+        pageSize = config.getInt(PAGE_SIZE_KEY,PAGE_SIZE_DEFAULT);
+        Preconditions.checkArgument(pageSize>0,"Page size must be positive: %s",pageSize);
+
+        if (!syncCommit || refreshInterval>0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable,"LuceneIndex-"+basePath);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            if (!syncCommit) {
+                scheduler.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (StoreIndex index : stores.values()) {
+                            try {
+                                index.commit(index.updates.get());
+                            } catch (IOException e) {
+                                log.error("Could not commit Lucene index",e);
+                            }
+                        }
+                    }
+                },commitInterval,commitInterval,TimeUnit.MILLISECONDS);
+            }
+            if (refreshInterval>0) {
+                scheduler.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (StoreIndex index : stores.values()) {
+                            try {
+                                index.refresh(index.updates.get());
+                            } catch (IOException e) {
+                                log.error("Could not refresh Lucene searcher",e);
+                            }
+                        }
+                    }
+                },refreshInterval,refreshInterval,TimeUnit.MILLISECONDS);
+            }
+        } else scheduler = null;
     }
 
     private Directory getStoreDirectory(String store) throws StorageException {
@@ -92,20 +198,83 @@ public class LuceneIndex implements IndexProvider {
         }
     }
 
-    private IndexWriter getWriter(String store) throws StorageException {
-        Preconditions.checkArgument(writerLock.isHeldByCurrentThread());
-        IndexWriter writer = writers.get(store);
-        if (writer==null) {
-            IndexWriterConfig iwc = new IndexWriterConfig(Version.LUCENE_41, analyzer);
-            iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-            try {
-                writer = new IndexWriter(getStoreDirectory(store), iwc);
-                writers.put(store,writer);
-            } catch (IOException e) {
-                throw new PermanentStorageException("Could not create writer",e);
+    private StoreIndex getStoreIndex(String store, boolean create) throws StorageException {
+        StoreIndex index = stores.get(store);
+        if (index==null) {
+            synchronized (stores) {
+                index = stores.get(store);
+                if (index==null) {
+                    Directory directory = getStoreDirectory(store);
+                    IndexWriterConfig iwc = new IndexWriterConfig(Version.LUCENE_41, analyzer);
+                    iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+                    try {
+                        if (!create && !DirectoryReader.indexExists(directory)) return null;
+                        index = new StoreIndex(new IndexWriter(directory, iwc),documentCacheSize);
+                        stores.put(store,index);
+                    } catch (IOException e) {
+                        throw new PermanentStorageException("Could not create writer",e);
+                    }
+                }
             }
         }
-        return writer;
+        return index;
+    }
+
+    /**
+     * Looks up the document with the given id through the term index of the searcher's segments.
+     *
+     * @return The field values of the stored document or null if no such document exists
+     */
+    private Map<String,Object> retrieveFields(IndexSearcher searcher, Term docTerm) throws IOException {
+        Document doc = null;
+        for (AtomicReaderContext leaf : searcher.getIndexReader().leaves()) {
+            DocsEnum docs = leaf.reader().termDocsEnum(docTerm);
+            if (docs==null) continue;
+            for (int docId = docs.nextDoc(); docId!=DocIdSetIterator.NO_MORE_DOCS; docId = docs.nextDoc()) {
+                if (doc!=null) throw new IllegalArgumentException("More than one document found for document id: " + docTerm.text());
+                doc = leaf.reader().document(docId);
+            }
+        }
+        if (doc==null) return null;
+        Map<String,Object> fields = new HashMap<String,Object>();
+        for (IndexableField field : doc.getFields()) {
+            if (field.name().equals(DOCID)) continue;
+            if (field.numericValue()!=null) {
+                fields.put(field.name(),field.numericValue());
+            } else if (field.stringValue().startsWith(GEOID)) {
+                fields.put(field.name(),ctx.readShape(field.stringValue().substring(GEOID.length())));
+            } else {
+                fields.put(field.name(),field.stringValue());
+            }
+        }
+        return fields;
+    }
+
+    private Document buildDocument(String docid, Map<String,Object> fields) {
+        Document doc = new Document();
+        doc.add(new StringField(DOCID, docid, Field.Store.YES));
+        doc.add(new StraightBytesDocValuesField(DOCID, new BytesRef(docid), false));
+        for (Map.Entry<String,Object> field : fields.entrySet()) {
+            String key = field.getKey();
+            Object value = field.getValue();
+            if (value instanceof Long) {
+                doc.add(new LongField(key, (Long)value, Field.Store.YES));
+            } else if (value instanceof Double) {
+                doc.add(new DoubleField(key, (Double)value, Field.Store.YES));
+            } else if (value instanceof String) {
+                doc.add(new TextField(key, (String)value, Field.Store.YES));
+//                if (str.length()<MAX_STRING_FIELD_LEN)
+//                    doc.add(new StringField(key+STR_SUFFIX, str, Field.Store.NO));
+            } else if (value instanceof Shape) {
+                Shape shape = (Shape)value;
+                doc.add(new StoredField(key,GEOID+ctx.toString(shape)));
+                log.trace("Updating geo-indexes for key {}",key);
+                for (IndexableField f : getSpatialStrategy(key).createIndexableFields(shape)) {
+                    doc.add(f);
+                }
+            } else throw new IllegalArgumentException("Unsupported type: " + value);
+        }
+        return doc;
     }
 
     private SpatialStrategy getSpatialStrategy(String key) {
@@ -131,117 +300,166 @@ public class LuceneIndex implements IndexProvider {
     @Override
     public void mutate(Map<String, Map<String, IndexMutation>> mutations, TransactionHandle tx) throws StorageException {
         Transaction ltx = (Transaction)tx;
+        Map<StoreIndex,Long> updated = new HashMap<StoreIndex,Long>(mutations.size());
         writerLock.lock();
         try {
             for (Map.Entry<String,Map<String, IndexMutation>> stores : mutations.entrySet()) {
                 String storename = stores.getKey();
-                IndexWriter writer = getWriter(storename);
-                IndexReader reader = DirectoryReader.open(writer, true);
-                IndexSearcher searcher = new IndexSearcher(reader);
-                for (Map.Entry<String, IndexMutation> entry : stores.getValue().entrySet()) {
-                    String docid = entry.getKey();
-                    IndexMutation mutation = entry.getValue();
-                    Term docTerm = new Term(DOCID,docid);
-
-                    if (mutation.isDeleted()) {
-                        log.trace("Deleted entire document [{}]", docid);
-                        writer.deleteDocuments(docTerm);
-                        continue;
-                    }
+                StoreIndex index = getStoreIndex(storename,true);
+                IndexWriter writer = index.writer;
+                IndexSearcher searcher = null;
+                try {
+                    for (Map.Entry<String, IndexMutation> entry : stores.getValue().entrySet()) {
+                        String docid = entry.getKey();
+                        IndexMutation mutation = entry.getValue();
+                        Term docTerm = new Term(DOCID,docid);
+
+                        if (mutation.isDeleted()) {
+                            log.trace("Deleted entire document [{}]", docid);
+                            writer.deleteDocuments(docTerm);
+                            if (index.documents!=null) index.documents.invalidate(docid);
+                            continue;
+                        }
 
-                    Document doc=null;
-                    TopDocs hits = searcher.search(new TermQuery(docTerm), 10);
-                    Map<String,Shape> geofields = Maps.newHashMap();
-
-                    if (hits.scoreDocs.length == 0) {
-                        log.trace("Creating new document for [{}]", docid);
-                        doc = new Document();
-                        Field docidField = new StringField(DOCID, docid, Field.Store.YES);
-                        doc.add(docidField);
-                    } else if (hits.scoreDocs.length > 1) {
-                        throw new IllegalArgumentException("More than one document found for document id: " + docid);
-                    } else {
-                        log.trace("Updating existing document for [{}]", docid);
-                        int docId = hits.scoreDocs[0].doc;
-                        //retrieve the old document
-                        doc = searcher.doc(docId);
-                        for (IndexableField field : doc.getFields()) {
-                            if (field.stringValue().startsWith(GEOID)) {
-                                geofields.put(field.name(),ctx.readShape(field.stringValue().substring(GEOID.length())));
+                        //A new document replaces any previous document with the same id, hence the cached fields
+                        //of a deleted document must not be reused
+                        Map<String,Object> fields = null;
+                        if (!mutation.isNew() && index.documents!=null) fields = index.documents.getIfPresent(docid);
+                        if (fields==null && !mutation.isNew()) {
+                            if (searcher==null) {
+                                //Make all previous mutations visible before reading documents back
+                                index.refresh(index.updates.get());
+                                searcher = index.searchers.acquire();
                             }
+                            fields = retrieveFields(searcher,docTerm);
                         }
-                    }
-                    Preconditions.checkNotNull(doc);
-                    for (String key : mutation.getDeletions()) {
-                        if (doc.getField(key)!=null) {
+                        if (fields==null) {
+                            log.trace("Creating new document for [{}]", docid);
+                            fields = new HashMap<String,Object>();
+                        } else {
+                            log.trace("Updating existing document for [{}]", docid);
+                            fields = new HashMap<String,Object>(fields);
+                        }
+                        for (String key : mutation.getDeletions()) {
                             log.trace("Removing field [{}] on document [{}]", key, docid);
-                            doc.removeFields(key);
-                            geofields.remove(key);
+                            fields.remove(key);
                         }
-                    }
-                    for (IndexEntry add : mutation.getAdditions()) {
-                        log.trace("Adding field [{}] on document [{}]", add.key, docid);
-                        if (doc.getField(add.key)!=null) doc.removeFields(add.key);
-                        if (add.value instanceof Number) {
-                            Field field = null;
-                            if (add.value instanceof Integer || add.value instanceof Long) {
-                                field = new LongField(add.key, ((Number)add.value).longValue(), Field.Store.YES);
-                            } else { //double or float
-                                field = new DoubleField(add.key, ((Number)add.value).doubleValue(), Field.Store.YES);
-                            }
-                            doc.add(field);
-                        } else if (add.value instanceof String) {
-                            String str = (String)add.value;
-                            Field field = new TextField(add.key, str, Field.Store.YES);
-                            doc.add(field);
-//                            if (str.length()<MAX_STRING_FIELD_LEN)
-//                                field = new StringField(add.key+STR_SUFFIX, str, Field.Store.NO);
-//                            doc.add(field);
-                        } else if (add.value instanceof Geoshape) {
-                            Shape shape = ((Geoshape)add.value).convert2Spatial4j();
-                            geofields.put(add.key,shape);
-                            doc.add(new StoredField(add.key,GEOID+ctx.toString(shape)));
-
-                        } else throw new IllegalArgumentException("Unsupported type: " + add.value);
-                    }
-                    for (Map.Entry<String,Shape> geo : geofields.entrySet()) {
-                        log.trace("Updating geo-indexes for key {}",geo.getKey());
-                        for (IndexableField f : getSpatialStrategy(geo.getKey()).createIndexableFields(geo.getValue())) {
-                            doc.add(f);
+                        for (IndexEntry add : mutation.getAdditions()) {
+                            log.trace("Adding field [{}] on document [{}]", add.key, docid);
+                            if (add.value instanceof Number) {
+                                if (add.value instanceof Integer || add.value instanceof Long) {
+                                    fields.put(add.key, ((Number)add.value).longValue());
+                                } else { //double or float
+                                    fields.put(add.key, ((Number)add.value).doubleValue());
+                                }
+                            } else if (add.value instanceof String) {
+                                fields.put(add.key, add.value);
+                            } else if (add.value instanceof Geoshape) {
+                                fields.put(add.key, ((Geoshape)add.value).convert2Spatial4j());
+                            } else throw new IllegalArgumentException("Unsupported type: " + add.value);
                         }
-                    }
 
-                    //write the old document to the index with the modifications
-                    writer.updateDocument(new Term(DOCID,docid), doc);
+                        //write the modified document to the index
+                        writer.updateDocument(docTerm, buildDocument(docid,fields));
+                        if (index.documents!=null) index.documents.put(docid,fields);
+                    }
+                } finally {
+                    if (searcher!=null) index.searchers.release(searcher);
                 }
-                writer.commit();
+                updated.put(index,index.updates.incrementAndGet());
             }
-            ltx.postCommit();
         } catch (IOException e) {
             throw new TemporaryStorageException("Could not update Lucene index",e);
         } finally {
             writerLock.unlock();
         }
+        try {
+            for (Map.Entry<StoreIndex,Long> update : updated.entrySet()) {
+                if (syncCommit) update.getKey().commit(update.getValue());
+                if (refreshInterval==0) update.getKey().refresh(update.getValue());
+            }
+        } catch (IOException e) {
+            throw new TemporaryStorageException("Could not commit Lucene index",e);
+        }
+        ltx.postCommit();
     }
 
     @Override
-    public List<String> query(IndexQuery query, TransactionHandle tx) throws StorageException {
+    public RecordIterator<String> query(IndexQuery query, TransactionHandle tx) throws StorageException {
         //Construct query
         Filter q = convertQuery(query.getCondition());
 
-        try {
-            IndexSearcher searcher = ((Transaction)tx).getSearcher(query.getStore());
-            if (searcher==null) return ImmutableList.of(); //Index does not yet exist
-            long time = System.currentTimeMillis();
-            TopDocs docs = searcher.search(new MatchAllDocsQuery(), q, query.hasLimit()?query.getLimit():Integer.MAX_VALUE-1);
-            log.debug("Executed query [{}] in {} ms",q,System.currentTimeMillis()-time);
-            List<String> result = new ArrayList<String>(docs.scoreDocs.length);
-            for (int i = 0; i < docs.scoreDocs.length; i++) {
-                result.add(searcher.doc(docs.scoreDocs[i].doc).getField(DOCID).stringValue());
+        IndexSearcher searcher = ((Transaction)tx).getSearcher(query.getStore());
+        if (searcher==null) return new DocumentIdIterator(null,q,0); //Index does not yet exist
+        return new DocumentIdIterator(searcher,q,query.hasLimit()?query.getLimit():Integer.MAX_VALUE);
+    }
+
+    /**
+     * Iterates over the ids of the documents matching a filter, retrieving one page of hits at a time.
+     */
+    private class DocumentIdIterator implements RecordIterator<String> {
+
+        private final IndexSearcher searcher;
+        private final Filter filter;
+        private int remaining;
+
+        private ScoreDoc[] page = new ScoreDoc[0];
+        private int position = 0;
+        private boolean exhausted;
+
+        private DocumentIdIterator(IndexSearcher searcher, Filter filter, int limit) {
+            this.searcher = searcher;
+            this.filter = filter;
+            this.remaining = limit;
+            this.exhausted = limit<=0;
+        }
+
+        @Override
+        public boolean hasNext() throws StorageException {
+            if (position<page.length) return true;
+            if (exhausted) return false;
+            try {
+                int size = Math.min(pageSize,remaining);
+                long time = System.currentTimeMillis();
+                TopDocs docs = searcher.searchAfter(page.length==0?null:page[page.length-1], new MatchAllDocsQuery(), filter, size);
+                log.debug("Executed query [{}] in {} ms",filter,System.currentTimeMillis()-time);
+                page = docs.scoreDocs;
+                position = 0;
+                remaining -= page.length;
+                exhausted = page.length<size || remaining<=0;
+                return page.length>0;
+            } catch (IOException e) {
+                throw new TemporaryStorageException("Could not execute Lucene query",e);
             }
-            return result;
-        } catch (IOException e) {
-            throw new TemporaryStorageException("Could not execute Lucene query",e);
+        }
+
+        @Override
+        public String next() throws StorageException {
+            if (!hasNext()) throw new NoSuchElementException();
+            try {
+                return getDocumentId(page[position++].doc);
+            } catch (IOException e) {
+                throw new TemporaryStorageException("Could not retrieve Lucene document",e);
+            }
+        }
+
+        private String getDocumentId(int docId) throws IOException {
+            List<AtomicReaderContext> leaves = searcher.getIndexReader().leaves();
+            AtomicReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId,leaves));
+            DocValues docids = leaf.reader().docValues(DOCID);
+            if (docids!=null) {
+                BytesRef docid = docids.getSource().getBytes(docId-leaf.docBase,new BytesRef());
+                if (docid.length>0) return docid.utf8ToString();
+            }
+            //Document was written without doc values. Merged segments return an empty value for such documents.
+            return leaf.reader().document(docId-leaf.docBase, Collections.singleton(DOCID)).get(DOCID);
+        }
+
+        @Override
+        public void close() throws StorageException {
+            //The searcher is released by the enclosing transaction
+            page = new ScoreDoc[0];
+            exhausted = true;
         }
     }
 
@@ -363,8 +581,18 @@ public class LuceneIndex implements IndexProvider {
 
     @Override
     public void close() throws StorageException {
+        if (scheduler!=null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10,TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         try {
-            for (IndexWriter w : writers.values()) w.close();
+            //Closing the writer commits all outstanding mutations
+            for (StoreIndex index : stores.values()) index.close();
+            stores.clear();
         } catch (IOException e) {
             throw new PermanentStorageException("Could not close writers",e);
         }
@@ -372,33 +600,88 @@ public class LuceneIndex implements IndexProvider {
 
     @Override
     public void clearStorage() throws StorageException {
+        writerLock.lock();
         try {
+            //Drop the writers and cached documents of the stores before deleting their directories
+            synchronized (stores) {
+                for (StoreIndex index : stores.values()) index.close();
+                stores.clear();
+            }
             FileUtils.deleteDirectory(new File(basePath));
         } catch (IOException e) {
             throw new PermanentStorageException("Could not delete lucene directory: " + basePath,e);
+        } finally {
+            writerLock.unlock();
         }
     }
 
-    private class Transaction implements TransactionHandle {
+    /**
+     * The writer of a store together with the shared near-real-time searchers on top of it and the cached field
+     * values of recently written documents. Mutations are counted so that commits and refreshes can be skipped if a
+     * concurrent one already covered them.
+     */
+    private static class StoreIndex {
+
+        private final IndexWriter writer;
+        private final SearcherManager searchers;
+        private final Cache<String,Map<String,Object>> documents;
+
+        private final AtomicLong updates = new AtomicLong(0);
+        private volatile long committed = 0;
+        private volatile long refreshed = 0;
+        private final Object commitLock = new Object();
+        private final Object refreshLock = new Object();
+
+        private StoreIndex(IndexWriter writer, int documentCacheSize) throws IOException {
+            this.writer = writer;
+            this.searchers = new SearcherManager(writer,true,new SearcherFactory());
+            this.documents = documentCacheSize>0?
+                    CacheBuilder.newBuilder().maximumSize(documentCacheSize).<String,Map<String,Object>>build():null;
+        }
+
+        /**
+         * Commits the writer unless all mutations up to the given update have already been committed.
+         */
+        private void commit(long update) throws IOException {
+            if (committed>=update) return;
+            synchronized (commitLock) {
+                if (committed>=update) return;
+                long current = updates.get();
+                writer.commit();
+                committed = current;
+            }
+        }
 
-        private final Set<String> updatedStores = Sets.newHashSet();
+        /**
+         * Refreshes the searchers unless they already reflect all mutations up to the given update.
+         */
+        private void refresh(long update) throws IOException {
+            if (refreshed>=update) return;
+            synchronized (refreshLock) {
+                if (refreshed>=update) return;
+                long current = updates.get();
+                searchers.maybeRefreshBlocking();
+                refreshed = current;
+            }
+        }
 
+        private void close() throws IOException {
+            searchers.close();
+            writer.close();
+        }
+
+    }
+
+    private class Transaction implements TransactionHandle {
 
         private final Map<String,IndexSearcher> searchers = new HashMap<String,IndexSearcher>(4);
 
 
         private synchronized IndexSearcher getSearcher(String store) throws StorageException {
             IndexSearcher searcher = searchers.get(store);
-            if (searcher==null) {
-                IndexReader reader = null;
-                try {
-                    reader = DirectoryReader.open(getStoreDirectory(store));
-                    searcher = new IndexSearcher(reader);
-                } catch (IndexNotFoundException e) {
-                    searcher = null;
-                } catch (IOException e) {
-                    throw new PermanentStorageException("Could not open index reader on store: " + store,e);
-                }
+            if (searcher==null && !searchers.containsKey(store)) {
+                StoreIndex index = getStoreIndex(store,false);
+                if (index!=null) searcher = index.searchers.acquire();
                 searchers.put(store,searcher);
             }
             return searcher;
@@ -406,7 +689,6 @@ public class LuceneIndex implements IndexProvider {
 
         public void postCommit() throws StorageException {
             close();
-            searchers.clear();
         }
 
 
@@ -425,13 +707,15 @@ public class LuceneIndex implements IndexProvider {
 
         }
 
-        private void close() throws StorageException {
+        private synchronized void close() throws StorageException {
             try {
-                for (IndexSearcher searcher : searchers.values()) {
-                    if (searcher!=null) searcher.getIndexReader().close();
+                for (Map.Entry<String,IndexSearcher> searcher : searchers.entrySet()) {
+                    StoreIndex index = stores.get(searcher.getKey());
+                    if (searcher.getValue()!=null && index!=null) index.searchers.release(searcher.getValue());
                 }
+                searchers.clear();
             }  catch (IOException e) {
-                throw new PermanentStorageException("Could not close searcher",e);
+                throw new PermanentStorageException("Could not release searcher",e);
             }
         }
     }
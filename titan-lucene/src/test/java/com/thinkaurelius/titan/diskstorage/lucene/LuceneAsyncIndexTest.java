@@ -0,0 +1,175 @@
+package com.thinkaurelius.titan.diskstorage.lucene;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.thinkaurelius.titan.core.TitanException;
+import com.thinkaurelius.titan.core.attribute.Cmp;
+import com.thinkaurelius.titan.core.attribute.Geoshape;
+import com.thinkaurelius.titan.core.attribute.Text;
+import com.thinkaurelius.titan.diskstorage.PermanentStorageException;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.TransactionHandle;
+import com.thinkaurelius.titan.diskstorage.indexing.AsyncIndexProvider;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexEntry;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexMutation;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexProvider;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexProviderTest;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexQuery;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexTransaction;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexUpdateLog;
+import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAtom;
+import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class LuceneAsyncIndexTest extends IndexProviderTest {
+
+    private static final String STORE = "vertex";
+
+    @Override
+    public IndexProvider openIndex() throws StorageException {
+        Configuration config = LuceneIndexTest.getLocalLuceneTestConfig();
+        config.setProperty(AsyncIndexProvider.BATCH_SIZE_KEY, 10);
+        return new AsyncIndexProvider(new LuceneIndex(config), config);
+    }
+
+    private AsyncIndexProvider getIndex() {
+        return (AsyncIndexProvider) index;
+    }
+
+    private void commit() throws Exception {
+        tx.commit();
+        tx.awaitApplied();
+        tx = new IndexTransaction(index);
+    }
+
+    private void add(String docid, Map<String, Object> doc, boolean isNew) {
+        for (Map.Entry<String, Object> kv : doc.entrySet()) tx.add(STORE, docid, kv.getKey(), kv.getValue(), isNew);
+    }
+
+    @Test
+    public void testAwaitApplied() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            add("doc" + i, getDocument("Hello world", i, 1.5, Geoshape.point(48.0, 0.0)), true);
+        }
+        commit();
+        assertEquals(0, getIndex().getUpdateLag());
+        assertEquals(25, tx.query(new IndexQuery(STORE, KeyAtom.of("text", Text.CONTAINS, "world"))).size());
+
+        //Queries only see applied mutations, hence await each transaction before checking
+        for (int i = 0; i < 25; i++) {
+            tx.add(STORE, "doc" + i, "time", 100 + i, false);
+            tx.commit();
+            tx = new IndexTransaction(index);
+        }
+        tx.add(STORE, "doc0", "weight", 2.5, false);
+        commit();
+        assertEquals(0, getIndex().getUpdateLag());
+        assertEquals(25, tx.query(new IndexQuery(STORE, KeyAtom.of("time", Cmp.GREATER_THAN_EQUAL, 100l))).size());
+        assertEquals(ImmutableSet.of("doc0"), ImmutableSet.copyOf(tx.query(new IndexQuery(STORE, KeyAtom.of("weight", Cmp.GREATER_THAN, 2.0)))));
+    }
+
+    @Test
+    public void testMergedMutations() throws Exception {
+        add("doc1", getDocument("Hello world", 1001, 5.2, Geoshape.point(48.0, 0.0)), true);
+        add("doc2", getDocument("Tomorrow is the world", 1010, 8.5, Geoshape.point(49.0, 1.0)), true);
+        tx.commit();
+        tx = new IndexTransaction(index);
+        //Update of a new document, deletion of a field and re-creation of a deleted document
+        add("doc1", ImmutableMap.of("time", (Object) 2000, "text", "Bob owns the world"), false);
+        tx.delete(STORE, "doc1", "weight", false);
+        tx.delete(STORE, "doc2", "text", true);
+        tx.commit();
+        tx = new IndexTransaction(index);
+        add("doc2", ImmutableMap.of("text", (Object) "Hello Bob"), true);
+        tx.commit();
+        tx = new IndexTransaction(index);
+        add("doc2", ImmutableMap.of("time", (Object) 3000), false);
+        commit();
+
+        assertEquals(ImmutableSet.of("doc1", "doc2"), ImmutableSet.copyOf(tx.query(new IndexQuery(STORE, KeyAtom.of("text", Text.CONTAINS, "bob")))));
+        assertEquals(ImmutableSet.of("doc1"), ImmutableSet.copyOf(tx.query(new IndexQuery(STORE, KeyAtom.of("text", Text.CONTAINS, "world")))));
+        assertEquals(ImmutableSet.of("doc1", "doc2"), ImmutableSet.copyOf(tx.query(new IndexQuery(STORE, KeyAtom.of("time", Cmp.GREATER_THAN_EQUAL, 2000l)))));
+        assertEquals(ImmutableSet.of(), ImmutableSet.copyOf(tx.query(new IndexQuery(STORE, KeyAtom.of("weight", Cmp.GREATER_THAN, 0.0)))));
+    }
+
+    @Test
+    public void testFailingMutations() throws Exception {
+        close();
+        Configuration config = LuceneIndexTest.getLocalLuceneTestConfig();
+        config.setProperty(AsyncIndexProvider.UPDATE_ATTEMPTS_KEY, 2);
+        index = new AsyncIndexProvider(new LuceneIndex(config) {
+            @Override
+            public void mutate(Map<String, Map<String, IndexMutation>> mutations, TransactionHandle tx) throws StorageException {
+                if (mutations.containsKey(STORE) && mutations.get(STORE).containsKey("doc2"))
+                    throw new PermanentStorageException("Cannot index document");
+                super.mutate(mutations, tx);
+            }
+        }, config);
+        tx = new IndexTransaction(index);
+
+        //Mutations are no longer applied once a transaction fails, so that none are applied out of order
+        for (int i = 1; i <= 3; i++) {
+            add("doc" + i, getDocument("Hello world", 1000 + i, 5.2, Geoshape.point(48.0, 0.0)), true);
+            tx.commit();
+            if (i < 3) tx = new IndexTransaction(index);
+        }
+        try {
+            tx.awaitApplied();
+            fail();
+        } catch (TitanException e) {
+        }
+        tx = new IndexTransaction(index);
+        add("doc4", getDocument("Hello world", 1004, 5.2, Geoshape.point(48.0, 0.0)), true);
+        try {
+            tx.commit();
+            fail();
+        } catch (PermanentStorageException e) {
+        }
+        tx = new IndexTransaction(index);
+        assertEquals(3, getIndex().getUpdateLag());
+        assertEquals(ImmutableSet.of("doc1"), ImmutableSet.copyOf(tx.query(new IndexQuery(STORE, KeyAtom.of("text", Text.CONTAINS, "world")))));
+
+        //and are replayed from the log when the index is opened again
+        clopen();
+        add("doc5", getDocument("Hello world", 1005, 5.2, Geoshape.point(48.0, 0.0)), true);
+        commit();
+        assertEquals(0, getIndex().getUpdateLag());
+        assertEquals(ImmutableSet.of("doc1", "doc2", "doc3", "doc4", "doc5"), ImmutableSet.copyOf(tx.query(new IndexQuery(STORE, KeyAtom.of("text", Text.CONTAINS, "world")))));
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        add("doc1", getDocument("Hello world", 1001, 5.2, Geoshape.point(48.0, 0.0)), true);
+        commit();
+        close();
+
+        //Append mutations to the log which have not been applied, as after a crash
+        IndexMutation mutation = new IndexMutation(true, false);
+        for (Map.Entry<String, Object> kv : getDocument("Tomorrow is the world", 1010, 8.5, Geoshape.point(49.0, 1.0)).entrySet()) {
+            mutation.addition(new IndexEntry(kv.getKey(), kv.getValue()));
+        }
+        Map<String, IndexMutation> docs = ImmutableMap.of("doc2", mutation);
+        String directory = LuceneIndexTest.getLocalLuceneTestConfig().getString(GraphDatabaseConfiguration.STORAGE_DIRECTORY_KEY);
+        IndexUpdateLog log = new IndexUpdateLog(new File(directory + File.separator + "updatelog"));
+        log.append(ImmutableMap.of(STORE, docs));
+
+        long sequence = log.getLastSequence();
+        log.close();
+
+        open();
+        getIndex().awaitApplied(sequence);
+        assertEquals(0, getIndex().getUpdateLag());
+        assertEquals(ImmutableSet.of("doc1", "doc2"), ImmutableSet.copyOf(tx.query(new IndexQuery(STORE, KeyAtom.of("text", Text.CONTAINS, "world")))));
+    }
+
+}
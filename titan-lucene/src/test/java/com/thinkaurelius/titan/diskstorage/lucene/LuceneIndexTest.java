@@ -1,5 +1,6 @@
 package com.thinkaurelius.titan.diskstorage.lucene;
 
+import com.google.common.collect.ImmutableSet;
 import com.thinkaurelius.titan.StorageSetup;
 import com.thinkaurelius.titan.core.attribute.Cmp;
 import com.thinkaurelius.titan.core.attribute.Geo;
@@ -8,13 +9,31 @@ import com.thinkaurelius.titan.core.attribute.Text;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexProvider;
 import com.thinkaurelius.titan.diskstorage.indexing.IndexProviderTest;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexQuery;
+import com.thinkaurelius.titan.diskstorage.indexing.IndexTransaction;
+import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAtom;
 import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.Configuration;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StraightBytesDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
 import org.junit.Test;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
 
 /**
  * (c) Matthias Broecheler (me@matthiasb.com)
@@ -56,4 +75,141 @@ public class LuceneIndexTest extends IndexProviderTest {
         assertFalse(index.supports(Geoshape.class, Geo.DISJOINT));
     }
 
+    @Test
+    public void testConcurrentAsyncCommits() throws Exception {
+        index.close();
+        Configuration config = getLocalLuceneTestConfig();
+        config.setProperty(LuceneIndex.DURABILITY_KEY, "async");
+        config.setProperty(LuceneIndex.COMMIT_INTERVAL_KEY, 50);
+        index = new LuceneIndex(config);
+        tx = new IndexTransaction(index);
+
+        final int numThreads = 4, numDocs = 100;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < numThreads; t++) {
+            final int thread = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < numDocs; i++) {
+                            IndexTransaction itx = new IndexTransaction(index);
+                            itx.add("store", "doc" + thread + "-" + i, "text", "thread" + thread + " document", true);
+                            itx.add("store", "doc" + thread + "-" + i, "time", (long) i, true);
+                            itx.commit();
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        assertNull(failure.get());
+
+        //Committed mutations are visible to queries right away
+        assertEquals(numDocs, tx.query(new IndexQuery("store", KeyAtom.of("text", Text.CONTAINS, "thread1"))).size());
+        tx.add("store", "doc1-0", "time", 1000l, false);
+        tx.commit();
+        tx = new IndexTransaction(index);
+        assertEquals(numThreads - 1, tx.query(new IndexQuery("store", KeyAtom.of("time", Cmp.EQUAL, 0l))).size());
+
+        clopen();
+        assertEquals(numThreads * numDocs, tx.query(new IndexQuery("store", KeyAtom.of("text", Text.CONTAINS, "document"))).size());
+        assertEquals(1, tx.query(new IndexQuery("store", KeyAtom.of("time", Cmp.EQUAL, 1000l))).size());
+    }
+
+    @Test
+    public void testMergedSegmentsWithoutDocValues() throws Exception {
+        close();
+        tx = null;
+        String directory = getLocalLuceneTestConfig().getString(GraphDatabaseConfiguration.STORAGE_DIRECTORY_KEY);
+        IndexWriter writer = new IndexWriter(FSDirectory.open(new File(directory + File.separator + "store")),
+                new IndexWriterConfig(Version.LUCENE_41, new StandardAnalyzer(Version.LUCENE_41)));
+        ImmutableSet.Builder<String> docids = ImmutableSet.builder();
+        //Documents written before the document ids were stored as doc values
+        for (int i = 0; i < 5; i++) {
+            Document doc = new Document();
+            doc.add(new StringField(LuceneIndex.DOCID, "old" + i, Field.Store.YES));
+            doc.add(new TextField("text", "Hello world", Field.Store.YES));
+            writer.addDocument(doc);
+            docids.add("old" + i);
+        }
+        writer.commit();
+        for (int i = 0; i < 5; i++) {
+            Document doc = new Document();
+            doc.add(new StringField(LuceneIndex.DOCID, "new" + i, Field.Store.YES));
+            doc.add(new StraightBytesDocValuesField(LuceneIndex.DOCID, new BytesRef("new" + i), false));
+            doc.add(new TextField("text", "Hello world", Field.Store.YES));
+            writer.addDocument(doc);
+            docids.add("new" + i);
+        }
+        writer.commit();
+        writer.forceMerge(1);
+        writer.close();
+
+        open();
+        assertEquals(docids.build(), ImmutableSet.copyOf(tx.query(new IndexQuery("store", KeyAtom.of("text", Text.CONTAINS, "world")))));
+    }
+
+    @Test
+    public void testPartialUpdates() throws Exception {
+        for (int cacheSize : new int[]{0, 1, LuceneIndex.DOCUMENT_CACHE_SIZE_DEFAULT}) {
+            index.close();
+            Configuration config = getLocalLuceneTestConfig();
+            config.setProperty(LuceneIndex.DOCUMENT_CACHE_SIZE_KEY, cacheSize);
+            index = new LuceneIndex(config);
+            index.clearStorage();
+            tx = new IndexTransaction(index);
+
+            for (String docid : new String[]{"doc1", "doc2"}) {
+                tx.add("store", docid, "text", "Hello world", true);
+                tx.add("store", docid, "time", 1001l, true);
+                tx.add("store", docid, "weight", 5.2, true);
+                tx.add("store", docid, "location", Geoshape.point(48.0, 0.0), true);
+            }
+            tx.commit();
+
+            //Update single fields repeatedly, the remaining fields must be retained
+            for (long time = 1; time <= 10; time++) {
+                tx = new IndexTransaction(index);
+                tx.add("store", "doc1", "time", time, false);
+                tx.add("store", "doc2", "weight", 5.2 + time, false);
+                tx.commit();
+            }
+            tx = new IndexTransaction(index);
+            tx.delete("store", "doc2", "text", false);
+            tx.commit();
+
+            for (int i = 0; i < 2; i++) {
+                tx = new IndexTransaction(index);
+                List<String> result = tx.query(new IndexQuery("store", KeyAtom.of("time", Cmp.EQUAL, 10l)));
+                assertEquals(1, result.size());
+                assertEquals("doc1", result.get(0));
+                assertEquals(1, tx.query(new IndexQuery("store", KeyAtom.of("weight", Cmp.GREATER_THAN, 15.0))).size());
+                assertEquals(1, tx.query(new IndexQuery("store", KeyAtom.of("text", Text.CONTAINS, "world"))).size());
+                assertEquals(2, tx.query(new IndexQuery("store", KeyAtom.of("location", Geo.WITHIN, Geoshape.circle(48.0, 0.0, 10.0)))).size());
+                assertEquals(1, tx.query(new IndexQuery("store", KeyAtom.of("time", Cmp.EQUAL, 1001l))).size());
+                clopen();
+            }
+
+            //New documents replace deleted and existing documents with the same id
+            tx = new IndexTransaction(index);
+            tx.delete("store", "doc2", "weight", true);
+            tx.add("store", "doc1", "time", 20l, false);
+            tx.commit();
+            tx = new IndexTransaction(index);
+            tx.add("store", "doc2", "text", "Hello Bob", true);
+            tx.add("store", "doc1", "text", "Hello Alice", true);
+            tx.commit();
+            tx = new IndexTransaction(index);
+            assertEquals(0, tx.query(new IndexQuery("store", KeyAtom.of("time", Cmp.GREATER_THAN, 0l))).size());
+            assertEquals(0, tx.query(new IndexQuery("store", KeyAtom.of("weight", Cmp.GREATER_THAN, 0.0))).size());
+            assertEquals(1, tx.query(new IndexQuery("store", KeyAtom.of("text", Text.CONTAINS, "bob"))).size());
+            assertEquals(0, tx.query(new IndexQuery("store", KeyAtom.of("text", Text.CONTAINS, "world"))).size());
+        }
+    }
+
 }
@@ -251,13 +251,52 @@ public abstract class KeyColumnValueStoreTest {
         }
     }
 
+    @Test
+    public void splitScanTest() throws StorageException {
+        if (manager.getFeatures().supportsScan()) {
+            String[][] values = generateValues();
+            loadValues(values);
+            Set<Integer> deletedKeys = deleteKeys(11);
+            clopen();
+            List<KeySplit> splits = store.getKeySplits(8, tx);
+            Assert.assertFalse(splits.isEmpty());
+            int start = 3, end = 17, limit = 5;
+            int[] keyCounts = new int[numKeys];
+            int[] sliceCounts = new int[numKeys];
+            for (KeySplit split : splits) {
+                KeyIterator iterator = store.getKeys(split, null, tx);
+                while (iterator.hasNext()) {
+                    keyCounts[KeyValueStoreUtil.getID(iterator.next())]++;
+                    Assert.assertTrue(iterator.getEntries().isEmpty());
+                }
+                iterator.close();
+
+                iterator = store.getKeys(split, new SliceQuery(KeyValueStoreUtil.getBuffer(start), KeyValueStoreUtil.getBuffer(end), limit), tx);
+                while (iterator.hasNext()) {
+                    int key = KeyValueStoreUtil.getID(iterator.next());
+                    sliceCounts[key]++;
+                    checkSliceEntries(values, new HashSet<KeyColumn>(), key, start, end, limit, iterator.getEntries());
+                }
+                iterator.close();
+            }
+            for (int i = 0; i < numKeys; i++) {
+                int expected = deletedKeys.contains(i) ? 0 : 1;
+                Assert.assertEquals(expected, keyCounts[i]);
+                Assert.assertEquals(expected, sliceCounts[i]);
+            }
+        }
+    }
+
     public void checkSlice(String[][] values, Set<KeyColumn> removed, int key, int start, int end, int limit) throws StorageException {
         List<Entry> entries;
         if (limit <= 0)
             entries = store.getSlice(new KeySliceQuery(KeyValueStoreUtil.getBuffer(key), KeyValueStoreUtil.getBuffer(start), KeyValueStoreUtil.getBuffer(end)), tx);
         else
             entries = store.getSlice(new KeySliceQuery(KeyValueStoreUtil.getBuffer(key), KeyValueStoreUtil.getBuffer(start), KeyValueStoreUtil.getBuffer(end), limit), tx);
+        checkSliceEntries(values, removed, key, start, end, limit, entries);
+    }
 
+    public void checkSliceEntries(String[][] values, Set<KeyColumn> removed, int key, int start, int end, int limit, List<Entry> entries) {
         int pos = 0;
         for (int i = start; i < end; i++) {
             if (removed.contains(new KeyColumn(key, i))) continue;
@@ -296,6 +335,40 @@ public abstract class KeyColumnValueStoreTest {
 
     }
 
+    @Test
+    public void multiQueryTest() throws StorageException {
+        String[][] values = generateValues();
+        loadValues(values);
+        Set<Integer> removedKeys = deleteKeys(11);
+        Set<KeyColumn> deleted = new HashSet<KeyColumn>();
+        clopen();
+        int trails = 500;
+        for (int t = 0; t < trails; t++) {
+            int numQueryKeys = RandomGenerator.randomInt(1, 20);
+            List<Integer> keys = new ArrayList<Integer>(numQueryKeys);
+            List<ByteBuffer> keyBuffers = new ArrayList<ByteBuffer>(numQueryKeys);
+            for (int k = 0; k < numQueryKeys; k++) {
+                keys.add(RandomGenerator.randomInt(0, numKeys));
+                keyBuffers.add(KeyValueStoreUtil.getBuffer(keys.get(k)));
+            }
+            //Keys which do not exist yield empty slices
+            keyBuffers.add(KeyValueStoreUtil.getBuffer(numKeys + t));
+            int start = RandomGenerator.randomInt(0, numColumns);
+            int end = RandomGenerator.randomInt(start, numColumns);
+            int limit = RandomGenerator.randomInt(1, 30);
+            SliceQuery query = t % 2 == 0 ? new SliceQuery(KeyValueStoreUtil.getBuffer(start), KeyValueStoreUtil.getBuffer(end), limit)
+                    : new SliceQuery(KeyValueStoreUtil.getBuffer(start), KeyValueStoreUtil.getBuffer(end));
+            List<List<Entry>> results = store.getSlice(keyBuffers, query, tx);
+            Assert.assertEquals(numQueryKeys + 1, results.size());
+            for (int k = 0; k < numQueryKeys; k++) {
+                int key = keys.get(k);
+                if (removedKeys.contains(key)) Assert.assertEquals(0, results.get(k).size());
+                else checkSliceEntries(values, deleted, key, start, end, t % 2 == 0 ? limit : -1, results.get(k));
+            }
+            Assert.assertEquals(0, results.get(numQueryKeys).size());
+        }
+    }
+
 
     @Test
     public void getNonExistentKeyReturnsNull() throws Exception {
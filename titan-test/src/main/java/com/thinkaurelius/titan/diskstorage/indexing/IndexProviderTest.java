@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.thinkaurelius.titan.core.attribute.*;
 import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.RecordIterator;
 import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAnd;
 import com.thinkaurelius.titan.graphdb.query.keycondition.KeyAtom;
 import com.thinkaurelius.titan.testutil.RandomGenerator;
@@ -14,11 +15,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * (c) Matthias Broecheler (me@matthiasb.com)
@@ -187,6 +191,32 @@ public abstract class IndexProviderTest {
         assertEquals(oldresultSize,result.size());
     }
 
+    @Test
+    public void pagedQueryTest() throws Exception {
+        int numDoc = 2500;
+        String store = "store";
+        initialize(store);
+        for (int i=1;i<=numDoc;i++) {
+            add(store,"doc"+i,getDocument("Hello world",i,1.0,Geoshape.point(48.0,0.0)),true);
+        }
+        clopen();
+
+        IndexQuery query = new IndexQuery(store, KeyAtom.of("time", Cmp.GREATER_THAN_EQUAL, 1l));
+        List<String> result = tx.query(query);
+        assertEquals(numDoc,result.size());
+        assertEquals(numDoc,new HashSet<String>(result).size());
+        for (int i=1;i<=numDoc;i++) assertTrue(result.contains("doc"+i));
+
+        result = tx.query(new IndexQuery(store, KeyAtom.of("time", Cmp.GREATER_THAN_EQUAL, 1l), 1500));
+        assertEquals(1500,result.size());
+        assertEquals(1500,new HashSet<String>(result).size());
+
+        //Partially consumed iterators can be closed
+        RecordIterator<String> iter = tx.iterate(query);
+        for (int i=0;i<10;i++) assertNotNull(iter.next());
+        iter.close();
+    }
+
     private void initialize(String store) throws StorageException {
         if (index.supports(String.class)) index.register(store,"text",String.class,tx);
         if (index.supports(Long.class)) index.register(store,"time",Long.class,tx);
@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.diskstorage.keycolumnvalue.*;
+import com.thinkaurelius.titan.diskstorage.util.KCVSUtil;
 import org.apache.commons.configuration.Configuration;
 
 import java.nio.ByteBuffer;
@@ -34,6 +35,11 @@ public class InMemoryStorageAdapter implements KeyColumnValueStoreManager {
                 return ImmutableList.of();
             }
 
+            @Override
+            public List<List<Entry>> getSlice(List<ByteBuffer> keys, SliceQuery query, StoreTransaction txh) throws StorageException {
+                return KCVSUtil.getSlice(this, keys, query, txh);
+            }
+
             @Override
             public ByteBuffer get(ByteBuffer key, ByteBuffer column, StoreTransaction txh) throws StorageException {
                 return null;
@@ -74,6 +80,16 @@ public class InMemoryStorageAdapter implements KeyColumnValueStoreManager {
                 };
             }
 
+            @Override
+            public List<KeySplit> getKeySplits(int numSplits, StoreTransaction txh) throws StorageException {
+                return ImmutableList.of(KeySplit.all());
+            }
+
+            @Override
+            public KeyIterator getKeys(KeySplit split, SliceQuery slice, StoreTransaction txh) throws StorageException {
+                return new SliceKeyIterator(getKeys(txh), split, slice, this, txh);
+            }
+
             @Override
             public ByteBuffer[] getLocalKeyPartition() throws StorageException {
                 throw new UnsupportedOperationException();
@@ -135,6 +151,7 @@ public class InMemoryStorageAdapter implements KeyColumnValueStoreManager {
     public StoreFeatures getFeatures() {
         StoreFeatures f = new StoreFeatures();
         f.supportsScan=true;
+        f.supportsMultiQuery=false;
         f.supportsBatchMutation=true;
 
         f.supportsTransactions=true;
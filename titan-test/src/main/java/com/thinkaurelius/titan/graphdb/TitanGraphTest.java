@@ -1,12 +1,37 @@
 package com.thinkaurelius.titan.graphdb;
 
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.thinkaurelius.titan.core.*;
+import com.thinkaurelius.titan.core.attribute.Cmp;
+import com.thinkaurelius.titan.core.attribute.Geo;
+import com.thinkaurelius.titan.core.attribute.Geoshape;
+import com.thinkaurelius.titan.diskstorage.Backend;
+import com.thinkaurelius.titan.diskstorage.BackendTransaction;
+import com.thinkaurelius.titan.diskstorage.StorageException;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.Entry;
+import com.thinkaurelius.titan.diskstorage.keycolumnvalue.SliceQuery;
 import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
+import com.thinkaurelius.titan.graphdb.database.EdgeSerializer;
+import com.thinkaurelius.titan.graphdb.database.IndexQueryCache;
+import com.thinkaurelius.titan.graphdb.database.IndexSerializer;
+import com.thinkaurelius.titan.graphdb.database.LookupFilter;
+import com.thinkaurelius.titan.graphdb.database.RelationDecoder;
+import com.thinkaurelius.titan.graphdb.database.serialize.SerializerInitialization;
+import com.thinkaurelius.titan.graphdb.internal.InternalRelation;
 import com.thinkaurelius.titan.graphdb.internal.InternalType;
+import com.thinkaurelius.titan.graphdb.olap.IndexRebuildJob;
+import com.thinkaurelius.titan.graphdb.olap.MessageCombiner;
+import com.thinkaurelius.titan.graphdb.olap.VertexContext;
+import com.thinkaurelius.titan.graphdb.olap.VertexProgram;
+import com.thinkaurelius.titan.graphdb.olap.VertexProgramExecutor;
+import com.thinkaurelius.titan.graphdb.olap.VertexProgramResult;
 import com.thinkaurelius.titan.graphdb.serializer.SpecialInt;
 import com.thinkaurelius.titan.graphdb.serializer.SpecialIntSerializer;
+import com.thinkaurelius.titan.graphdb.transaction.StandardTitanTx;
+import com.thinkaurelius.titan.util.datastructures.ImmutableLongObjectMap;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Query;
@@ -16,6 +41,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -56,6 +82,626 @@ public abstract class TitanGraphTest extends TitanGraphTestCommon {
         assertEquals(10.5, n1.getProperty(weight));
     }
 
+    @Test
+    public void testValueCompression() {
+        config.subset(GraphDatabaseConfiguration.ATTRIBUTE_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.ATTRIBUTE_COMPRESSION_THRESHOLD_KEY, 64);
+        recreate();
+
+        TitanKey text = tx.makeType().name("text").unique(Direction.OUT).dataType(String.class).makePropertyKey();
+        TitanKey tags = tx.makeType().name("tags").dataType(String.class).makePropertyKey();
+        TitanKey blob = tx.makeType().name("blob").unique(Direction.OUT).dataType(byte[].class).makePropertyKey();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) sb.append("lorem ipsum ").append(i % 7).append(' ');
+        String large = sb.toString();
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) (i % 10);
+
+        TitanVertex v = tx.addVertex();
+        v.setProperty(text, large);
+        v.addProperty(tags, "short");
+        v.addProperty(tags, large + "!");
+        v.setProperty(blob, bytes);
+        TitanVertex w = tx.addVertex();
+        w.setProperty(text, "tiny");
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        w = tx.getVertex(w.getID());
+        assertEquals(large, v.getProperty(text));
+        assertEquals("tiny", w.getProperty(text));
+        assertTrue(Arrays.equals(bytes, (byte[]) v.getProperty(blob)));
+        Set<Object> values = new HashSet<Object>();
+        for (TitanProperty p : v.getProperties(tags)) values.add(p.getValue());
+        assertEquals(ImmutableSet.of("short", large + "!"), values);
+    }
+
+    @Test
+    public void testFixedStorageSettings() {
+        tx.addVertex();
+        close();
+        assertFixedStorageSetting(GraphDatabaseConfiguration.ATTRIBUTE_NAMESPACE,
+                GraphDatabaseConfiguration.ATTRIBUTE_COMPRESSION_THRESHOLD_KEY, 64);
+        assertFixedStorageSetting(GraphDatabaseConfiguration.STORAGE_NAMESPACE,
+                GraphDatabaseConfiguration.STORAGE_PACKED_PROPERTIES_KEY, true);
+        assertFixedStorageSetting(GraphDatabaseConfiguration.STORAGE_NAMESPACE,
+                GraphDatabaseConfiguration.STORAGE_GEOHASH_PRECISION_KEY, 4);
+
+        //Only whether compression is enabled is fixed, not the threshold
+        Configuration attributes = config.subset(GraphDatabaseConfiguration.ATTRIBUTE_NAMESPACE);
+        attributes.setProperty(GraphDatabaseConfiguration.ATTRIBUTE_COMPRESSION_THRESHOLD_KEY, 64);
+        recreate();
+        close();
+        attributes.setProperty(GraphDatabaseConfiguration.ATTRIBUTE_COMPRESSION_THRESHOLD_KEY, 128);
+        open();
+        close();
+        assertFixedStorageSetting(GraphDatabaseConfiguration.ATTRIBUTE_NAMESPACE,
+                GraphDatabaseConfiguration.ATTRIBUTE_COMPRESSION_THRESHOLD_KEY, 0);
+        open();
+    }
+
+    /**
+     * Asserts that the closed graph cannot be opened with a different value for the given option
+     */
+    private void assertFixedStorageSetting(String namespace, String key, Object value) {
+        Configuration options = config.subset(namespace);
+        Object original = options.getProperty(key);
+        options.setProperty(key, value);
+        try {
+            open();
+            fail("Opened graph with modified option: " + key);
+        } catch (TitanException e) {
+        } finally {
+            if (original == null) options.clearProperty(key);
+            else options.setProperty(key, original);
+        }
+    }
+
+    @Test
+    public void testPrimitiveArrays() {
+        TitanKey embedding = tx.makeType().name("embedding").unique(Direction.OUT).dataType(double[].class).makePropertyKey();
+        TitanKey series = tx.makeType().name("series").unique(Direction.OUT).dataType(long[].class).makePropertyKey();
+        TitanKey samples = tx.makeType().name("samples").dataType(float[].class).makePropertyKey();
+
+        double[] e = {0.25, -1.5, Math.PI, 1e-12};
+        long[] s = {1368139811000L, 1368139812000L, -1L};
+        TitanVertex v = tx.addVertex();
+        v.setProperty(embedding, e);
+        v.setProperty(series, s);
+        v.addProperty(samples, new float[]{1.5f, -0.125f});
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        assertArrayEquals(e, (double[]) v.getProperty(embedding), 0.0);
+        assertArrayEquals(s, (long[]) v.getProperty(series));
+        assertArrayEquals(new float[]{1.5f, -0.125f}, (float[]) v.getProperties(samples).iterator().next().getValue(), 0.0f);
+    }
+
+    /**
+     * Opens a graph on storage which has been initialized without a serialization format, as by Titan versions which
+     * did not persist it, and checks that the graph reads and writes the legacy format.
+     */
+    @Test
+    public void testLegacySerializationFormat() throws StorageException {
+        close();
+        GraphDatabaseConfiguration graphconfig = new GraphDatabaseConfiguration(config);
+        graphconfig.getBackend().clearStorage();
+        graphconfig.getBackend().close();
+        open();
+        TitanKey since = tx.makeType().name("since").unique(Direction.OUT).dataType(Date.class).makePropertyKey();
+        TitanKey weight = tx.makeType().name("weight").unique(Direction.OUT).dataType(Double.class).makePropertyKey();
+        TitanKey name = tx.makeType().name("name").unique(Direction.OUT).dataType(String.class).makePropertyKey();
+        TitanKey ratio = tx.makeType().name("ratio").unique(Direction.OUT).dataType(Float.class).makePropertyKey();
+        tx.makeType().name("bySince").primaryKey(since).makeEdgeLabel();
+        tx.makeType().name("byWeight").primaryKey(weight).makeEdgeLabel();
+        tx.makeType().name("byRatio").primaryKey(ratio).makeEdgeLabel();
+        long now = 1368139811000L;
+        TitanVertex v = tx.addVertex();
+        v.setProperty(weight, 0.5);
+        v.setProperty(name, "v");
+        for (int i = 0; i < 5; i++) {
+            v.addEdge("bySince", tx.addVertex()).setProperty(since, new Date(now + (i - 2) * 86400000L));
+            v.addEdge("byWeight", tx.addVertex()).setProperty(weight, (i - 2) * 0.75);
+            v.addEdge("byRatio", tx.addVertex()).setProperty(ratio, (i - 2) * 0.5f);
+        }
+        close();
+        Backend backend = graphconfig.getBackend();
+        assertEquals(String.valueOf(SerializerInitialization.LEGACY_FORMAT), backend.getConfigurationProperty(
+                GraphDatabaseConfiguration.keyInNamespace(GraphDatabaseConfiguration.ATTRIBUTE_NAMESPACE, GraphDatabaseConfiguration.ATTRIBUTE_FORMAT_KEY)));
+        backend.close();
+        open();
+
+        v = tx.getVertex(v.getID());
+        assertEquals(0.5, v.getProperty("weight"));
+        assertEquals("v", v.getProperty("name"));
+        //Dates are stored in descending order, hence the range constraint is filtered in memory
+        assertEquals(2, v.query().labels("bySince").direction(OUT).interval("since", new Date(now), new Date(now + 2 * 86400000L)).count());
+        assertEquals(5, v.query().labels("bySince").direction(OUT).count());
+        //Fixed-point doubles and floats preserve the order, hence the range constraints are answered by slices
+        assertEquals(3, v.query().labels("byWeight").direction(OUT).interval("weight", -1.0, 1.0).count());
+        assertEquals(3, v.query().labels("byRatio").direction(OUT).interval("ratio", -0.75f, 0.75f).count());
+    }
+
+    @Test
+    public void testOrderedPrimaryKeys() {
+        TitanKey name = tx.makeType().name("name").unique(Direction.OUT).dataType(String.class).makePropertyKey();
+        TitanKey score = tx.makeType().name("score").unique(Direction.OUT).dataType(Double.class).makePropertyKey();
+        TitanKey since = tx.makeType().name("since").unique(Direction.OUT).dataType(Date.class).makePropertyKey();
+        tx.makeType().name("byName").primaryKey(name).makeEdgeLabel();
+        tx.makeType().name("byScore").primaryKey(score).makeEdgeLabel();
+        tx.makeType().name("bySince").primaryKey(since).makeEdgeLabel();
+
+        String[] names = {"", "a", "ab", "abc", "b", "Zoe", "\u00e9t\u00e9", "\u4e2d\u6587"};
+        double[] scores = {-1e10, -2.5, -0.001, 0.0, 0.0001, 0.25, 3.75, 1e10};
+        long now = 1368139811000L;
+        TitanVertex v = tx.addVertex();
+        for (int i = 0; i < names.length; i++) {
+            TitanVertex u = tx.addVertex();
+            v.addEdge("byName", u).setProperty(name, names[i]);
+            v.addEdge("byScore", u).setProperty(score, scores[i]);
+            v.addEdge("bySince", u).setProperty(since, new Date(now + (i - 4) * 86400000L));
+        }
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        assertEquals(3, v.query().labels("byName").direction(OUT).interval("name", "a", "b").count());
+        assertEquals(2, v.query().labels("byName").direction(OUT).interval("name", "ab", "b").count());
+        assertEquals(3, v.query().labels("byName").direction(OUT).interval("name", "b", "\uffff").count());
+        assertEquals(1, v.query().labels("byName").direction(OUT).interval("name", "Z", "a").count());
+        assertEquals(3, v.query().labels("byScore").direction(OUT).interval("score", -1e11, 0.0).count());
+        assertEquals(3, v.query().labels("byScore").direction(OUT).interval("score", 0.0, 1.0).count());
+        assertEquals(1, v.query().labels("byScore").direction(OUT).interval("score", 0.00005, 0.00015).count());
+        assertEquals(4, v.query().labels("bySince").direction(OUT).interval("since", new Date(now - 4 * 86400000L), new Date(now)).count());
+        assertEquals(2, v.query().labels("bySince").direction(OUT).has("since", new Date(now), Query.Compare.GREATER_THAN_EQUAL)
+                .has("since", new Date(now + 2 * 86400000L), Query.Compare.LESS_THAN).count());
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(1, v.query().labels("byName").direction(OUT).has("name", names[i]).count());
+            assertEquals(1, v.query().labels("byScore").direction(OUT).has("score", scores[i]).count());
+        }
+    }
+
+    @Test
+    public void testIndexQueryCache() {
+        config.subset(GraphDatabaseConfiguration.QUERY_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.QUERY_INDEX_CACHE_SIZE_KEY, 1000);
+        close();
+        open();
+        IndexQueryCache cache = graph.getIndexQueryCache();
+        assertNotNull(cache);
+
+        TitanKey name = tx.makeType().name("name").unique(Direction.OUT).indexed(Vertex.class).dataType(String.class).makePropertyKey();
+        TitanKey age = tx.makeType().name("age").unique(Direction.OUT).dataType(Integer.class).makePropertyKey();
+        TitanVertex v = tx.addVertex();
+        v.setProperty(name, "marko");
+        tx.addVertex().setProperty(name, "josh");
+        newTx();
+
+        //Type lookups bypass the cache
+        assertEquals(0, cache.size());
+        assertEquals(1, Iterables.size(tx.getVertices("name", "marko")));
+        assertEquals(1, cache.size());
+        long misses = cache.getStats().missCount();
+        newTx();
+        assertEquals(1, Iterables.size(tx.getVertices("name", "marko")));
+        assertEquals(1, cache.getStats().hitCount());
+        assertEquals(misses, cache.getStats().missCount());
+
+        //Changes to keys which are not indexed leave the cache intact
+        tx.getVertex(v.getID()).setProperty(age, 29);
+        newTx();
+        misses = cache.getStats().missCount();
+        assertEquals(1, Iterables.size(tx.getVertices("name", "marko")));
+        assertEquals(misses, cache.getStats().missCount());
+
+        //Changes to the queried key invalidate the cached results
+        tx.addVertex().setProperty(name, "marko");
+        newTx();
+        assertEquals(2, Iterables.size(tx.getVertices("name", "marko")));
+        assertTrue(cache.getStats().missCount() > misses);
+        tx.getVertex(v.getID()).removeProperty(name);
+        newTx();
+        assertEquals(1, Iterables.size(tx.getVertices("name", "marko")));
+        assertEquals(1, Iterables.size(tx.getVertices("name", "josh")));
+        tx.getVertex(v.getID()).remove();
+        newTx();
+        assertEquals(1, Iterables.size(tx.getVertices("name", "marko")));
+    }
+
+    @Test
+    public void testGeohashIndex() {
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.STORAGE_GEOHASH_PRECISION_KEY, 6);
+        recreate();
+
+        TitanKey location = tx.makeType().name("location").unique(Direction.OUT).indexed(Vertex.class)
+                .indexed(Edge.class).dataType(Geoshape.class).makePropertyKey();
+        TitanKey name = tx.makeType().name("name").unique(Direction.OUT).indexed(Vertex.class).dataType(String.class).makePropertyKey();
+        TitanLabel near = tx.makeType().name("near").makeEdgeLabel();
+        int numV = 100;
+        Geoshape[] points = new Geoshape[numV];
+        TitanVertex previous = null;
+        for (int i = 0; i < numV; i++) {
+            points[i] = Geoshape.point(48.0 + 0.001 * i, 2.0 - 0.002 * i);
+            TitanVertex v = tx.addVertex();
+            v.setProperty(location, points[i]);
+            v.setProperty(name, "v" + i);
+            if (previous != null) previous.addEdge(near, v).setProperty(location, points[i]);
+            previous = v;
+        }
+        //Shapes other than points are candidates for every query
+        Geoshape area = Geoshape.box(47.99, 1.99, 48.01, 2.01);
+        tx.addVertex().setProperty(location, area);
+        tx.addVertex().setProperty(location, Geoshape.box(10.0, 10.0, 11.0, 11.0));
+        newTx();
+
+        for (double radius : new double[]{0.5, 2, 8, 30}) {
+            Geoshape circle = Geoshape.circle(48.0, 2.0, radius);
+            int expected = 0;
+            for (Geoshape point : points) if (point.within(circle)) expected++;
+            //The first point is the center of the circle and not located on an edge
+            assertEquals(expected - 1, Iterables.size(tx.query().has("location", Geo.WITHIN, circle).edges()));
+            if (area.within(circle)) expected++;
+            assertEquals(expected, Iterables.size(tx.query().has("location", Geo.WITHIN, circle).vertices()));
+        }
+        Geoshape box = Geoshape.box(48.0095, 1.0, 48.0305, 3.0);
+        assertEquals(21, Iterables.size(tx.query().has("location", Geo.WITHIN, box).vertices()));
+        //The limit applies to the filtered candidates
+        assertEquals(5, Iterables.size(tx.query().has("location", Geo.WITHIN, box).limit(5).vertices()));
+        assertEquals(1, Iterables.size(tx.query().has("location", Geo.WITHIN, box).has("name", "v15").vertices()));
+        assertEquals(0, Iterables.size(tx.query().has("location", Geo.WITHIN, box).has("name", "v50").vertices()));
+        assertEquals(1, Iterables.size(tx.getVertices("location", points[15])));
+
+        //Removed and updated points leave their buckets
+        Iterables.getOnlyElement(tx.getVertices(name, "v15")).removeProperty(location);
+        Iterables.getOnlyElement(tx.getVertices(name, "v16")).setProperty(location, Geoshape.point(10.0, 10.0));
+        newTx();
+        assertEquals(19, Iterables.size(tx.query().has("location", Geo.WITHIN, box).vertices()));
+        assertEquals(2, Iterables.size(tx.query().has("location", Geo.WITHIN, Geoshape.circle(10.5, 10.5, 200)).vertices()));
+
+        //Vertices with multiple values in the covering buckets are returned once
+        TitanKey visited = tx.makeType().name("visited").indexed(Vertex.class).dataType(Geoshape.class).makePropertyKey();
+        TitanVertex v = tx.addVertex();
+        v.addProperty(visited, Geoshape.point(30.0, 30.0));
+        v.addProperty(visited, Geoshape.point(30.5, 30.5));
+        v.addProperty(visited, Geoshape.point(30.6, 30.6));
+        v.addProperty(visited, Geoshape.box(30.1, 30.1, 30.2, 30.2));
+        tx.addVertex().addProperty(visited, Geoshape.point(30.3, 30.3));
+        newTx();
+        assertEquals(2, Iterables.size(tx.query().has("visited", Geo.WITHIN, Geoshape.box(29.0, 29.0, 31.0, 31.0)).vertices()));
+        assertEquals(1, Iterables.size(tx.query().has("visited", Geo.WITHIN, Geoshape.box(29.0, 29.0, 30.4, 30.4)).limit(1).vertices()));
+    }
+
+    @Test
+    public void testLookupFilter() {
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.STORAGE_LOOKUP_FILTER_SIZE_KEY, 1000);
+        close();
+        open();
+        assertNotNull(graph.getLookupFilter());
+
+        //Non-unique entries in the same vertex index rows as the unique values, which the rebuild skips over
+        TitanKey tag = tx.makeType().name("tag").indexed(Vertex.class).dataType(String.class).makePropertyKey();
+        TitanKey uid = tx.makeType().name("uid").unique(Direction.OUT).unique(Direction.IN).indexed(Vertex.class)
+                .dataType(String.class).makePropertyKey();
+        int numV = 50;
+        long[] ids = new long[numV];
+        for (int i = 0; i < numV; i++) {
+            TitanVertex v = tx.addVertex();
+            v.setProperty(uid, "u" + i);
+            ids[i] = v.getID();
+            tx.addVertex().addProperty(tag, "u" + (i % 2));
+        }
+        newTx();
+        verifyLookupFilter(numV, ids);
+
+        //Existing values still fail the uniqueness check
+        try {
+            tx.addVertex().setProperty("uid", "u1");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        tx.rollback();
+        tx = null;
+
+        //Reopened from the saved snapshot and rebuilt from storage for a different size, respectively
+        clopen();
+        verifyLookupFilter(numV, ids);
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.STORAGE_LOOKUP_FILTER_SIZE_KEY, 2000);
+        clopen();
+        verifyLookupFilter(numV, ids);
+
+        //Opening the graph without the filter discards the snapshot, which misses the modifications made meanwhile
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.STORAGE_LOOKUP_FILTER_SIZE_KEY, 0);
+        clopen();
+        tx.addVertex().setProperty("uid", "late");
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.STORAGE_LOOKUP_FILTER_SIZE_KEY, 2000);
+        clopen();
+        verifyLookupFilter(numV, ids);
+        assertNotNull(tx.getVertex(tx.getPropertyKey("uid"), "late"));
+    }
+
+    private void verifyLookupFilter(int numV, long[] ids) {
+        LookupFilter filter = graph.getLookupFilter();
+        TitanKey uid = tx.getPropertyKey("uid");
+        for (int i = 0; i < numV; i++) {
+            assertTrue(filter.mightContainValue(uid, "u" + i));
+            assertTrue(filter.mightContainVertex(ids[i]));
+            assertEquals(ids[i], tx.getVertex(uid, "u" + i).getID());
+            assertTrue(tx.containsVertex(ids[i]));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (filter.mightContainValue(uid, "x" + i)) falsePositives++;
+            assertNull(tx.getVertex(uid, "x" + i));
+        }
+        assertTrue(falsePositives < 100);
+        assertFalse(tx.containsVertex(ids[numV - 1] + 1000000));
+    }
+
+    @Test
+    public void testCoveringIndex() {
+        TitanKey name = tx.makeType().name("name").unique(Direction.OUT).dataType(String.class).makePropertyKey();
+        TitanKey age = tx.makeType().name("age").unique(Direction.OUT).dataType(Integer.class).makePropertyKey();
+        TitanKey tags = tx.makeType().name("tags").dataType(String.class).makePropertyKey();
+        try {
+            tx.makeType().name("invalid1").unique(Direction.OUT).dataType(String.class).include(age).makePropertyKey();
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            tx.makeType().name("invalid2").unique(Direction.OUT).indexed(Vertex.class).dataType(String.class)
+                    .include(tags).makePropertyKey();
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            tx.makeType().name("invalid3").unique(Direction.BOTH).indexed(Vertex.class).dataType(String.class)
+                    .include(age).makePropertyKey();
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        TitanKey city = tx.makeType().name("city").unique(Direction.OUT).indexed(Vertex.class).dataType(String.class)
+                .include(name, age).makePropertyKey();
+
+        int numV = 20;
+        long[] ids = new long[numV];
+        for (int i = 0; i < numV; i++) {
+            TitanVertex v = tx.addVertex();
+            v.setProperty(city, "c" + (i % 2));
+            v.setProperty(age, i);
+            if (i % 4 == 0) v.setProperty(name, "v" + i);
+            ids[i] = v.getID();
+        }
+        clopen();
+        assertArrayEquals(new long[]{name.getID(), age.getID()}, IndexSerializer.getIncludedKeys(tx.getPropertyKey("city")));
+        assertEquals(0, IndexSerializer.getIncludedKeys(tx.getPropertyKey("tags")).length);
+
+        //Answered from the index entries
+        assertEquals(5, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("age", Cmp.GREATER_THAN_EQUAL, 10).vertices()));
+        for (Vertex v : tx.query().has("city", Cmp.EQUAL, "c0").vertices()) {
+            assertNotNull(((StandardTitanTx) tx).getIndexedVertex(((TitanVertex) v).getID()));
+        }
+        int withName = 0;
+        for (Map<String, Object> values : tx.query().has("city", Cmp.EQUAL, "c0").values("name", "age", "tags")) {
+            int a = (Integer) values.get("age");
+            assertEquals(0, a % 2);
+            if (a % 4 == 0) {
+                assertEquals("v" + a, values.get("name"));
+                withName++;
+            } else assertFalse(values.containsKey("name"));
+            assertTrue(((Collection) values.get("tags")).isEmpty());
+        }
+        assertEquals(5, withName);
+
+        //Modifications of included keys rewrite the index entries
+        tx.getVertex(ids[10]).setProperty(age, 100);
+        tx.getVertex(ids[12]).setProperty(name, "renamed");
+        tx.getVertex(ids[8]).removeProperty(name);
+        //and are observed by the transaction before commit
+        assertEquals(1, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("age", Cmp.EQUAL, 100).vertices()));
+        assertEquals(1, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("name", Cmp.EQUAL, "renamed").vertices()));
+        clopen();
+        assertEquals(1, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("age", Cmp.EQUAL, 100).vertices()));
+        assertEquals(0, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("age", Cmp.EQUAL, 10).vertices()));
+        assertEquals(1, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("name", Cmp.EQUAL, "renamed").vertices()));
+        assertEquals(0, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("name", Cmp.EQUAL, "v8").vertices()));
+        assertEquals(4, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("name", Cmp.NOT_EQUAL, (Object) null).vertices()));
+
+        //Entries are written with the current values when the indexed property changes
+        tx.getVertex(ids[1]).setProperty(city, "c0");
+        clopen();
+        assertEquals(11, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").vertices()));
+        assertEquals(1, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("age", Cmp.EQUAL, 1).vertices()));
+    }
+
+    @Test
+    public void testCoveringIndexOfOtherInstance() {
+        makeStringPropertyKey("name");
+        newTx();
+        //The first key including other keys is created by an instance opened after this one
+        TitanGraph graph2 = TitanFactory.open(config);
+        long vid;
+        try {
+            TitanTransaction tx2 = graph2.newTransaction();
+            TitanKey city = tx2.makeType().name("city").unique(Direction.OUT).indexed(Vertex.class)
+                    .dataType(String.class).include(tx2.getPropertyKey("name")).makePropertyKey();
+            TitanVertex v = tx2.addVertex();
+            v.setProperty(city, "c0");
+            v.setProperty("name", "v0");
+            tx2.commit();
+            vid = v.getID();
+        } finally {
+            graph2.shutdown();
+        }
+        newTx();
+
+        tx.getVertex(vid).setProperty("name", "renamed");
+        newTx();
+        assertEquals(1, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("name", Cmp.EQUAL, "renamed").vertices()));
+        assertEquals(0, Iterables.size(tx.query().has("city", Cmp.EQUAL, "c0").has("name", Cmp.EQUAL, "v0").vertices()));
+    }
+
+    @Test
+    public void testPackedProperties() {
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.STORAGE_PACKED_PROPERTIES_KEY, true);
+        recreate();
+
+        TitanKey name = tx.makeType().name("name").unique(Direction.OUT).indexed(Vertex.class).dataType(String.class).makePropertyKey();
+        TitanKey age = tx.makeType().name("age").unique(Direction.OUT).dataType(Integer.class).makePropertyKey();
+        TitanKey tags = tx.makeType().name("tags").dataType(String.class).makePropertyKey();
+        TitanLabel knows = tx.makeType().name("knows").makeEdgeLabel();
+
+        TitanVertex v = tx.addVertex();
+        v.setProperty(name, "marko");
+        v.setProperty(age, 29);
+        v.addProperty(tags, "a");
+        v.addProperty(tags, "b");
+        TitanVertex w = tx.addVertex();
+        w.setProperty(name, "josh");
+        v.addEdge(knows, w);
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        assertEquals("marko", v.getProperty(name));
+        assertEquals(29, v.getProperty(age));
+        assertEquals(2, Iterables.size(v.getProperties(tags)));
+        assertEquals(4, Iterables.size(v.getProperties()));
+        assertEquals(1, Iterables.size(v.getEdges(Direction.OUT, "knows")));
+        assertEquals(v, Iterables.getOnlyElement(tx.getVertices(name, "marko")));
+
+        v.setProperty(age, 30);
+        v.removeProperty(name);
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        assertNull(v.getProperty(name));
+        assertEquals(30, v.getProperty(age));
+        assertEquals(3, Iterables.size(v.getProperties()));
+        assertTrue(Iterables.isEmpty(tx.getVertices(name, "marko")));
+        w = tx.getVertex(w.getID());
+        assertEquals("josh", w.getProperty(name));
+
+        v.removeProperty(age);
+        v.setProperty(name, "marko");
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        assertEquals("marko", v.getProperty(name));
+        assertNull(v.getProperty(age));
+        assertEquals(3, Iterables.size(v.getProperties()));
+
+        v.removeProperty(name);
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        assertNull(v.getProperty(name));
+        assertEquals(2, Iterables.size(v.getProperties()));
+    }
+
+    @Test
+    public void testCompactAdjacency() {
+        TitanLabel follows = tx.makeType().name("follows").compact().makeEdgeLabel();
+        TitanLabel likes = tx.makeType().name("likes").compact().unidirected().makeEdgeLabel();
+        try {
+            tx.makeType().name("knows").compact().unique(Direction.OUT).makeEdgeLabel();
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        int numV = 600;
+        TitanVertex v = tx.addVertex();
+        TitanVertex[] others = new TitanVertex[numV];
+        for (int i = 0; i < numV; i++) {
+            others[i] = tx.addVertex();
+            v.addEdge(follows, others[i]);
+        }
+        v.addEdge(follows, others[7]);
+        v.addEdge(follows, v);
+        v.addEdge(likes, others[1]);
+        TitanEdge e1 = v.addEdge(follows, others[2]);
+        try {
+            e1.setProperty("since", 2013);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        e1.remove();
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        assertEquals(numV + 2, Iterables.size(v.getEdges(OUT, "follows")));
+        assertEquals(numV + 3, v.query().direction(OUT).count());
+        assertEquals(numV + 4, v.query().count());
+        assertEquals(1, tx.getVertex(others[1].getID()).query().count());
+        assertEquals(1, Iterables.size(v.getEdges(IN, "follows")));
+        assertEquals(1, Iterables.size(v.getVertices(OUT, "likes")));
+        assertEquals(10, Iterables.size(v.query().labels("follows").direction(OUT).limit(10).edges()));
+        assertEquals(2, Iterables.size(tx.getVertex(others[7].getID()).getEdges(IN, "follows")));
+        assertEquals(v, tx.getVertex(others[99].getID()).getVertices(IN, "follows").iterator().next());
+
+        //Remove edges from and add edges to existing blocks
+        Set<Long> removed = new HashSet<Long>();
+        int numRemoved = 0;
+        for (TitanEdge e : v.getTitanEdges(OUT, follows)) {
+            long otherId = e.getVertex(IN).getID();
+            if (otherId % 3 == 0) {
+                removed.add(otherId);
+                e.remove();
+                numRemoved++;
+            }
+        }
+        for (int i = 0; i < 10; i++) v.addEdge(follows, tx.addVertex());
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        int count = 0;
+        for (TitanEdge e : v.getTitanEdges(OUT, follows)) {
+            assertFalse(removed.contains(e.getVertex(IN).getID()));
+            count++;
+        }
+        assertTrue(numRemoved > 0);
+        assertEquals(numV + 2 + 10 - numRemoved, count);
+        assertEquals(count, Iterables.size(v.getEdges(OUT, "follows")));
+
+        //Remove all edges
+        for (TitanEdge e : v.getTitanEdges(OUT, follows)) e.remove();
+        clopen();
+
+        v = tx.getVertex(v.getID());
+        assertEquals(0, Iterables.size(v.getEdges(OUT, "follows")));
+        assertEquals(0, Iterables.size(tx.getVertex(others[99].getID()).getEdges(IN, "follows")));
+        assertEquals(1, Iterables.size(v.getEdges(OUT, "likes")));
+    }
+
+    @Test
+    public void testCompactLabelsOfOtherInstance() {
+        //The first compact label is created by an instance opened after this one
+        TitanGraph graph2 = TitanFactory.open(config);
+        long vid;
+        try {
+            TitanTransaction tx2 = graph2.newTransaction();
+            TitanLabel follows = tx2.makeType().name("follows").compact().makeEdgeLabel();
+            TitanVertex v = tx2.addVertex();
+            for (int i = 0; i < 5; i++) v.addEdge(follows, tx2.addVertex());
+            v.addEdge("knows", tx2.addVertex());
+            tx2.commit();
+            vid = v.getID();
+        } finally {
+            graph2.shutdown();
+        }
+        newTx();
+
+        TitanVertex v = tx.getVertex(vid);
+        assertEquals(6, Iterables.size(v.getEdges(OUT)));
+        assertEquals(6, v.query().direction(OUT).count());
+        assertEquals(6, v.query().count());
+        assertEquals(5, Iterables.size(v.getEdges(OUT, "follows")));
+    }
+
     @Test
     public void testTypes() {
 
@@ -344,6 +990,298 @@ public abstract class TitanGraphTest extends TitanGraphTestCommon {
         assertEquals(1, Iterables.size(v.getEdges(Direction.IN, "self")));
     }
 
+    @Test
+    public void testTraversal() {
+        TitanLabel child = tx.makeType().name("child").makeEdgeLabel();
+        TitanLabel friend = tx.makeType().name("friend").makeEdgeLabel();
+        int numChildren = 3, numGrandChildren = 4;
+        TitanVertex root = tx.addVertex();
+        TitanVertex[] children = new TitanVertex[numChildren];
+        for (int i=0;i<numChildren;i++) {
+            children[i] = tx.addVertex();
+            root.addEdge(child,children[i]);
+            for (int j=0;j<numGrandChildren;j++) {
+                TitanVertex grandchild = tx.addVertex();
+                children[i].addEdge(child, grandchild);
+                grandchild.addEdge(friend, root);
+            }
+        }
+        children[0].addEdge(friend,children[1]);
+
+        for (int round=0;round<2;round++) {
+            assertEquals(numChildren, tx.traverse(root).hop(OUT, "child").count());
+            assertEquals(numChildren*(1+numGrandChildren), tx.traverse(root).hop(OUT, "child").hop(OUT, "child").count());
+            //Vertices are visited only once
+            assertEquals(numChildren*(1+numGrandChildren), tx.traverse(root).hop(OUT).hop(OUT).hop(OUT).count());
+            assertEquals(numChildren*(1+numGrandChildren), tx.traverse(root).hop(IN, friend).hop(BOTH, "friend", "child").count());
+            assertEquals(0, tx.traverse(root).hop(OUT, "friend").count());
+            assertEquals(0, tx.traverse(root).hop(OUT, "undefined").hop(OUT).count());
+
+            VertexList vertices = tx.traverse(root).hop(OUT, "child").hop(OUT, "child").vertexIds();
+            assertEquals(numChildren*(1+numGrandChildren), vertices.size());
+            Set<Long> ids = new HashSet<Long>();
+            for (int i=0;i<numChildren;i++) {
+                assertTrue(children[i].getID()==vertices.getID(0) || children[i].getID()==vertices.getID(1) || children[i].getID()==vertices.getID(2));
+                ids.add(vertices.getID(i));
+            }
+            assertEquals(numChildren,ids.size());
+            for (TitanVertex v : tx.traverse(children[2]).hop(OUT, child).vertices()) {
+                assertEquals(root,Iterables.getOnlyElement(v.getVertices(OUT,"friend")));
+            }
+
+            //Limits
+            assertEquals(numChildren*2, tx.traverse(root).hop(OUT, "child").hop(OUT, "child").maxFanOut(2).count());
+            assertEquals(5, tx.traverse(root).hop(OUT, "child").hop(OUT, "child").maxVisited(5).count());
+            assertEquals(0, tx.traverse(root).hop(OUT, "child").maxVisited(0).count());
+            assertEquals(numChildren-1+numGrandChildren, tx.traverse(root, children[0]).hop(OUT, "child").count());
+
+            clopen();
+            root = tx.getVertex(root.getID());
+            for (int i=0;i<numChildren;i++) children[i] = tx.getVertex(children[i].getID());
+            child = tx.getEdgeLabel("child");
+            friend = tx.getEdgeLabel("friend");
+        }
+
+        //Uncommitted modifications are visible to the traversal
+        TitanVertex v = tx.addVertex();
+        children[1].addEdge(child,v);
+        tx.removeVertex(children[2]);
+        assertEquals(numChildren-1, tx.traverse(root).hop(OUT, "child").count());
+        assertEquals((numChildren-1)*(1+numGrandChildren)+1, tx.traverse(root).hop(OUT, "child").hop(OUT, "child").count());
+    }
+
+    @Test
+    public void testVertexProgram() {
+        if (!graph.getFeatures().supportsVertexIteration) return;
+        int numComponents = 3, componentSize = 20;
+        long[][] ids = new long[numComponents][componentSize];
+        for (int c=0;c<numComponents;c++) {
+            TitanVertex previous = null;
+            for (int i=0;i<componentSize;i++) {
+                TitanVertex v = tx.addVertex();
+                if (previous!=null) previous.addEdge("next",v);
+                previous = v;
+            }
+        }
+        clopen();
+        int pos = 0;
+        for (Vertex v : tx.getVertices()) {
+            ids[pos/componentSize][pos%componentSize]=((TitanVertex)v).getID();
+            pos++;
+        }
+        assertEquals(numComponents*componentSize,pos);
+
+        //Connected components: propagate the minimum vertex id
+        VertexProgramResult result = new VertexProgramExecutor(graph).numThreads(3).partitionSize(7).maxIterations(100).execute(new VertexProgram() {
+            @Override
+            public void compute(TitanVertex vertex, VertexContext context) {
+                double component = context.getIteration()==0?vertex.getID():context.getValue();
+                if (context.hasMessage()) component = Math.min(component,context.getMessage());
+                if (context.getIteration()==0 || component<context.getValue()) {
+                    context.setValue(component);
+                    for (Vertex neighbor : vertex.getVertices(BOTH, "next")) context.sendMessage((TitanVertex)neighbor,component);
+                }
+                context.voteToHalt();
+            }
+
+            @Override
+            public MessageCombiner getCombiner() {
+                return MessageCombiner.MIN;
+            }
+        });
+        assertEquals(numComponents*componentSize,result.size());
+        assertTrue(result.getIterations()<100);
+        final Set<Double> components = new HashSet<Double>();
+        result.process(new VertexProgramResult.Handler() {
+            @Override
+            public void handle(long vertexid, double value) {
+                components.add(value);
+            }
+        });
+        assertEquals(numComponents,components.size());
+        for (Vertex v : tx.getVertex(ids[0][0]).getVertices(BOTH,"next")) {
+            assertEquals(result.getValue(ids[0][0]),result.getValue(((TitanVertex)v).getID()),0.0);
+        }
+
+        //Degree: every vertex messages its neighbors once
+        result = new VertexProgramExecutor(graph).numThreads(2).partitionSize(11).execute(new VertexProgram() {
+            @Override
+            public void compute(TitanVertex vertex, VertexContext context) {
+                if (context.getIteration()==0) {
+                    for (Vertex neighbor : vertex.getVertices(BOTH, "next")) context.sendMessage((TitanVertex)neighbor,1.0);
+                } else {
+                    context.setValue(context.hasMessage()?context.getMessage():0.0);
+                    context.voteToHalt();
+                }
+            }
+
+            @Override
+            public MessageCombiner getCombiner() {
+                return MessageCombiner.SUM;
+            }
+        });
+        assertEquals(2,result.getIterations());
+        double degreeSum = 0;
+        for (long[] component : ids) for (long id : component) degreeSum+=result.getValue(id);
+        assertEquals(2.0*numComponents*(componentSize-1),degreeSum,0.0);
+
+        result.writeProperty("degree",13);
+        clopen();
+        for (Vertex v : tx.getVertices()) {
+            assertEquals(result.getValue(((TitanVertex) v).getID()),((Number)v.getProperty("degree")).doubleValue(),0.0);
+        }
+    }
+
+    @Test
+    public void testIndexRebuild() throws Exception {
+        if (!graph.getFeatures().supportsVertexIteration) return;
+        TitanKey name = tx.makeType().name("name").unique(Direction.OUT).
+                indexed(Vertex.class).indexed(Edge.class).dataType(String.class).makePropertyKey();
+        TitanLabel connect = tx.makeType().name("connect").makeEdgeLabel();
+        int numV = 50, mod = 5;
+        TitanVertex previous = null;
+        for (int i = 0; i < numV; i++) {
+            TitanVertex v = tx.addVertex();
+            v.addProperty(name, "Name" + (i % mod));
+            if (previous != null) previous.addEdge(connect, v).setProperty(name, "Edge" + (i % mod));
+            previous = v;
+        }
+        clopen();
+
+        //Remove all index entries, leaving the properties and edges in place
+        IndexSerializer indexSerializer = graph.getIndexSerializer();
+        BackendTransaction txHandle = ((StandardTitanTx) tx).getTxHandle();
+        for (Vertex v : tx.getVertices()) {
+            for (TitanProperty p : ((TitanVertex) v).getProperties(name)) indexSerializer.removeProperty(p, txHandle);
+            for (TitanEdge e : ((TitanVertex) v).getTitanEdges(OUT)) indexSerializer.removeEdge((InternalRelation) e, txHandle);
+        }
+        clopen();
+        assertEquals(0, Iterables.size(tx.getVertices("name", "Name0")));
+        assertEquals(0, Iterables.size(tx.getEdges("name", "Edge0")));
+
+        File checkpoint = File.createTempFile("rebuild", ".checkpoint");
+        assertTrue(checkpoint.delete());
+        long entries = new IndexRebuildJob(graph, Titan.Token.STANDARD_INDEX, "name").numThreads(3).batchSize(7)
+                .maxRate(10000).checkpoint(checkpoint).execute();
+        assertEquals(2 * numV - 1, entries);
+        assertFalse(checkpoint.exists());
+        clopen();
+        for (int j = 0; j < mod; j++) {
+            assertEquals(numV / mod, Iterables.size(tx.getVertices("name", "Name" + j)));
+            assertEquals(j == 0 ? numV / mod - 1 : numV / mod, Iterables.size(tx.getEdges("name", "Edge" + j)));
+        }
+
+        try {
+            new IndexRebuildJob(graph, "unknown", "name").execute();
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testIndexRebuildWithLookupFilter() throws Exception {
+        if (!graph.getFeatures().supportsVertexIteration) return;
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.STORAGE_LOOKUP_FILTER_SIZE_KEY, 1000);
+        clopen();
+        TitanKey uid = tx.makeType().name("uid").unique(Direction.OUT).unique(Direction.IN).indexed(Vertex.class)
+                .dataType(String.class).makePropertyKey();
+        int numV = 20;
+        for (int i = 0; i < numV; i++) tx.addVertex().setProperty(uid, "u" + i);
+        clopen();
+
+        //Remove all index entries and rebuild the filter from the index, so that it no longer contains the values
+        IndexSerializer indexSerializer = graph.getIndexSerializer();
+        BackendTransaction txHandle = ((StandardTitanTx) tx).getTxHandle();
+        for (Vertex v : tx.getVertices()) {
+            for (TitanProperty p : ((TitanVertex) v).getProperties(uid)) indexSerializer.removeProperty(p, txHandle);
+        }
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE)
+                .setProperty(GraphDatabaseConfiguration.STORAGE_LOOKUP_FILTER_SIZE_KEY, 2000);
+        clopen();
+        assertFalse(graph.getLookupFilter().mightContainValue(tx.getPropertyKey("uid"), "u1"));
+
+        assertEquals(numV, new IndexRebuildJob(graph, Titan.Token.STANDARD_INDEX, "uid").execute());
+        for (int i = 0; i < numV; i++) {
+            assertTrue(graph.getLookupFilter().mightContainValue(tx.getPropertyKey("uid"), "u" + i));
+        }
+        //Rebuilt values fail the uniqueness check
+        try {
+            tx.addVertex().setProperty("uid", "u1");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        tx.rollback();
+        tx = null;
+        clopen();
+        assertEquals(1, Iterables.size(tx.getVertices("uid", "u1")));
+    }
+
+    @Test
+    public void testRelationDecoderReuse() {
+        TitanKey name = tx.makeType().name("name").unique(Direction.OUT).dataType(String.class).makePropertyKey();
+        TitanKey age = tx.makeType().name("age").unique(Direction.OUT).dataType(Integer.class).makePropertyKey();
+        TitanKey time = tx.makeType().name("time").unique(Direction.OUT).dataType(Long.class).makePropertyKey();
+        TitanKey weight = tx.makeType().name("weight").unique(Direction.OUT).dataType(Double.class).makePropertyKey();
+        TitanLabel knows = tx.makeType().name("knows").primaryKey(time).makeEdgeLabel();
+        TitanLabel follows = tx.makeType().name("follows").makeEdgeLabel();
+        TitanVertex v = tx.addVertex();
+        v.setProperty(name, "v");
+        v.setProperty(age, 42);
+        TitanVertex u = tx.addVertex();
+        TitanVertex w = tx.addVertex();
+        TitanEdge e1 = v.addEdge(knows, u);
+        e1.setProperty(time, 5L);
+        e1.setProperty(weight, 1.5);
+        TitanEdge e2 = v.addEdge(knows, w);
+        e2.setProperty(time, 7L);
+        TitanEdge e3 = v.addEdge(follows, w);
+        clopen();
+
+        EdgeSerializer edgeSerializer = graph.getEdgeSerializer();
+        StandardTitanTx stx = (StandardTitanTx) tx;
+        //The scan slice also contains system properties of the vertex
+        SliceQuery query = edgeSerializer.getScanQuery(ImmutableList.of(tx.getPropertyKey("name"), tx.getPropertyKey("age")), true);
+        List<Entry> entries = graph.edgeQuery(v.getID(), query, stx.getTxHandle());
+
+        //A single decoder reused across entries of different shape must agree with a fresh decoder for each entry
+        RelationDecoder reused = edgeSerializer.newDecoder();
+        Map<Long, Object> values = new HashMap<Long, Object>();
+        Map<Long, Long> neighbors = new HashMap<Long, Long>();
+        Map<Long, Integer> numProperties = new HashMap<Long, Integer>();
+        for (Entry entry : entries) {
+            RelationDecoder fresh = edgeSerializer.newDecoder().reset(v.getID(), entry, stx);
+            reused.reset(v.getID(), entry, stx);
+            assertEquals(fresh.isProperty(), reused.isProperty());
+            assertEquals(fresh.getTypeId(), reused.getTypeId());
+            assertEquals(fresh.getDirection(), reused.getDirection());
+            assertEquals(fresh.getRelationId(), reused.getRelationId());
+            if (reused.isProperty()) {
+                assertEquals(fresh.getValue(), reused.getValue());
+                values.put(reused.getRelationId(), reused.getValue());
+            } else {
+                assertEquals(fresh.getOtherVertexId(), reused.getOtherVertexId());
+                neighbors.put(reused.getRelationId(), reused.getOtherVertexId());
+            }
+            ImmutableLongObjectMap freshProps = fresh.getProperties(), reusedProps = reused.getProperties();
+            assertEquals(freshProps.size(), reusedProps.size());
+            for (int i = 0; i < freshProps.size(); i++) {
+                assertEquals(freshProps.getValue(i), reusedProps.get(freshProps.getKey(i)));
+            }
+            numProperties.put(reused.getRelationId(), reusedProps.size());
+        }
+
+        assertEquals(3, neighbors.size());
+        assertEquals(u.getID(), (long) neighbors.get(e1.getID()));
+        assertEquals(w.getID(), (long) neighbors.get(e2.getID()));
+        assertEquals(w.getID(), (long) neighbors.get(e3.getID()));
+        assertEquals(2, (int) numProperties.get(e1.getID()));
+        assertEquals(1, (int) numProperties.get(e2.getID()));
+        assertEquals(0, (int) numProperties.get(e3.getID()));
+        assertTrue(values.containsValue("v"));
+        assertTrue(values.containsValue(42));
+    }
+
     @Test
     public void testIteration() {
         int numV = 50; int deleteV = 5;
@@ -2,6 +2,7 @@ package com.thinkaurelius.titan.graphdb;
 
 
 import com.thinkaurelius.titan.core.*;
+import com.thinkaurelius.titan.diskstorage.StorageException;
 import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
 import com.thinkaurelius.titan.graphdb.database.StandardTitanGraph;
 import com.tinkerpop.blueprints.Direction;
@@ -22,9 +23,13 @@ public abstract class TitanGraphTestCommon {
 
     @Before
     public void setUp() throws Exception {
+        clearStorage();
+        open();
+    }
+
+    private void clearStorage() throws StorageException {
         GraphDatabaseConfiguration graphconfig = new GraphDatabaseConfiguration(config);
         graphconfig.getBackend().clearStorage();
-        open();
     }
 
     @After
@@ -59,6 +64,20 @@ public abstract class TitanGraphTestCommon {
         open();
     }
 
+    /**
+     * Closes the graph and reopens it on empty storage, so that changes to options which are fixed when the graph is
+     * created take effect.
+     */
+    public void recreate() {
+        close();
+        try {
+            clearStorage();
+        } catch (StorageException e) {
+            throw new TitanException(e);
+        }
+        open();
+    }
+
     public static int wrapAround(int value, int maxValue) {
         value = value % maxValue;
         if (value < 0) value = value + maxValue;
@@ -3,16 +3,19 @@ package com.thinkaurelius.titan.graphdb;
 import com.google.common.collect.Iterables;
 import com.thinkaurelius.titan.core.TitanKey;
 import com.thinkaurelius.titan.core.TitanLabel;
+import com.thinkaurelius.titan.core.TitanTransaction;
 import com.thinkaurelius.titan.core.attribute.Cmp;
 import com.thinkaurelius.titan.core.attribute.Geo;
 import com.thinkaurelius.titan.core.attribute.Geoshape;
 import com.thinkaurelius.titan.core.attribute.Text;
+import com.thinkaurelius.titan.diskstorage.indexing.AsyncIndexProvider;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Vertex;
 import org.apache.commons.configuration.Configuration;
 import org.junit.Test;
 
+import static com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration.*;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -38,6 +41,46 @@ public abstract class TitanIndexTest extends TitanGraphTestCommon  {
     public void testOpenClose() {
     }
 
+    @Test
+    public void testWaitForIndexUpdates() {
+        config.subset(STORAGE_NAMESPACE).subset(INDEX_NAMESPACE).subset(INDEX).setProperty(AsyncIndexProvider.ASYNC_UPDATES_KEY, true);
+        config.subset(QUERY_NAMESPACE).setProperty(QUERY_WAIT_FOR_INDEX_UPDATES_KEY, true);
+        clopen();
+        tx.makeType().name("text").unique(Direction.OUT).indexed(INDEX, Vertex.class).dataType(String.class).makePropertyKey();
+        clopen();
+
+        int numV = 20;
+        for (int i = 0; i < numV; i++) {
+            Vertex v = tx.addVertex();
+            v.setProperty("text", "Vertex " + i);
+        }
+        //Commit returns once the mutations have been applied to the asynchronously updated index
+        newTx();
+        assertEquals(0, graph.getIndexUpdateLag(INDEX));
+        clopen();
+        assertEquals(numV, Iterables.size(tx.query().has("text", Text.CONTAINS, "vertex").vertices()));
+    }
+
+    @Test
+    public void testWaitForIndexUpdatesOfTransaction() {
+        config.subset(STORAGE_NAMESPACE).subset(INDEX_NAMESPACE).subset(INDEX).setProperty(AsyncIndexProvider.ASYNC_UPDATES_KEY, true);
+        clopen();
+        tx.makeType().name("text").unique(Direction.OUT).indexed(INDEX, Vertex.class).dataType(String.class).makePropertyKey();
+        newTx();
+
+        int numV = 20;
+        TitanTransaction tx2 = graph.buildTransaction().waitForIndexUpdates(true).start();
+        for (int i = 0; i < numV; i++) {
+            Vertex v = tx2.addVertex();
+            v.setProperty("text", "Vertex " + i);
+        }
+        //Only this transaction waits for its mutations to be applied to the asynchronously updated index
+        tx2.commit();
+        assertEquals(0, graph.getIndexUpdateLag(INDEX));
+        clopen();
+        assertEquals(numV, Iterables.size(tx.query().has("text", Text.CONTAINS, "vertex").vertices()));
+    }
+
     @Test
     public void testIndexing() {
         TitanKey text = tx.makeType().name("text").unique(Direction.OUT)
@@ -0,0 +1,64 @@
+package com.thinkaurelius.titan.diskstorage.util;
+
+import com.google.common.primitives.Longs;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * (c) Matthias Broecheler (me@matthiasb.com)
+ */
+
+public class ByteSliceTest {
+
+    private static final Random random = new Random();
+
+    @Test
+    public void testCompareRandom() {
+        int trials = 10000;
+        for (int t = 0; t<trials; t++) {
+            long val1 = random.nextLong();
+            long val2 = random.nextLong();
+            ByteSlice s1 = ByteSlice.of(ByteBufferUtil.getLongByteBuffer(val1));
+            ByteSlice s2 = ByteSlice.of(toDirect(ByteBufferUtil.getLongByteBuffer(val2)));
+            //Unsigned byte order corresponds to the order of the values with flipped sign bit
+            int expected = Integer.signum(Longs.compare(val1 ^ Long.MIN_VALUE, val2 ^ Long.MIN_VALUE));
+            assertEquals(expected, Integer.signum(s1.compareTo(s2)));
+            assertEquals(-expected, Integer.signum(s2.compareTo(s1)));
+            assertEquals(0, s1.compareTo(ByteSlice.of(toDirect(s1.asByteBuffer()))));
+        }
+    }
+
+    @Test
+    public void testSliceOfBuffer() {
+        ByteBuffer b = ByteBuffer.allocate(10);
+        for (int i = 0; i < 10; i++) b.put((byte) i);
+        b.position(2);
+        b.limit(6);
+        ByteSlice heap = ByteSlice.of(b.slice());
+        ByteSlice direct = ByteSlice.of(toDirect(b));
+        assertEquals(2, b.position());
+        assertEquals(4, heap.length());
+        assertEquals(heap, direct);
+        assertEquals(heap.hashCode(), direct.hashCode());
+        assertEquals(5, heap.getByte(3));
+        assertEquals(5, direct.asByteBuffer().get(3));
+        assertTrue(ByteSlice.of(new byte[]{2,3,4}).compareTo(heap) < 0);
+        assertFalse(ByteSlice.of(new byte[]{2,3,4}).equals(heap));
+        assertEquals(ByteSlice.EMPTY, ByteSlice.of(new byte[0]));
+    }
+
+    private static ByteBuffer toDirect(ByteBuffer b) {
+        ByteBuffer direct = ByteBuffer.allocateDirect(b.remaining() + 3);
+        direct.position(3);
+        direct.put(b.duplicate());
+        direct.position(3);
+        return direct;
+    }
+
+}
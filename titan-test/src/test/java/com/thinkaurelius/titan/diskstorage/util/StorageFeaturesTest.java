@@ -30,6 +30,7 @@ public class StorageFeaturesTest {
         }
         features = new StoreFeatures();
         features.supportsScan = false;
+        features.supportsMultiQuery = false;
         features.supportsBatchMutation = true;
         features.supportsTransactions = false;
         features.supportsConsistentKeyOperations = true;
@@ -50,6 +50,7 @@ public class VertexIDAssignerTest {
 
         StoreFeatures features = new StoreFeatures();
         features.supportsScan = false;
+        features.supportsMultiQuery = false;
         features.supportsBatchMutation = false;
         features.supportsTransactions = false;
         features.supportsConsistentKeyOperations = false;
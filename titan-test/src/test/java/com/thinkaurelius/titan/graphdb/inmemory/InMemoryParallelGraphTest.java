@@ -0,0 +1,24 @@
+package com.thinkaurelius.titan.graphdb.inmemory;
+
+import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Runs the graph tests with parallel backend operations enabled so that split vertex-centric
+ * queries are prefetched concurrently.
+ */
+
+public class InMemoryParallelGraphTest extends InMemoryGraphTest {
+
+    public InMemoryParallelGraphTest() {
+        super(getParallelConfiguration());
+    }
+
+    public static final Configuration getParallelConfiguration() {
+        Configuration config = getConfiguration();
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE).setProperty(GraphDatabaseConfiguration.PARALLEL_BACKEND_OPS_KEY, true);
+        config.subset(GraphDatabaseConfiguration.STORAGE_NAMESPACE).setProperty(GraphDatabaseConfiguration.PARALLEL_BACKEND_THREADS_KEY, 4);
+        return config;
+    }
+
+}
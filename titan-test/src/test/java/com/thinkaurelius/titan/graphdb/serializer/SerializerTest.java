@@ -1,8 +1,13 @@
 package com.thinkaurelius.titan.graphdb.serializer;
 
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.thinkaurelius.titan.diskstorage.util.ByteBufferUtil;
 import com.thinkaurelius.titan.graphdb.database.serialize.DataOutput;
 import com.thinkaurelius.titan.graphdb.database.serialize.Serializer;
+import com.thinkaurelius.titan.graphdb.database.serialize.SerializerInitialization;
 import com.thinkaurelius.titan.graphdb.database.serialize.kryo.KryoSerializer;
 import com.thinkaurelius.titan.graphdb.types.IndexType;
 import com.thinkaurelius.titan.graphdb.types.StandardKeyDefinition;
@@ -19,6 +24,8 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
 
 import static com.thinkaurelius.titan.graphdb.database.serialize.SerializerInitialization.RESERVED_ID_OFFSET;
 import static org.junit.Assert.*;
@@ -142,6 +149,166 @@ public class SerializerTest {
 
     }
 
+    @Test
+    public void primitiveArraySerializeTest() {
+        long[] longs = new long[1000];
+        int[] ints = new int[1000];
+        double[] doubles = new double[1000];
+        float[] floats = new float[1000];
+        for (int i = 0; i < 1000; i++) {
+            longs[i] = Long.MAX_VALUE - i * 7919L * i;
+            ints[i] = Integer.MIN_VALUE + i * 7919;
+            doubles[i] = Math.PI * i - 1e-9;
+            floats[i] = (float) Math.E * -i;
+        }
+        DataOutput out = serialize.getDataOutput(128, true);
+        out.writeObjectNotNull(longs);
+        out.writeObjectNotNull(ints);
+        out.writeClassAndObject(doubles);
+        out.writeObjectNotNull(floats);
+        out.writeObject(null, long[].class);
+        out.writeObjectNotNull(new double[0]);
+        ByteBuffer b = out.getByteBuffer();
+        assertArrayEquals(longs, serialize.readObjectNotNull(b, long[].class));
+        assertArrayEquals(ints, serialize.readObjectNotNull(b, int[].class));
+        assertArrayEquals(doubles, (double[]) serialize.readClassAndObject(b), 0.0);
+        assertArrayEquals(floats, serialize.readObjectNotNull(b, float[].class), 0.0f);
+        assertNull(serialize.readObject(b, long[].class));
+        assertEquals(0, serialize.readObjectNotNull(b, double[].class).length);
+        assertFalse(b.hasRemaining());
+    }
+
+    @Test
+    public void legacyPrimitiveArrayReadTest() {
+        //Ids under which the arrays were written with Kryo's default serializers before the bulk serializers were added
+        Kryo kryo = new Kryo();
+        kryo.register(int[].class, 49);
+        kryo.register(double[].class, 50);
+        kryo.register(long[].class, 51);
+        Output output = new Output(128, -1);
+        kryo.writeClassAndObject(output, new int[]{Integer.MIN_VALUE, -1, 0, 7919});
+        kryo.writeClassAndObject(output, new double[]{-1e-9, Math.PI});
+        kryo.writeClassAndObject(output, new long[]{Long.MAX_VALUE, 3L});
+        ByteBuffer b = ByteBuffer.wrap(output.toBytes());
+        assertArrayEquals(new int[]{Integer.MIN_VALUE, -1, 0, 7919}, (int[]) serialize.readClassAndObject(b));
+        assertArrayEquals(new double[]{-1e-9, Math.PI}, (double[]) serialize.readClassAndObject(b), 0.0);
+        assertArrayEquals(new long[]{Long.MAX_VALUE, 3L}, (long[]) serialize.readClassAndObject(b));
+        assertFalse(b.hasRemaining());
+    }
+
+    @Test
+    public void legacyFormatReadTest() {
+        Serializer legacy = new KryoSerializer(false, SerializerInitialization.LEGACY_FORMAT);
+        long time = 1368139811000L;
+        //Values as written by graphs created before the order-preserving encodings
+        Kryo kryo = new Kryo();
+        kryo.register(Date.class, new com.esotericsoftware.kryo.Serializer<Date>() {
+            @Override
+            public void write(Kryo kryo, Output output, Date date) {
+                output.writeLong(-date.getTime() - Long.MIN_VALUE);
+            }
+
+            @Override
+            public Date read(Kryo kryo, Input input, Class<Date> type) {
+                throw new UnsupportedOperationException();
+            }
+        });
+        Output output = new Output(128, -1);
+        kryo.writeObject(output, new Date(time));
+        output.writeLong(3250000L - Long.MIN_VALUE);
+        output.writeLong(-1500L - Long.MIN_VALUE);
+        kryo.writeObject(output, "Titan \u00e9t\u00e9");
+        kryo.writeObject(output, new int[]{Integer.MIN_VALUE, -1, 7919});
+        kryo.writeObject(output, Boolean.TRUE);
+        byte[] stored = output.toBytes();
+
+        ByteBuffer b = ByteBuffer.wrap(stored);
+        assertEquals(new Date(time), legacy.readObjectNotNull(b, Date.class));
+        assertEquals(3.25, legacy.readObjectNotNull(b, Double.class), 0.0);
+        assertEquals(-1.5f, legacy.readObjectNotNull(b, Float.class), 0.0f);
+        assertEquals("Titan \u00e9t\u00e9", legacy.readObjectNotNull(b, String.class));
+        assertArrayEquals(new int[]{Integer.MIN_VALUE, -1, 7919}, legacy.readObjectNotNull(b, int[].class));
+        assertEquals(Boolean.TRUE, legacy.readObjectNotNull(b, Boolean.class));
+        assertFalse(b.hasRemaining());
+
+        DataOutput out = legacy.getDataOutput(16, true);
+        out.writeObjectNotNull(new Date(time));
+        out.writeObjectNotNull(3.25);
+        out.writeObjectNotNull(-1.5f);
+        out.writeObjectNotNull("Titan \u00e9t\u00e9");
+        out.writeObjectNotNull(new int[]{Integer.MIN_VALUE, -1, 7919});
+        out.writeObjectNotNull(Boolean.TRUE);
+        assertEquals(ByteBuffer.wrap(stored), out.getByteBuffer());
+
+        assertFalse(legacy.isOrderPreserving(String.class));
+        assertFalse(legacy.isOrderPreserving(Date.class));
+        assertTrue(legacy.isOrderPreserving(Long.class));
+        assertTrue(legacy.isOrderPreserving(Double.class));
+        assertTrue(legacy.isOrderPreserving(Float.class));
+        assertTrue(serialize.isOrderPreserving(Date.class));
+        //Values which the fixed-point encodings represent exactly
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            assertOrderPreserved(legacy, (random.nextInt() >> 8) / 64.0, (random.nextInt() >> 8) / 64.0, Double.class);
+            assertOrderPreserved(legacy, (random.nextInt() >> 20) / 8.0f, (random.nextInt() >> 20) / 8.0f, Float.class);
+        }
+    }
+
+    @Test
+    public void orderPreservingSerializeTest() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            assertOrderPreserved(random.nextInt(), random.nextInt(), Integer.class);
+            assertOrderPreserved(random.nextLong(), random.nextLong(), Long.class);
+            assertOrderPreserved((short) random.nextInt(), (short) random.nextInt(), Short.class);
+            assertOrderPreserved((byte) random.nextInt(), (byte) random.nextInt(), Byte.class);
+            assertOrderPreserved((char) random.nextInt(), (char) random.nextInt(), Character.class);
+            assertOrderPreserved(random.nextBoolean(), random.nextBoolean(), Boolean.class);
+            assertOrderPreserved((random.nextDouble() - 0.5) * random.nextInt(), (random.nextDouble() - 0.5) * random.nextInt(), Double.class);
+            assertOrderPreserved((random.nextFloat() - 0.5f) * random.nextInt(), (random.nextFloat() - 0.5f) * random.nextInt(), Float.class);
+            assertOrderPreserved(new Date(random.nextLong() >> 16), new Date(random.nextLong() >> 16), Date.class);
+            assertOrderPreserved(randomString(random), randomString(random), String.class);
+        }
+        assertOrderPreserved(-0.0, 0.0, Double.class);
+        assertOrderPreserved(Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, Double.class);
+        assertOrderPreserved(Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.class);
+        assertOrderPreserved(Float.MIN_VALUE, -Float.MIN_VALUE, Float.class);
+        assertOrderPreserved("abc", "ab", String.class);
+        assertOrderPreserved("", "\u0000", String.class);
+        assertOrderPreserved("\u007f", "\u0080", String.class);
+        assertOrderPreserved("\u3fff", "\u4000", String.class);
+        assertOrderPreserved("\ufffe", "\uffff", String.class);
+        assertTrue(serialize.isOrderPreserving(String.class));
+        assertFalse(serialize.isOrderPreserving(TestClass.class));
+    }
+
+    private static String randomString(Random random) {
+        char[] chars = new char[random.nextInt(8)];
+        for (int i = 0; i < chars.length; i++) {
+            switch (random.nextInt(3)) {
+                case 0: chars[i] = (char) ('a' + random.nextInt(4)); break;
+                case 1: chars[i] = (char) random.nextInt(0x4000); break;
+                default: chars[i] = (char) random.nextInt(); break;
+            }
+        }
+        return new String(chars);
+    }
+
+    private <V extends Comparable<V>> void assertOrderPreserved(V a, V b, Class<V> type) {
+        assertOrderPreserved(serialize, a, b, type);
+    }
+
+    private static <V extends Comparable<V>> void assertOrderPreserved(Serializer serialize, V a, V b, Class<V> type) {
+        DataOutput outa = serialize.getDataOutput(16, true);
+        outa.writeObjectNotNull(a);
+        DataOutput outb = serialize.getDataOutput(16, true);
+        outb.writeObjectNotNull(b);
+        ByteBuffer ba = outa.getByteBuffer(), bb = outb.getByteBuffer();
+        assertEquals(a + " vs " + b, Integer.signum(a.compareTo(b)), Integer.signum(ByteBufferUtil.compare(ba, bb)));
+        assertEquals(a, serialize.readObjectNotNull(ba, type));
+        assertFalse(ba.hasRemaining());
+    }
+
     @Test
     public void serializeRelationshipType() {
         StandardLabelDefinition relType = new StandardLabelDefinition("testName", SystemTypeManager.SYSTEM_TYPE_GROUP,